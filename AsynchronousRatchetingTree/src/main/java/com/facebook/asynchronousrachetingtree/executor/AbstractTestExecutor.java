@@ -30,6 +30,11 @@ abstract public class AbstractTestExecutor implements TestExecutor {
     public static final String OTHER_SETUP_TIME="other_setup_time";
     public static final String OTHER_SETUP_RECEIVED_BYTES="other_setup_received_bytes";
     public static final String OTHER_SETUP_SENT_BYTES="other_setup_sent_bytes";
+    public static final String OTHER_SETUP_RECEIVED_BYTES_PER_PEER="other_setup_received_bytes_per_peer";
+    public static final String GROUP_SIZE="group_size";
+    public static final String SENDING_TIME_PER_MESSAGE="sending_time_per_message";
+    public static final String RECEIVING_TIME_PER_MESSAGE="receiving_time_per_message";
+    public static final String HEAP_USED="heap_used";
 
 
     public AbstractTestExecutor(GroupMessagingState[] states,
@@ -49,10 +54,17 @@ abstract public class AbstractTestExecutor implements TestExecutor {
      * @param messageSenders How many messages
      * @param messages The messages themselves that will be generates
      * @param activeUsers
+     * @param burstLength How many consecutive messages each sender sends
      */
-    private void bootstrapMessages(int[] messageSenders, byte[][] messages, int activeCount, Integer[] activeUsers) {
+    private void bootstrapMessages(int[] messageSenders, byte[][] messages, int activeCount, Integer[] activeUsers, int burstLength) {
 
         for (int i = 0; i < this.messagesToSend; i++) {
+            if (i % burstLength != 0) {
+                // Still in the same sender's burst.
+                messageSenders[i] = messageSenders[i-1];
+                this.random.nextBytes(messages[i]);
+                continue;
+            }
             // We're only interested in ratcheting events, so senders should always be
             // different from the previous sender.
             messageSenders[i] = activeUsers[this.random.nextInt(activeCount)];
@@ -106,6 +118,7 @@ abstract public class AbstractTestExecutor implements TestExecutor {
 
         String testName = this.implementation.getClass().getSimpleName();
         result.addResult(AbstractTestExecutor.TEST_NAME,testName);
+        result.addResult(AbstractTestExecutor.GROUP_SIZE,n);
 
 
 
@@ -123,7 +136,7 @@ abstract public class AbstractTestExecutor implements TestExecutor {
         this.setupArt(result,identities,keyServer,debug);
         this.setUpOthers(result,active,identities,keyServer,debug);
 
-        this.testMessageSendAndReceive(result,active,n,activeCount,debug);
+        this.testMessageSendAndReceive(result,active,n,activeCount,execParams.getBurstLength(),debug);
 
         this.postSetupExecution(result,params,active,identities,keyServer);
 
@@ -136,15 +149,16 @@ abstract public class AbstractTestExecutor implements TestExecutor {
      * @param active
      * @param n
      * @param activeCount
+     * @param burstLength
      * @param debug
      */
-    private void testMessageSendAndReceive(TestResultItem result, Integer[] active, int n, int activeCount,boolean debug)
+    private void testMessageSendAndReceive(TestResultItem result, Integer[] active, int n, int activeCount, int burstLength, boolean debug)
     {
 
         // Messages
         int[] messageSenders= new int[this.messagesToSend];
         byte[][] messages= new byte[this.messagesToSend][this.messageLength];
-        this.bootstrapMessages(messageSenders,messages, activeCount,active);
+        this.bootstrapMessages(messageSenders,messages, activeCount,active,burstLength);
 
         Stopwatch stopwatch1 = new Stopwatch();
         Stopwatch stopwatch2 = new Stopwatch();
@@ -154,6 +168,7 @@ abstract public class AbstractTestExecutor implements TestExecutor {
         if (debug) Utils.print("Sending " + messagesToSend + " messages.");
         int totalSendSizes = 0;
         int totalReceiveSizes = 0;
+        int totalReceives = 0;
 
         for (int i = 0; i < messagesToSend; i++) {
 
@@ -175,6 +190,7 @@ abstract public class AbstractTestExecutor implements TestExecutor {
                 stopwatch2.startInterval();
                 byte[] decrypted = implementation.receiveMessage(states[receiver], received);
                 stopwatch2.endInterval();
+                totalReceives++;
                 if (!Arrays.equals(message, decrypted)) {
                     Utils.except("Message doesn't match.");
                 }
@@ -189,6 +205,8 @@ abstract public class AbstractTestExecutor implements TestExecutor {
         //result.setSendingTime(stopwatch1.getTotal());
         result.addResult(AbstractTestExecutor.SENDING_TIME, stopwatch1.getTotal());
         result.addResult(AbstractTestExecutor.RECEIVING_TIME, stopwatch2.getTotal());
+        result.addResult(AbstractTestExecutor.SENDING_TIME_PER_MESSAGE, stopwatch1.getTotal() / messagesToSend);
+        result.addResult(AbstractTestExecutor.RECEIVING_TIME_PER_MESSAGE, totalReceives == 0 ? 0 : stopwatch2.getTotal() / totalReceives);
         result.addResult(AbstractTestExecutor.BYTES_RECEIVED,totalSendSizes);
         result.addResult(AbstractTestExecutor.BYTES_SENT,totalReceiveSizes);
 
@@ -238,6 +256,17 @@ abstract public class AbstractTestExecutor implements TestExecutor {
         result.addResult(AbstractTestExecutor.OTHER_SETUP_TIME, stopwatch1.getTotal());
         result.addResult(AbstractTestExecutor.OTHER_SETUP_RECEIVED_BYTES,setupPhase.getBytesReceivedByOthers());
         result.addResult(AbstractTestExecutor.OTHER_SETUP_SENT_BYTES,setupPhase.getBytesSentByOthers());
+
+        // The initiator never receives its own setup message.
+        int receivers = 0;
+        for (Integer peer : active) {
+            if (peer != 0) {
+                receivers++;
+            }
+        }
+        if (receivers > 0) {
+            result.addResult(AbstractTestExecutor.OTHER_SETUP_RECEIVED_BYTES_PER_PEER, setupPhase.getBytesReceivedByOthers() / receivers);
+        }
         stopwatch1.reset();
     }
 
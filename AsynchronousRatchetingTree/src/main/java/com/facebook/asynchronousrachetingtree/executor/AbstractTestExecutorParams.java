@@ -5,12 +5,32 @@ public class AbstractTestExecutorParams implements ExecutionParams {
     private int n=0;
     private int activeCount=0;
     private boolean debug=false;
+    private int burstLength=1;
+    private boolean measureHeap=false;
 
     public AbstractTestExecutorParams(int n, int activeCount, boolean debug)
+    {
+        this(n,activeCount,debug,1);
+    }
+
+    /**
+     * @param burstLength How many messages in a row each sender sends before another member takes over.
+     */
+    public AbstractTestExecutorParams(int n, int activeCount, boolean debug, int burstLength)
+    {
+        this(n,activeCount,debug,burstLength,false);
+    }
+
+    /**
+     * @param measureHeap Whether to force a GC after the run and record the heap used, while all states are reachable.
+     */
+    public AbstractTestExecutorParams(int n, int activeCount, boolean debug, int burstLength, boolean measureHeap)
     {
         this.n=n;
         this.activeCount=activeCount;
         this.debug=debug;
+        this.burstLength=burstLength;
+        this.measureHeap=measureHeap;
     }
 
     public int getN() {
@@ -24,4 +44,12 @@ public class AbstractTestExecutorParams implements ExecutionParams {
     public int getActiveCount() {
         return activeCount;
     }
+
+    public int getBurstLength() {
+        return burstLength;
+    }
+
+    public boolean isMeasureHeap() {
+        return measureHeap;
+    }
 }
@@ -28,7 +28,6 @@ public class TestResultItem {
             endResults.add(String.valueOf(this.testResult.get(key)));
         }
 
-        String endResult= String.join(",",endResults);
-        return endResult.substring(0,endResult.length()-1);
+        return String.join(",",endResults);
     }
 }
@@ -1,6 +1,7 @@
 package com.facebook.research.asynchronousratchetingtree;
 
 import com.facebook.asynchronousrachetingtree.executor.AbstractTestExecutor;
+import com.facebook.asynchronousrachetingtree.executor.AbstractTestExecutorParams;
 import com.facebook.asynchronousrachetingtree.executor.ExecutionParams;
 import com.facebook.asynchronousrachetingtree.executor.TestResultItem;
 import com.facebook.research.asynchronousratchetingtree.crypto.DHPubKey;
@@ -27,6 +28,12 @@ public class CommonTests extends AbstractTestExecutor {
     @Override
     protected void postSetupExecution(TestResultItem result, ExecutionParams params, Integer[] activeUsers, DHPubKey[] identities, KeyServer keyServer)
     {
-
+        if (!((AbstractTestExecutorParams) params).isMeasureHeap()) {
+            return;
+        }
+        // All states are still reachable here, so this is roughly what the whole simulated group costs to keep around.
+        Runtime runtime = Runtime.getRuntime();
+        System.gc();
+        result.addResult(CommonTests.HEAP_USED, runtime.totalMemory() - runtime.freeMemory());
     }
 }
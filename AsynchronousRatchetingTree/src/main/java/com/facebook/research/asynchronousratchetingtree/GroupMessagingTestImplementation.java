@@ -10,9 +10,39 @@ package com.facebook.research.asynchronousratchetingtree;
 
 import com.facebook.research.asynchronousratchetingtree.crypto.DHPubKey;
 
+import java.util.ArrayList;
+import java.util.List;
+
 public interface GroupMessagingTestImplementation<TThreadState extends GroupMessagingState> {
   byte[] setupMessageForPeer(TThreadState state, DHPubKey[] peers, KeyServer keyServer, int peer);
+
+  /**
+   * setupMessageForPeer for every peer but ourselves, indexed by peer. Implementations may override this to share work
+   * across the batch.
+   */
+  default byte[][] setupMessagesForPeers(TThreadState state, DHPubKey[] peers, KeyServer keyServer) {
+    byte[][] messages = new byte[peers.length][];
+    for (int i = 0; i < peers.length; i++) {
+      if (i != state.getPeerNum()) {
+        messages[i] = setupMessageForPeer(state, peers, keyServer, i);
+      }
+    }
+    return messages;
+  }
+
   void processSetupMessage(TThreadState state, byte[] serialisedMessage, int participantNum);
   MessageDistributer sendMessage(TThreadState state, byte[] plaintext);
   byte[] receiveMessage(TThreadState state, byte[] serialisedMessage);
+
+  /**
+   * Receive a backlog of messages, in the order they were sent. Implementations may override this to share work
+   * across the batch.
+   */
+  default List<byte[]> receiveMessages(TThreadState state, List<byte[]> serialisedMessages) {
+    List<byte[]> plaintexts = new ArrayList<>(serialisedMessages.size());
+    for (byte[] serialisedMessage : serialisedMessages) {
+      plaintexts.add(receiveMessage(state, serialisedMessage));
+    }
+    return plaintexts;
+  }
 }
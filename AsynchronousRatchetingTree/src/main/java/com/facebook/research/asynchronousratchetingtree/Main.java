@@ -14,13 +14,66 @@ import com.facebook.asynchronousrachetingtree.executor.TestResults;
 import com.facebook.research.asynchronousratchetingtree.art.ARTSetupPhase;
 import com.facebook.research.asynchronousratchetingtree.art.ARTState;
 import com.facebook.research.asynchronousratchetingtree.art.ARTTestImplementation;
+import com.facebook.research.asynchronousratchetingtree.art.ArrayTreeConformance;
+import com.facebook.research.asynchronousratchetingtree.art.EpochHistory;
+import com.facebook.research.asynchronousratchetingtree.art.SenderChains;
+import com.facebook.research.asynchronousratchetingtree.art.UpdatePolicy;
+import com.facebook.research.asynchronousratchetingtree.art.message.AuthenticatedMessage;
+import com.facebook.research.asynchronousratchetingtree.art.message.CiphertextMessage;
+import com.facebook.research.asynchronousratchetingtree.art.message.FlatMessageReader;
+import com.facebook.research.asynchronousratchetingtree.art.message.FlatMessageWriter;
+import com.facebook.research.asynchronousratchetingtree.art.message.SetupMessage;
+import com.facebook.research.asynchronousratchetingtree.art.message.UpdateMessage;
+import com.facebook.research.asynchronousratchetingtree.art.message.thrift.SetupMessageStruct;
+import com.facebook.research.asynchronousratchetingtree.art.tree.ArrayTree;
+import com.facebook.research.asynchronousratchetingtree.art.tree.Node;
+import com.facebook.research.asynchronousratchetingtree.art.tree.ParentNode;
+import com.facebook.research.asynchronousratchetingtree.art.tree.PublicLeafNode;
+import com.facebook.research.asynchronousratchetingtree.art.tree.PublicNodeInterner;
+import com.facebook.research.asynchronousratchetingtree.art.tree.PublicParentNode;
+import com.facebook.research.asynchronousratchetingtree.art.tree.SecretLeafNode;
+import com.facebook.research.asynchronousratchetingtree.art.tree.SecretParentNode;
+import com.facebook.research.asynchronousratchetingtree.art.tree.TreeWriter;
+import com.facebook.research.asynchronousratchetingtree.crypto.AeadSuite;
+import com.facebook.research.asynchronousratchetingtree.crypto.AeadSuites;
+import com.facebook.research.asynchronousratchetingtree.crypto.AeadVectors;
+import com.facebook.research.asynchronousratchetingtree.crypto.Crypto;
+import com.facebook.research.asynchronousratchetingtree.crypto.CryptoContext;
+import com.facebook.research.asynchronousratchetingtree.crypto.DHKeyPair;
+import com.facebook.research.asynchronousratchetingtree.crypto.DHPubKey;
+import com.facebook.research.asynchronousratchetingtree.crypto.EntropyPool;
+import com.facebook.research.asynchronousratchetingtree.crypto.JdkX25519Backend;
+import com.facebook.research.asynchronousratchetingtree.crypto.KeySchedule;
+import com.facebook.research.asynchronousratchetingtree.crypto.SignatureBackend;
+import com.facebook.research.asynchronousratchetingtree.crypto.SignatureBackends;
+import com.facebook.research.asynchronousratchetingtree.crypto.X25519Backend;
+import com.facebook.research.asynchronousratchetingtree.crypto.X25519Backends;
+import com.facebook.research.asynchronousratchetingtree.crypto.X25519Vectors;
 import com.facebook.research.asynchronousratchetingtree.dhratchet.DHRatchet;
 import com.facebook.research.asynchronousratchetingtree.dhratchet.DHRatchetSetupPhase;
 import com.facebook.research.asynchronousratchetingtree.dhratchet.DHRatchetState;
+import com.facebook.research.asynchronousratchetingtree.dhratchet.message.DHRatchetMessage;
 
 import javax.crypto.Cipher;
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.io.ByteArrayOutputStream;
+import java.lang.management.ManagementFactory;
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+import java.util.function.ToLongFunction;
 
 public class Main {
 
@@ -29,6 +82,106 @@ public class Main {
   public static void main(String[] args) {
     checkForUnlimitedStrengthCrypto();
 
+    if (args.length > 0 && args[0].equals("tree-hash")) {
+      treeHashBenchmark(args);
+      return;
+    }
+
+    if (args.length > 0 && args[0].equals("shared-storage")) {
+      sharedStorageBenchmark(args);
+      return;
+    }
+
+    if (args.length > 0 && args[0].equals("parallel-setup")) {
+      parallelSetupBenchmark(args);
+      return;
+    }
+
+    if (args.length > 0 && args[0].equals("x3dh")) {
+      x3dhBenchmark(args);
+      return;
+    }
+
+    if (args.length > 0 && args[0].equals("catch-up")) {
+      catchUpBenchmark(args);
+      return;
+    }
+
+    if (args.length > 0 && args[0].equals("setup-bandwidth")) {
+      setupBandwidthBenchmark(args);
+      return;
+    }
+
+    if (args.length > 0 && args[0].equals("lazy-setup")) {
+      lazySetupBenchmark(args);
+      return;
+    }
+
+    if (args.length > 0 && args[0].equals("schema-versions")) {
+      schemaVersionsBenchmark(args);
+      return;
+    }
+
+    if (args.length > 0 && args[0].equals("tree-writer")) {
+      treeWriterBenchmark(args);
+      return;
+    }
+
+    if (args.length > 0 && args[0].equals("implicit-nonces")) {
+      implicitNoncesBenchmark(args);
+      return;
+    }
+
+    if (args.length > 0 && args[0].equals("aead-buffers")) {
+      aeadBuffersBenchmark(args);
+      return;
+    }
+
+    if (args.length > 0 && args[0].equals("aead")) {
+      aeadBenchmark(args);
+      return;
+    }
+
+    if (args.length > 0 && args[0].equals("codec")) {
+      codecBenchmark(args);
+      return;
+    }
+
+    if (args.length > 0 && args[0].equals("late-messages")) {
+      lateMessagesBenchmark(args);
+      return;
+    }
+
+    if (args.length > 0 && args[0].equals("sender-chains")) {
+      senderChainsBenchmark(args);
+      return;
+    }
+
+    if (args.length > 0 && args[0].equals("crypto-context")) {
+      cryptoContextBenchmark(args);
+      return;
+    }
+
+    if (args.length > 0 && args[0].equals("x25519")) {
+      x25519Benchmark(args);
+      return;
+    }
+
+    if (args.length > 0 && args[0].equals("signatures")) {
+      signaturesBenchmark(args);
+      return;
+    }
+
+    if (args.length > 0 && args[0].equals("entropy")) {
+      entropyBenchmark(args);
+      return;
+    }
+
+    if (args.length > 0 && args[0].equals("array-tree-conformance")) {
+      arrayTreeConformance(args);
+      return;
+    }
+
     // Run a test run first to warm up the JIT
     artTestRun(8, 8);
     dhTestRun(8, 8);
@@ -87,22 +240,1546 @@ public class Main {
 
   }
 
+  /**
+   * Compares the per-message cost of deriving stage keys from the serialised tree against deriving them from the
+   * cached tree hash, as the group grows by powers of ten. Only a few members are active, so the numbers reflect the
+   * cost of a single update rather than the fan-out. Even with the tree hash the cost grows with log n, from the DH
+   * work along the sender's path.
+   *
+   * The default sweep runs up to 100k members. Most of its time goes on setting up the largest groups, and the whole
+   * sweep takes about 20 minutes on one core with a 3 GB heap, so pass a smaller limit for a quick run.
+   *
+   * Usage: tree-hash [max group size]
+   */
+  private static void treeHashBenchmark(String[] args) {
+    int limit = args.length > 1 ? Integer.parseInt(args[1]) : 100000;
+    int activePeers = 8;
+    String[] keys = {
+      CommonTests.TEST_NAME,
+      CommonTests.GROUP_SIZE,
+      CommonTests.SENDING_TIME_PER_MESSAGE,
+      CommonTests.RECEIVING_TIME_PER_MESSAGE
+    };
+
+    // Warm up the JIT in both modes.
+    for (int i = 0; i < 5; i++) {
+      artTestRun(8, 8, state -> state.setTreeHashKDF(false));
+      artTestRun(8, 8, state -> state.setTreeHashKDF(true));
+    }
+
+    TestResults results = new TestResults();
+    for (int n = 10; n <= limit; n = n < limit && n * 10 > limit ? limit : n * 10) {
+      for (boolean treeHash : new boolean[] {false, true}) {
+        System.gc();
+        TestResultItem result = artTestRun(n, Math.min(n, activePeers), state -> state.setTreeHashKDF(treeHash));
+        result.addResult(CommonTests.TEST_NAME, treeHash ? "ARTTreeHash" : "ARTSerialisedTree");
+        results.addTestResult(result);
+      }
+      System.gc();
+      TestResultItem result = artTestRun(n, Math.min(n, activePeers), state -> {
+        state.setTreeHashKDF(true);
+        state.setArrayTreeEngine(true);
+      });
+      result.addResult(CommonTests.TEST_NAME, "ARTArrayTreeHash");
+      results.addTestResult(result);
+    }
+
+    System.out.println(String.join(",", keys));
+    for (TestResultItem r : results) {
+      System.out.println(r.getResultAsCSVRow(keys));
+    }
+  }
+
+  /**
+   * Simulates groups where every member is active, with all members sharing their public keys and public nodes
+   * through one PublicNodeInterner, and reports the heap needed to hold the whole group. Groups small enough to fit
+   * without sharing are also run unshared for comparison.
+   *
+   * Usage: shared-storage [max group size]
+   */
+  private static void sharedStorageBenchmark(String[] args) {
+    int limit = args.length > 1 ? Integer.parseInt(args[1]) : 50000;
+    int unsharedLimit = 1000;
+    String[] keys = {
+      CommonTests.TEST_NAME,
+      CommonTests.GROUP_SIZE,
+      CommonTests.HEAP_USED,
+      CommonTests.SENDING_TIME_PER_MESSAGE,
+      CommonTests.RECEIVING_TIME_PER_MESSAGE
+    };
+
+    TestResults results = new TestResults();
+    for (int n = 10; n <= limit; n = n < limit && n * 10 > limit ? limit : n * 10) {
+      if (n <= unsharedLimit) {
+        System.gc();
+        TestResultItem result = artTestRun(heapParams(n), state -> state.setTreeHashKDF(true));
+        result.addResult(CommonTests.TEST_NAME, "ARTUnshared");
+        results.addTestResult(result);
+      }
+      PublicNodeInterner interner = new PublicNodeInterner();
+      System.gc();
+      TestResultItem result = artTestRun(heapParams(n), state -> {
+        state.setTreeHashKDF(true);
+        state.setPublicNodeInterner(interner);
+      });
+      result.addResult(CommonTests.TEST_NAME, "ARTShared");
+      results.addTestResult(result);
+    }
+
+    System.out.println(String.join(",", keys));
+    for (TestResultItem r : results) {
+      System.out.println(r.getResultAsCSVRow(keys));
+    }
+  }
+
+  /**
+   * A fully active run that records the heap it leaves in use, which only this benchmark pays a forced GC for.
+   */
+  private static AbstractTestExecutorParams heapParams(int n) {
+    return new AbstractTestExecutorParams(n, n, debug, 1, true);
+  }
+
+  /**
+   * Compares the initiator's setup time on the sequential path with the fork-join path, for both tree engines. The
+   * other members always set up sequentially, so a successful run also shows that both paths derive the same keys.
+   *
+   * Usage: parallel-setup [group size] [parallelism]
+   */
+  private static void parallelSetupBenchmark(String[] args) {
+    int n = args.length > 1 ? Integer.parseInt(args[1]) : 10000;
+    int parallelism = args.length > 2 ? Integer.parseInt(args[2]) : Runtime.getRuntime().availableProcessors();
+    String[] keys = {
+      CommonTests.TEST_NAME,
+      CommonTests.GROUP_SIZE,
+      CommonTests.INITIATOR_SETUP_TIME
+    };
+
+    // Warm up the JIT on both paths.
+    for (int i = 0; i < 5; i++) {
+      artTestRun(64, 8, state -> state.setSetupParallelism(parallelism));
+      artTestRun(64, 8, state -> state.setSetupParallelism(1));
+    }
+
+    TestResults results = new TestResults();
+    for (boolean arrayTree : new boolean[] {false, true}) {
+      for (int threads : new int[] {1, parallelism}) {
+        System.gc();
+        TestResultItem result = artTestRun(n, Math.min(n, 8), state -> {
+          state.setArrayTreeEngine(arrayTree);
+          state.setSetupParallelism(state.getPeerNum() == 0 ? threads : 1);
+        });
+        result.addResult(
+          CommonTests.TEST_NAME,
+          (arrayTree ? "ARTArrayTree" : "ART") + (threads > 1 ? "Parallel" + threads : "Sequential")
+        );
+        results.addTestResult(result);
+      }
+    }
+
+    System.out.println(String.join(",", keys));
+    for (TestResultItem r : results) {
+      System.out.println(r.getResultAsCSVRow(keys));
+    }
+  }
+
+  /**
+   * Checks that the batched X3DH fan-out gives the same secrets as the per-peer one, and that the peers agree with them,
+   * then times an initiator's key exchanges with every peer one at a time, as one batch, and as one batch spread over
+   * the given number of threads. Finishes with a DHRatchet initiator's setup time, sequential and parallel.
+   *
+   * Usage: x3dh [group size] [parallelism]
+   */
+  private static void x3dhBenchmark(String[] args) {
+    int n = args.length > 1 ? Integer.parseInt(args[1]) : 1000;
+    int parallelism = args.length > 2 ? Integer.parseInt(args[2]) : Runtime.getRuntime().availableProcessors();
+    DHKeyPair identity = DHKeyPair.generate(false);
+    DHKeyPair keyExchangeKeyPair = DHKeyPair.generate(false);
+    DHKeyPair[] peerIdentities = new DHKeyPair[n];
+    DHKeyPair[] peerPreKeys = new DHKeyPair[n];
+    DHKeyPair[] ratchetKeys = new DHKeyPair[n];
+    DHPubKey[] identities = new DHPubKey[n];
+    DHPubKey[] preKeys = new DHPubKey[n];
+    for (int i = 1; i < n; i++) {
+      peerIdentities[i] = DHKeyPair.generate(false);
+      peerPreKeys[i] = DHKeyPair.generate(false);
+      ratchetKeys[i] = DHKeyPair.generate(false);
+      identities[i] = peerIdentities[i].getPubKey();
+      preKeys[i] = peerPreKeys[i].getPubKey();
+    }
+    identities[0] = identity.getPubKey();
+
+    ForkJoinPool pool = new ForkJoinPool(parallelism);
+    try {
+      byte[][] shared = Crypto.keyExchangeInitiateAll(identity, identities, keyExchangeKeyPair, preKeys, pool);
+      byte[][] pairwise = Crypto.keyExchangeInitiateAll(identity, identities, ratchetKeys, preKeys, null);
+      if (shared[0] != null || pairwise[0] != null) {
+        fail("The batch did a key exchange with the initiator itself.");
+      }
+      for (int i = 1; i < n; i++) {
+        if (
+          !Arrays.equals(shared[i], Crypto.keyExchangeInitiate(identity, identities[i], keyExchangeKeyPair, preKeys[i])) ||
+          !Arrays.equals(pairwise[i], Crypto.keyExchangeInitiate(identity, identities[i], ratchetKeys[i], preKeys[i])) ||
+          !Arrays.equals(shared[i], Crypto.keyExchangeReceive(peerIdentities[i], identities[0], peerPreKeys[i], keyExchangeKeyPair.getPubKey()))
+        ) {
+          fail("The batched key exchange differs from the per-peer one for peer " + i + ".");
+        }
+      }
+      Utils.print("The batched key exchange matches the per-peer one and the peers' side for " + (n - 1) + " peers.");
+
+      long perPeer = 0;
+      long batch = 0;
+      long parallel = 0;
+      for (int round = 0; round < 2; round++) { // The first round warms up the JIT.
+        long start = System.nanoTime();
+        for (int i = 1; i < n; i++) {
+          Crypto.keyExchangeInitiate(identity, identities[i], keyExchangeKeyPair, preKeys[i]);
+        }
+        perPeer = System.nanoTime() - start;
+        start = System.nanoTime();
+        Crypto.keyExchangeInitiateAll(identity, identities, keyExchangeKeyPair, preKeys, null);
+        batch = System.nanoTime() - start;
+        start = System.nanoTime();
+        Crypto.keyExchangeInitiateAll(identity, identities, keyExchangeKeyPair, preKeys, pool);
+        parallel = System.nanoTime() - start;
+      }
+      System.out.println("peers,per_peer_ns,batch_ns,batch_parallel" + parallelism + "_ns");
+      System.out.println((n - 1) + "," + perPeer + "," + batch + "," + parallel);
+    } finally {
+      pool.shutdown();
+    }
+
+    String[] keys = {CommonTests.TEST_NAME, CommonTests.GROUP_SIZE, CommonTests.INITIATOR_SETUP_TIME};
+    dhTestRun(64, 8, state -> state.setSetupParallelism(parallelism));
+    System.out.println(String.join(",", keys));
+    for (int threads : new int[] {1, parallelism}) {
+      System.gc();
+      TestResultItem result = dhTestRun(n, Math.min(n, 8), state -> state.setSetupParallelism(threads));
+      result.addResult(CommonTests.TEST_NAME, "DHRatchet" + (threads > 1 ? "Parallel" + threads : "Sequential"));
+      System.out.println(result.getResultAsCSVRow(keys));
+    }
+  }
+
+  /**
+   * Two members exchange a backlog of messages while two others are offline. One offline member then catches up by
+   * receiving the messages one at a time, and the other through the batch API, and both times are reported. A fifth
+   * member's message, sent before the backlog, sits a few updates into it, so both ways have to handle a late update
+   * from their epoch histories.
+   *
+   * Usage: catch-up [group size] [backlog length]
+   */
+  private static void catchUpBenchmark(String[] args) {
+    int n = args.length > 1 ? Integer.parseInt(args[1]) : 1000;
+    int backlog = args.length > 2 ? Integer.parseInt(args[2]) : 500;
+    int lateDelay = Math.min(4, backlog - 1);
+    SecureRandom random = new SecureRandom();
+
+    for (int round = 0; round < 6; round++) {
+      // Early rounds on a small group warm up the JIT.
+      boolean warmUp = round < 3;
+      int groupSize = warmUp ? 16 : n;
+      ARTState[] states = new ARTState[groupSize];
+      DHPubKey[] identities = new DHPubKey[groupSize];
+      for (int i = 0; i < groupSize; i++) {
+        states[i] = new ARTState(i, groupSize);
+        states[i].setTreeHashKDF(true);
+        identities[i] = states[i].getIdentityKeyPair().getPubKey();
+      }
+      states[2].setEpochHistory(new EpochHistory(lateDelay + 2));
+      states[3].setEpochHistory(new EpochHistory(lateDelay + 2));
+      KeyServer keyServer = new KeyServer(states);
+      ARTSetupPhase setupPhase = new ARTSetupPhase();
+      ARTTestImplementation implementation = new ARTTestImplementation();
+      setupPhase.generateNecessaryPreKeys(states);
+      setupPhase.setupInitiator(implementation, states, identities, keyServer);
+      setupPhase.setupAllOthers(implementation, states, new Integer[] {0, 1, 2, 3, 4}, identities, keyServer);
+
+      List<byte[]> plaintexts = new ArrayList<>();
+      List<byte[]> queue = new ArrayList<>();
+      byte[] latePlaintext = new byte[32];
+      random.nextBytes(latePlaintext);
+      byte[] late = implementation.sendMessage(states[4], latePlaintext).getUpdateMessageForParticipantNum(0);
+      for (int i = 0; i < backlog; i++) {
+        if (i == lateDelay) {
+          plaintexts.add(latePlaintext);
+          queue.add(late);
+        }
+        byte[] plaintext = new byte[32];
+        random.nextBytes(plaintext);
+        plaintexts.add(plaintext);
+        byte[] message = implementation.sendMessage(states[i % 2], plaintext).getUpdateMessageForParticipantNum(0);
+        implementation.receiveMessage(states[1 - i % 2], message);
+        queue.add(message);
+      }
+
+      Stopwatch oneByOne = new Stopwatch();
+      List<byte[]> received = new ArrayList<>();
+      oneByOne.startInterval();
+      for (byte[] message : queue) {
+        received.add(implementation.receiveMessage(states[2], message));
+      }
+      oneByOne.endInterval();
+
+      Stopwatch batch = new Stopwatch();
+      batch.startInterval();
+      List<byte[]> batchReceived = implementation.receiveMessages(states[3], queue);
+      batch.endInterval();
+
+      for (int i = 0; i < queue.size(); i++) {
+        if (!Arrays.equals(plaintexts.get(i), received.get(i)) || !Arrays.equals(plaintexts.get(i), batchReceived.get(i))) {
+          fail("Message doesn't match.");
+        }
+      }
+      if (!warmUp) {
+        Utils.print(
+          "Caught up on " + queue.size() + " messages in a group of " + groupSize + ": " + oneByOne.getTotal() +
+          " nanoseconds one at a time, " + batch.getTotal() + " nanoseconds as a batch."
+        );
+      }
+    }
+  }
+
+  /**
+   * Compares broadcasting the whole tree at setup with sending each peer only its copath. The first costs the initiator
+   * one O(n) message but every peer receives all of it; the second costs the initiator n - 1 messages of O(log n) each.
+   * Both use the tree-hash KDF, which copath setup requires.
+   *
+   * Usage: setup-bandwidth [max group size]
+   */
+  private static void setupBandwidthBenchmark(String[] args) {
+    int limit = args.length > 1 ? Integer.parseInt(args[1]) : 2000;
+    String[] keys = {
+      CommonTests.TEST_NAME,
+      CommonTests.GROUP_SIZE,
+      CommonTests.INITIATOR_SETUP_TIME,
+      CommonTests.INITIATOR_SETUP_BYTES,
+      CommonTests.OTHER_SETUP_TIME,
+      CommonTests.OTHER_SETUP_RECEIVED_BYTES_PER_PEER
+    };
+
+    // Warm up the JIT on both paths.
+    for (boolean copath : new boolean[] {false, true}) {
+      artTestRun(64, 8, state -> {
+        state.setTreeHashKDF(true);
+        state.setCopathSetup(copath);
+      });
+    }
+
+    TestResults results = new TestResults();
+    for (int n = 10; n <= limit; n = n < limit && n * 2 > limit ? limit : n * 2) {
+      for (boolean copath : new boolean[] {false, true}) {
+        TestResultItem result = artTestRun(n, Math.min(n, 8), state -> {
+          state.setTreeHashKDF(true);
+          state.setCopathSetup(copath);
+        });
+        result.addResult(CommonTests.TEST_NAME, copath ? "ARTCopathSetup" : "ARTFullTreeSetup");
+        results.addTestResult(result);
+      }
+    }
+
+    System.out.println(String.join(",", keys));
+    for (TestResultItem r : results) {
+      System.out.println(r.getResultAsCSVRow(keys));
+    }
+  }
+
+  /**
+   * Members send in bursts, and either update their leaf with every message or only with one in every few, sending the
+   * rest on their sender chains. Reports the amortised cost of sending and receiving a message.
+   *
+   * Usage: sender-chains [group size] [burst length]
+   */
+  private static void senderChainsBenchmark(String[] args) {
+    int n = args.length > 1 ? Integer.parseInt(args[1]) : 1000;
+    int burstLength = args.length > 2 ? Integer.parseInt(args[2]) : 10;
+    int[] updateEvery = {1, 10, 100};
+    String[] keys = {
+      CommonTests.TEST_NAME,
+      CommonTests.GROUP_SIZE,
+      CommonTests.SENDING_TIME_PER_MESSAGE,
+      CommonTests.RECEIVING_TIME_PER_MESSAGE,
+      CommonTests.BYTES_SENT
+    };
+
+    // Warm up the JIT on both kinds of message.
+    for (int i = 0; i < 3; i++) {
+      artTestRun(64, 8, burstLength, state -> state.setUpdatePolicy(new UpdatePolicy(10, Long.MAX_VALUE)));
+    }
+
+    TestResults results = new TestResults();
+    for (int maxMessages : updateEvery) {
+      for (boolean treeHash : new boolean[] {false, true}) {
+        System.gc();
+        TestResultItem result = artTestRun(n, Math.min(n, 8), burstLength, state -> {
+          state.setTreeHashKDF(treeHash);
+          if (maxMessages > 1) {
+            state.setUpdatePolicy(new UpdatePolicy(maxMessages, Long.MAX_VALUE));
+          }
+        });
+        result.addResult(
+          CommonTests.TEST_NAME,
+          (treeHash ? "ARTTreeHash" : "ART") + (maxMessages > 1 ? "UpdateEvery" + maxMessages : "UpdateAlways")
+        );
+        results.addTestResult(result);
+      }
+    }
+
+    System.out.println(String.join(",", keys));
+    for (TestResultItem r : results) {
+      System.out.println(r.getResultAsCSVRow(keys));
+    }
+  }
+
+  /**
+   * Members send in bursts, updating their leaf once in every ten messages, with random nonces on the wire, with
+   * implicit nonces, and as a mixed group where only even-numbered members use implicit nonces. Every member has to
+   * decrypt every message for the run to finish, so the mixed run shows both framings interoperate.
+   *
+   * Usage: implicit-nonces [group size] [burst length]
+   */
+  private static void implicitNoncesBenchmark(String[] args) {
+    int n = args.length > 1 ? Integer.parseInt(args[1]) : 200;
+    int burstLength = args.length > 2 ? Integer.parseInt(args[2]) : 10;
+    String[] keys = {
+      CommonTests.TEST_NAME,
+      CommonTests.GROUP_SIZE,
+      CommonTests.SENDING_TIME_PER_MESSAGE,
+      CommonTests.RECEIVING_TIME_PER_MESSAGE,
+      CommonTests.BYTES_SENT
+    };
+    Map<String, Consumer<ARTState>> setups = new LinkedHashMap<>();
+    setups.put("ARTRandomNonces", state -> state.setImplicitNonces(false));
+    setups.put("ARTImplicitNonces", state -> state.setImplicitNonces(true));
+    setups.put("ARTMixedNonces", state -> state.setImplicitNonces(state.getPeerNum() % 2 == 0));
+
+    for (int i = 0; i < 3; i++) {
+      artTestRun(64, 8, burstLength, state -> {
+        state.setUpdatePolicy(new UpdatePolicy(10, Long.MAX_VALUE));
+        state.setImplicitNonces(state.getPeerNum() % 2 == 0);
+      });
+    }
+
+    TestResults results = new TestResults();
+    for (Map.Entry<String, Consumer<ARTState>> setup : setups.entrySet()) {
+      System.gc();
+      TestResultItem result = artTestRun(n, Math.min(n, 8), burstLength, state -> {
+        state.setUpdatePolicy(new UpdatePolicy(10, Long.MAX_VALUE));
+        setup.getValue().accept(state);
+      });
+      result.addResult(CommonTests.TEST_NAME, setup.getKey());
+      results.addTestResult(result);
+    }
+
+    System.out.println(String.join(",", keys));
+    for (TestResultItem r : results) {
+      System.out.println(r.getResultAsCSVRow(keys));
+    }
+  }
+
+  /**
+   * Decodes and decrypts a large chain message three ways: copying the ciphertext out of the decoded message and
+   * decrypting that into a new array, as the code used to; decrypting from the decoded view into a new array; and
+   * decrypting from the view into a reused direct buffer. Reports the bytes allocated and the time per message.
+   *
+   * Usage: aead-buffers [payload KiB] [iterations]
+   */
+  private static void aeadBuffersBenchmark(String[] args) {
+    int payload = (args.length > 1 ? Integer.parseInt(args[1]) : 256) * 1024;
+    int iterations = args.length > 2 ? Integer.parseInt(args[2]) : 200;
+    byte[] key = Crypto.randomBytes(Crypto.STAGE_KEY_LENGTH);
+    byte[] plaintext = Crypto.randomBytes(payload);
+    byte[] serialised = new CiphertextMessage(1, 0, 0, Crypto.encrypt(plaintext, key)).serialise();
+    ByteBuffer direct = ByteBuffer.allocateDirect(payload);
+
+    Map<String, Runnable> paths = new LinkedHashMap<>();
+    paths.put("copy_to_array", () -> Crypto.decrypt(new CiphertextMessage(serialised).getCiphertext(), key));
+    paths.put("view_to_array", () -> new CiphertextMessage(serialised).decrypt(AeadSuites.AES_GCM, key));
+    paths.put("view_to_direct", () -> {
+      direct.clear();
+      new CiphertextMessage(serialised).decrypt(AeadSuites.AES_GCM, key, direct);
+    });
+
+    byte[] check = new byte[payload];
+    paths.get("view_to_direct").run();
+    direct.flip();
+    direct.get(check);
+    byte[] viewPlaintext = new CiphertextMessage(serialised).decrypt(AeadSuites.AES_GCM, key);
+    if (!Arrays.equals(check, plaintext) || !Arrays.equals(viewPlaintext, plaintext)) {
+      fail("Decrypting from the decoded view gave the wrong plaintext.");
+    }
+
+    com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+    long thread = Thread.currentThread().getId();
+    System.out.println("path,payload_bytes,bytes_allocated_per_message,ns_per_message");
+    for (Map.Entry<String, Runnable> path : paths.entrySet()) {
+      for (int round = 0; round < 2; round++) { // The first round warms up the JIT.
+        long allocated = threads.getThreadAllocatedBytes(thread);
+        long start = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+          path.getValue().run();
+        }
+        long time = System.nanoTime() - start;
+        allocated = threads.getThreadAllocatedBytes(thread) - allocated;
+        if (round == 1) {
+          System.out.println(path.getKey() + "," + payload + "," + allocated / iterations + "," + time / iterations);
+        }
+      }
+    }
+  }
+
+  /**
+   * Checks ChaCha20-Poly1305 against RFC 8439 and every AEAD suite's round trips, then times encrypting and decrypting
+   * messages of several sizes with each suite, and ART and pairwise DH ratchet runs with each as the group's suite. Only
+   * the initiator is given the suite, so the runs also check that the others adopt it from the setup messages. Which
+   * suite wins depends on whether the host has AES instructions.
+   *
+   * Usage: aead [megabytes per measurement] [group size]
+   */
+  private static void aeadBenchmark(String[] args) {
+    long budget = (args.length > 1 ? Long.parseLong(args[1]) : 16) << 20;
+    int n = args.length > 2 ? Integer.parseInt(args[2]) : 100;
+    int[] sizes = {64, 1024, 16384, 262144};
+    List<AeadSuite> suites = AeadSuites.available();
+    AeadVectors.checkRfc8439();
+    for (AeadSuite suite : suites) {
+      AeadVectors.check(suite);
+    }
+    AeadVectors.crossCheck(suites);
+    Utils.print("All of " + suites.size() + " AEAD suites round-trip, and ChaCha20-Poly1305 passes RFC 8439.");
+
+    System.out.println("suite,payload_bytes,ns_per_message,megabytes_per_second");
+    for (AeadSuite suite : suites) {
+      for (int size : sizes) {
+        int rounds = (int) Math.max(10, budget / size);
+        AeadSuites.timeMessages(suite, size, rounds); // Warm up the JIT.
+        long time = AeadSuites.timeMessages(suite, size, rounds);
+        System.out.println(
+          suite.getName() + "," + size + "," + time / rounds + "," + (long) size * rounds * 1000 / time
+        );
+      }
+    }
+
+    String[] keys = {
+      CommonTests.GROUP_SIZE,
+      CommonTests.SENDING_TIME_PER_MESSAGE,
+      CommonTests.RECEIVING_TIME_PER_MESSAGE
+    };
+    System.out.println("protocol,suite," + String.join(",", keys));
+    for (AeadSuite suite : suites) {
+      // Only the initiator is given the suite; everyone else takes it from the setup messages.
+      Consumer<ARTState> artInitiator = state -> {
+        if (state.getPeerNum() == 0) {
+          state.setAeadSuite(suite);
+        }
+      };
+      artTestRun(16, 8, artInitiator);
+      System.gc();
+      TestResultItem art = artTestRun(n, Math.min(n, 8), artInitiator);
+      System.out.println("ART," + suite.getName() + "," + art.getResultAsCSVRow(keys));
+
+      System.gc();
+      TestResultItem dh = dhTestRun(n, Math.min(n, 8), state -> {
+        if (state.getPeerNum() == 0) {
+          state.setAeadSuite(suite);
+        }
+      });
+      System.out.println("DHRatchet," + suite.getName() + "," + dh.getResultAsCSVRow(keys));
+    }
+  }
+
+  /**
+   * Encodes an update message for a group of the given size, a chain message and a DH ratchet message in both wire
+   * formats, checks that every decoding gives back the same fields, and reports the encoded size and the bytes
+   * allocated and time per decode. The flyweight rows point one reused FlatMessageReader at the message and read every
+   * field through it. Then compares framing a flat update in one pass with building its parts separately, and times
+   * ART and DH ratchet runs that send each format.
+   *
+   * Usage: codec [group size] [iterations]
+   */
+  private static void codecBenchmark(String[] args) {
+    int n = args.length > 1 ? Integer.parseInt(args[1]) : 200;
+    int iterations = args.length > 2 ? Integer.parseInt(args[2]) : 100000;
+    DHPubKey[] path = new DHPubKey[33 - Integer.numberOfLeadingZeros(n - 1)];
+    for (int i = 0; i < path.length; i++) {
+      path[i] = randomPubKey();
+    }
+    byte[] mac = Crypto.randomBytes(Crypto.HASH_LENGTH);
+    byte[] ciphertext = Crypto.randomBytes(CryptoContext.encryptedLength(64));
+    DHPubKey ratchetKey = randomPubKey();
+    FlatMessageReader reader = new FlatMessageReader();
+
+    Map<String, byte[]> encoded = new LinkedHashMap<>();
+    Map<String, ToLongFunction<ByteBuffer>> decoders = new LinkedHashMap<>();
+    for (boolean flat : new boolean[] {false, true}) {
+      String codec = flat ? "flat" : "thrift";
+      AuthenticatedMessage update = new AuthenticatedMessage(new UpdateMessage(7, path).serialise(flat), mac);
+      encoded.put("update," + codec, new CiphertextMessage(update, ciphertext).serialise(flat));
+      decoders.put("update," + codec, buffer -> {
+        CiphertextMessage message = CiphertextMessage.decode(buffer.array());
+        UpdateMessage updateMessage = UpdateMessage.decode(message.getAuthenticatedMessage().getMessageView());
+        return updateMessage.getLeafNum() + updateMessage.getPath().length + message.getPlaintextLength();
+      });
+
+      encoded.put("chain," + codec, new CiphertextMessage(7, 3, 42, ciphertext).serialise(flat));
+      decoders.put("chain," + codec, buffer -> {
+        CiphertextMessage message = CiphertextMessage.decode(buffer.array());
+        return message.getSenderLeaf() + message.getEpochId() + message.getChainIndex() + message.getPlaintextLength();
+      });
+
+      DHRatchetMessage dhMessage = new DHRatchetMessage(7, ratchetKey, ciphertext);
+      encoded.put("dh_ratchet," + codec, flat ? dhMessage.serialiseFlat() : dhMessage.serialise());
+      decoders.put("dh_ratchet," + codec, buffer -> {
+        DHRatchetMessage message = DHRatchetMessage.decode(buffer.array());
+        return message.getPeerNum() + message.getRatchetKey().getPubKeyBytes().length;
+      });
+    }
+    encoded.put("update,flyweight", encoded.get("update,flat"));
+    decoders.put("update,flyweight", buffer -> {
+      reader.wrap(buffer);
+      long fields = reader.getLeafNum() + reader.authenticatorOffset() + reader.ciphertextOffset();
+      for (int i = 0; i < reader.getPathLength(); i++) {
+        fields += reader.pathKeyOffset(i);
+      }
+      return fields;
+    });
+    encoded.put("chain,flyweight", encoded.get("chain,flat"));
+    decoders.put("chain,flyweight", buffer -> {
+      reader.wrap(buffer);
+      return reader.getSenderLeaf() + reader.getEpochId() + reader.getChainIndex() + reader.ciphertextOffset();
+    });
+
+    // Check that both codecs, and the flyweight reader, give back every field before timing anything.
+    for (String codec : new String[] {"thrift", "flat"}) {
+      CiphertextMessage message = CiphertextMessage.decode(encoded.get("update," + codec));
+      UpdateMessage update = UpdateMessage.decode(message.getAuthenticatedMessage().getMessageView());
+      CiphertextMessage chain = CiphertextMessage.decode(encoded.get("chain," + codec));
+      DHRatchetMessage dh = DHRatchetMessage.decode(encoded.get("dh_ratchet," + codec));
+      boolean same = update.getLeafNum() == 7
+        && Arrays.equals(message.getAuthenticatedMessage().getAuthenticator(), mac)
+        && Arrays.equals(message.getCiphertext(), ciphertext)
+        && chain.getSenderLeaf() == 7 && chain.getEpochId() == 3 && chain.getChainIndex() == 42
+        && Arrays.equals(chain.getCiphertext(), ciphertext)
+        && dh.getPeerNum() == 7 && Arrays.equals(dh.getRatchetKey().getPubKeyBytes(), ratchetKey.getPubKeyBytes())
+        && Arrays.equals(dh.getCiphertext(), ciphertext);
+      for (int i = 0; i < path.length; i++) {
+        same &= Arrays.equals(update.getPath()[i].getPubKeyBytes(), path[i].getPubKeyBytes());
+      }
+      if (!same) {
+        fail("The " + codec + " codec doesn't give back the fields it was given.");
+      }
+    }
+    reader.wrap(ByteBuffer.wrap(encoded.get("update,flat")));
+    boolean same = reader.getLeafNum() == 7 && reader.authenticator().equals(ByteBuffer.wrap(mac))
+      && reader.ciphertext().equals(ByteBuffer.wrap(ciphertext));
+    for (int i = 0; i < path.length; i++) {
+      same &= Arrays.equals(reader.copyPathKey(i), path[i].getPubKeyBytes());
+    }
+    if (!same) {
+      fail("The flyweight reader doesn't read back the fields of a flat update.");
+    }
+    Utils.print("Every message decodes to the same fields from both codecs.");
+
+    com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+    long thread = Thread.currentThread().getId();
+    long sink = 0;
+    System.out.println("message,codec,encoded_bytes,bytes_allocated_per_decode,ns_per_decode");
+    for (Map.Entry<String, ToLongFunction<ByteBuffer>> decoder : decoders.entrySet()) {
+      ByteBuffer buffer = ByteBuffer.wrap(encoded.get(decoder.getKey()));
+      for (int round = 0; round < 2; round++) { // The first round warms up the JIT.
+        long allocated = threads.getThreadAllocatedBytes(thread);
+        long start = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+          sink += decoder.getValue().applyAsLong(buffer);
+        }
+        long time = System.nanoTime() - start;
+        allocated = threads.getThreadAllocatedBytes(thread) - allocated;
+        if (round == 1) {
+          System.out.println(
+            decoder.getKey() + "," + buffer.remaining() + "," + allocated / iterations + "," + time / iterations
+          );
+        }
+      }
+    }
+    if (sink == 0) {
+      fail("Nothing was decoded.");
+    }
+
+    // Sending a flat update: serialising the update, MAC and ciphertext separately and then framing them, against
+    // writing the frame once with FlatMessageWriter and computing the MAC and ciphertext in place.
+    KeySchedule schedule = new KeySchedule(1, Crypto.randomBytes(Crypto.STAGE_KEY_LENGTH));
+    byte[] key = Crypto.randomBytes(Crypto.STAGE_KEY_LENGTH);
+    byte[] plaintext = Crypto.randomBytes(64);
+    UpdateMessage updateMessage = new UpdateMessage(7, path);
+    Map<String, Supplier<byte[]>> senders = new LinkedHashMap<>();
+    senders.put("update,separate", () -> {
+      byte[] update = updateMessage.serialiseFlat();
+      AuthenticatedMessage authenticated = new AuthenticatedMessage(update, schedule.hmacSha256(update));
+      return new CiphertextMessage(authenticated, Crypto.encrypt(AeadSuites.AES_GCM, plaintext, key)).serialiseFlat();
+    });
+    senders.put("update,framed", () -> {
+      FlatMessageWriter writer = FlatMessageWriter.forUpdate(
+        updateMessage,
+        Crypto.HASH_LENGTH,
+        CryptoContext.encryptedLength(plaintext.length),
+        false
+      );
+      schedule.hmacSha256(writer.update(), writer.array(), writer.authenticatorOffset());
+      Crypto.encrypt(AeadSuites.AES_GCM, ByteBuffer.wrap(plaintext), key, writer.ciphertext());
+      return writer.array();
+    });
+    for (String sender : senders.keySet()) {
+      CiphertextMessage message = CiphertextMessage.decode(senders.get(sender).get());
+      UpdateMessage update = UpdateMessage.decode(message.getAuthenticatedMessage().getMessageView());
+      if (update.getLeafNum() != 7 || update.getPath().length != path.length
+        || !schedule.verifyHmacSha256(message.getAuthenticatedMessage().getMessageView(),
+          message.getAuthenticatedMessage().getAuthenticatorView())
+        || !Arrays.equals(message.decrypt(AeadSuites.AES_GCM, key), plaintext)) {
+        fail("The " + sender + " framing doesn't give back the message it was given.");
+      }
+    }
+    System.out.println("message,framing,bytes_allocated_per_send,ns_per_send");
+    for (Map.Entry<String, Supplier<byte[]>> sender : senders.entrySet()) {
+      for (int round = 0; round < 2; round++) { // The first round warms up the JIT.
+        long allocated = threads.getThreadAllocatedBytes(thread);
+        long start = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+          sink += sender.getValue().get().length;
+        }
+        long time = System.nanoTime() - start;
+        allocated = threads.getThreadAllocatedBytes(thread) - allocated;
+        if (round == 1) {
+          System.out.println(sender.getKey() + "," + allocated / iterations + "," + time / iterations);
+        }
+      }
+    }
+
+    String[] keys = {
+      CommonTests.GROUP_SIZE,
+      CommonTests.SENDING_TIME_PER_MESSAGE,
+      CommonTests.RECEIVING_TIME_PER_MESSAGE,
+      CommonTests.BYTES_SENT
+    };
+    System.out.println("protocol,codec," + String.join(",", keys));
+    for (boolean flat : new boolean[] {false, true}) {
+      String codec = flat ? "flat" : "thrift";
+      artTestRun(16, 8, state -> state.setFlatCodec(flat));
+      System.gc();
+      TestResultItem art = artTestRun(n, Math.min(n, 8), state -> state.setFlatCodec(flat));
+      System.out.println("ART," + codec + "," + art.getResultAsCSVRow(keys));
+      dhTestRun(16, 8, state -> state.setFlatCodec(flat));
+      System.gc();
+      TestResultItem dh = dhTestRun(n, Math.min(n, 8), state -> state.setFlatCodec(flat));
+      System.out.println("DHRatchet," + codec + "," + dh.getResultAsCSVRow(keys));
+    }
+  }
+
+  /**
+   * Members 0 and 1 keep updating while, each round, another member sends a message from an epoch that member 2 only
+   * sees after the given number of further updates. Member 2 keeps an epoch history of the given length, so every delay
+   * shorter than that should decrypt, and the first one that isn't should fail. Finally member 0 sends on its sender
+   * chain, and member 2 has to get past a forged chain message, reordering and an update in between. Last, members 0 and
+   * 1 update concurrently and each sends on its new chain. Member 2 takes member 0's update, so member 1's messages and
+   * member 0's messages to member 1 come from an epoch off the receiver's own line, and still have to decrypt.
+   *
+   * Usage: late-messages [group size] [epochs kept]
+   */
+  private static void lateMessagesBenchmark(String[] args) {
+    int n = args.length > 1 ? Integer.parseInt(args[1]) : 1000;
+    int kept = args.length > 2 ? Integer.parseInt(args[2]) : 8;
+    SecureRandom random = new SecureRandom();
+
+    int groupSize = Math.max(n, kept + 4);
+    ARTState[] states = new ARTState[groupSize];
+    DHPubKey[] identities = new DHPubKey[groupSize];
+    for (int i = 0; i < groupSize; i++) {
+      states[i] = new ARTState(i, groupSize);
+      states[i].setTreeHashKDF(true);
+      states[i].setEpochHistory(new EpochHistory(kept));
+      identities[i] = states[i].getIdentityKeyPair().getPubKey();
+    }
+    Integer[] active = new Integer[kept + 4];
+    for (int i = 0; i < active.length; i++) {
+      active[i] = i;
+    }
+    KeyServer keyServer = new KeyServer(states);
+    ARTSetupPhase setupPhase = new ARTSetupPhase();
+    ARTTestImplementation implementation = new ARTTestImplementation();
+    setupPhase.generateNecessaryPreKeys(states);
+    setupPhase.setupInitiator(implementation, states, identities, keyServer);
+    setupPhase.setupAllOthers(implementation, states, active, identities, keyServer);
+
+    for (int delay = 1; delay <= kept; delay++) {
+      // Each late sender is only used once, since its own update takes it off the main line.
+      byte[] latePlaintext = new byte[32];
+      random.nextBytes(latePlaintext);
+      byte[] late = implementation.sendMessage(states[2 + delay], latePlaintext).getUpdateMessageForParticipantNum(2);
+
+      Stopwatch current = new Stopwatch();
+      for (int i = 0; i < delay; i++) {
+        byte[] plaintext = new byte[32];
+        random.nextBytes(plaintext);
+        byte[] message = implementation.sendMessage(states[i % 2], plaintext).getUpdateMessageForParticipantNum(2);
+        implementation.receiveMessage(states[1 - i % 2], message);
+        for (int j = 3 + delay; j < active.length; j++) {
+          implementation.receiveMessage(states[j], message);
+        }
+        current.startInterval();
+        byte[] received = implementation.receiveMessage(states[2], message);
+        current.endInterval();
+        if (!Arrays.equals(plaintext, received)) {
+          fail("Message doesn't match.");
+        }
+      }
+
+      Stopwatch lateTime = new Stopwatch();
+      byte[] received = null;
+      lateTime.startInterval();
+      try {
+        received = implementation.receiveMessage(states[2], late);
+      } catch (RuntimeException e) {
+        // Reported below.
+      }
+      lateTime.endInterval();
+
+      if (delay < kept) {
+        if (!Arrays.equals(latePlaintext, received)) {
+          fail("Late message doesn't match after " + delay + " updates.");
+        }
+        Utils.print(
+          "Decrypted a message " + delay + " epochs late in " + lateTime.getTotal() + " nanoseconds (" +
+          current.getTotal() / delay + " for a current one)."
+        );
+      } else if (received != null) {
+        fail("A message from an evicted epoch was decrypted.");
+      } else {
+        Utils.print("A message " + delay + " epochs late was rejected, as its epoch had been evicted.");
+      }
+    }
+    EpochHistory history = states[2].getEpochHistory();
+    Utils.print("Member 2 keeps " + history.size() + " epochs in a group of " + groupSize + ".");
+
+    states[0].setUpdatePolicy(new UpdatePolicy(100, Long.MAX_VALUE));
+    byte[] update = implementation.sendMessage(states[0], new byte[32]).getUpdateMessageForParticipantNum(2);
+    implementation.receiveMessage(states[1], update);
+    implementation.receiveMessage(states[2], update);
+    byte[][] chainPlaintexts = new byte[3][32];
+    byte[][] chainMessages = new byte[3][];
+    for (int i = 0; i < chainMessages.length; i++) {
+      random.nextBytes(chainPlaintexts[i]);
+      chainMessages[i] = implementation.sendMessage(states[0], chainPlaintexts[i]).getUpdateMessageForParticipantNum(2);
+    }
+    byte[] forged = new CiphertextMessage(0, states[2].getEpochId(), 4000, Crypto.randomBytes(64)).serialise();
+    if (receives(implementation, states[2], forged)) {
+      fail("A forged chain message was decrypted.");
+    }
+    // Out of order, then the last one after member 1 has started a new epoch.
+    for (int i : new int[] {2, 0}) {
+      if (!Arrays.equals(chainPlaintexts[i], implementation.receiveMessage(states[2], chainMessages[i]))) {
+        fail("Chain message " + i + " doesn't match.");
+      }
+    }
+    update = implementation.sendMessage(states[1], new byte[32]).getUpdateMessageForParticipantNum(2);
+    implementation.receiveMessage(states[0], update);
+    implementation.receiveMessage(states[2], update);
+    if (!Arrays.equals(chainPlaintexts[1], implementation.receiveMessage(states[2], chainMessages[1]))) {
+      fail("Chain message 1 doesn't match after an update.");
+    }
+    if (receives(implementation, states[2], chainMessages[1])) {
+      fail("A chain message was decrypted twice.");
+    }
+    Utils.print("Chain messages survived a forged message, reordering and an update.");
+
+    // Both start from the same epoch, and their first message under a new policy is an update.
+    byte[][] concurrentUpdates = new byte[2][];
+    byte[][] concurrentMessages = new byte[2][];
+    byte[][] concurrentPlaintexts = new byte[2][32];
+    for (int i = 0; i < 2; i++) {
+      states[i].setUpdatePolicy(new UpdatePolicy(100, Long.MAX_VALUE));
+      concurrentUpdates[i] = implementation.sendMessage(states[i], new byte[32]).getUpdateMessageForParticipantNum(2);
+      random.nextBytes(concurrentPlaintexts[i]);
+      concurrentMessages[i] =
+        implementation.sendMessage(states[i], concurrentPlaintexts[i]).getUpdateMessageForParticipantNum(2);
+    }
+    for (int i : new int[] {0, 1}) {
+      implementation.receiveMessage(states[2], concurrentUpdates[i]);
+      if (!Arrays.equals(concurrentPlaintexts[i], implementation.receiveMessage(states[2], concurrentMessages[i]))) {
+        fail("Member " + i + "'s chain message after a concurrent update doesn't match at member 2.");
+      }
+    }
+    implementation.receiveMessage(states[1], concurrentUpdates[0]);
+    if (!Arrays.equals(concurrentPlaintexts[0], implementation.receiveMessage(states[1], concurrentMessages[0]))) {
+      fail("Member 0's chain message after a concurrent update doesn't match at member 1.");
+    }
+    Utils.print("Chain messages decrypted after concurrent updates, on either side of them.");
+  }
+
+  /**
+   * For messages that should be rejected. The rejection is caught here, leaving only the line it logged.
+   */
+  private static boolean receives(ARTTestImplementation implementation, ARTState state, byte[] message) {
+    try {
+      implementation.receiveMessage(state, message);
+      return true;
+    } catch (RuntimeException e) {
+      return false;
+    }
+  }
+
+  /**
+   * End the run when one of the modes' checks fails. It exits with status 1 rather than throwing, so that scripts see
+   * the failure even if some mode's threads would otherwise keep the JVM alive.
+   */
+  private static void fail(String failure) {
+    Utils.print("Check failed: " + failure);
+    System.exit(1);
+  }
+
+  /**
+   * Decodes a setup message the way a joining member does, eagerly and with a lazy tree, walks down to the member's own
+   * leaf and hashes the tree. Reports how many bytes each way allocates, after checking that both agree on the tree.
+   * The tree holds random keys, since only decoding is measured here.
+   *
+   * Usage: lazy-setup [max group size]
+   */
+  private static void lazySetupBenchmark(String[] args) {
+    int limit = args.length > 1 ? Integer.parseInt(args[1]) : 20000;
+    com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+    long thread = Thread.currentThread().getId();
+
+    System.out.println("group_size,eager_bytes_allocated,lazy_bytes_allocated,eager_time,lazy_time");
+    for (int n = 10; n <= limit; n = n < limit && n * 10 > limit ? limit : n * 10) {
+      DHPubKey[] identities = new DHPubKey[n];
+      Map<Integer, DHPubKey> ephemeralKeys = new HashMap<>();
+      for (int i = 0; i < n; i++) {
+        identities[i] = randomPubKey();
+        ephemeralKeys.put(i, randomPubKey());
+      }
+      byte[] serialised = new SetupMessage(
+        identities,
+        ephemeralKeys,
+        randomPubKey(),
+        randomTree(n),
+        AeadSuites.AES_GCM.getId()
+      ).serialise();
+      int leafNum = n - 1;
+
+      // Run each a few times so the last run is JIT compiled.
+      long eagerBytes = 0, lazyBytes = 0, eagerTime = 0, lazyTime = 0;
+      for (int run = 0; run < 5; run++) {
+        long bytes = threads.getThreadAllocatedBytes(thread);
+        long time = System.nanoTime();
+        SetupMessage eager = new SetupMessage(serialised);
+        byte[] eagerHash = walkAndHash(eager.getTree(), leafNum);
+        eagerTime = System.nanoTime() - time;
+        eagerBytes = threads.getThreadAllocatedBytes(thread) - bytes;
+
+        bytes = threads.getThreadAllocatedBytes(thread);
+        time = System.nanoTime();
+        SetupMessage lazy = SetupMessage.withLazyTree(serialised);
+        byte[] lazyHash = walkAndHash(lazy.getTree(), leafNum);
+        lazyTime = System.nanoTime() - time;
+        lazyBytes = threads.getThreadAllocatedBytes(thread) - bytes;
+
+        if (!Arrays.equals(eagerHash, lazyHash)
+          || !Node.toThrift(eager.getTree()).equals(Node.toThrift(lazy.getTree()))
+          || !Arrays.equals(eager.getKeyExchangeKey().getPubKeyBytes(), lazy.getKeyExchangeKey().getPubKeyBytes())) {
+          fail("Lazy and eager decoding disagree for " + n + " leaves.");
+        }
+      }
+      System.out.println(n + "," + eagerBytes + "," + lazyBytes + "," + eagerTime + "," + lazyTime);
+    }
+  }
+
+  /**
+   * Serialises the same setup and update messages with versions 1 and 2 of the Thrift schema, checks that each decodes
+   * to the same keys, and reports the sizes along with what decoding each setup message allocates and costs.
+   *
+   * Usage: schema-versions [max group size]
+   */
+  private static void schemaVersionsBenchmark(String[] args) {
+    int limit = args.length > 1 ? Integer.parseInt(args[1]) : 20000;
+    com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+    long thread = Thread.currentThread().getId();
+
+    System.out.println(
+      "group_size,setup_v1_bytes,setup_v2_bytes,update_v1_bytes,update_v2_bytes," +
+      "setup_v1_bytes_allocated,setup_v2_bytes_allocated,setup_v1_time,setup_v2_time"
+    );
+    for (int n = 10; n <= limit; n = n < limit && n * 10 > limit ? limit : n * 10) {
+      DHPubKey[] identities = new DHPubKey[n];
+      Map<Integer, DHPubKey> ephemeralKeys = new HashMap<>();
+      for (int i = 0; i < n; i++) {
+        identities[i] = randomPubKey();
+        if (i > 0) {
+          ephemeralKeys.put(i, randomPubKey());
+        }
+      }
+      SetupMessage setup = new SetupMessage(
+        identities,
+        ephemeralKeys,
+        randomPubKey(),
+        randomTree(n),
+        AeadSuites.AES_GCM.getId()
+      );
+      byte[] setupV1 = setup.serialiseVersion(1);
+      byte[] setupV2 = setup.serialiseVersion(2);
+
+      DHPubKey[] path = new DHPubKey[32 - Integer.numberOfLeadingZeros(n - 1) + 1];
+      for (int i = 0; i < path.length; i++) {
+        path[i] = randomPubKey();
+      }
+      UpdateMessage update = new UpdateMessage(n - 1, path);
+      byte[] updateV1 = update.serialiseVersion(1);
+      byte[] updateV2 = update.serialiseVersion(2);
+      if (!Arrays.equals(pubKeyBytes(new UpdateMessage(updateV1).getPath()), pubKeyBytes(path))
+        || !Arrays.equals(pubKeyBytes(new UpdateMessage(updateV2).getPath()), pubKeyBytes(path))) {
+        fail("Update message versions disagree for " + n + " leaves.");
+      }
+
+      // Run each a few times so the last run is JIT compiled.
+      long v1Bytes = 0, v2Bytes = 0, v1Time = 0, v2Time = 0;
+      for (int run = 0; run < 5; run++) {
+        long bytes = threads.getThreadAllocatedBytes(thread);
+        long time = System.nanoTime();
+        SetupMessage v1 = new SetupMessage(setupV1);
+        v1Time = System.nanoTime() - time;
+        v1Bytes = threads.getThreadAllocatedBytes(thread) - bytes;
+
+        bytes = threads.getThreadAllocatedBytes(thread);
+        time = System.nanoTime();
+        SetupMessage v2 = new SetupMessage(setupV2);
+        v2Time = System.nanoTime() - time;
+        v2Bytes = threads.getThreadAllocatedBytes(thread) - bytes;
+
+        for (SetupMessage decoded : new SetupMessage[] {v1, v2}) {
+          boolean same = Arrays.equals(pubKeyBytes(decoded.getIdentities()), pubKeyBytes(identities))
+            && decoded.getEphemeralKeys().size() == n - 1
+            && Node.toThrift(decoded.getTree()).equals(Node.toThrift(setup.getTree()));
+          for (int i = 1; same && i < n; i++) {
+            same = Arrays.equals(
+              decoded.getEphemeralKeys().get(i).getPubKeyBytes(),
+              ephemeralKeys.get(i).getPubKeyBytes()
+            );
+          }
+          if (!same) {
+            fail("Setup message versions disagree for " + n + " leaves.");
+          }
+        }
+      }
+      System.out.println(
+        n + "," + setupV1.length + "," + setupV2.length + "," + updateV1.length + "," + updateV2.length + "," +
+        v1Bytes + "," + v2Bytes + "," + v1Time + "," + v2Time
+      );
+    }
+  }
+
+  /**
+   * Serialises a tree by building its NodeStruct and handing it to Thrift, and by writing it straight from the nodes
+   * with TreeWriter. Checks that the bytes agree for object, lazily decoded and array trees and for whole setup
+   * messages, then reports what each way allocates and costs.
+   *
+   * Usage: tree-writer [max group size]
+   */
+  private static void treeWriterBenchmark(String[] args) {
+    int limit = args.length > 1 ? Integer.parseInt(args[1]) : 20000;
+    com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+    long thread = Thread.currentThread().getId();
+
+    System.out.println("group_size,tree_bytes,thrift_bytes_allocated,writer_bytes_allocated,thrift_time,writer_time");
+    for (int n = 10; n <= limit; n = n < limit && n * 10 > limit ? limit : n * 10) {
+      Node tree = randomTree(n);
+      byte[] expected = Utils.serialise(Node.toThrift(tree));
+      checkTreeWriter(tree, expected, n);
+
+      DHPubKey[] identities = new DHPubKey[n];
+      Map<Integer, DHPubKey> ephemeralKeys = new HashMap<>();
+      for (int i = 0; i < n; i++) {
+        identities[i] = randomPubKey();
+        if (i > 0) {
+          ephemeralKeys.put(i, randomPubKey());
+        }
+      }
+      SetupMessage setup = new SetupMessage(identities, ephemeralKeys, randomPubKey(), tree, AeadSuites.AES_GCM.getId());
+      for (int version = 1; version <= SetupMessage.CURRENT_VERSION; version++) {
+        byte[] serialised = setup.serialiseVersion(version);
+        SetupMessageStruct struct = new SetupMessageStruct();
+        Utils.deserialise(struct, serialised);
+        if (!Arrays.equals(serialised, Utils.serialise(struct))) {
+          fail("Setup message with a written tree differs from Thrift's for " + n + " leaves.");
+        }
+        // A lazy tree is copied from the message, both before and after walking part of it.
+        SetupMessage lazy = SetupMessage.withLazyTree(serialised);
+        checkTreeWriter(lazy.getTree(), expected, n);
+        walkAndHash(lazy.getTree(), n / 2);
+        checkTreeWriter(lazy.getTree(), expected, n);
+      }
+
+      // Run each a few times so the last run is JIT compiled.
+      long thriftBytes = 0, writerBytes = 0, thriftTime = 0, writerTime = 0;
+      for (int run = 0; run < 5; run++) {
+        long bytes = threads.getThreadAllocatedBytes(thread);
+        long time = System.nanoTime();
+        Utils.serialise(Node.toThrift(tree));
+        thriftTime = System.nanoTime() - time;
+        thriftBytes = threads.getThreadAllocatedBytes(thread) - bytes;
+
+        bytes = threads.getThreadAllocatedBytes(thread);
+        time = System.nanoTime();
+        TreeWriter.serialise(tree);
+        writerTime = System.nanoTime() - time;
+        writerBytes = threads.getThreadAllocatedBytes(thread) - bytes;
+      }
+      System.out.println(
+        n + "," + expected.length + "," + thriftBytes + "," + writerBytes + "," + thriftTime + "," + writerTime
+      );
+    }
+
+    DHKeyPair[] leaves = new DHKeyPair[Math.min(limit, 1000)];
+    for (int i = 0; i < leaves.length; i++) {
+      leaves[i] = DHKeyPair.generate(false);
+    }
+    ArrayTree arrayTree = ArrayTree.create(leaves, 0);
+    if (!Arrays.equals(TreeWriter.serialise(arrayTree), Utils.serialise(arrayTree.toThrift()))) {
+      fail("Written array tree differs from Thrift's.");
+    }
+    Utils.print("TreeWriter matches Thrift for object, lazy and array trees, and for setup messages.");
+  }
+
+  private static void checkTreeWriter(Node tree, byte[] expected, int n) {
+    ByteArrayOutputStream stream = new ByteArrayOutputStream();
+    TreeWriter.write(tree, stream);
+    MessageDigest digest = Crypto.startSHA256();
+    TreeWriter.update(tree, digest);
+    if (TreeWriter.length(tree) != expected.length
+      || !Arrays.equals(TreeWriter.serialise(tree), expected)
+      || !Arrays.equals(stream.toByteArray(), expected)
+      || !Arrays.equals(digest.digest(), Crypto.startSHA256().digest(expected))) {
+      fail("Written tree differs from Thrift's for " + n + " leaves.");
+    }
+  }
+
+  private static byte[] pubKeyBytes(DHPubKey[] keys) {
+    ByteBuffer bytes = ByteBuffer.allocate(keys.length * 32);
+    for (DHPubKey key : keys) {
+      bytes.put(key.getPubKeyBytes());
+    }
+    return bytes.array();
+  }
+
+  private static DHPubKey randomPubKey() {
+    byte[] key = new byte[32];
+    new SecureRandom().nextBytes(key);
+    return DHPubKey.pubKey(key);
+  }
+
+  private static Node randomTree(int numLeaves) {
+    if (numLeaves == 1) {
+      return new PublicLeafNode(randomPubKey());
+    }
+    int l = Integer.highestOneBit(numLeaves - 1);
+    return new PublicParentNode(randomPubKey(), randomTree(l), randomTree(numLeaves - l));
+  }
+
+  private static byte[] walkAndHash(Node tree, int leafNum) {
+    Node root = tree;
+    while (tree.numLeaves() > 1) {
+      int l = Integer.highestOneBit(tree.numLeaves() - 1);
+      ParentNode parent = (ParentNode) tree;
+      // Touch the sibling too, as a member setting up its copath would.
+      if (leafNum < l) {
+        parent.getRight().getPubKey();
+        tree = parent.getLeft();
+      } else {
+        parent.getLeft().getPubKey();
+        tree = parent.getRight();
+        leafNum -= l;
+      }
+    }
+    return root.getTreeHash();
+  }
+
+  /**
+   * Checks ArrayTree against the object tree operation by operation, then runs full groups in which every other member
+   * uses the array engine, so that any disagreement in derived keys shows up as a failed decryption.
+   *
+   * Usage: array-tree-conformance [max group size]
+   */
+  private static void arrayTreeConformance(String[] args) {
+    int limit = args.length > 1 ? Integer.parseInt(args[1]) : 300;
+    ArrayTreeConformance.run(limit, 3);
+    for (int n = 2; n <= limit; n = n * 3 / 2 + 1) {
+      for (boolean treeHash : new boolean[] {false, true}) {
+        artTestRun(n, Math.min(n, 8), state -> {
+          state.setTreeHashKDF(treeHash);
+          state.setArrayTreeEngine(state.getPeerNum() % 2 == 0);
+        });
+      }
+    }
+    Utils.print("Mixed groups of array and object tree members agree on every key.");
+  }
+
+  /**
+   * Checks CryptoContext's HMAC and HKDF against the JCA Mac they replace, then reports how many bytes the current
+   * thread allocates per HMAC, per tree node derivation and per sender chain step, first on fresh JCA objects as the
+   * code used to and then on the thread's context.
+   *
+   * Usage: crypto-context [iterations]
+   */
+  private static void cryptoContextBenchmark(String[] args) {
+    int iterations = args.length > 1 ? Integer.parseInt(args[1]) : 20000;
+    CryptoContext crypto = CryptoContext.get();
+    SecureRandom random = new SecureRandom();
+
+    for (int i = 0; i < 1000; i++) {
+      byte[] key = new byte[random.nextInt(150)];
+      byte[] data = new byte[random.nextInt(300)];
+      random.nextBytes(key);
+      random.nextBytes(data);
+      byte[] out = new byte[Crypto.HASH_LENGTH];
+      crypto.hmacSha256(data, key, out, 0);
+      if (key.length > 0 && !Arrays.equals(out, jcaHmacSha256(data, key))) {
+        fail("HMAC differs from javax.crypto.Mac for a " + key.length + " byte key.");
+      }
+      KeySchedule schedule = new KeySchedule(0, key);
+      if (!Arrays.equals(out, schedule.hmacSha256(data)) || !schedule.verifyHmacSha256(data, out)) {
+        fail("KeySchedule's HMAC differs from CryptoContext's for a " + key.length + " byte key.");
+      }
+      int length = 1 + random.nextInt(100);
+      if (!Arrays.equals(Crypto.hkdf(key.length > 0 ? key : data, data, key, length), jcaHkdf(key.length > 0 ? key : data, data, key, length))) {
+        fail("HKDF differs from the Mac-based construction for " + length + " bytes.");
+      }
+      if (!Arrays.equals(data, Crypto.decrypt(Crypto.encrypt(data, Arrays.copyOf(out, 16)), Arrays.copyOf(out, 16)))) {
+        fail("Encryption does not round trip.");
+      }
+      if (i % 10 == 0) {
+        DHKeyPair child = DHKeyPair.generate(false);
+        DHPubKey siblingKey = DHKeyPair.generate(false).getPubKey();
+        DHKeyPair expected = DHKeyPair.fromBytes(jcaHkdf(child.exchange(siblingKey), new byte[0], new byte[0], 32), false);
+        DHKeyPair actual = crypto.nodeKeyPair(child, siblingKey);
+        if (!Arrays.equals(expected.getPrivKeyBytes(), actual.getPrivKeyBytes()) ||
+          !Arrays.equals(expected.getPubKeyBytes(), actual.getPubKeyBytes())) {
+          fail("The node key kernel differs from the Mac-based derivation.");
+        }
+      }
+    }
+    Utils.print("CryptoContext matches javax.crypto.Mac.");
+
+    com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+    long thread = Thread.currentThread().getId();
+    byte[] key = Crypto.randomBytes(Crypto.HASH_LENGTH);
+    byte[] data = Crypto.randomBytes(200);
+    byte[] out = new byte[Crypto.HASH_LENGTH];
+    DHKeyPair leaf = DHKeyPair.generate(false);
+    Node sibling = new PublicLeafNode(DHKeyPair.generate(false).getPubKey());
+
+    for (int round = 0; round < 2; round++) { // The first round warms up the JIT.
+      long start = threads.getThreadAllocatedBytes(thread);
+      for (int i = 0; i < iterations; i++) {
+        out = jcaHmacSha256(data, key);
+      }
+      long jcaHmac = threads.getThreadAllocatedBytes(thread) - start;
+
+      start = threads.getThreadAllocatedBytes(thread);
+      for (int i = 0; i < iterations; i++) {
+        crypto.hmacSha256(data, key, out, 0);
+      }
+      long contextHmac = threads.getThreadAllocatedBytes(thread) - start;
+
+      start = threads.getThreadAllocatedBytes(thread);
+      long startTime = System.nanoTime();
+      for (int i = 0; i < iterations; i++) {
+        DHKeyPair.fromBytes(jcaHkdf(leaf.exchange(sibling.getPubKey()), new byte[0], new byte[0], 32), false);
+      }
+      long jcaNodeTime = System.nanoTime() - startTime;
+      long jcaNode = threads.getThreadAllocatedBytes(thread) - start;
+
+      start = threads.getThreadAllocatedBytes(thread);
+      startTime = System.nanoTime();
+      for (int i = 0; i < iterations; i++) {
+        new SecretParentNode(new SecretLeafNode(leaf), sibling);
+      }
+      long contextNodeTime = System.nanoTime() - startTime;
+      long contextNode = threads.getThreadAllocatedBytes(thread) - start;
+
+      start = threads.getThreadAllocatedBytes(thread);
+      SenderChains chains = new SenderChains(new KeySchedule(0, key));
+      for (int i = 0; i < iterations; i++) {
+        chains.messageKey(0, i);
+        chains.commit(0, i);
+      }
+      long contextChain = threads.getThreadAllocatedBytes(thread) - start;
+
+      if (round == 1) {
+        System.out.println("operation,jca_bytes_per_op,context_bytes_per_op");
+        System.out.println("hmac," + jcaHmac / iterations + "," + contextHmac / iterations);
+        System.out.println("node_key," + jcaNode / iterations + "," + contextNode / iterations);
+        System.out.println("chain_message_key,," + contextChain / iterations);
+        System.out.println("node_key_ns," + jcaNodeTime / iterations + "," + contextNodeTime / iterations);
+      }
+    }
+
+    // An update message's MAC under a stage key, first keyed afresh each time and then from the epoch's key schedule.
+    byte[] stageKey = Crypto.randomBytes(Crypto.STAGE_KEY_LENGTH);
+    byte[] updateMessage = Crypto.randomBytes(300);
+    KeySchedule schedule = new KeySchedule(0, stageKey);
+    long contextTime = 0;
+    long scheduleTime = 0;
+    for (int round = 0; round < 2; round++) { // The first round warms up the JIT.
+      long start = System.nanoTime();
+      for (int i = 0; i < iterations; i++) {
+        crypto.hmacSha256(updateMessage, stageKey, out, 0);
+      }
+      contextTime = System.nanoTime() - start;
+      start = System.nanoTime();
+      for (int i = 0; i < iterations; i++) {
+        schedule.hmacSha256(updateMessage, out, 0);
+      }
+      scheduleTime = System.nanoTime() - start;
+    }
+    System.out.println("operation,context_ns_per_op,key_schedule_ns_per_op");
+    System.out.println("stage_key_hmac," + contextTime / iterations + "," + scheduleTime / iterations);
+  }
+
+  /**
+   * Checks every X25519 backend this JDK offers against the RFC 7748 vectors and each other, then times key generation
+   * and agreement on each, and a full ART run with each selected in turn. Run with -Dart.x25519=fastest to let
+   * X25519Backends make the same comparison at startup.
+   *
+   * Usage: x25519 [iterations] [group size]
+   */
+  private static void x25519Benchmark(String[] args) {
+    int iterations = args.length > 1 ? Integer.parseInt(args[1]) : 2000;
+    int n = args.length > 2 ? Integer.parseInt(args[2]) : 200;
+    List<X25519Backend> backends = X25519Backends.available();
+    for (X25519Backend backend : backends) {
+      X25519Vectors.check(backend);
+    }
+    X25519Vectors.crossCheck(backends, 200);
+    Utils.print("All of " + backends.size() + " X25519 backends pass the RFC 7748 vectors and agree with each other.");
+    if (!JdkX25519Backend.isAvailable()) {
+      Utils.print("This JDK has no X25519 KeyAgreement, so only djb can be compared.");
+    }
+
+    X25519Backend original = X25519Backends.current();
+    System.out.println("backend,public_key_ns,agreement_ns,art_group_size,art_sending_time_per_message,art_receiving_time_per_message");
+    for (X25519Backend backend : backends) {
+      byte[] priv = Crypto.randomBytes(32);
+      byte[] pub = new byte[32];
+      long publicKeyTime = 0;
+      long agreementTime = 0;
+      for (int round = 0; round < 2; round++) { // The first round warms up the JIT.
+        long start = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+          backend.publicKey(priv, pub);
+        }
+        publicKeyTime = System.nanoTime() - start;
+        start = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+          backend.agree(priv, pub, pub);
+        }
+        agreementTime = System.nanoTime() - start;
+      }
+
+      X25519Backends.select(backend);
+      artTestRun(16, 8);
+      System.gc();
+      TestResultItem result = artTestRun(n, Math.min(n, 8));
+      System.out.println(
+        backend.getName() + "," + publicKeyTime / iterations + "," + agreementTime / iterations + "," + n + "," +
+          result.getResultAsCSVRow(new String[] {CommonTests.SENDING_TIME_PER_MESSAGE, CommonTests.RECEIVING_TIME_PER_MESSAGE})
+      );
+    }
+    X25519Backends.select(original);
+  }
+
+  /**
+   * Signs the given number of prekeys under as many identity keys with each signature backend, and reports the time
+   * per signature to sign, to verify one at a time and to verify as one batch, as the group initiator does. Also checks
+   * that a single bad signature, key or message fails both kinds of verification.
+   *
+   * Usage: signatures [count]
+   */
+  private static void signaturesBenchmark(String[] args) {
+    int count = args.length > 1 ? Integer.parseInt(args[1]) : 5000;
+    DHPubKey[] identities = new DHPubKey[count];
+    DHKeyPair[] identityKeyPairs = new DHKeyPair[count];
+    byte[][] preKeys = new byte[count][];
+    for (int i = 0; i < count; i++) {
+      identityKeyPairs[i] = DHKeyPair.generate(true);
+      identities[i] = identityKeyPairs[i].getPubKey();
+      preKeys[i] = DHKeyPair.generate(false).getPubKeyBytes();
+    }
+
+    System.out.println("backend,count,sign_ns,verify_ns,verify_all_ns");
+    for (SignatureBackend backend : SignatureBackends.available()) {
+      byte[][] signatures = new byte[count][];
+      long signTime = 0;
+      long verifyTime = 0;
+      long verifyAllTime = 0;
+      for (int round = 0; round < 2; round++) { // The first round warms up the JIT.
+        long start = System.nanoTime();
+        for (int i = 0; i < count; i++) {
+          signatures[i] = backend.sign(identityKeyPairs[i], preKeys[i]);
+        }
+        signTime = System.nanoTime() - start;
+
+        start = System.nanoTime();
+        for (int i = 0; i < count; i++) {
+          if (!backend.verify(identities[i], preKeys[i], signatures[i])) {
+            fail(backend.getName() + " rejected a good signature.");
+          }
+        }
+        verifyTime = System.nanoTime() - start;
+
+        start = System.nanoTime();
+        if (!backend.verifyAll(identities, preKeys, signatures)) {
+          fail(backend.getName() + " rejected a good batch.");
+        }
+        verifyAllTime = System.nanoTime() - start;
+      }
+
+      int bad = count / 2;
+      byte[][] badSignatures = signatures.clone();
+      badSignatures[bad] = signatures[bad].clone();
+      badSignatures[bad][40] ^= 1;
+      DHPubKey[] badIdentities = identities.clone();
+      badIdentities[bad] = identities[(bad + 1) % count];
+      byte[][] badPreKeys = preKeys.clone();
+      badPreKeys[bad] = preKeys[(bad + 1) % count];
+      if (
+        backend.verify(identities[bad], preKeys[bad], badSignatures[bad]) ||
+          backend.verify(badIdentities[bad], preKeys[bad], signatures[bad]) ||
+          backend.verify(identities[bad], badPreKeys[bad], signatures[bad]) ||
+          backend.verifyAll(identities, preKeys, badSignatures) ||
+          backend.verifyAll(badIdentities, preKeys, signatures) ||
+          backend.verifyAll(identities, badPreKeys, signatures)
+      ) {
+        fail(backend.getName() + " accepted a bad signature.");
+      }
+
+      System.out.println(
+        backend.getName() + "," + count + "," + signTime / count + "," + verifyTime / count + "," + verifyAllTime / count
+      );
+    }
+  }
+
+  private static byte[] jcaHmacSha256(byte[] data, byte[] key) {
+    try {
+      Mac mac = Mac.getInstance("HmacSHA256");
+      mac.init(new SecretKeySpec(key, "HmacSHA256"));
+      return mac.doFinal(data);
+    } catch (Exception e) {
+      throw Utils.except(e);
+    }
+  }
+
+  private static byte[] jcaHkdf(byte[] ikm, byte[] salt, byte[] info, int length) {
+    byte[] prk = jcaHmacSha256(salt, ikm);
+    byte[] result = new byte[length];
+    byte[] t = new byte[0];
+    for (byte i = 0; i * Crypto.HASH_LENGTH < length; i++) {
+      byte[] expandKey = new byte[t.length + info.length + 1];
+      System.arraycopy(t, 0, expandKey, 0, t.length);
+      System.arraycopy(info, 0, expandKey, t.length, info.length);
+      expandKey[expandKey.length - 1] = i;
+      t = jcaHmacSha256(prk, expandKey);
+      System.arraycopy(t, 0, result, i * Crypto.HASH_LENGTH, Math.min(Crypto.HASH_LENGTH, length - i * Crypto.HASH_LENGTH));
+    }
+    return result;
+  }
+
   private static TestResultItem artTestRun(int n, int activePeers) {
+    return artTestRun(n, activePeers, state -> {});
+  }
+
+  private static TestResultItem artTestRun(int n, int activePeers, Consumer<ARTState> configure) {
+    return artTestRun(n, activePeers, 1, configure);
+  }
+
+  private static TestResultItem artTestRun(int n, int activePeers, int burstLength, Consumer<ARTState> configure) {
+    return artTestRun(new AbstractTestExecutorParams(n, activePeers, debug, burstLength), configure);
+  }
+
+  private static TestResultItem artTestRun(AbstractTestExecutorParams params, Consumer<ARTState> configure) {
+    int n = params.getN();
     ARTState[] states = new ARTState[n];
 
     for (int i = 0; i < n; i++) {
       states[i] = new ARTState(i, n);
+      configure.accept(states[i]);
     }
 
     return testRun(
-      n,
-      activePeers,
+      params,
       states,
       new ARTSetupPhase(),
       new ARTTestImplementation()
     );
   }
 
+  /**
+   * Checks that an EntropyPool reseeds on schedule, then times one nonce and one private key worth of randomness per
+   * call from a new SecureRandom each time, as Crypto.randomBytes once did, from one SecureRandom shared by every
+   * thread, and from each thread's EntropyPool, for one thread and then for each doubling up to the given count.
+   *
+   * Usage: entropy [calls per thread] [max threads]
+   */
+  private static void entropyBenchmark(String[] args) {
+    int calls = args.length > 1 ? Integer.parseInt(args[1]) : 20000;
+    int maxThreads = args.length > 2 ? Integer.parseInt(args[2]) : Runtime.getRuntime().availableProcessors();
+
+    EntropyPool pool = EntropyPool.get();
+    long reseeds = pool.getReseeds();
+    byte[] bulk = new byte[EntropyPool.BUFFER_LENGTH];
+    for (long i = 0; i <= EntropyPool.RESEED_INTERVAL_BYTES / bulk.length; i++) {
+      pool.fill(bulk);
+    }
+    if (pool.getReseeds() != reseeds + 1) {
+      fail("The pool should have reseeded once, but reseeded " + (pool.getReseeds() - reseeds) + " times.");
+    }
+    Utils.print("EntropyPool reseeds after " + EntropyPool.RESEED_INTERVAL_BYTES + " bytes.");
+
+    SecureRandom shared = new SecureRandom();
+    Map<String, Consumer<byte[]>> sources = new LinkedHashMap<>();
+    sources.put("new_secure_random", bytes -> new SecureRandom().nextBytes(bytes));
+    sources.put("shared_secure_random", shared::nextBytes);
+    sources.put("entropy_pool", bytes -> EntropyPool.get().fill(bytes));
+
+    System.out.println("source,threads,ns_per_call");
+    for (int threads = 1; threads <= maxThreads; threads *= 2) {
+      for (Map.Entry<String, Consumer<byte[]>> source : sources.entrySet()) {
+        timeRandomness(source.getValue(), 1, calls / 10); // Warm up the JIT.
+        long time = timeRandomness(source.getValue(), threads, calls);
+        System.out.println(source.getKey() + "," + threads + "," + time / ((long) threads * calls));
+      }
+    }
+  }
+
+  private static long timeRandomness(Consumer<byte[]> source, int threads, int calls) {
+    Thread[] workers = new Thread[threads];
+    for (int t = 0; t < threads; t++) {
+      workers[t] = new Thread(() -> {
+        byte[] nonce = new byte[CryptoContext.NONCE_LENGTH];
+        byte[] key = new byte[32];
+        for (int i = 0; i < calls; i++) {
+          source.accept(nonce);
+          source.accept(key);
+        }
+      });
+    }
+    long start = System.nanoTime();
+    for (Thread worker : workers) {
+      worker.start();
+    }
+    try {
+      for (Thread worker : workers) {
+        worker.join();
+      }
+    } catch (InterruptedException e) {
+      throw Utils.except(e);
+    }
+    return System.nanoTime() - start;
+  }
+
   private static void checkForUnlimitedStrengthCrypto() {
     boolean hasEnoughCrypto = true;
     try {
@@ -122,16 +1799,20 @@ public class Main {
   }
 
   private static TestResultItem dhTestRun(int n, int activePeers) {
+    return dhTestRun(n, activePeers, state -> {});
+  }
+
+  private static TestResultItem dhTestRun(int n, int activePeers, Consumer<DHRatchetState> configure) {
     DHRatchetState[] states = new DHRatchetState[n];
 
     for (int i = 0; i < n; i++) {
       states[i] = new DHRatchetState(i, n);
+      configure.accept(states[i]);
     }
 
 
     return testRun(
-      n,
-      activePeers,
+      new AbstractTestExecutorParams(n, activePeers, debug),
       states,
       new DHRatchetSetupPhase(),
       new DHRatchet()
@@ -139,8 +1820,7 @@ public class Main {
   }
 
   private static <TState extends GroupMessagingState> TestResultItem testRun(
-    int n,
-    int activeCount,
+    AbstractTestExecutorParams params,
     TState[] states,
     GroupMessagingSetupPhase<TState> setupPhase,
     GroupMessagingTestImplementation<TState> implementation
@@ -148,7 +1828,7 @@ public class Main {
 
     CommonTests exec = new CommonTests((GroupMessagingState[]) states, (GroupMessagingSetupPhase<GroupMessagingState>) setupPhase, (GroupMessagingTestImplementation<GroupMessagingState>) implementation);
 
-    return exec.run(new AbstractTestExecutorParams(n,activeCount,debug));
+    return exec.run(params);
   }
 
 
@@ -18,8 +18,12 @@ import org.apache.thrift.protocol.TCompactProtocol;
 import org.apache.thrift.protocol.TSimpleJSONProtocol;
 
 import javax.xml.bind.DatatypeConverter;
+import java.nio.ByteBuffer;
 import java.text.SimpleDateFormat;
 import java.util.Date;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.IntConsumer;
 
 final public class Utils {
   public static void print(String a, Object... args) {
@@ -80,7 +84,14 @@ final public class Utils {
   }
 
   public static <TObject extends TBase> void deserialise(TObject object, byte[] data) {
-    TDeserializer deserialiser = new TDeserializer(new TCompactProtocol.Factory());
+    deserialise(new TDeserializer(new TCompactProtocol.Factory()), object, data);
+  }
+
+  /**
+   * Deserialise using a caller-owned deserialiser, so that it can be reused across many messages. Thrift doesn't reset
+   * fields that are absent from the input, so reused structs should be cleared first.
+   */
+  public static <TObject extends TBase> void deserialise(TDeserializer deserialiser, TObject object, byte[] data) {
     try {
       deserialiser.deserialize(object, data);
     } catch (TException e) {
@@ -88,6 +99,61 @@ final public class Utils {
     }
   }
 
+  /**
+   * Deserialise the bytes between the buffer's position and its limit, reading them in place when it is a heap buffer.
+   */
+  public static <TObject extends TBase> void deserialise(TObject object, ByteBuffer data) {
+    deserialise(new TDeserializer(new TCompactProtocol.Factory()), object, data);
+  }
+
+  public static <TObject extends TBase> void deserialise(TDeserializer deserialiser, TObject object, ByteBuffer data) {
+    try {
+      if (data.hasArray()) {
+        deserialiser.deserialize(object, data.array(), data.arrayOffset() + data.position(), data.remaining());
+      } else {
+        byte[] bytes = new byte[data.remaining()];
+        data.duplicate().get(bytes);
+        deserialiser.deserialize(object, bytes);
+      }
+    } catch (TException e) {
+      Utils.except(e);
+    }
+  }
+
+  /**
+   * Run body for every index in [from, to) on the given pool, and wait for all of them to finish. The range is split in
+   * halves until the pieces are small, so each task still does a meaningful amount of work.
+   */
+  public static void parallelFor(ForkJoinPool pool, int from, int to, IntConsumer body) {
+    pool.invoke(new RangeAction(from, to, body));
+  }
+
+  private static class RangeAction extends RecursiveAction {
+    private static final long serialVersionUID = 1L;
+    private static final int THRESHOLD = 8;
+    private final int from;
+    private final int to;
+    private final IntConsumer body;
+
+    RangeAction(int from, int to, IntConsumer body) {
+      this.from = from;
+      this.to = to;
+      this.body = body;
+    }
+
+    @Override
+    protected void compute() {
+      if (to - from <= THRESHOLD) {
+        for (int i = from; i < to; i++) {
+          body.accept(i);
+        }
+        return;
+      }
+      int middle = (from + to) >>> 1;
+      invokeAll(new RangeAction(from, middle, body), new RangeAction(middle, to, body));
+    }
+  }
+
   public static long startBenchmark() {
     return new Date().toInstant().toEpochMilli();
   }
@@ -10,48 +10,43 @@ package com.facebook.research.asynchronousratchetingtree.art;
 
 import com.facebook.research.asynchronousratchetingtree.Utils;
 import com.facebook.research.asynchronousratchetingtree.art.message.AuthenticatedMessage;
+import com.facebook.research.asynchronousratchetingtree.art.message.CopathSetupMessage;
+import com.facebook.research.asynchronousratchetingtree.art.message.FlatMessageReader;
+import com.facebook.research.asynchronousratchetingtree.art.message.FlatMessageWriter;
 import com.facebook.research.asynchronousratchetingtree.art.message.SetupMessage;
 import com.facebook.research.asynchronousratchetingtree.art.message.UpdateMessage;
+import com.facebook.research.asynchronousratchetingtree.art.message.thrift.UpdateMessageStruct;
 import com.facebook.research.asynchronousratchetingtree.art.tree.*;
+import com.facebook.research.asynchronousratchetingtree.crypto.AeadSuites;
 import com.facebook.research.asynchronousratchetingtree.crypto.Crypto;
 import com.facebook.research.asynchronousratchetingtree.crypto.DHKeyPair;
 import com.facebook.research.asynchronousratchetingtree.crypto.DHPubKey;
+import com.facebook.research.asynchronousratchetingtree.crypto.KeySchedule;
+import org.apache.thrift.TDeserializer;
+import org.apache.thrift.protocol.TCompactProtocol;
 
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
 import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.IntConsumer;
 
 public class ART {
+  // Below this many leaves, building a subtree isn't worth handing to another thread.
+  private static final int PARALLEL_TREE_THRESHOLD = 16;
 
   public static AuthenticatedMessage setupGroup(ARTState state, DHPubKey[] peers, Map<Integer, DHPubKey> preKeys) {
-
-    int numPeers = peers.length;
-
-    DHKeyPair selfLeaf = DHKeyPair.generate(false);
     DHKeyPair keyExchangeKeyPair = DHKeyPair.generate(false);
-
-    DHKeyPair[] leaves = new DHKeyPair[numPeers];
-    leaves[0] = selfLeaf;
-
-    for (int i = 1; i < numPeers; i++) {  // generate leaf keys for each agent
-      leaves[i] = DHKeyPair.fromBytes(
-        Crypto.keyExchangeInitiate(
-          state.getIdentityKeyPair(),
-          peers[i],
-          keyExchangeKeyPair,
-          preKeys.get(i)
-        ),
-        false
-      );
-    }
-
-    SecretNode tree = createTree(leaves);
+    Node tree = createGroupTree(state, peers, preKeys, keyExchangeKeyPair);
     state.setIdentities(peers);
-    state.setTree(tree);
 
     SetupMessage sm = new SetupMessage(
       peers,
       preKeys,
       keyExchangeKeyPair.getPubKey(),
-      tree
+      tree,
+      state.getAeadSuite().getId()
     );
     byte[] serialisedSetupMessage = sm.serialise();
     byte[] signature = state.getIdentityKeyPair().sign(serialisedSetupMessage);
@@ -60,63 +55,357 @@ public class ART {
     return new AuthenticatedMessage(serialisedSetupMessage, signature);
   }
 
+  /**
+   * Set up a group as setupGroup does, but instead of one message carrying the whole tree, return one message per peer
+   * (indexed by leaf; there is none for the initiator) carrying only what that peer needs to rebuild its own path. All
+   * of them share a single signed header which commits to the tree hash, so the signature is computed only once.
+   */
+  public static CopathSetupMessage[] setupGroupWithCopaths(
+    ARTState state,
+    DHPubKey[] peers,
+    Map<Integer, DHPubKey> preKeys
+  ) {
+    checkCopathSetup(state);
+    DHKeyPair keyExchangeKeyPair = DHKeyPair.generate(false);
+    Node tree = createGroupTree(state, peers, preKeys, keyExchangeKeyPair);
+    state.setIdentities(peers);
+
+    byte[] header = new SetupMessage(
+      peers,
+      keyExchangeKeyPair.getPubKey(),
+      tree.getTreeHash(),
+      state.getAeadSuite().getId()
+    ).serialise();
+    byte[] signature = state.getIdentityKeyPair().sign(header);
+
+    CopathSetupMessage[] messages = new CopathSetupMessage[peers.length];
+    for (int i = 1; i < peers.length; i++) {
+      Node[] copath = copathNodes(tree, i);
+      DHPubKey[] copathKeys = new DHPubKey[copath.length];
+      byte[][] copathHashes = new byte[copath.length][];
+      for (int j = 0; j < copath.length; j++) {
+        copathKeys[j] = copath[j].getPubKey();
+        copathHashes[j] = copath[j].getTreeHash();
+      }
+      messages[i] = new CopathSetupMessage(i, header, signature, preKeys.get(i), copathKeys, copathHashes);
+    }
+    deriveStageKey(state);
+
+    return messages;
+  }
+
+  /**
+   * Build the initiator's tree, leaving it in the state, and return its public view.
+   */
+  private static Node createGroupTree(
+    ARTState state,
+    DHPubKey[] peers,
+    Map<Integer, DHPubKey> preKeys,
+    DHKeyPair keyExchangeKeyPair
+  ) {
+    int numPeers = peers.length;
+
+    DHKeyPair selfLeaf = DHKeyPair.generate(false);
+
+    DHKeyPair[] leaves = new DHKeyPair[numPeers];
+    leaves[0] = selfLeaf;
+
+    DHPubKey[] remoteEphemeralKeys = new DHPubKey[numPeers];
+    for (int i = 1; i < numPeers; i++) {
+      remoteEphemeralKeys[i] = preKeys.get(i);
+    }
+
+    ForkJoinPool pool = state.getSetupParallelism() > 1 ? new ForkJoinPool(state.getSetupParallelism()) : null;
+    Node tree;
+    try {
+      // Generate leaf keys for each agent. Each one only depends on its own peer, so they can run in any order.
+      byte[][] secrets = Crypto.keyExchangeInitiateAll(
+        state.getIdentityKeyPair(),
+        peers,
+        keyExchangeKeyPair,
+        remoteEphemeralKeys,
+        pool
+      );
+      IntConsumer leafKey = i -> leaves[i] = DHKeyPair.fromBytes(secrets[i], false);
+      if (pool == null) {
+        for (int i = 1; i < numPeers; i++) {
+          leafKey.accept(i);
+        }
+      } else {
+        Utils.parallelFor(pool, 1, numPeers, leafKey);
+      }
+
+      if (state.usesArrayTreeEngine()) {
+        ArrayTree arrayTree = ArrayTree.create(leaves, state.getPeerNum(), pool);
+        state.setArrayTree(arrayTree);
+        tree = arrayTree.toNode();
+      } else {
+        SecretNode secretTree = pool == null ? createTree(leaves) : pool.invoke(new CreateTreeTask(leaves, 0, numPeers));
+        state.setTree(secretTree);
+        tree = secretTree;
+      }
+    } finally {
+      if (pool != null) {
+        pool.shutdown();
+      }
+    }
+    return tree;
+  }
+
   public static void processSetupMessage(ARTState state, AuthenticatedMessage signedMessage, int leafNum) {
-    SetupMessage message = new SetupMessage(signedMessage.getMessage());
+    PublicNodeInterner interner = state.getPublicNodeInterner();
+    SetupMessage message;
+    if (interner == null) {
+      message = SetupMessage.withLazyTree(signedMessage.getMessage());
+    } else {
+      message = interner.decode(signedMessage.getMessage(), bytes -> new SetupMessage(bytes, interner));
+    }
     boolean verified = message.getIdentities()[0].verify(signedMessage.getMessage(), signedMessage.getAuthenticator());
     if (!verified) {
       Utils.except("Signature verification failed on the setup message.");
     }
+    state.setAeadSuite(AeadSuites.forId(message.getAeadSuiteId(), state.getAeadSuite()));
 
     if (!Arrays.equals(state.getPreKeyFor(0).getPubKey().getPubKeyBytes(), message.getEphemeralKeys().get(leafNum).getPubKeyBytes())) {
       Utils.except("Used the wrong ephemeral key.");
     }
 
-    SecretLeafNode leaf = new SecretLeafNode(
-      DHKeyPair.fromBytes(
-        Crypto.keyExchangeReceive(state.getIdentityKeyPair(), message.getIdentities()[0], state.getPreKeyFor(0), message.getKeyExchangeKey()),
-        false
-      )
-    );
-    state.setTree(
-      updateTreeWithSecretLeaf(
-        message.getTree(),
-        state.getPeerNum(),
-        leaf
-      )
+    DHKeyPair leafKeyPair = DHKeyPair.fromBytes(
+      Crypto.keyExchangeReceive(state.getIdentityKeyPair(), message.getIdentities()[0], state.getPreKeyFor(0), message.getKeyExchangeKey()),
+      false
     );
+    if (state.usesArrayTreeEngine()) {
+      state.setArrayTree(
+        ArrayTree.fromPublicTree(
+          message.getTree(),
+          state.getPeerNum(),
+          leafKeyPair
+        )
+      );
+    } else {
+      state.setTree(
+        updateTreeWithSecretLeaf(
+          message.getTree(),
+          state.getPeerNum(),
+          new SecretLeafNode(leafKeyPair)
+        )
+      );
+    }
     state.setIdentities(
       message.getIdentities()
     );
     deriveStageKey(state);
   }
 
-  public static AuthenticatedMessage updateKey(ARTState state) {
-    SecretLeafNode newNode = new SecretLeafNode(DHKeyPair.generate(false));
-    SecretNode newTree = updateTreeWithSecretLeaf(state.getTree(), state.getPeerNum(), newNode);
-    state.setTree(newTree);
-    UpdateMessage m = new UpdateMessage(
-      state.getPeerNum(),
-      pathNodeKeys(state.getTree(), state.getPeerNum())
+  public static void processCopathSetupMessage(ARTState state, CopathSetupMessage message, int leafNum) {
+    checkCopathSetup(state);
+    if (message.getLeafNum() != leafNum) {
+      Utils.except("Copath setup message is for another member.");
+    }
+
+    PublicNodeInterner interner = state.getPublicNodeInterner();
+    SetupMessage header;
+    if (interner == null) {
+      header = new SetupMessage(message.getHeader());
+    } else {
+      header = interner.decode(message.getHeader(), bytes -> new SetupMessage(bytes, interner));
+    }
+    boolean verified = header.getIdentities()[0].verify(message.getHeader(), message.getSignature());
+    if (!verified) {
+      Utils.except("Signature verification failed on the setup message.");
+    }
+    state.setAeadSuite(AeadSuites.forId(header.getAeadSuiteId(), state.getAeadSuite()));
+
+    if (!Arrays.equals(state.getPreKeyFor(0).getPubKey().getPubKeyBytes(), message.getEphemeralKey().getPubKeyBytes())) {
+      Utils.except("Used the wrong ephemeral key.");
+    }
+
+    DHKeyPair leafKeyPair = DHKeyPair.fromBytes(
+      Crypto.keyExchangeReceive(state.getIdentityKeyPair(), header.getIdentities()[0], state.getPreKeyFor(0), header.getKeyExchangeKey()),
+      false
+    );
+    SecretNode tree = createTreeFromCopath(
+      header.getIdentities().length,
+      leafNum,
+      new SecretLeafNode(leafKeyPair),
+      message.getCopath(),
+      message.getCopathHashes(),
+      0
+    );
+    if (!MessageDigest.isEqual(tree.getTreeHash(), header.getTreeHash())) {
+      Utils.except("Copath does not match the signed tree hash.");
+    }
+    state.setTree(tree);
+    state.setIdentities(
+      header.getIdentities()
     );
-    byte[] serialisedUpdateMessage = m.serialise();
-    byte[] mac = Crypto.hmacSha256(serialisedUpdateMessage, state.getStageKey());
+    deriveStageKey(state);
+  }
+
+  private static void checkCopathSetup(ARTState state) {
+    if (!state.usesTreeHashKDF() || state.usesArrayTreeEngine()) {
+      Utils.except("Copath setup needs the tree-hash KDF and the object tree engine.");
+    }
+  }
+
+  public static AuthenticatedMessage updateKey(ARTState state) {
+    UpdateMessage m = nextUpdate(state);
+    byte[] serialisedUpdateMessage = m.serialise(state.usesFlatCodec());
+    byte[] mac = state.getKeySchedule().hmacSha256(serialisedUpdateMessage);
     deriveStageKey(state);
     return new AuthenticatedMessage(serialisedUpdateMessage, mac);
   }
 
+  /**
+   * updateKey for a sender using the flat codec. The update is written straight into a flat ciphertext message with
+   * room for ciphertextLength bytes of ciphertext, and its MAC computed where it sits, so the caller only has to
+   * encrypt into the rest of the frame under the new stage key.
+   */
+  public static FlatMessageWriter updateKey(ARTState state, int ciphertextLength, boolean implicitNonce) {
+    UpdateMessage m = nextUpdate(state);
+    FlatMessageWriter writer = FlatMessageWriter.forUpdate(m, Crypto.HASH_LENGTH, ciphertextLength, implicitNonce);
+    state.getKeySchedule().hmacSha256(writer.update(), writer.array(), writer.authenticatorOffset());
+    deriveStageKey(state);
+    return writer;
+  }
+
+  private static UpdateMessage nextUpdate(ARTState state) {
+    DHKeyPair newLeaf = DHKeyPair.generate(false);
+    DHPubKey[] path;
+    if (state.usesArrayTreeEngine()) {
+      state.getArrayTree().setSecretLeaf(newLeaf);
+      path = state.getArrayTree().pathNodeKeys(state.getPeerNum());
+    } else {
+      SecretNode newTree = updateTreeWithSecretLeaf(state.getTree(), state.getPeerNum(), new SecretLeafNode(newLeaf));
+      state.setTree(newTree);
+      path = pathNodeKeys(state.getTree(), state.getPeerNum());
+    }
+    byte[][] copathHashes = null;
+    if (state.usesCopathSetup()) {
+      Node[] copath = copathNodes(state.getTree(), state.getPeerNum());
+      copathHashes = new byte[copath.length][];
+      for (int i = 0; i < copath.length; i++) {
+        copathHashes[i] = copath[i].getTreeHash();
+      }
+    }
+    return new UpdateMessage(
+      state.getPeerNum(),
+      path,
+      copathHashes
+    );
+  }
+
   public static void processUpdateMessage(ARTState state, AuthenticatedMessage message) {
-    byte[] mac = Crypto.hmacSha256(message.getMessage(), state.getStageKey());
-    if (!Arrays.equals(mac, message.getAuthenticator())) {
+    processUpdateMessage(state, message, false);
+  }
+
+  /**
+   * For a receiver that has already checked the MAC against the current epoch, as it does to tell whether an update
+   * is late, so that it isn't computed twice.
+   */
+  static void processUpdateMessage(ARTState state, AuthenticatedMessage message, boolean verified) {
+    if (!verified && !isFromCurrentEpoch(state, message)) {
       Utils.except("MAC is incorrect for update message.");
     }
-    UpdateMessage updateMessage = new UpdateMessage(message.getMessage());
-    Node tree = state.getTree();
-    tree = updateTreeWithPublicPath(tree, updateMessage.getLeafNum(), updateMessage.getPath(), 0);
-    state.setTree((SecretNode) tree);
+    applyUpdate(state, UpdateMessage.decode(message.getMessageView()));
+  }
+
+  public static boolean isFromCurrentEpoch(ARTState state, AuthenticatedMessage message) {
+    return state.getKeySchedule().verifyHmacSha256(message.getMessageView(), message.getAuthenticatorView());
+  }
+
+  /**
+   * Process an update message that was sent from an epoch this member has already moved past, as happens when two
+   * members update concurrently and delivery reorders their messages. The update is applied to the retained tree of
+   * the epoch it was sent from, and the resulting stage key is returned for decrypting whatever came with it.
+   *
+   * The current tree and stage key are left alone, since ART has no way to merge two concurrent updates. The epoch the
+   * update leads to is recorded in the history as a branch, so that chain messages its sender goes on to send from it
+   * can still be decrypted.
+   */
+  public static byte[] processLateUpdateMessage(ARTState state, AuthenticatedMessage message) {
+    EpochHistory history = state.getEpochHistory();
+    if (history == null) {
+      Utils.except("Late update messages need an epoch history.");
+    }
+    Iterator<EpochHistory.Epoch> epochs = history.newestFirst();
+    while (epochs.hasNext()) {
+      EpochHistory.Epoch epoch = epochs.next();
+      if (!epoch.keySchedule.verifyHmacSha256(message.getMessageView(), message.getAuthenticatorView())) {
+        continue;
+      }
+      UpdateMessage updateMessage = UpdateMessage.decode(message.getMessageView());
+      PublicNodeInterner interner = state.getPublicNodeInterner();
+      DHPubKey[] path = updateMessage.getPath();
+      if (interner != null) {
+        path = interner.pubKeys(path);
+      }
+      Node tree = updateTreeWithPublicPath(
+        epoch.tree,
+        updateMessage.getLeafNum(),
+        path,
+        updateMessage.getCopathHashes(),
+        0,
+        interner
+      );
+      byte[] stageKey = nextStageKey(state, epoch.stageKey, (SecretNode) tree);
+      history.addBranch(new KeySchedule(epoch.number + 1, stageKey), (SecretNode) tree);
+      return stageKey;
+    }
+    throw Utils.except("No retained epoch matches the update message.");
+  }
+
+  /**
+   * Process a backlog of update messages in the order they were sent, as a member coming back online would. The result
+   * is the same as calling processUpdateMessage on each in turn, but one Thrift deserialiser and one update
+   * struct, or one flat reader, are shared by the whole batch. Returns the stage key that was current after each
+   * message, for decrypting whatever it carried. With an epoch history, a late update in the backlog goes through
+   * processLateUpdateMessage and its entry is the key that gives.
+   */
+  public static List<byte[]> processUpdateMessages(ARTState state, List<AuthenticatedMessage> messages) {
+    TDeserializer deserialiser = new TDeserializer(new TCompactProtocol.Factory());
+    UpdateMessageStruct struct = new UpdateMessageStruct();
+    FlatMessageReader reader = new FlatMessageReader();
+    List<byte[]> stageKeys = new ArrayList<>(messages.size());
+
+    for (AuthenticatedMessage message : messages) {
+      ByteBuffer update = message.getMessageView();
+      if (!isFromCurrentEpoch(state, message)) {
+        if (state.getEpochHistory() == null) {
+          Utils.except("MAC is incorrect for update message.");
+        }
+        stageKeys.add(processLateUpdateMessage(state, message));
+        continue;
+      }
+      if (FlatMessageReader.isFlat(update)) {
+        applyUpdate(state, new UpdateMessage(reader.wrap(update)));
+      } else {
+        struct.clear();
+        Utils.deserialise(deserialiser, struct, update);
+        applyUpdate(state, new UpdateMessage(struct));
+      }
+      stageKeys.add(state.getStageKey());
+    }
+    return stageKeys;
+  }
+
+  private static void applyUpdate(ARTState state, UpdateMessage updateMessage) {
+    if (state.usesArrayTreeEngine()) {
+      state.getArrayTree().updateWithPublicPath(updateMessage.getLeafNum(), updateMessage.getPath());
+    } else {
+      PublicNodeInterner interner = state.getPublicNodeInterner();
+      DHPubKey[] path = updateMessage.getPath();
+      if (interner != null) {
+        path = interner.pubKeys(path);
+      }
+      Node tree = state.getTree();
+      tree = updateTreeWithPublicPath(tree, updateMessage.getLeafNum(), path, updateMessage.getCopathHashes(), 0, interner);
+      state.setTree((SecretNode) tree);
+    }
     deriveStageKey(state);
   }
 
-  private static SecretNode createTree(DHKeyPair[] leaves) {
+  static SecretNode createTree(DHKeyPair[] leaves) {
     int n = leaves.length;
     if (n == 0) {
       Utils.except("No leaves");
@@ -130,18 +419,98 @@ public class ART {
     return new SecretParentNode(left, right);
   }
 
+  /**
+   * Rebuild a member's own path from its leaf and its copath, leaving every subtree off the path pruned.
+   */
+  private static SecretNode createTreeFromCopath(
+    int numLeaves,
+    int i,
+    SecretLeafNode leaf,
+    DHPubKey[] copath,
+    byte[][] copathHashes,
+    int copathIndex
+  ) {
+    if (numLeaves == 1) {
+      if (copathIndex != copath.length) {
+        Utils.except("Copath length does not match the group size.");
+      }
+      return leaf;
+    }
+    if (copathIndex >= copath.length) {
+      Utils.except("Copath length does not match the group size.");
+    }
+    int l = leftTreeSize(numLeaves);
+    if (i < l) {
+      return new SecretParentNode(
+        createTreeFromCopath(l, i, leaf, copath, copathHashes, copathIndex + 1),
+        new PrunedNode(copath[copathIndex], numLeaves - l, copathHashes[copathIndex])
+      );
+    }
+    return new SecretParentNode(
+      new PrunedNode(copath[copathIndex], l, copathHashes[copathIndex]),
+      createTreeFromCopath(numLeaves - l, i - l, leaf, copath, copathHashes, copathIndex + 1)
+    );
+  }
+
   private static void deriveStageKey(ARTState state) {
+    if (!state.usesArrayTreeEngine()) {
+      state.setStageKey(nextStageKey(state, state.getStageKey(), state.getTree()));
+      return;
+    }
+    ArrayTree tree = state.getArrayTree();
+    byte[] treeCommitment = state.usesTreeHashKDF() ? tree.getTreeHash() : TreeWriter.serialise(tree);
     state.setStageKey(
       Crypto.artKDF(
         state.getStageKey(),
-        ((SecretParentNode)state.getTree()).getRawSecretKey(),
-        state.getIdentities(),
-        state.getTree()
+        tree.getRawSecretKey(),
+        state.getGroupContext().getDigest(),
+        treeCommitment
       )
     );
   }
 
-  private static SecretNode updateTreeWithSecretLeaf(Node tree, int i, SecretLeafNode newLeaf) {
+  private static byte[] nextStageKey(ARTState state, byte[] lastStageKey, SecretNode tree) {
+    byte[] treeCommitment = state.usesTreeHashKDF() ? tree.getTreeHash() : TreeWriter.serialise(tree);
+    return Crypto.artKDF(
+      lastStageKey,
+      ((SecretParentNode) tree).getRawSecretKey(),
+      state.getGroupContext().getDigest(),
+      treeCommitment
+    );
+  }
+
+  /**
+   * The same recursion as createTree, except that the right subtree is built on another thread while this one builds
+   * the left.
+   */
+  private static class CreateTreeTask extends RecursiveTask<SecretNode> {
+    private static final long serialVersionUID = 1L;
+    private final DHKeyPair[] leaves;
+    private final int from;
+    private final int to;
+
+    CreateTreeTask(DHKeyPair[] leaves, int from, int to) {
+      this.leaves = leaves;
+      this.from = from;
+      this.to = to;
+    }
+
+    @Override
+    protected SecretNode compute() {
+      int n = to - from;
+      if (n <= PARALLEL_TREE_THRESHOLD) {
+        return createTree(Arrays.copyOfRange(leaves, from, to));
+      }
+      int l = leftTreeSize(n);
+      CreateTreeTask rightTask = new CreateTreeTask(leaves, from + l, to);
+      rightTask.fork();
+      SecretNode left = new CreateTreeTask(leaves, from, from + l).compute();
+      Node right = rightTask.join();
+      return new SecretParentNode(left, right);
+    }
+  }
+
+  static SecretNode updateTreeWithSecretLeaf(Node tree, int i, SecretLeafNode newLeaf) {
     int l = leftTreeSize(tree.numLeaves());
     if (tree.numLeaves() == 1) {
       return newLeaf;
@@ -163,11 +532,36 @@ public class ART {
     return result;
   }
 
-  private static Node updateTreeWithPublicPath(Node tree, int i, DHPubKey[] newPath, int pathIndex) {
+  static Node updateTreeWithPublicPath(Node tree, int i, DHPubKey[] newPath, int pathIndex) {
+    return updateTreeWithPublicPath(tree, i, newPath, null, pathIndex, null);
+  }
+
+  private static Node updateTreeWithPublicPath(
+    Node tree,
+    int i,
+    DHPubKey[] newPath,
+    byte[][] copathHashes,
+    int pathIndex,
+    PublicNodeInterner interner
+  ) {
     int l = leftTreeSize(tree.numLeaves());
     if (newPath.length - 1 == pathIndex) {
+      if (interner != null) {
+        return interner.leaf(newPath[pathIndex]);
+      }
       return new PublicLeafNode(newPath[pathIndex]);
     }
+    if (tree instanceof PrunedNode) {
+      // We never saw this subtree, so just keep its new root key and hash.
+      if (copathHashes == null || copathHashes.length != newPath.length - 1) {
+        Utils.except("Update message lacks the copath hashes of the sender's path.");
+      }
+      return new PrunedNode(
+        newPath[pathIndex],
+        tree.numLeaves(),
+        prunedTreeHash(tree.numLeaves(), i, newPath, copathHashes, pathIndex)
+      );
+    }
 
     ParentNode result;
     ParentNode treeAsParent = (ParentNode) tree;
@@ -175,17 +569,19 @@ public class ART {
     Node newRight;
 
     if (i < l) {
-      newLeft = updateTreeWithPublicPath(treeAsParent.getLeft(), i, newPath, pathIndex + 1);
+      newLeft = updateTreeWithPublicPath(treeAsParent.getLeft(), i, newPath, copathHashes, pathIndex + 1, interner);
       newRight = treeAsParent.getRight();
     } else {
       newLeft = treeAsParent.getLeft();
-      newRight = updateTreeWithPublicPath(treeAsParent.getRight(), i - l, newPath, pathIndex + 1);
+      newRight = updateTreeWithPublicPath(treeAsParent.getRight(), i - l, newPath, copathHashes, pathIndex + 1, interner);
     }
 
     if (newLeft instanceof SecretNode) {
       result = new SecretParentNode((SecretNode)newLeft, newRight);
     } else if (newRight instanceof SecretNode) {
       result = new SecretParentNode(newLeft, (SecretNode)newRight);
+    } else if (interner != null) {
+      result = (ParentNode) interner.parent(newPath[pathIndex], newLeft, newRight);
     } else {
       result = new PublicParentNode(
         newPath[pathIndex],
@@ -202,6 +598,46 @@ public class ART {
     return result;
   }
 
+  private static byte[] prunedTreeHash(int numLeaves, int i, DHPubKey[] newPath, byte[][] copathHashes, int pathIndex) {
+    if (numLeaves == 1) {
+      return LeafNode.treeHash(newPath[pathIndex]);
+    }
+    int l = leftTreeSize(numLeaves);
+    if (i < l) {
+      return ParentNode.treeHash(
+        newPath[pathIndex],
+        prunedTreeHash(l, i, newPath, copathHashes, pathIndex + 1),
+        copathHashes[pathIndex]
+      );
+    }
+    return ParentNode.treeHash(
+      newPath[pathIndex],
+      copathHashes[pathIndex],
+      prunedTreeHash(numLeaves - l, i - l, newPath, copathHashes, pathIndex + 1)
+    );
+  }
+
+  /**
+   * The siblings of the nodes on leaf i's path, from the root down.
+   */
+  private static Node[] copathNodes(Node tree, int i) {
+    List<Node> nodes = new ArrayList<>();
+
+    while (tree.numLeaves() > 1) {
+      int l = leftTreeSize(tree.numLeaves());
+      ParentNode parentNode = (ParentNode) tree;
+      if (i < l) {
+        nodes.add(parentNode.getRight());
+        tree = parentNode.getLeft();
+      } else {
+        nodes.add(parentNode.getLeft());
+        tree = parentNode.getRight();
+        i -= l;
+      }
+    }
+    return nodes.toArray(new Node[] {});
+  }
+
   protected static DHPubKey[] pathNodeKeys(Node tree, int i) {
     List<DHPubKey> keys = new ArrayList<DHPubKey>();
 
@@ -221,6 +657,7 @@ public class ART {
   }
 
   private static int leftTreeSize(int numLeaves) {
-    return (int)Math.pow(2, Math.ceil(Math.log(numLeaves) / Math.log(2)) - 1);
+    // The largest power of two strictly below numLeaves.
+    return Integer.highestOneBit(numLeaves - 1);
   }
 }
@@ -15,6 +15,8 @@ import com.facebook.research.asynchronousratchetingtree.crypto.DHPubKey;
 
 public class ARTSetupPhase implements GroupMessagingSetupPhase<ARTState> {
   private byte[] setupMessage;
+  private byte[][] copathSetupMessages;
+  private int bytesSentByInitiator = 0;
   private int bytesReceivedByOthers = 0;
 
   @Override
@@ -29,6 +31,16 @@ public class ARTSetupPhase implements GroupMessagingSetupPhase<ARTState> {
   public void setupInitiator(GroupMessagingTestImplementation<ARTState> implementation, ARTState[] states, DHPubKey[] identities, KeyServer keyServer) {
     int n = states.length;
 
+    if (states[0].usesCopathSetup()) {
+      // Every peer gets its own message.
+      copathSetupMessages = new byte[n][];
+      for (int i = 1; i < n; i++) {
+        copathSetupMessages[i] = implementation.setupMessageForPeer(states[0], identities, keyServer, i);
+        bytesSentByInitiator += copathSetupMessages[i].length;
+      }
+      return;
+    }
+
     // Setup message is the same for all peers, so let's just do it once.
     setupMessage = implementation.setupMessageForPeer(
       states[0],
@@ -36,11 +48,12 @@ public class ARTSetupPhase implements GroupMessagingSetupPhase<ARTState> {
       keyServer,
       1
     );
+    bytesSentByInitiator = setupMessage.length;
   }
 
   @Override
   public int getBytesSentByInitiator() {
-    return setupMessage.length;
+    return bytesSentByInitiator;
   }
 
   @Override
@@ -50,8 +63,9 @@ public class ARTSetupPhase implements GroupMessagingSetupPhase<ARTState> {
       if (which == 0) { // Don't import the setup message to the initiator itself.
         continue;
       }
-      bytesReceivedByOthers += setupMessage.length;
-      implementation.processSetupMessage(states[which], setupMessage, which);
+      byte[] message = copathSetupMessages == null ? setupMessage : copathSetupMessages[which];
+      bytesReceivedByOthers += message.length;
+      implementation.processSetupMessage(states[which], message, which);
     }
   }
 
@@ -10,15 +10,35 @@ package com.facebook.research.asynchronousratchetingtree.art;
 
 import com.facebook.research.asynchronousratchetingtree.GroupMessagingState;
 import com.facebook.research.asynchronousratchetingtree.Utils;
+import com.facebook.research.asynchronousratchetingtree.art.tree.ArrayTree;
+import com.facebook.research.asynchronousratchetingtree.art.tree.PublicNodeInterner;
 import com.facebook.research.asynchronousratchetingtree.art.tree.SecretParentNode;
+import com.facebook.research.asynchronousratchetingtree.crypto.AeadSuite;
+import com.facebook.research.asynchronousratchetingtree.crypto.AeadSuites;
 import com.facebook.research.asynchronousratchetingtree.crypto.DHPubKey;
+import com.facebook.research.asynchronousratchetingtree.crypto.KeySchedule;
 import com.facebook.research.asynchronousratchetingtree.art.tree.SecretNode;
 
 public class ARTState extends GroupMessagingState {
   private SecretParentNode tree;
-  private DHPubKey[] identities;
+  private ArrayTree arrayTree;
+  private GroupContext groupContext;
   private byte[] stageKey = new byte[0];
+  private KeySchedule keySchedule;
   private byte[] setupMessage;
+  private boolean treeHashKDF = false;
+  private boolean arrayTreeEngine = false;
+  private PublicNodeInterner publicNodeInterner;
+  private int setupParallelism = 1;
+  private boolean copathSetup = false;
+  private byte[][] copathSetupMessages;
+  private int epoch = 0;
+  private EpochHistory epochHistory;
+  private UpdatePolicy updatePolicy;
+  private SenderChains senderChains;
+  private boolean implicitNonces = false;
+  private boolean flatCodec = false;
+  private AeadSuite aeadSuite = AeadSuites.current();
 
   public ARTState(int peerNum, int peerCount) {
     super(peerNum, peerCount);
@@ -41,19 +61,230 @@ public class ARTState extends GroupMessagingState {
   }
 
   public DHPubKey[] getIdentities() {
-    return identities;
+    return groupContext == null ? null : groupContext.getIdentities();
   }
 
   public void setIdentities(DHPubKey[] identities) {
-    this.identities = identities;
+    this.groupContext = new GroupContext(identities);
+  }
+
+  public GroupContext getGroupContext() {
+    return groupContext;
   }
 
   public byte[] getStageKey() {
     return stageKey;
   }
 
+  /**
+   * Each new stage key starts a new epoch, which is recorded in the epoch history if there is one.
+   */
   public void setStageKey(byte[] stageKey) {
     this.stageKey = stageKey;
+    senderChains = null;
+    epoch++;
+    keySchedule = new KeySchedule(epoch, stageKey);
+    if (epochHistory != null) {
+      epochHistory.add(keySchedule, tree);
+    }
+  }
+
+  /**
+   * The current stage key, prepared for the HMACs of this epoch. It is replaced along with the stage key.
+   */
+  public KeySchedule getKeySchedule() {
+    if (keySchedule == null) {
+      keySchedule = new KeySchedule(epoch, stageKey);
+    }
+    return keySchedule;
+  }
+
+  public int getEpoch() {
+    return epoch;
+  }
+
+  /**
+   * The id chain messages name the current epoch by; see KeySchedule.getId.
+   */
+  public int getEpochId() {
+    return getKeySchedule().getId();
+  }
+
+  /**
+   * Null (the default) means only the current epoch is kept, and messages from earlier epochs can't be processed.
+   */
+  public EpochHistory getEpochHistory() {
+    return epochHistory;
+  }
+
+  public void setEpochHistory(EpochHistory epochHistory) {
+    if (epochHistory != null && arrayTreeEngine) {
+      Utils.except("An epoch history needs the object tree engine, whose trees it can keep.");
+    }
+    this.epochHistory = epochHistory;
+  }
+
+  /**
+   * Null (the default) means every message this member sends updates its leaf. Otherwise most messages are sent on
+   * the member's sender chain instead. Receivers handle both kinds whatever their own setting.
+   */
+  public UpdatePolicy getUpdatePolicy() {
+    return updatePolicy;
+  }
+
+  public void setUpdatePolicy(UpdatePolicy updatePolicy) {
+    this.updatePolicy = updatePolicy;
+  }
+
+  /**
+   * The sender chains of the current epoch, started on first use after each new stage key. They are the same ones the
+   * epoch history keeps for the epoch, if there is one.
+   */
+  public SenderChains getSenderChains() {
+    if (senderChains == null && epochHistory != null) {
+      senderChains = epochHistory.getSenderChains(getEpochId());
+    }
+    if (senderChains == null) {
+      senderChains = new SenderChains(getKeySchedule());
+    }
+    return senderChains;
+  }
+
+  /**
+   * The sender chains of the epoch with the given id, which has to be the current one or one the epoch history still
+   * retains.
+   */
+  public SenderChains getSenderChains(int epochId) {
+    if (epochId == getEpochId()) {
+      return getSenderChains();
+    }
+    SenderChains chains = epochHistory == null ? null : epochHistory.getSenderChains(epochId);
+    if (chains == null) {
+      Utils.except("Chain message is from an epoch that is not retained.");
+    }
+    return chains;
+  }
+
+  /**
+   * When enabled, this member sends ciphertexts without a nonce, since every message key it uses encrypts exactly one
+   * message; see CiphertextMessage. Receivers handle both framings whatever their own setting.
+   */
+  public boolean usesImplicitNonces() {
+    return implicitNonces;
+  }
+
+  public void setImplicitNonces(boolean implicitNonces) {
+    this.implicitNonces = implicitNonces;
+  }
+
+  /**
+   * When enabled, this member sends its messages in the flat wire format rather than as Thrift structs; see
+   * FlatMessageReader. Receivers handle both formats whatever their own setting.
+   */
+  public boolean usesFlatCodec() {
+    return flatCodec;
+  }
+
+  public void setFlatCodec(boolean flatCodec) {
+    this.flatCodec = flatCodec;
+  }
+
+  /**
+   * The AEAD suite the group encrypts messages with. The initiator's choice goes out in its setup messages and replaces
+   * this on every other member, so it only needs setting on the initiator. Defaults to AeadSuites.current().
+   */
+  public AeadSuite getAeadSuite() {
+    return aeadSuite;
+  }
+
+  public void setAeadSuite(AeadSuite aeadSuite) {
+    this.aeadSuite = aeadSuite;
+  }
+
+  /**
+   * When enabled, stage keys are derived from the cached Merkle hash of the tree instead of a fresh serialisation of
+   * it, so deriving a key costs O(log n) rather than O(n). Every member of a group must use the same setting.
+   */
+  public boolean usesTreeHashKDF() {
+    return treeHashKDF;
+  }
+
+  public void setTreeHashKDF(boolean treeHashKDF) {
+    this.treeHashKDF = treeHashKDF;
+  }
+
+  /**
+   * When enabled, this member keeps its view of the group in an ArrayTree instead of a graph of node objects. The
+   * derived keys are the same either way, so members using different engines can share a group. The array is updated
+   * in place and keeps no past epochs, though, so a member on it can't have an epoch history and can't process late
+   * updates.
+   */
+  public boolean usesArrayTreeEngine() {
+    return arrayTreeEngine;
+  }
+
+  public void setArrayTreeEngine(boolean arrayTreeEngine) {
+    if (arrayTreeEngine && epochHistory != null) {
+      Utils.except("An epoch history needs the object tree engine, whose trees it can keep.");
+    }
+    this.arrayTreeEngine = arrayTreeEngine;
+  }
+
+  public ArrayTree getArrayTree() {
+    return arrayTree;
+  }
+
+  public void setArrayTree(ArrayTree arrayTree) {
+    this.arrayTree = arrayTree;
+  }
+
+  /**
+   * Simulated members that are given the same interner share every public key and public node they have in common.
+   * Null (the default) means this member keeps its own copy of everything.
+   */
+  public PublicNodeInterner getPublicNodeInterner() {
+    return publicNodeInterner;
+  }
+
+  public void setPublicNodeInterner(PublicNodeInterner publicNodeInterner) {
+    this.publicNodeInterner = publicNodeInterner;
+  }
+
+  /**
+   * How many threads setupGroup may use for the per-peer key exchanges and for building independent subtrees. The
+   * resulting tree and setup message are the same whatever the value; 1 (the default) keeps everything on the calling
+   * thread.
+   */
+  public int getSetupParallelism() {
+    return setupParallelism;
+  }
+
+  public void setSetupParallelism(int setupParallelism) {
+    if (setupParallelism < 1) {
+      Utils.except("Setup parallelism must be at least 1.");
+    }
+    this.setupParallelism = setupParallelism;
+  }
+
+  /**
+   * When enabled, the initiator sends each peer its own setup message holding only the signed group header, that
+   * peer's ephemeral key and its copath, rather than the whole tree to everyone. This relies on the tree-hash KDF and
+   * the object tree engine, since members only ever learn the hashes of most subtrees.
+   */
+  public boolean usesCopathSetup() {
+    return copathSetup;
+  }
+
+  public void setCopathSetup(boolean copathSetup) {
+    this.copathSetup = copathSetup;
+  }
+
+  public byte[][] getCopathSetupMessages() {
+    return copathSetupMessages;
+  }
+
+  public void setCopathSetupMessages(byte[][] copathSetupMessages) {
+    this.copathSetupMessages = copathSetupMessages;
   }
 
   public void setTree(SecretNode tree) {
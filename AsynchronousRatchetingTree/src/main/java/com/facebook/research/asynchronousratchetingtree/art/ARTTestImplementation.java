@@ -15,60 +15,217 @@ import com.facebook.research.asynchronousratchetingtree.Utils;
 import com.facebook.research.asynchronousratchetingtree.art.message.ARTMessageDistributer;
 import com.facebook.research.asynchronousratchetingtree.art.message.AuthenticatedMessage;
 import com.facebook.research.asynchronousratchetingtree.art.message.CiphertextMessage;
+import com.facebook.research.asynchronousratchetingtree.art.message.CopathSetupMessage;
+import com.facebook.research.asynchronousratchetingtree.art.message.FlatMessageReader;
+import com.facebook.research.asynchronousratchetingtree.art.message.FlatMessageWriter;
+import com.facebook.research.asynchronousratchetingtree.art.message.thrift.CiphertextMessageStruct;
 import com.facebook.research.asynchronousratchetingtree.crypto.Crypto;
+import com.facebook.research.asynchronousratchetingtree.crypto.CryptoContext;
 import com.facebook.research.asynchronousratchetingtree.crypto.DHPubKey;
+import com.facebook.research.asynchronousratchetingtree.crypto.SignatureBackends;
 import com.facebook.research.asynchronousratchetingtree.crypto.SignedDHPubKey;
+import org.apache.thrift.TDeserializer;
+import org.apache.thrift.protocol.TCompactProtocol;
 
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 final public class ARTTestImplementation implements GroupMessagingTestImplementation<ARTState> {
 
   public byte[] setupMessageForPeer(ARTState state, DHPubKey[] peers, KeyServer keyServer, int peer) {
-    byte[] setupMessageSerialised = state.getSetupMessage();
-
-    if (setupMessageSerialised == null) {
-      Map<Integer, DHPubKey> preKeys = new HashMap<>();
-      for (int i = 1; i < peers.length; i++) {
-
-        SignedDHPubKey signedPreKey = keyServer.getSignedPreKey(state, i);
-
-        if (!peers[i].verify(signedPreKey.getPubKeyBytes(), signedPreKey.getSignature())) {
-          Utils.except("PreKey signature check failed.");
+    if (state.usesCopathSetup()) {
+      byte[][] copathSetupMessages = state.getCopathSetupMessages();
+      if (copathSetupMessages == null) {
+        CopathSetupMessage[] messages = ART.setupGroupWithCopaths(state, peers, verifiedPreKeys(state, peers, keyServer));
+        copathSetupMessages = new byte[messages.length][];
+        for (int i = 1; i < messages.length; i++) {
+          copathSetupMessages[i] = messages[i].serialise();
         }
-
-        preKeys.put(i, signedPreKey);
+        state.setCopathSetupMessages(copathSetupMessages);
       }
+      return copathSetupMessages[peer];
+    }
+
+    byte[] setupMessageSerialised = state.getSetupMessage();
 
-      AuthenticatedMessage setupMessage = ART.setupGroup(state, peers, preKeys);
-      setupMessageSerialised = setupMessage.serialise();
+    if (setupMessageSerialised == null) {
+      AuthenticatedMessage setupMessage = ART.setupGroup(state, peers, verifiedPreKeys(state, peers, keyServer));
+      setupMessageSerialised = setupMessage.serialise(state.usesFlatCodec());
       state.setSetupMessage(setupMessageSerialised);
     }
     return setupMessageSerialised;
   }
 
+  private Map<Integer, DHPubKey> verifiedPreKeys(ARTState state, DHPubKey[] peers, KeyServer keyServer) {
+    int n = peers.length;
+    DHPubKey[] identities = new DHPubKey[n - 1];
+    byte[][] preKeyBytes = new byte[n - 1][];
+    byte[][] signatures = new byte[n - 1][];
+    Map<Integer, DHPubKey> preKeys = new HashMap<>();
+    for (int i = 1; i < n; i++) {
+      SignedDHPubKey signedPreKey = keyServer.getSignedPreKey(state, i);
+      identities[i - 1] = peers[i];
+      preKeyBytes[i - 1] = signedPreKey.getPubKeyBytes();
+      signatures[i - 1] = signedPreKey.getSignature();
+      preKeys.put(i, signedPreKey);
+    }
+
+    // Check them all at once, which the signature backend may be able to do faster than one by one.
+    if (!SignatureBackends.current().verifyAll(identities, preKeyBytes, signatures)) {
+      Utils.except("PreKey signature check failed.");
+    }
+    return preKeys;
+  }
+
   public void processSetupMessage(ARTState state, byte[] serialisedMessage, int leafNum) {
-    AuthenticatedMessage message = new AuthenticatedMessage(serialisedMessage);
+    if (state.usesCopathSetup()) {
+      ART.processCopathSetupMessage(state, new CopathSetupMessage(serialisedMessage), leafNum);
+      return;
+    }
+    AuthenticatedMessage message = AuthenticatedMessage.decode(serialisedMessage);
     ART.processSetupMessage(state, message, leafNum);
   }
 
   public MessageDistributer sendMessage(ARTState state, byte[] plaintext) {
+    UpdatePolicy policy = state.getUpdatePolicy();
+    if (policy != null && !policy.updateDue()) {
+      SenderChains chains = state.getSenderChains();
+      int index = chains.nextIndex(state.getPeerNum());
+      byte[] key = chains.messageKey(state.getPeerNum(), index);
+      chains.commit(state.getPeerNum(), index);
+      if (state.usesFlatCodec()) {
+        FlatMessageWriter writer = FlatMessageWriter.forChain(
+          state.getPeerNum(),
+          state.getEpochId(),
+          index,
+          encryptedLength(state, plaintext.length),
+          state.usesImplicitNonces()
+        );
+        encrypt(state, plaintext, key, state.getPeerNum(), index, writer.ciphertext());
+        policy.messageSent(false);
+        return new ARTMessageDistributer(writer.array());
+      }
+      byte[] ciphertext = encrypt(state, plaintext, key, state.getPeerNum(), index);
+      policy.messageSent(false);
+      return new ARTMessageDistributer(
+        new CiphertextMessage(state.getPeerNum(), state.getEpochId(), index, ciphertext, state.usesImplicitNonces())
+      );
+    }
+
+    if (state.usesFlatCodec()) {
+      // Frame the update, its MAC and the ciphertext in one buffer as they are produced.
+      FlatMessageWriter writer = ART.updateKey(
+        state,
+        encryptedLength(state, plaintext.length),
+        state.usesImplicitNonces()
+      );
+      if (policy != null) {
+        policy.messageSent(true);
+      }
+      // All peers have the same key, so the "withPeer(0)" aspect of this is a no-op.
+      encrypt(state, plaintext, state.getKeyWithPeer(0), CiphertextMessage.UPDATE_STREAM, 0, writer.ciphertext());
+      return new ARTMessageDistributer(writer.array());
+    }
+
     AuthenticatedMessage updateMessage = ART.updateKey(state);
+    if (policy != null) {
+      policy.messageSent(true);
+    }
 
     // All peers have the same key, so the "withPeer(0)" aspect of this is a no-op.
     byte[] key = state.getKeyWithPeer(0);
-    byte[] ciphertext = Crypto.encrypt(plaintext, key);
+    byte[] ciphertext = encrypt(state, plaintext, key, CiphertextMessage.UPDATE_STREAM, 0);
 
-    CiphertextMessage message = new CiphertextMessage(updateMessage, ciphertext);
+    CiphertextMessage message = new CiphertextMessage(updateMessage, ciphertext, state.usesImplicitNonces());
     return new ARTMessageDistributer(message);
   }
 
+  private static byte[] encrypt(ARTState state, byte[] plaintext, byte[] key, int stream, long counter) {
+    if (state.usesImplicitNonces()) {
+      return Crypto.encrypt(state.getAeadSuite(), plaintext, key, stream, counter);
+    }
+    return Crypto.encrypt(state.getAeadSuite(), plaintext, key);
+  }
+
+  private static void encrypt(ARTState state, byte[] plaintext, byte[] key, int stream, long counter, ByteBuffer out) {
+    if (state.usesImplicitNonces()) {
+      Crypto.encrypt(state.getAeadSuite(), ByteBuffer.wrap(plaintext), key, stream, counter, out);
+    } else {
+      Crypto.encrypt(state.getAeadSuite(), ByteBuffer.wrap(plaintext), key, out);
+    }
+  }
+
+  private static int encryptedLength(ARTState state, int plaintextLength) {
+    if (state.usesImplicitNonces()) {
+      return CryptoContext.implicitNonceEncryptedLength(plaintextLength);
+    }
+    return CryptoContext.encryptedLength(plaintextLength);
+  }
+
   public byte[] receiveMessage(ARTState state, byte[] serialisedMessage) {
-    CiphertextMessage message = new CiphertextMessage(serialisedMessage);
-    ART.processUpdateMessage(state, message.getAuthenticatedMessage());
+    CiphertextMessage message = CiphertextMessage.decode(serialisedMessage);
+    if (message.isChainMessage()) {
+      // Only move the chain on once the message has proved genuine by decrypting.
+      SenderChains chains = state.getSenderChains(message.getEpochId());
+      byte[] key = chains.messageKey(message.getSenderLeaf(), message.getChainIndex());
+      byte[] plaintext = message.decrypt(state.getAeadSuite(), key);
+      chains.commit(message.getSenderLeaf(), message.getChainIndex());
+      return plaintext;
+    }
+    AuthenticatedMessage update = message.getAuthenticatedMessage();
+    if (state.getEpochHistory() == null) {
+      ART.processUpdateMessage(state, update);
+    } else if (ART.isFromCurrentEpoch(state, update)) {
+      ART.processUpdateMessage(state, update, true);
+    } else {
+      byte[] key = ART.processLateUpdateMessage(state, update);
+      return message.decrypt(state.getAeadSuite(), key);
+    }
 
     // All peers have the same key, so the "withPeer(0)" aspect of this is a no-op.
     byte[] key = state.getKeyWithPeer(0);
-    return Crypto.decrypt(message.getCiphertext(), key);
+    return message.decrypt(state.getAeadSuite(), key);
+  }
+
+  /**
+   * Catch up on a queue of messages in one pass: decode them all with one deserialiser or flat reader, apply the
+   * updates with ART.processUpdateMessages, then decrypt everything.
+   */
+  @Override
+  public List<byte[]> receiveMessages(ARTState state, List<byte[]> serialisedMessages) {
+    int count = serialisedMessages.size();
+    TDeserializer deserialiser = new TDeserializer(new TCompactProtocol.Factory());
+    CiphertextMessageStruct struct = new CiphertextMessageStruct();
+    FlatMessageReader reader = new FlatMessageReader();
+    List<AuthenticatedMessage> updateMessages = new ArrayList<>(count);
+    List<CiphertextMessage> messages = new ArrayList<>(count);
+
+    for (byte[] serialisedMessage : serialisedMessages) {
+      CiphertextMessage message;
+      if (FlatMessageReader.isFlat(serialisedMessage)) {
+        message = new CiphertextMessage(reader.wrap(ByteBuffer.wrap(serialisedMessage)));
+      } else {
+        struct.clear();
+        Utils.deserialise(deserialiser, struct, serialisedMessage);
+        message = new CiphertextMessage(struct);
+      }
+      if (message.isChainMessage()) {
+        // Chain messages have to be interleaved with the updates around them, so take them one at a time.
+        return GroupMessagingTestImplementation.super.receiveMessages(state, serialisedMessages);
+      }
+      updateMessages.add(message.getAuthenticatedMessage());
+      messages.add(message);
+    }
+
+    List<byte[]> keys = ART.processUpdateMessages(state, updateMessages);
+
+    List<byte[]> plaintexts = new ArrayList<>(count);
+    for (int i = 0; i < count; i++) {
+      plaintexts.add(messages.get(i).decrypt(state.getAeadSuite(), keys.get(i)));
+    }
+    return plaintexts;
   }
 }
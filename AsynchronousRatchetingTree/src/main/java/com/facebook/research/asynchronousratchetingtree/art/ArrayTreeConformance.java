@@ -0,0 +1,92 @@
+/**
+ * Copyright (c) 2017-present, Facebook, Inc.
+ * All rights reserved.
+ *
+ * This source code is licensed under the license found in the
+ * LICENSE file in the root directory of this source tree.
+*/
+
+package com.facebook.research.asynchronousratchetingtree.art;
+
+import com.facebook.research.asynchronousratchetingtree.Utils;
+import com.facebook.research.asynchronousratchetingtree.art.tree.*;
+import com.facebook.research.asynchronousratchetingtree.crypto.DHKeyPair;
+import com.facebook.research.asynchronousratchetingtree.crypto.DHPubKey;
+
+import java.security.SecureRandom;
+import java.util.Arrays;
+
+/**
+ * Checks that ArrayTree behaves exactly like the object tree that ART builds, by running the same operations on both
+ * and comparing the resulting public trees, root secrets and tree hashes after every step.
+ */
+final public class ArrayTreeConformance {
+  private static SecureRandom random = new SecureRandom();
+
+  public static void run(int maxLeaves, int updatesPerSize) {
+    for (int n = 2; n <= maxLeaves; n = n < 64 ? n + 1 : n * 2 + 1) {
+      checkGroupSize(n, updatesPerSize);
+    }
+    Utils.print("ArrayTree matches the object tree for groups of up to " + maxLeaves + " members.");
+  }
+
+  private static void checkGroupSize(int n, int updates) {
+    DHKeyPair[] leaves = new DHKeyPair[n];
+    for (int i = 0; i < n; i++) {
+      leaves[i] = DHKeyPair.generate(false);
+    }
+
+    // The initiator's view.
+    SecretNode initiatorTree = ART.createTree(leaves);
+    ArrayTree initiatorArray = ArrayTree.create(leaves, 0);
+    check(n, "create", initiatorTree, initiatorArray);
+
+    // Another member's view, starting from the public tree in the setup message.
+    int member = 1 + random.nextInt(n - 1);
+    Node publicTree = Node.fromThrift(Node.toThrift(initiatorTree));
+    SecretNode memberTree = ART.updateTreeWithSecretLeaf(publicTree, member, new SecretLeafNode(leaves[member]));
+    ArrayTree memberArray = ArrayTree.fromPublicTree(publicTree, member, leaves[member]);
+    check(n, "setup", memberTree, memberArray);
+    check(n, "setup", initiatorTree, memberArray.toNode(), memberArray.getTreeHash());
+
+    for (int u = 0; u < updates; u++) {
+      // The member updates its own leaf, and the initiator applies the update.
+      DHKeyPair newLeaf = DHKeyPair.generate(false);
+      memberTree = ART.updateTreeWithSecretLeaf(memberTree, member, new SecretLeafNode(newLeaf));
+      memberArray.setSecretLeaf(newLeaf);
+      check(n, "update", memberTree, memberArray);
+
+      DHPubKey[] path = ART.pathNodeKeys(memberTree, member);
+      DHPubKey[] arrayPath = memberArray.pathNodeKeys(member);
+      if (path.length != arrayPath.length) {
+        Utils.except("Path lengths differ for " + n + " leaves.");
+      }
+      for (int i = 0; i < path.length; i++) {
+        if (!Arrays.equals(path[i].getPubKeyBytes(), arrayPath[i].getPubKeyBytes())) {
+          Utils.except("Path keys differ for " + n + " leaves.");
+        }
+      }
+
+      initiatorTree = (SecretNode) ART.updateTreeWithPublicPath(initiatorTree, member, path, 0);
+      initiatorArray.updateWithPublicPath(member, arrayPath);
+      check(n, "process update", initiatorTree, initiatorArray);
+      check(n, "process update", memberTree, initiatorArray.toNode(), initiatorArray.getTreeHash());
+    }
+  }
+
+  private static void check(int n, String step, SecretNode tree, ArrayTree array) {
+    if (!Arrays.equals(((SecretParentNode) tree).getRawSecretKey(), array.getRawSecretKey())) {
+      Utils.except("Root secrets differ after " + step + " with " + n + " leaves.");
+    }
+    check(n, step, tree, array.toNode(), array.getTreeHash());
+  }
+
+  private static void check(int n, String step, Node tree, Node arrayAsNode, byte[] arrayTreeHash) {
+    if (!Node.toThrift(tree).equals(Node.toThrift(arrayAsNode))) {
+      Utils.except("Public trees differ after " + step + " with " + n + " leaves.");
+    }
+    if (!Arrays.equals(tree.getTreeHash(), arrayTreeHash)) {
+      Utils.except("Tree hashes differ after " + step + " with " + n + " leaves.");
+    }
+  }
+}
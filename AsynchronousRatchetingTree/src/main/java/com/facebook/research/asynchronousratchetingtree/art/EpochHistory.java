@@ -0,0 +1,144 @@
+/**
+ * Copyright (c) 2017-present, Facebook, Inc.
+ * All rights reserved.
+ *
+ * This source code is licensed under the license found in the
+ * LICENSE file in the root directory of this source tree.
+*/
+
+package com.facebook.research.asynchronousratchetingtree.art;
+
+import com.facebook.research.asynchronousratchetingtree.Utils;
+import com.facebook.research.asynchronousratchetingtree.art.tree.SecretNode;
+import com.facebook.research.asynchronousratchetingtree.crypto.KeySchedule;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * The last few epochs a member has been through, each as its stage key, tree and sender chains, so that messages sent
+ * from an epoch the member has since moved past can still be processed. Trees are never mutated and an update only
+ * copies the path it changes, so each retained epoch shares all but O(log n) nodes with the one after it.
+ *
+ * Epochs are dropped oldest first once there are more than maxEpochs of them; the current epoch is always kept. The
+ * limit is a count rather than a size, since what an epoch really costs depends on how many of its nodes are shared
+ * with other members' trees or still sit undecoded in a lazily read setup message. Anything retained here is secret
+ * material that forward secrecy would otherwise have erased, so the limit should be as tight as delivery allows.
+ *
+ * Epochs are found by id (see KeySchedule.getId) rather than by number, since concurrent updates leave members on
+ * different keys for the same number. A late update that this member applied to a retained epoch, rather than to its
+ * current one, starts an epoch off the member's own line: the one its sender and everyone who took that update are in.
+ * Those branch epochs are kept apart, up to maxEpochs of them, so that they can't push the member's own line out, and
+ * their sender chains can be found like any other's.
+ *
+ * Only the object tree engine keeps the persistent trees this needs; ARTState refuses a history for a member that
+ * uses the array engine.
+ */
+final public class EpochHistory {
+  private final int maxEpochs;
+  private final ArrayDeque<Epoch> epochs = new ArrayDeque<>();
+  private final ArrayDeque<Epoch> branches = new ArrayDeque<>();
+
+  public EpochHistory(int maxEpochs) {
+    if (maxEpochs < 1) {
+      Utils.except("Epoch history must keep at least the current epoch.");
+    }
+    this.maxEpochs = maxEpochs;
+  }
+
+  void add(KeySchedule keySchedule, SecretNode tree) {
+    epochs.addLast(new Epoch(keySchedule, tree));
+    while (epochs.size() > maxEpochs) {
+      epochs.removeFirst();
+    }
+  }
+
+  /**
+   * Record the epoch a late update leads to, unless it is already known.
+   */
+  void addBranch(KeySchedule keySchedule, SecretNode tree) {
+    if (find(keySchedule.getId()) != null) {
+      return;
+    }
+    branches.addLast(new Epoch(keySchedule, tree));
+    while (branches.size() > maxEpochs) {
+      branches.removeFirst();
+    }
+  }
+
+  /**
+   * The number of epochs retained on this member's own line, not counting branches.
+   */
+  public int size() {
+    return epochs.size();
+  }
+
+  /**
+   * The stage key of this member's own epoch with the given number, or null if it is no longer retained.
+   */
+  public byte[] getStageKey(int number) {
+    for (Epoch epoch : epochs) {
+      if (epoch.number == number) {
+        return epoch.stageKey;
+      }
+    }
+    return null;
+  }
+
+  /**
+   * The sender chains of the epoch with the given id, started on first use, or null if the epoch is not retained.
+   */
+  public SenderChains getSenderChains(int id) {
+    Epoch epoch = find(id);
+    if (epoch == null) {
+      return null;
+    }
+    if (epoch.senderChains == null) {
+      epoch.senderChains = new SenderChains(epoch.keySchedule);
+    }
+    return epoch.senderChains;
+  }
+
+  private Epoch find(int id) {
+    for (Epoch epoch : epochs) {
+      if (epoch.id == id) {
+        return epoch;
+      }
+    }
+    for (Epoch epoch : branches) {
+      if (epoch.id == id) {
+        return epoch;
+      }
+    }
+    return null;
+  }
+
+  /**
+   * This member's own epochs, newest first, then the branches, newest first.
+   */
+  Iterator<Epoch> newestFirst() {
+    List<Epoch> all = new ArrayList<>(epochs.size() + branches.size());
+    epochs.descendingIterator().forEachRemaining(all::add);
+    branches.descendingIterator().forEachRemaining(all::add);
+    return all.iterator();
+  }
+
+  static final class Epoch {
+    final int number;
+    final int id;
+    final byte[] stageKey;
+    final KeySchedule keySchedule;
+    final SecretNode tree;
+    SenderChains senderChains;
+
+    Epoch(KeySchedule keySchedule, SecretNode tree) {
+      this.number = keySchedule.getEpoch();
+      this.id = keySchedule.getId();
+      this.stageKey = keySchedule.getKey();
+      this.keySchedule = keySchedule;
+      this.tree = tree;
+    }
+  }
+}
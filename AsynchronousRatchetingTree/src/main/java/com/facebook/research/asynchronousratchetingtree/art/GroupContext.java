@@ -0,0 +1,40 @@
+/**
+ * Copyright (c) 2017-present, Facebook, Inc.
+ * All rights reserved.
+ *
+ * This source code is licensed under the license found in the
+ * LICENSE file in the root directory of this source tree.
+*/
+
+package com.facebook.research.asynchronousratchetingtree.art;
+
+import com.facebook.research.asynchronousratchetingtree.crypto.Crypto;
+import com.facebook.research.asynchronousratchetingtree.crypto.DHPubKey;
+
+import java.security.MessageDigest;
+
+/**
+ * The membership of a group, together with a digest of every member's identity key in leaf order. The digest is what
+ * stage keys are bound to, so it is computed once when the membership is set rather than on every update.
+ */
+final public class GroupContext {
+  private final DHPubKey[] identities;
+  private final byte[] digest;
+
+  public GroupContext(DHPubKey[] identities) {
+    this.identities = identities;
+    MessageDigest md = Crypto.startSHA256();
+    for (DHPubKey identity : identities) {
+      md.update(identity.getPubKeyBytes());
+    }
+    this.digest = md.digest();
+  }
+
+  public DHPubKey[] getIdentities() {
+    return identities;
+  }
+
+  public byte[] getDigest() {
+    return digest;
+  }
+}
@@ -0,0 +1,140 @@
+/**
+ * Copyright (c) 2017-present, Facebook, Inc.
+ * All rights reserved.
+ *
+ * This source code is licensed under the license found in the
+ * LICENSE file in the root directory of this source tree.
+*/
+
+package com.facebook.research.asynchronousratchetingtree.art;
+
+import com.facebook.research.asynchronousratchetingtree.Utils;
+import com.facebook.research.asynchronousratchetingtree.crypto.Crypto;
+import com.facebook.research.asynchronousratchetingtree.crypto.CryptoContext;
+import com.facebook.research.asynchronousratchetingtree.crypto.KeySchedule;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Symmetric hash ratchets for one epoch, one per sender, all seeded from the epoch's stage key. Sending on a chain costs
+ * a couple of HMACs rather than the log n Diffie-Hellman operations and stage key derivation of a tree update.
+ *
+ * Each message key is derived from the chain key, which is then ratcheted forward and the old one forgotten. Looking a
+ * key up leaves the chain alone; only once the message has decrypted does the receiver commit it, so a forged message
+ * can't move a chain past keys that real messages still need. The keys a committed message skips over are kept, up to
+ * MAX_SKIPPED of them, for messages that arrive out of order, as in Signal's double ratchet.
+ */
+final public class SenderChains {
+  private static final byte[] CHAIN_LABEL = "ART sender chain".getBytes(StandardCharsets.UTF_8);
+  private static final byte[] MESSAGE_KEY_INPUT = {1};
+  private static final byte[] CHAIN_KEY_INPUT = {2};
+  // Don't let a single message make us derive an unbounded number of keys.
+  private static final int MAX_SKIP = 1 << 12;
+  // Nor keep an unbounded number of them around; the oldest are dropped first.
+  private static final int MAX_SKIPPED = 1 << 12;
+
+  private final KeySchedule stageKey;
+  private final Map<Integer, Chain> chains = new HashMap<>();
+  private final LinkedHashMap<Long, byte[]> skipped = new LinkedHashMap<>();
+
+  public SenderChains(KeySchedule stageKey) {
+    this.stageKey = stageKey;
+  }
+
+  public int nextIndex(int sender) {
+    return chain(sender).nextIndex;
+  }
+
+  /**
+   * The key for the given sender's message with the given index in this epoch. Nothing changes until the key is
+   * committed.
+   */
+  public byte[] messageKey(int sender, int index) {
+    Chain chain = chain(sender);
+    if (index < chain.nextIndex) {
+      byte[] messageKey = skipped.get(position(sender, index));
+      if (messageKey == null) {
+        Utils.except("Chain message " + index + " from " + sender + " has already been used or its key dropped.");
+      }
+      return messageKey;
+    }
+    if (index - chain.nextIndex > MAX_SKIP) {
+      Utils.except("Chain message " + index + " from " + sender + " is too far ahead.");
+    }
+    byte[] key = chain.key;
+    if (chain.nextIndex < index) {
+      key = key.clone();
+      for (int i = chain.nextIndex; i < index; i++) {
+        ratchet(key);
+      }
+    }
+    return Crypto.hmacSha256(MESSAGE_KEY_INPUT, key);
+  }
+
+  /**
+   * Mark the given message's key as used, once the message is known to be genuine. The chain moves past it, keeping
+   * the keys of any messages it skips.
+   */
+  public void commit(int sender, int index) {
+    Chain chain = chain(sender);
+    if (index < chain.nextIndex) {
+      if (skipped.remove(position(sender, index)) == null) {
+        Utils.except("Chain message " + index + " from " + sender + " has already been used or its key dropped.");
+      }
+      return;
+    }
+    if (index - chain.nextIndex > MAX_SKIP) {
+      Utils.except("Chain message " + index + " from " + sender + " is too far ahead.");
+    }
+    while (chain.nextIndex < index) {
+      skipped.put(position(sender, chain.nextIndex), Crypto.hmacSha256(MESSAGE_KEY_INPUT, chain.key));
+      chain.advance();
+    }
+    chain.advance();
+    if (skipped.size() > MAX_SKIPPED) {
+      Iterator<byte[]> oldest = skipped.values().iterator();
+      while (skipped.size() > MAX_SKIPPED) {
+        oldest.next();
+        oldest.remove();
+      }
+    }
+  }
+
+  private static long position(int sender, int index) {
+    return ((long) sender << 32) | (index & 0xffffffffL);
+  }
+
+  private Chain chain(int sender) {
+    Chain chain = chains.get(sender);
+    if (chain == null) {
+      byte[] seed = ByteBuffer.allocate(CHAIN_LABEL.length + 4).put(CHAIN_LABEL).putInt(sender).array();
+      chain = new Chain(stageKey.hmacSha256(seed));
+      chains.put(sender, chain);
+    }
+    return chain;
+  }
+
+  private static void ratchet(byte[] key) {
+    // Overwriting the key in place is also what forgets the old one.
+    CryptoContext.get().hmacSha256(CHAIN_KEY_INPUT, key, key, 0);
+  }
+
+  private static final class Chain {
+    private final byte[] key;
+    private int nextIndex = 0;
+
+    Chain(byte[] key) {
+      this.key = key;
+    }
+
+    void advance() {
+      ratchet(key);
+      nextIndex++;
+    }
+  }
+}
@@ -0,0 +1,48 @@
+/**
+ * Copyright (c) 2017-present, Facebook, Inc.
+ * All rights reserved.
+ *
+ * This source code is licensed under the license found in the
+ * LICENSE file in the root directory of this source tree.
+*/
+
+package com.facebook.research.asynchronousratchetingtree.art;
+
+import com.facebook.research.asynchronousratchetingtree.Utils;
+
+/**
+ * Decides which of a member's messages update its leaf and which are only sent on its sender chain. The first message
+ * a member sends always updates, and after that one in every maxMessages does, or the next one once maxNanos have
+ * passed since the last update, whichever comes first.
+ */
+final public class UpdatePolicy {
+  private final int maxMessages;
+  private final long maxNanos;
+  private boolean updatedYet = false;
+  private int messagesSinceUpdate = 0;
+  private long lastUpdate;
+
+  public UpdatePolicy(int maxMessages, long maxNanos) {
+    if (maxMessages < 1) {
+      Utils.except("A member must update at least every message.");
+    }
+    this.maxMessages = maxMessages;
+    this.maxNanos = maxNanos;
+  }
+
+  public boolean updateDue() {
+    return !updatedYet
+      || messagesSinceUpdate + 1 >= maxMessages
+      || System.nanoTime() - lastUpdate >= maxNanos;
+  }
+
+  public void messageSent(boolean updated) {
+    if (updated) {
+      updatedYet = true;
+      messagesSinceUpdate = 0;
+      lastUpdate = System.nanoTime();
+    } else {
+      messagesSinceUpdate++;
+    }
+  }
+}
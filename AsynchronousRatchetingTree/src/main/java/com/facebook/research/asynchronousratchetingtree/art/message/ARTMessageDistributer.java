@@ -14,7 +14,18 @@ public class ARTMessageDistributer implements MessageDistributer {
   private byte[] serialised;
 
   public ARTMessageDistributer(CiphertextMessage updateMessage) {
-    serialised = updateMessage.serialise();
+    this(updateMessage, false);
+  }
+
+  public ARTMessageDistributer(CiphertextMessage updateMessage, boolean flat) {
+    serialised = updateMessage.serialise(flat);
+  }
+
+  /**
+   * A message that was framed as it was built; see FlatMessageWriter.
+   */
+  public ARTMessageDistributer(byte[] serialised) {
+    this.serialised = serialised;
   }
 
   @Override
@@ -11,14 +11,25 @@ package com.facebook.research.asynchronousratchetingtree.art.message;
 import com.facebook.research.asynchronousratchetingtree.Utils;
 import com.facebook.research.asynchronousratchetingtree.art.message.thrift.AuthenticatedMessageStruct;
 
+import java.nio.ByteBuffer;
+
+/**
+ * The message and authenticator are kept as buffers, so that one decoded from the flat format can keep views into the
+ * bytes it arrived in. getMessage and getAuthenticator copy a view out only when it doesn't span a whole array.
+ */
 public class AuthenticatedMessage {
-  private byte[] message;
-  private byte[] authenticator;
+  private ByteBuffer message;
+  private ByteBuffer authenticator;
+  private byte[] messageBytes;
 
   public AuthenticatedMessage(
     byte[] message,
     byte[] authenticator
   ) {
+    this(ByteBuffer.wrap(message), ByteBuffer.wrap(authenticator));
+  }
+
+  public AuthenticatedMessage(ByteBuffer message, ByteBuffer authenticator) {
     this.message = message;
     this.authenticator = authenticator;
   }
@@ -27,31 +38,98 @@ public class AuthenticatedMessage {
     AuthenticatedMessageStruct struct = new AuthenticatedMessageStruct();
     Utils.deserialise(struct, thriftSerialised);
 
-    message = struct.getMessage();
-    authenticator = struct.getAuthenticator();
+    message = ByteBuffer.wrap(struct.getMessage());
+    authenticator = ByteBuffer.wrap(struct.getAuthenticator());
   }
 
   public AuthenticatedMessage(AuthenticatedMessageStruct struct) {
-    message = struct.getMessage();
-    authenticator = struct.getAuthenticator();
+    // Thrift decodes binary fields as views into the serialised message, which the getters would copy out.
+    message = struct.message;
+    authenticator = struct.authenticator;
+  }
+
+  /**
+   * Decode an authenticated message in either wire format; see FlatMessageReader.
+   */
+  public static AuthenticatedMessage decode(byte[] serialised) {
+    if (FlatMessageReader.isFlat(serialised)) {
+      FlatMessageReader reader = new FlatMessageReader().wrap(ByteBuffer.wrap(serialised));
+      if (reader.getTag() != FlatMessageReader.AUTHENTICATED) {
+        Utils.except("Flat message is not an authenticated message.");
+      }
+      return new AuthenticatedMessage(reader.update(), reader.authenticator());
+    }
+    return new AuthenticatedMessage(serialised);
   }
 
   public byte[] getMessage() {
-    return message;
+    if (messageBytes == null) {
+      messageBytes = bytes(message);
+    }
+    return messageBytes;
   }
 
   public byte[] getAuthenticator() {
+    return bytes(authenticator);
+  }
+
+  /**
+   * The message as it was received. The buffer is shared, so read it with absolute gets or through a duplicate.
+   */
+  public ByteBuffer getMessageView() {
+    return message;
+  }
+
+  public ByteBuffer getAuthenticatorView() {
     return authenticator;
   }
 
+  private static byte[] bytes(ByteBuffer view) {
+    if (view.hasArray() && view.arrayOffset() + view.position() == 0 && view.remaining() == view.array().length) {
+      return view.array();
+    }
+    byte[] result = new byte[view.remaining()];
+    view.duplicate().get(result);
+    return result;
+  }
+
   public AuthenticatedMessageStruct getThriftStruct() {
     AuthenticatedMessageStruct struct = new AuthenticatedMessageStruct();
-    struct.setMessage(message);
-    struct.setAuthenticator(authenticator);
+    // Assigned directly, as the setters would copy them.
+    struct.message = message;
+    struct.authenticator = authenticator;
     return struct;
   }
 
   public byte[] serialise() {
     return Utils.serialise(getThriftStruct());
   }
+
+  public byte[] serialise(boolean flat) {
+    return flat ? serialiseFlat() : serialise();
+  }
+
+  public byte[] serialiseFlat() {
+    ByteBuffer out = ByteBuffer.allocate(1 + flatBodyLength());
+    out.put(FlatMessageReader.AUTHENTICATED);
+    putFlatBody(out);
+    return out.array();
+  }
+
+  /**
+   * The flat layout without its tag, as embedded in a flat ciphertext message.
+   */
+  int flatBodyLength() {
+    return 4 + message.remaining() + 1 + authenticator.remaining();
+  }
+
+  void putFlatBody(ByteBuffer out) {
+    if (authenticator.remaining() > 0xff) {
+      Utils.except("Authenticator is too long for the flat format.");
+    }
+    out.putInt(message.remaining());
+    out.put(message.duplicate());
+    out.put((byte) authenticator.remaining());
+    out.put(authenticator.duplicate());
+  }
 }
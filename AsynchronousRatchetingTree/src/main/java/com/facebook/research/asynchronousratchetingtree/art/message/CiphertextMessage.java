@@ -10,21 +10,111 @@ package com.facebook.research.asynchronousratchetingtree.art.message;
 
 import com.facebook.research.asynchronousratchetingtree.Utils;
 import com.facebook.research.asynchronousratchetingtree.art.message.thrift.CiphertextMessageStruct;
+import com.facebook.research.asynchronousratchetingtree.crypto.AeadSuite;
+import com.facebook.research.asynchronousratchetingtree.crypto.Crypto;
+import com.facebook.research.asynchronousratchetingtree.crypto.CryptoContext;
 
+import java.nio.ByteBuffer;
+
+/**
+ * The ciphertext is framed one of two ways. By default it starts with a random nonce. With an implicit nonce it is
+ * just ciphertext || tag, and the nonce is rebuilt from the message's place in its epoch: the update payload that
+ * opens an epoch is counter 0 on UPDATE_STREAM, and chain messages are their chain index on the stream numbered by the
+ * sender's leaf. Every key involved encrypts exactly one message, so a nonce never repeats under a key. Chain messages
+ * also name their epoch by its id (see KeySchedule.getId), so that a receiver that has moved on since, or that took a
+ * different one of two concurrent updates, can still find the chains they were sent on.
+ *
+ * A decoded message keeps its ciphertext as a view into the buffer it was decoded from, rather than a copy, and
+ * decrypts straight out of it. A message decoded from the flat format keeps views of its update and MAC as well.
+ */
 public class CiphertextMessage {
+  public static final int UPDATE_STREAM = -1;
+
   private AuthenticatedMessage authenticatedMessage;
-  private byte[] ciphertext;
+  private ByteBuffer ciphertext;
+  private int senderLeaf = -1;
+  private int epochId = -1;
+  private int chainIndex = -1;
+  private boolean implicitNonce = false;
 
   public CiphertextMessage(AuthenticatedMessage authenticatedMessage, byte[] ciphertext) {
+    this(authenticatedMessage, ciphertext, false);
+  }
+
+  public CiphertextMessage(AuthenticatedMessage authenticatedMessage, byte[] ciphertext, boolean implicitNonce) {
     this.authenticatedMessage = authenticatedMessage;
-    this.ciphertext = ciphertext;
+    this.ciphertext = ByteBuffer.wrap(ciphertext);
+    this.implicitNonce = implicitNonce;
+  }
+
+  /**
+   * A message sent on the sender's chain, which carries no tree update.
+   */
+  public CiphertextMessage(int senderLeaf, int epochId, int chainIndex, byte[] ciphertext) {
+    this(senderLeaf, epochId, chainIndex, ciphertext, false);
+  }
+
+  public CiphertextMessage(int senderLeaf, int epochId, int chainIndex, byte[] ciphertext, boolean implicitNonce) {
+    this.senderLeaf = senderLeaf;
+    this.epochId = epochId;
+    this.chainIndex = chainIndex;
+    this.ciphertext = ByteBuffer.wrap(ciphertext);
+    this.implicitNonce = implicitNonce;
   }
 
   public CiphertextMessage(byte[] thriftSerialised) {
+    this(deserialise(thriftSerialised));
+  }
+
+  public CiphertextMessage(CiphertextMessageStruct struct) {
+    if (struct.isSetAuthenticatedMessage()) {
+      authenticatedMessage = new AuthenticatedMessage(struct.getAuthenticatedMessage());
+    }
+    if (struct.isSetSenderLeaf() && struct.isSetEpochId() && struct.isSetChainIndex()) {
+      senderLeaf = struct.getSenderLeaf();
+      epochId = struct.getEpochId();
+      chainIndex = struct.getChainIndex();
+    }
+    if (authenticatedMessage == null && senderLeaf < 0) {
+      Utils.except("Ciphertext message has neither an update nor a chain position.");
+    }
+    // Thrift decodes binary fields as views into the serialised message, so this doesn't copy.
+    ciphertext = struct.ciphertext;
+    implicitNonce = struct.isSetImplicitNonce() && struct.isImplicitNonce();
+  }
+
+  /**
+   * Take the message a reader is pointed at, keeping views into its buffer rather than copies.
+   */
+  public CiphertextMessage(FlatMessageReader reader) {
+    if (reader.getTag() != FlatMessageReader.CIPHERTEXT) {
+      Utils.except("Flat message is not a ciphertext message.");
+    }
+    if (reader.isChainMessage()) {
+      senderLeaf = reader.getSenderLeaf();
+      epochId = reader.getEpochId();
+      chainIndex = reader.getChainIndex();
+    } else {
+      authenticatedMessage = new AuthenticatedMessage(reader.update(), reader.authenticator());
+    }
+    ciphertext = reader.ciphertext();
+    implicitNonce = reader.hasImplicitNonce();
+  }
+
+  /**
+   * Decode a ciphertext message in either wire format, which are told apart by the first byte; see FlatMessageReader.
+   */
+  public static CiphertextMessage decode(byte[] serialised) {
+    if (FlatMessageReader.isFlat(serialised)) {
+      return new CiphertextMessage(new FlatMessageReader().wrap(ByteBuffer.wrap(serialised)));
+    }
+    return new CiphertextMessage(serialised);
+  }
+
+  private static CiphertextMessageStruct deserialise(byte[] thriftSerialised) {
     CiphertextMessageStruct struct = new CiphertextMessageStruct();
     Utils.deserialise(struct, thriftSerialised);
-    authenticatedMessage = new AuthenticatedMessage(struct.getAuthenticatedMessage());
-    ciphertext = struct.getCiphertext();
+    return struct;
   }
 
   public AuthenticatedMessage getAuthenticatedMessage() {
@@ -32,13 +122,104 @@ public class CiphertextMessage {
   }
 
   public byte[] getCiphertext() {
-    return ciphertext;
+    byte[] result = new byte[ciphertext.remaining()];
+    ciphertext.duplicate().get(result);
+    return result;
+  }
+
+  public boolean isChainMessage() {
+    return authenticatedMessage == null;
+  }
+
+  public int getSenderLeaf() {
+    return senderLeaf;
+  }
+
+  public int getEpochId() {
+    return epochId;
+  }
+
+  public int getChainIndex() {
+    return chainIndex;
+  }
+
+  public boolean hasImplicitNonce() {
+    return implicitNonce;
+  }
+
+  public int getNonceStream() {
+    return isChainMessage() ? senderLeaf : UPDATE_STREAM;
+  }
+
+  public long getNonceCounter() {
+    return isChainMessage() ? chainIndex : 0;
+  }
+
+  public int getPlaintextLength() {
+    int overhead = CryptoContext.TAG_LENGTH + (implicitNonce ? 0 : CryptoContext.NONCE_LENGTH);
+    return ciphertext.remaining() - overhead;
+  }
+
+  /**
+   * Decrypt with the given message key and the group's AEAD suite, whichever way the ciphertext is framed.
+   */
+  public byte[] decrypt(AeadSuite suite, byte[] key) {
+    byte[] plaintext = new byte[getPlaintextLength()];
+    decrypt(suite, key, ByteBuffer.wrap(plaintext));
+    return plaintext;
+  }
+
+  /**
+   * Decrypt into the given buffer, heap or direct, at its position. Returns the plaintext length written.
+   */
+  public int decrypt(AeadSuite suite, byte[] key, ByteBuffer out) {
+    if (implicitNonce) {
+      return Crypto.decrypt(suite, ciphertext.duplicate(), key, getNonceStream(), getNonceCounter(), out);
+    }
+    return Crypto.decrypt(suite, ciphertext.duplicate(), key, out);
   }
 
   public byte[] serialise() {
     CiphertextMessageStruct struct = new CiphertextMessageStruct();
-    struct.setAuthenticatedMessage(authenticatedMessage.getThriftStruct());
-    struct.setCiphertext(ciphertext);
+    if (authenticatedMessage != null) {
+      struct.setAuthenticatedMessage(authenticatedMessage.getThriftStruct());
+    } else {
+      struct.setSenderLeaf(senderLeaf);
+      struct.setEpochId(epochId);
+      struct.setChainIndex(chainIndex);
+    }
+    // Assigned directly, as the setter would copy it.
+    struct.ciphertext = ciphertext;
+    if (implicitNonce) {
+      struct.setImplicitNonce(true);
+    }
     return Utils.serialise(struct);
   }
+
+  public byte[] serialiseFlat() {
+    int flags = implicitNonce ? FlatMessageReader.IMPLICIT_NONCE : 0;
+    int length = 2 + ciphertext.remaining();
+    if (authenticatedMessage != null) {
+      length += authenticatedMessage.flatBodyLength();
+    } else {
+      flags |= FlatMessageReader.CHAIN;
+      length += 12;
+    }
+    ByteBuffer out = ByteBuffer.allocate(length);
+    out.put(FlatMessageReader.CIPHERTEXT);
+    out.put((byte) flags);
+    if (authenticatedMessage != null) {
+      authenticatedMessage.putFlatBody(out);
+    } else {
+      out.putInt(senderLeaf);
+      out.putInt(epochId);
+      out.putInt(chainIndex);
+    }
+    out.put(ciphertext.duplicate());
+    return out.array();
+  }
+
+  public byte[] serialise(boolean flat) {
+    return flat ? serialiseFlat() : serialise();
+  }
 }
@@ -0,0 +1,197 @@
+/**
+ * Copyright (c) 2017-present, Facebook, Inc.
+ * All rights reserved.
+ *
+ * This source code is licensed under the license found in the
+ * LICENSE file in the root directory of this source tree.
+*/
+
+package com.facebook.research.asynchronousratchetingtree.art.message;
+
+import com.facebook.research.asynchronousratchetingtree.Utils;
+
+/**
+ * Walks the Thrift compact encoding of a struct in place, without building any objects for the fields it passes over.
+ * This only locates fields and skips them; anything that should actually be decoded is handed to Thrift, or read
+ * straight out of the buffer by the caller.
+ */
+final public class CompactReader {
+  public static final int STOP = 0;
+  public static final int BOOLEAN_TRUE = 1;
+  public static final int BOOLEAN_FALSE = 2;
+  public static final int BYTE = 3;
+  public static final int I16 = 4;
+  public static final int I32 = 5;
+  public static final int I64 = 6;
+  public static final int DOUBLE = 7;
+  public static final int BINARY = 8;
+  public static final int LIST = 9;
+  public static final int SET = 10;
+  public static final int MAP = 11;
+  public static final int STRUCT = 12;
+
+  private final byte[] buffer;
+  private int position;
+  private int lastFieldId = 0;
+  private int fieldId;
+  private int fieldType;
+
+  public CompactReader(byte[] buffer, int position) {
+    this.buffer = buffer;
+    this.position = position;
+  }
+
+  public byte[] getBuffer() {
+    return buffer;
+  }
+
+  public int position() {
+    return position;
+  }
+
+  /**
+   * Call on entering a nested struct. Field ids are delta-encoded per struct, so the returned value has to be passed
+   * back to endStruct once the nested struct has been read.
+   */
+  public int beginStruct() {
+    int saved = lastFieldId;
+    lastFieldId = 0;
+    return saved;
+  }
+
+  public void endStruct(int saved) {
+    lastFieldId = saved;
+  }
+
+  /**
+   * Read the next field header of the current struct, returning false once its end has been reached.
+   */
+  public boolean nextField() {
+    int header = readByte();
+    fieldType = header & 0x0f;
+    if (fieldType == STOP) {
+      return false;
+    }
+    int delta = header >>> 4;
+    fieldId = delta == 0 ? zigzagDecode(readVarint()) : lastFieldId + delta;
+    lastFieldId = fieldId;
+    return true;
+  }
+
+  public int fieldId() {
+    return fieldId;
+  }
+
+  public int fieldType() {
+    return fieldType;
+  }
+
+  /**
+   * Read the length of a binary or string value, leaving the position at the start of its bytes.
+   */
+  public int readBinaryLength() {
+    int length = readVarint();
+    if (length < 0 || length > buffer.length - position) {
+      Utils.except("Binary field runs past the end of the buffer.");
+    }
+    return length;
+  }
+
+  public void skipBytes(int length) {
+    position += length;
+  }
+
+  public void skip(int type) {
+    switch (type) {
+      case BOOLEAN_TRUE:
+      case BOOLEAN_FALSE:
+        break;
+      case BYTE:
+        skipBytes(1);
+        break;
+      case I16:
+      case I32:
+      case I64:
+        skipVarint();
+        break;
+      case DOUBLE:
+        skipBytes(8);
+        break;
+      case BINARY:
+        skipBytes(readBinaryLength());
+        break;
+      case LIST:
+      case SET: {
+        int header = readByte();
+        int size = header >>> 4 == 15 ? readVarint() : header >>> 4;
+        skipElements(header & 0x0f, size);
+        break;
+      }
+      case MAP: {
+        int size = readVarint();
+        if (size > 0) {
+          int types = readByte();
+          for (int i = 0; i < size; i++) {
+            skipElement(types >>> 4);
+            skipElement(types & 0x0f);
+          }
+        }
+        break;
+      }
+      case STRUCT: {
+        int saved = beginStruct();
+        while (nextField()) {
+          skip(fieldType);
+        }
+        endStruct(saved);
+        break;
+      }
+      default:
+        Utils.except("Unknown compact type " + type + ".");
+    }
+  }
+
+  private void skipElements(int type, int size) {
+    for (int i = 0; i < size; i++) {
+      skipElement(type);
+    }
+  }
+
+  private void skipElement(int type) {
+    // Inside containers booleans take a whole byte rather than living in the header.
+    if (type == BOOLEAN_TRUE || type == BOOLEAN_FALSE) {
+      skipBytes(1);
+    } else {
+      skip(type);
+    }
+  }
+
+  private int readByte() {
+    if (position >= buffer.length) {
+      Utils.except("Unexpected end of a compact struct.");
+    }
+    return buffer[position++] & 0xff;
+  }
+
+  private int readVarint() {
+    int result = 0;
+    for (int shift = 0; shift < 35; shift += 7) {
+      int b = readByte();
+      result |= (b & 0x7f) << shift;
+      if ((b & 0x80) == 0) {
+        return result;
+      }
+    }
+    throw Utils.except("Varint is too long.");
+  }
+
+  private void skipVarint() {
+    while ((readByte() & 0x80) != 0) {
+      // Keep going until the last byte.
+    }
+  }
+
+  private static int zigzagDecode(int n) {
+    return (n >>> 1) ^ -(n & 1);
+  }
+}
@@ -0,0 +1,107 @@
+/**
+ * Copyright (c) 2017-present, Facebook, Inc.
+ * All rights reserved.
+ *
+ * This source code is licensed under the license found in the
+ * LICENSE file in the root directory of this source tree.
+*/
+
+package com.facebook.research.asynchronousratchetingtree.art.message;
+
+import com.facebook.research.asynchronousratchetingtree.Utils;
+import com.facebook.research.asynchronousratchetingtree.art.message.thrift.CopathSetupMessageStruct;
+import com.facebook.research.asynchronousratchetingtree.crypto.DHPubKey;
+import org.apache.thrift.TBaseHelper;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * What one peer receives in copath setup mode: the signed header shared by the whole group, plus this peer's ephemeral
+ * key and the public keys and tree hashes of the nodes on its copath, from the root down.
+ */
+public class CopathSetupMessage {
+  private int leafNum;
+  private byte[] header;
+  private byte[] signature;
+  private DHPubKey ephemeralKey;
+  private DHPubKey[] copath;
+  private byte[][] copathHashes;
+
+  public CopathSetupMessage(
+    int leafNum,
+    byte[] header,
+    byte[] signature,
+    DHPubKey ephemeralKey,
+    DHPubKey[] copath,
+    byte[][] copathHashes
+  ) {
+    this.leafNum = leafNum;
+    this.header = header;
+    this.signature = signature;
+    this.ephemeralKey = ephemeralKey;
+    this.copath = copath;
+    this.copathHashes = copathHashes;
+  }
+
+  public CopathSetupMessage(byte[] thriftSerialised) {
+    CopathSetupMessageStruct struct = new CopathSetupMessageStruct();
+    Utils.deserialise(struct, thriftSerialised);
+
+    leafNum = struct.getLeafNum();
+    header = struct.getHeader();
+    signature = struct.getSignature();
+    ephemeralKey = DHPubKey.pubKey(struct.getEphemeralKey());
+    copath = new DHPubKey[struct.getCopathSize()];
+    for (int i = 0; i < copath.length; i++) {
+      copath[i] = DHPubKey.pubKey(TBaseHelper.byteBufferToByteArray(struct.getCopath().get(i)));
+    }
+    copathHashes = new byte[struct.getCopathHashesSize()][];
+    for (int i = 0; i < copathHashes.length; i++) {
+      copathHashes[i] = TBaseHelper.byteBufferToByteArray(struct.getCopathHashes().get(i));
+    }
+  }
+
+  public int getLeafNum() {
+    return leafNum;
+  }
+
+  public byte[] getHeader() {
+    return header;
+  }
+
+  public byte[] getSignature() {
+    return signature;
+  }
+
+  public DHPubKey getEphemeralKey() {
+    return ephemeralKey;
+  }
+
+  public DHPubKey[] getCopath() {
+    return copath;
+  }
+
+  public byte[][] getCopathHashes() {
+    return copathHashes;
+  }
+
+  public byte[] serialise() {
+    List<ByteBuffer> copath = new ArrayList<>();
+    List<ByteBuffer> copathHashes = new ArrayList<>();
+    for (int i = 0; i < this.copath.length; i++) {
+      copath.add(ByteBuffer.wrap(this.copath[i].getPubKeyBytes()));
+      copathHashes.add(ByteBuffer.wrap(this.copathHashes[i]));
+    }
+
+    CopathSetupMessageStruct struct = new CopathSetupMessageStruct();
+    struct.setLeafNum(leafNum);
+    struct.setHeader(header);
+    struct.setSignature(signature);
+    struct.setEphemeralKey(ephemeralKey.getPubKeyBytes());
+    struct.setCopath(copath);
+    struct.setCopathHashes(copathHashes);
+    return Utils.serialise(struct);
+  }
+}
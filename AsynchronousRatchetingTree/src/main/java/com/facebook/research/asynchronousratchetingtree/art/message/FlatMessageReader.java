@@ -0,0 +1,278 @@
+/**
+ * Copyright (c) 2017-present, Facebook, Inc.
+ * All rights reserved.
+ *
+ * This source code is licensed under the license found in the
+ * LICENSE file in the root directory of this source tree.
+*/
+
+package com.facebook.research.asynchronousratchetingtree.art.message;
+
+import com.facebook.research.asynchronousratchetingtree.Utils;
+
+import java.nio.ByteBuffer;
+
+/**
+ * A flyweight reader for the flat wire format, the alternative to Thrift for update, authenticated and ciphertext
+ * messages. Integers are big-endian, public keys and hashes are their raw 32 bytes, and each message starts with a tag
+ * whose low four bits are all set. Thrift's compact protocol never starts a struct with such a byte, so receivers tell
+ * the two codecs apart without knowing which one the sender chose.
+ *
+ *   update:        tag, flags, leafNum (4), path length (1), path keys [, copath length (1), copath hashes]
+ *   authenticated: tag, message length (4), message, authenticator length (1), authenticator
+ *   ciphertext:    tag, flags, then either senderLeaf (4), epochId (4) and chainIndex (4) or an authenticated message
+ *                  without its tag; the ciphertext takes up the rest
+ *
+ * wrap checks that every length fits inside the buffer, after which the accessors read fields straight out of it and
+ * hand out views of it rather than copies. One reader can be pointed at message after message.
+ */
+final public class FlatMessageReader {
+  public static final byte UPDATE = 0x1f;
+  public static final byte AUTHENTICATED = 0x2f;
+  public static final byte CIPHERTEXT = 0x3f;
+  public static final int KEY_LENGTH = 32;
+  static final int COPATH_HASHES = 1;
+  static final int IMPLICIT_NONCE = 1;
+  static final int CHAIN = 2;
+
+  private ByteBuffer buffer;
+  private byte tag;
+  private int flags;
+  private int senderLeaf;
+  private int epochId;
+  private int chainIndex;
+  private int updateOffset;
+  private int updateLength;
+  private int authenticatorOffset;
+  private int authenticatorLength;
+  private int ciphertextOffset;
+  private int pathOffset;
+  private int pathLength;
+  private int copathOffset;
+  private int copathLength;
+
+  public static boolean isFlat(byte[] serialised) {
+    return serialised.length > 0 && (serialised[0] & 0x0f) == 0x0f;
+  }
+
+  public static boolean isFlat(ByteBuffer serialised) {
+    return serialised.hasRemaining() && (serialised.get(serialised.position()) & 0x0f) == 0x0f;
+  }
+
+  /**
+   * Point this reader at the message between the buffer's position and its limit. The buffer isn't modified, and must
+   * not be while this reader or any view it handed out is in use.
+   */
+  public FlatMessageReader wrap(ByteBuffer buffer) {
+    this.buffer = buffer;
+    int start = buffer.position();
+    int end = buffer.limit();
+    tag = buffer.get(require(start, 1, end));
+    flags = 0;
+    updateOffset = -1;
+    authenticatorOffset = -1;
+    ciphertextOffset = -1;
+    pathOffset = -1;
+
+    switch (tag) {
+      case UPDATE:
+        readUpdate(start, end);
+        break;
+      case AUTHENTICATED:
+        if (readAuthenticated(start + 1, end) != end) {
+          Utils.except("Flat authenticated message has trailing bytes.");
+        }
+        break;
+      case CIPHERTEXT:
+        flags = buffer.get(require(start + 1, 1, end));
+        if ((flags & CHAIN) != 0) {
+          senderLeaf = buffer.getInt(require(start + 2, 4, end));
+          epochId = buffer.getInt(require(start + 6, 4, end));
+          chainIndex = buffer.getInt(require(start + 10, 4, end));
+          ciphertextOffset = start + 14;
+        } else {
+          ciphertextOffset = readAuthenticated(start + 2, end);
+        }
+        break;
+      default:
+        Utils.except("Not a flat update, authenticated or ciphertext message.");
+    }
+    return this;
+  }
+
+  private void readUpdate(int start, int end) {
+    updateOffset = start;
+    updateLength = end - start;
+    int updateFlags = buffer.get(require(start + 1, 1, end));
+    pathLength = buffer.get(require(start + 6, 1, end)) & 0xff;
+    pathOffset = start + 7;
+    int position = require(pathOffset, pathLength * KEY_LENGTH, end) + pathLength * KEY_LENGTH;
+    copathLength = -1;
+    if ((updateFlags & COPATH_HASHES) != 0) {
+      copathLength = buffer.get(require(position, 1, end)) & 0xff;
+      copathOffset = position + 1;
+      position = require(copathOffset, copathLength * KEY_LENGTH, end) + copathLength * KEY_LENGTH;
+    }
+    if (position != end) {
+      Utils.except("Flat update message has trailing bytes.");
+    }
+  }
+
+  /**
+   * Locate the message and authenticator, and the update's fields if the message is a flat update. Returns the offset
+   * just past the authenticator.
+   */
+  private int readAuthenticated(int start, int end) {
+    int messageLength = buffer.getInt(require(start, 4, end));
+    int messageOffset = require(start + 4, messageLength, end);
+    int lengthOffset = require(messageOffset + messageLength, 1, end);
+    authenticatorLength = buffer.get(lengthOffset) & 0xff;
+    authenticatorOffset = require(lengthOffset + 1, authenticatorLength, end);
+
+    if (messageLength > 0 && buffer.get(messageOffset) == UPDATE) {
+      readUpdate(messageOffset, messageOffset + messageLength);
+    }
+    updateOffset = messageOffset;
+    updateLength = messageLength;
+    return authenticatorOffset + authenticatorLength;
+  }
+
+  private static int require(int offset, int length, int end) {
+    if (length < 0 || offset > end - length) {
+      Utils.except("Flat message runs past the end of the buffer.");
+    }
+    return offset;
+  }
+
+  public byte getTag() {
+    return tag;
+  }
+
+  public boolean isChainMessage() {
+    return (flags & CHAIN) != 0;
+  }
+
+  public boolean hasImplicitNonce() {
+    return (flags & IMPLICIT_NONCE) != 0;
+  }
+
+  public int getSenderLeaf() {
+    return senderLeaf;
+  }
+
+  public int getEpochId() {
+    return epochId;
+  }
+
+  public int getChainIndex() {
+    return chainIndex;
+  }
+
+  /**
+   * Whether the update message, on its own or inside an authenticated message, is itself in the flat format. The path
+   * and copath accessors need it to be.
+   */
+  public boolean hasFlatUpdate() {
+    return pathOffset >= 0;
+  }
+
+  public int getLeafNum() {
+    requireFlatUpdate();
+    return buffer.getInt(updateOffset + 2);
+  }
+
+  public int getPathLength() {
+    requireFlatUpdate();
+    return pathLength;
+  }
+
+  /**
+   * The offset in the buffer of the i'th key on the sender's path, counting from the root.
+   */
+  public int pathKeyOffset(int i) {
+    if (i < 0 || i >= getPathLength()) {
+      Utils.except("Path key " + i + " is out of range.");
+    }
+    return pathOffset + i * KEY_LENGTH;
+  }
+
+  public byte[] copyPathKey(int i) {
+    return copy(pathKeyOffset(i), KEY_LENGTH);
+  }
+
+  public boolean hasCopathHashes() {
+    requireFlatUpdate();
+    return copathLength >= 0;
+  }
+
+  public int getCopathHashesLength() {
+    return hasCopathHashes() ? copathLength : 0;
+  }
+
+  public int copathHashOffset(int i) {
+    if (i < 0 || i >= getCopathHashesLength()) {
+      Utils.except("Copath hash " + i + " is out of range.");
+    }
+    return copathOffset + i * KEY_LENGTH;
+  }
+
+  public byte[] copyCopathHash(int i) {
+    return copy(copathHashOffset(i), KEY_LENGTH);
+  }
+
+  /**
+   * The update message that the authenticator covers, or the whole message if it is a bare update.
+   */
+  public ByteBuffer update() {
+    if (updateOffset < 0) {
+      Utils.except("Flat message carries no update.");
+    }
+    return view(updateOffset, updateLength);
+  }
+
+  public int authenticatorOffset() {
+    if (authenticatorOffset < 0) {
+      Utils.except("Flat message carries no authenticator.");
+    }
+    return authenticatorOffset;
+  }
+
+  public ByteBuffer authenticator() {
+    return view(authenticatorOffset(), authenticatorLength);
+  }
+
+  public int ciphertextOffset() {
+    if (ciphertextOffset < 0) {
+      Utils.except("Flat message carries no ciphertext.");
+    }
+    return ciphertextOffset;
+  }
+
+  public ByteBuffer ciphertext() {
+    int offset = ciphertextOffset();
+    return view(offset, buffer.limit() - offset);
+  }
+
+  private void requireFlatUpdate() {
+    if (!hasFlatUpdate()) {
+      Utils.except("Flat message carries no flat update.");
+    }
+  }
+
+  private ByteBuffer view(int offset, int length) {
+    ByteBuffer view = buffer.duplicate();
+    view.limit(offset + length);
+    view.position(offset);
+    return view;
+  }
+
+  private byte[] copy(int offset, int length) {
+    byte[] result = new byte[length];
+    if (buffer.hasArray()) {
+      System.arraycopy(buffer.array(), buffer.arrayOffset() + offset, result, 0, length);
+    } else {
+      view(offset, length).get(result);
+    }
+    return result;
+  }
+}
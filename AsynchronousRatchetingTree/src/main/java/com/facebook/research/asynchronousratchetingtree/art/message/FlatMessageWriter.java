@@ -0,0 +1,111 @@
+/**
+ * Copyright (c) 2017-present, Facebook, Inc.
+ * All rights reserved.
+ *
+ * This source code is licensed under the license found in the
+ * LICENSE file in the root directory of this source tree.
+*/
+
+package com.facebook.research.asynchronousratchetingtree.art.message;
+
+import com.facebook.research.asynchronousratchetingtree.Utils;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Lays out a flat ciphertext message (see FlatMessageReader) in one exactly sized buffer before its MAC and ciphertext
+ * exist, so the sender can compute them where they belong instead of building each on its own and copying it into the
+ * frame. The update is written straight away; the caller then computes the MAC over update() into the buffer at
+ * authenticatorOffset(), and encrypts into ciphertext().
+ */
+final public class FlatMessageWriter {
+  private final ByteBuffer buffer;
+  private int updateOffset = -1;
+  private int updateLength;
+  private int authenticatorOffset = -1;
+  private int ciphertextOffset;
+
+  private FlatMessageWriter(int length) {
+    buffer = ByteBuffer.allocate(length);
+  }
+
+  public static FlatMessageWriter forUpdate(
+    UpdateMessage update,
+    int authenticatorLength,
+    int ciphertextLength,
+    boolean implicitNonce
+  ) {
+    if (authenticatorLength > 0xff) {
+      Utils.except("Authenticator is too long for the flat format.");
+    }
+    int updateLength = update.flatLength();
+    FlatMessageWriter writer = new FlatMessageWriter(2 + 4 + updateLength + 1 + authenticatorLength + ciphertextLength);
+    ByteBuffer out = writer.buffer;
+    out.put(FlatMessageReader.CIPHERTEXT);
+    out.put((byte) (implicitNonce ? FlatMessageReader.IMPLICIT_NONCE : 0));
+    out.putInt(updateLength);
+    writer.updateOffset = out.position();
+    writer.updateLength = updateLength;
+    update.putFlat(out);
+    out.put((byte) authenticatorLength);
+    writer.authenticatorOffset = out.position();
+    writer.ciphertextOffset = writer.authenticatorOffset + authenticatorLength;
+    return writer;
+  }
+
+  public static FlatMessageWriter forChain(
+    int senderLeaf,
+    int epochId,
+    int chainIndex,
+    int ciphertextLength,
+    boolean implicitNonce
+  ) {
+    FlatMessageWriter writer = new FlatMessageWriter(2 + 12 + ciphertextLength);
+    ByteBuffer out = writer.buffer;
+    out.put(FlatMessageReader.CIPHERTEXT);
+    out.put((byte) (FlatMessageReader.CHAIN | (implicitNonce ? FlatMessageReader.IMPLICIT_NONCE : 0)));
+    out.putInt(senderLeaf);
+    out.putInt(epochId);
+    out.putInt(chainIndex);
+    writer.ciphertextOffset = out.position();
+    return writer;
+  }
+
+  /**
+   * The update exactly as it sits in the frame, which is what the MAC has to cover.
+   */
+  public ByteBuffer update() {
+    if (updateOffset < 0) {
+      Utils.except("Chain messages carry no update.");
+    }
+    return view(updateOffset, updateLength);
+  }
+
+  public int authenticatorOffset() {
+    if (authenticatorOffset < 0) {
+      Utils.except("Chain messages carry no authenticator.");
+    }
+    return authenticatorOffset;
+  }
+
+  /**
+   * The space left for the ciphertext, to be written from its position up to its limit.
+   */
+  public ByteBuffer ciphertext() {
+    return view(ciphertextOffset, buffer.capacity() - ciphertextOffset);
+  }
+
+  /**
+   * The whole message, once the MAC and ciphertext have been written into it.
+   */
+  public byte[] array() {
+    return buffer.array();
+  }
+
+  private ByteBuffer view(int offset, int length) {
+    ByteBuffer view = buffer.duplicate();
+    view.limit(offset + length);
+    view.position(offset);
+    return view;
+  }
+}
@@ -0,0 +1,54 @@
+/**
+ * Copyright (c) 2017-present, Facebook, Inc.
+ * All rights reserved.
+ *
+ * This source code is licensed under the license found in the
+ * LICENSE file in the root directory of this source tree.
+*/
+
+package com.facebook.research.asynchronousratchetingtree.art.message;
+
+import com.facebook.research.asynchronousratchetingtree.Utils;
+import com.facebook.research.asynchronousratchetingtree.crypto.DHPubKey;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Lists of public keys as version 2 of the Thrift schema carries them: the raw 32 byte keys back to back in one binary
+ * field, in place of a Base64 string per key.
+ */
+final class PackedKeys {
+  private static final int KEY_LENGTH = FlatMessageReader.KEY_LENGTH;
+
+  private PackedKeys() {
+  }
+
+  static ByteBuffer pack(DHPubKey[] keys, int from) {
+    byte[] packed = new byte[(keys.length - from) * KEY_LENGTH];
+    for (int i = from; i < keys.length; i++) {
+      byte[] key = keys[i].getPubKeyBytes();
+      if (key.length != KEY_LENGTH) {
+        Utils.except("Public key is " + key.length + " bytes, not " + KEY_LENGTH + ".");
+      }
+      System.arraycopy(key, 0, packed, (i - from) * KEY_LENGTH, KEY_LENGTH);
+    }
+    return ByteBuffer.wrap(packed);
+  }
+
+  /**
+   * Split the bytes between the buffer's position and its limit back into keys. The buffer isn't modified.
+   */
+  static DHPubKey[] unpack(ByteBuffer packed) {
+    if (packed.remaining() % KEY_LENGTH != 0) {
+      Utils.except("Packed keys are " + packed.remaining() + " bytes, not a multiple of " + KEY_LENGTH + ".");
+    }
+    DHPubKey[] keys = new DHPubKey[packed.remaining() / KEY_LENGTH];
+    ByteBuffer source = packed.duplicate();
+    for (int i = 0; i < keys.length; i++) {
+      byte[] key = new byte[KEY_LENGTH];
+      source.get(key);
+      keys[i] = DHPubKey.pubKey(key);
+    }
+    return keys;
+  }
+}
@@ -8,49 +8,149 @@
 
 package com.facebook.research.asynchronousratchetingtree.art.message;
 
+import com.facebook.research.asynchronousratchetingtree.art.message.thrift.NodeStruct;
 import com.facebook.research.asynchronousratchetingtree.art.message.thrift.SetupMessageStruct;
+import com.facebook.research.asynchronousratchetingtree.art.tree.LazyParentNode;
 import com.facebook.research.asynchronousratchetingtree.art.tree.Node;
+import com.facebook.research.asynchronousratchetingtree.art.tree.PublicNodeInterner;
+import com.facebook.research.asynchronousratchetingtree.art.tree.TreeWriter;
 import com.facebook.research.asynchronousratchetingtree.Utils;
+import com.facebook.research.asynchronousratchetingtree.crypto.AeadSuites;
 import com.facebook.research.asynchronousratchetingtree.crypto.DHPubKey;
 
+import java.nio.ByteBuffer;
 import java.util.*;
 
 public class SetupMessage {
+  /**
+   * The schema version written by serialise(). Both versions are decoded; see ART.thrift.
+   */
+  public static final int CURRENT_VERSION = 2;
+
   private DHPubKey[] identities;
   private Map<Integer, DHPubKey> ephemeralKeys;
   private DHPubKey keyExchangeKey;
   private Node tree;
-
-  public SetupMessage(DHPubKey[] identities, Map<Integer, DHPubKey> ephemeralKeys, DHPubKey keyExchangeKey, Node tree) {
+  private byte[] treeHash;
+  private int aeadSuiteId;
+
+  public SetupMessage(
+    DHPubKey[] identities,
+    Map<Integer, DHPubKey> ephemeralKeys,
+    DHPubKey keyExchangeKey,
+    Node tree,
+    int aeadSuiteId
+  ) {
     this.identities = identities;
     this.ephemeralKeys = ephemeralKeys;
     this.keyExchangeKey = keyExchangeKey;
     this.tree = tree;
+    this.aeadSuiteId = aeadSuiteId;
+  }
+
+  /**
+   * The header shared by all copath setup messages: instead of the tree and everyone's ephemeral keys it only commits
+   * to the tree hash, and each peer gets what it needs from the tree separately.
+   */
+  public SetupMessage(DHPubKey[] identities, DHPubKey keyExchangeKey, byte[] treeHash, int aeadSuiteId) {
+    this.identities = identities;
+    this.keyExchangeKey = keyExchangeKey;
+    this.treeHash = treeHash;
+    this.aeadSuiteId = aeadSuiteId;
   }
 
   public SetupMessage(byte[] thriftSerialised) {
-    SetupMessageStruct struct = new SetupMessageStruct();
-    Utils.deserialise(struct, thriftSerialised);
+    this(thriftSerialised, null);
+  }
 
-    identities = new DHPubKey[struct.getIdentitiesSize()];
-    for (int i = 0; i < identities.length; i++) {
-      identities[i] = DHPubKey.pubKey(
-        Base64.getDecoder().decode(struct.getIdentities().get(i))
-      );
-    }
+  /**
+   * Decode a setup message, taking all public keys and public nodes from the given interner if there is one.
+   */
+  public SetupMessage(byte[] thriftSerialised, PublicNodeInterner interner) {
+    this(deserialise(thriftSerialised), interner);
+  }
 
+  private SetupMessage(SetupMessageStruct struct, PublicNodeInterner interner) {
+    int version = struct.isSetVersion() ? struct.getVersion() : 1;
     ephemeralKeys = new HashMap<>();
-    for (int i = 1; i < identities.length; i++) {
-      ephemeralKeys.put(
-        i,
-        DHPubKey.pubKey(
-          Base64.getDecoder().decode(struct.getEphemeralKeys().get(i))
-        )
-      );
+    if (version == 1) {
+      identities = new DHPubKey[struct.getIdentitiesSize()];
+      for (int i = 0; i < identities.length; i++) {
+        identities[i] = DHPubKey.pubKey(
+          Base64.getDecoder().decode(struct.getIdentities().get(i))
+        );
+      }
+
+      for (int i = 1; struct.isSetEphemeralKeys() && i < identities.length; i++) {
+        ephemeralKeys.put(
+          i,
+          DHPubKey.pubKey(
+            Base64.getDecoder().decode(struct.getEphemeralKeys().get(i))
+          )
+        );
+      }
+    } else if (version == 2) {
+      if (!struct.isSetPackedIdentities()) {
+        Utils.except("Setup message has no identities.");
+      }
+      identities = PackedKeys.unpack(struct.packedIdentities);
+      if (struct.isSetPackedEphemeralKeys()) {
+        DHPubKey[] keys = PackedKeys.unpack(struct.packedEphemeralKeys);
+        if (keys.length != identities.length - 1) {
+          Utils.except("Setup message has " + keys.length + " ephemeral keys for " + identities.length + " members.");
+        }
+        for (int i = 1; i < identities.length; i++) {
+          ephemeralKeys.put(i, keys[i - 1]);
+        }
+      }
+    } else {
+      Utils.except("Unsupported setup message version " + version + ".");
     }
 
     keyExchangeKey = DHPubKey.pubKey(struct.getKeyExchangeKey());
-    tree = Node.fromThrift(struct.getTree());
+    NodeStruct treeStruct = struct.getTree();
+    if (struct.isSetSerialisedTree()) {
+      treeStruct = new NodeStruct();
+      Utils.deserialise(treeStruct, struct.getSerialisedTree());
+    }
+    if (interner == null) {
+      tree = Node.fromThrift(treeStruct);
+    } else {
+      identities = interner.pubKeys(identities);
+      keyExchangeKey = interner.pubKey(keyExchangeKey);
+      tree = interner.fromThrift(treeStruct);
+    }
+    treeHash = struct.getTreeHash();
+    // Messages from before the suite was sent were all AES-GCM.
+    aeadSuiteId = struct.isSetAeadSuiteId() ? struct.getAeadSuiteId() : AeadSuites.AES_GCM.getId();
+  }
+
+  /**
+   * Decode a setup message but leave its tree in the serialised bytes, to be decoded a node at a time as it is walked.
+   * A member that only walks its own path then builds O(log n) tree nodes instead of O(n). Only version 2 carries the
+   * tree as bytes; an older message is decoded in full.
+   */
+  public static SetupMessage withLazyTree(byte[] thriftSerialised) {
+    SetupMessageStruct struct = deserialise(thriftSerialised);
+    if (!struct.isSetSerialisedTree()) {
+      return new SetupMessage(struct, null);
+    }
+    // Taken without the getter, which would copy it; Thrift leaves it as a view of the message bytes.
+    ByteBuffer serialisedTree = struct.serialisedTree;
+    struct.unsetSerialisedTree();
+    SetupMessage message = new SetupMessage(struct, null);
+    message.tree = LazyParentNode.decode(
+      serialisedTree.array(),
+      serialisedTree.arrayOffset() + serialisedTree.position(),
+      message.identities.length
+    );
+    return message;
+  }
+
+  private static SetupMessageStruct deserialise(byte[] thriftSerialised) {
+    SetupMessageStruct struct = new SetupMessageStruct();
+    Utils.deserialise(struct, thriftSerialised);
+    return struct;
   }
 
   public DHPubKey[] getIdentities() {
@@ -69,24 +169,65 @@ public class SetupMessage {
     return tree;
   }
 
-  public byte[] serialise() {
-    List<String> identities = new ArrayList<>();
-    Map<Integer, String> ephemeralKeys = new HashMap<>();
+  public byte[] getTreeHash() {
+    return treeHash;
+  }
 
-    for (int i = 0; i < this.identities.length; i++) {
-      identities.add(Base64.getEncoder().encodeToString(this.identities[i].getPubKeyBytes()));
-    }
+  /**
+   * The AEAD suite the initiator chose for the group; see AeadSuites.
+   */
+  public int getAeadSuiteId() {
+    return aeadSuiteId;
+  }
 
-    for (int i = 1; i < this.identities.length; i++) {
-      ephemeralKeys.put(i, Base64.getEncoder().encodeToString(this.ephemeralKeys.get(i).getPubKeyBytes()));
-    }
+  public byte[] serialise() {
+    return serialiseVersion(CURRENT_VERSION);
+  }
 
+  /**
+   * Serialise with the given version of the Thrift schema, for members that can't yet decode the current one.
+   */
+  public byte[] serialiseVersion(int version) {
     SetupMessageStruct struct = new SetupMessageStruct();
-    struct.setIdentities(identities);
-    struct.setEphemeralKeys(ephemeralKeys);
+    if (version == 1) {
+      List<String> identities = new ArrayList<>();
+      Map<Integer, String> ephemeralKeys = new HashMap<>();
+
+      for (int i = 0; i < this.identities.length; i++) {
+        identities.add(Base64.getEncoder().encodeToString(this.identities[i].getPubKeyBytes()));
+      }
+
+      for (int i = 1; this.ephemeralKeys != null && i < this.identities.length; i++) {
+        ephemeralKeys.put(i, Base64.getEncoder().encodeToString(this.ephemeralKeys.get(i).getPubKeyBytes()));
+      }
+
+      struct.setIdentities(identities);
+      if (this.ephemeralKeys != null) {
+        struct.setEphemeralKeys(ephemeralKeys);
+      }
+    } else if (version == 2) {
+      struct.setVersion(version);
+      // Assigned directly, as the setters would copy them.
+      struct.packedIdentities = PackedKeys.pack(identities, 0);
+      if (ephemeralKeys != null) {
+        DHPubKey[] keys = new DHPubKey[identities.length];
+        for (int i = 1; i < identities.length; i++) {
+          keys[i] = ephemeralKeys.get(i);
+        }
+        struct.packedEphemeralKeys = PackedKeys.pack(keys, 1);
+      }
+    } else {
+      Utils.except("Unsupported setup message version " + version + ".");
+    }
     struct.setKeyExchangeKey(keyExchangeKey.getPubKeyBytes());
-    struct.setTree(Node.toThrift(tree));
-
+    struct.setTreeHash(treeHash);
+    struct.setAeadSuiteId(aeadSuiteId);
+    if (tree != null && version == 1) {
+      struct.setTree(Node.toThrift(tree));
+    } else if (tree != null) {
+      // Written straight from the nodes; see TreeWriter.
+      struct.serialisedTree = ByteBuffer.wrap(TreeWriter.serialise(tree));
+    }
     return Utils.serialise(struct);
   }
 }
@@ -11,33 +11,99 @@ package com.facebook.research.asynchronousratchetingtree.art.message;
 import com.facebook.research.asynchronousratchetingtree.Utils;
 import com.facebook.research.asynchronousratchetingtree.art.message.thrift.UpdateMessageStruct;
 import com.facebook.research.asynchronousratchetingtree.crypto.DHPubKey;
+import org.apache.thrift.TBaseHelper;
 
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.Base64;
 import java.util.List;
 
 public class UpdateMessage {
+  /**
+   * The Thrift schema version written by serialise(). Both versions are decoded; see ART.thrift.
+   */
+  public static final int CURRENT_VERSION = 2;
+
   int leafNum;
   DHPubKey[] path;
+  byte[][] copathHashes;
 
   public UpdateMessage(int leafNum, DHPubKey[] path) {
+    this(leafNum, path, null);
+  }
+
+  /**
+   * Members set up from copath setup messages only hold the hashes of subtrees they were never sent, so in that mode
+   * the sender also includes the tree hashes of the siblings along its path, from the root down.
+   */
+  public UpdateMessage(int leafNum, DHPubKey[] path, byte[][] copathHashes) {
     this.leafNum = leafNum;
     this.path = path;
+    this.copathHashes = copathHashes;
   }
 
   public UpdateMessage(byte[] thriftSerialised) {
+    this(deserialise(thriftSerialised));
+  }
+
+  /**
+   * Decode an update message in either wire format, which are told apart by the first byte; see FlatMessageReader.
+   */
+  public static UpdateMessage decode(ByteBuffer serialised) {
+    if (FlatMessageReader.isFlat(serialised)) {
+      return new UpdateMessage(new FlatMessageReader().wrap(serialised));
+    }
     UpdateMessageStruct struct = new UpdateMessageStruct();
-    Utils.deserialise(struct, thriftSerialised);
+    Utils.deserialise(struct, serialised);
+    return new UpdateMessage(struct);
+  }
 
-    leafNum = struct.getLeafNum();
-    path = new DHPubKey[struct.getPathSize()];
+  /**
+   * Copies the path keys and copath hashes out of a reader pointed at a flat update, or at a message carrying one.
+   */
+  public UpdateMessage(FlatMessageReader reader) {
+    leafNum = reader.getLeafNum();
+    path = new DHPubKey[reader.getPathLength()];
     for (int i = 0; i < path.length; i++) {
-      path[i] = DHPubKey.pubKey(
-        Base64.getDecoder().decode(struct.getPath().get(i))
-      );
+      path[i] = DHPubKey.pubKey(reader.copyPathKey(i));
+    }
+    if (reader.hasCopathHashes()) {
+      copathHashes = new byte[reader.getCopathHashesLength()][];
+      for (int i = 0; i < copathHashes.length; i++) {
+        copathHashes[i] = reader.copyCopathHash(i);
+      }
+    }
+  }
+
+  public UpdateMessage(UpdateMessageStruct struct) {
+    leafNum = struct.getLeafNum();
+    int version = struct.isSetVersion() ? struct.getVersion() : 1;
+    if (version == 1) {
+      path = new DHPubKey[struct.getPathSize()];
+      for (int i = 0; i < path.length; i++) {
+        path[i] = DHPubKey.pubKey(
+          Base64.getDecoder().decode(struct.getPath().get(i))
+        );
+      }
+    } else if (version == 2) {
+      path = PackedKeys.unpack(struct.isSetPackedPath() ? struct.packedPath : ByteBuffer.allocate(0));
+    } else {
+      Utils.except("Unsupported update message version " + version + ".");
+    }
+    if (struct.isSetCopathHashes()) {
+      copathHashes = new byte[struct.getCopathHashesSize()][];
+      for (int i = 0; i < copathHashes.length; i++) {
+        copathHashes[i] = TBaseHelper.byteBufferToByteArray(struct.getCopathHashes().get(i));
+      }
     }
   }
   
+  private static UpdateMessageStruct deserialise(byte[] thriftSerialised) {
+    UpdateMessageStruct struct = new UpdateMessageStruct();
+    Utils.deserialise(struct, thriftSerialised);
+    return struct;
+  }
+
   public int getLeafNum() {
     return leafNum;
   }
@@ -46,14 +112,91 @@ public class UpdateMessage {
     return path;
   }
 
+  public byte[][] getCopathHashes() {
+    return copathHashes;
+  }
+
   public byte[] serialise() {
-    List<String> path = new ArrayList<>();
-    for (int i = 0; i < this.path.length; i++) {
-      path.add(Base64.getEncoder().encodeToString(this.path[i].getPubKeyBytes()));
-    }
+    return serialiseVersion(CURRENT_VERSION);
+  }
+
+  /**
+   * Serialise with the given version of the Thrift schema, for members that can't yet decode the current one.
+   */
+  public byte[] serialiseVersion(int version) {
     UpdateMessageStruct struct = new UpdateMessageStruct();
     struct.setLeafNum(leafNum);
-    struct.setPath(path);
+    if (version == 1) {
+      List<String> path = new ArrayList<>();
+      for (int i = 0; i < this.path.length; i++) {
+        path.add(Base64.getEncoder().encodeToString(this.path[i].getPubKeyBytes()));
+      }
+      struct.setPath(path);
+    } else if (version == 2) {
+      struct.setVersion(version);
+      // Assigned directly, as the setter would copy it.
+      struct.packedPath = PackedKeys.pack(path, 0);
+    } else {
+      Utils.except("Unsupported update message version " + version + ".");
+    }
+    if (copathHashes != null) {
+      List<ByteBuffer> hashes = new ArrayList<>();
+      for (byte[] hash : copathHashes) {
+        hashes.add(ByteBuffer.wrap(hash));
+      }
+      struct.setCopathHashes(hashes);
+    }
     return Utils.serialise(struct);
   }
+
+  public byte[] serialise(boolean flat) {
+    return flat ? serialiseFlat() : serialise();
+  }
+
+  public byte[] serialiseFlat() {
+    ByteBuffer out = ByteBuffer.allocate(flatLength());
+    putFlat(out);
+    return out.array();
+  }
+
+  int flatLength() {
+    int length = 7 + path.length * FlatMessageReader.KEY_LENGTH;
+    if (copathHashes != null) {
+      length += 1 + copathHashes.length * FlatMessageReader.KEY_LENGTH;
+    }
+    return length;
+  }
+
+  /**
+   * Write the flat layout at the buffer's position, which must have flatLength() bytes remaining.
+   */
+  void putFlat(ByteBuffer out) {
+    out.put(FlatMessageReader.UPDATE);
+    out.put((byte) (copathHashes == null ? 0 : FlatMessageReader.COPATH_HASHES));
+    out.putInt(leafNum);
+    out.put(flatCount(path.length));
+    for (DHPubKey key : path) {
+      out.put(flatField(key.getPubKeyBytes()));
+    }
+    if (copathHashes != null) {
+      out.put(flatCount(copathHashes.length));
+      for (byte[] hash : copathHashes) {
+        out.put(flatField(hash));
+      }
+    }
+  }
+
+  private static byte flatCount(int length) {
+    if (length > 0xff) {
+      Utils.except("Update path is too long for the flat format.");
+    }
+    return (byte) length;
+  }
+
+  private static byte[] flatField(byte[] keyOrHash) {
+    if (keyOrHash.length != FlatMessageReader.KEY_LENGTH) {
+      Utils.except("The flat format needs " + FlatMessageReader.KEY_LENGTH + " byte keys and hashes.");
+    }
+    return keyOrHash;
+  }
 }
@@ -9,12 +9,23 @@
 
 namespace java com.facebook.research.asynchronousratchetingtree.art.message.thrift
 
+# Version 1 sends identities and ephemeralKeys as Base64 text. Version 2 leaves them unset and instead packs the raw
+# 32 byte keys back to back, the ephemeral keys in leaf order from leaf 1. It also leaves tree unset and sends the
+# tree's own compact encoding in serialisedTree, so that it can be written straight from the nodes and decoded lazily.
+# A missing version means version 1. In either version aeadSuiteId names the suite the initiator chose for the group
+# (see AeadSuites), and a missing one means AES-GCM.
 struct SetupMessageStruct {
   1: i32 leafNum,
   2: list<string> identities,
   3: map<i32, string> ephemeralKeys,
   4: binary keyExchangeKey,
   5: NodeStruct tree,
+  6: optional binary treeHash,
+  7: optional i32 version,
+  8: optional binary packedIdentities,
+  9: optional binary packedEphemeralKeys,
+  10: optional binary serialisedTree,
+  11: optional i32 aeadSuiteId,
 }
 
 struct NodeStruct {
@@ -23,17 +34,36 @@ struct NodeStruct {
   3: optional NodeStruct right,
 }
 
+# As for setup messages, version 2 replaces the Base64 path with the raw keys packed back to back, from the root down.
 struct UpdateMessageStruct {
   1: i32 leafNum,
   2: list<string> path,
+  3: optional list<binary> copathHashes,
+  4: optional i32 version,
+  5: optional binary packedPath,
 }
 
+# Chain messages set senderLeaf, chainIndex and epochId, the id of the sender's epoch (see KeySchedule.getId), in
+# place of authenticatedMessage.
 struct CiphertextMessageStruct {
   1: AuthenticatedMessageStruct authenticatedMessage,
   2: binary ciphertext,
+  3: optional i32 senderLeaf,
+  4: optional i32 chainIndex,
+  5: optional bool implicitNonce,
+  6: optional i32 epochId,
 }
 
 struct AuthenticatedMessageStruct {
   1: binary message,
   2: binary authenticator,
 }
+
+struct CopathSetupMessageStruct {
+  1: i32 leafNum,
+  2: binary header,
+  3: binary signature,
+  4: binary ephemeralKey,
+  5: list<binary> copath,
+  6: list<binary> copathHashes,
+}
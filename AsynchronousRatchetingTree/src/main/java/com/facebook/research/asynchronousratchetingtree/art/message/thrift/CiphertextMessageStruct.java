@@ -7,23 +7,35 @@
 package com.facebook.research.asynchronousratchetingtree.art.message.thrift;
 
 @SuppressWarnings({"cast", "rawtypes", "serial", "unchecked", "unused"})
-@javax.annotation.Generated(value = "Autogenerated by Thrift Compiler (0.10.0)", date = "2018-01-05")
+@javax.annotation.Generated(value = "Autogenerated by Thrift Compiler (0.10.0)", date = "2026-10-18")
 public class CiphertextMessageStruct implements org.apache.thrift.TBase<CiphertextMessageStruct, CiphertextMessageStruct._Fields>, java.io.Serializable, Cloneable, Comparable<CiphertextMessageStruct> {
   private static final org.apache.thrift.protocol.TStruct STRUCT_DESC = new org.apache.thrift.protocol.TStruct("CiphertextMessageStruct");
 
   private static final org.apache.thrift.protocol.TField AUTHENTICATED_MESSAGE_FIELD_DESC = new org.apache.thrift.protocol.TField("authenticatedMessage", org.apache.thrift.protocol.TType.STRUCT, (short)1);
   private static final org.apache.thrift.protocol.TField CIPHERTEXT_FIELD_DESC = new org.apache.thrift.protocol.TField("ciphertext", org.apache.thrift.protocol.TType.STRING, (short)2);
+  private static final org.apache.thrift.protocol.TField SENDER_LEAF_FIELD_DESC = new org.apache.thrift.protocol.TField("senderLeaf", org.apache.thrift.protocol.TType.I32, (short)3);
+  private static final org.apache.thrift.protocol.TField CHAIN_INDEX_FIELD_DESC = new org.apache.thrift.protocol.TField("chainIndex", org.apache.thrift.protocol.TType.I32, (short)4);
+  private static final org.apache.thrift.protocol.TField IMPLICIT_NONCE_FIELD_DESC = new org.apache.thrift.protocol.TField("implicitNonce", org.apache.thrift.protocol.TType.BOOL, (short)5);
+  private static final org.apache.thrift.protocol.TField EPOCH_ID_FIELD_DESC = new org.apache.thrift.protocol.TField("epochId", org.apache.thrift.protocol.TType.I32, (short)6);
 
   private static final org.apache.thrift.scheme.SchemeFactory STANDARD_SCHEME_FACTORY = new CiphertextMessageStructStandardSchemeFactory();
   private static final org.apache.thrift.scheme.SchemeFactory TUPLE_SCHEME_FACTORY = new CiphertextMessageStructTupleSchemeFactory();
 
   public AuthenticatedMessageStruct authenticatedMessage; // required
   public java.nio.ByteBuffer ciphertext; // required
+  public int senderLeaf; // optional
+  public int chainIndex; // optional
+  public boolean implicitNonce; // optional
+  public int epochId; // optional
 
   /** The set of fields this struct contains, along with convenience methods for finding and manipulating them. */
   public enum _Fields implements org.apache.thrift.TFieldIdEnum {
     AUTHENTICATED_MESSAGE((short)1, "authenticatedMessage"),
-    CIPHERTEXT((short)2, "ciphertext");
+    CIPHERTEXT((short)2, "ciphertext"),
+    SENDER_LEAF((short)3, "senderLeaf"),
+    CHAIN_INDEX((short)4, "chainIndex"),
+    IMPLICIT_NONCE((short)5, "implicitNonce"),
+    EPOCH_ID((short)6, "epochId");
 
     private static final java.util.Map<java.lang.String, _Fields> byName = new java.util.HashMap<java.lang.String, _Fields>();
 
@@ -42,6 +54,14 @@ public class CiphertextMessageStruct implements org.apache.thrift.TBase<Cipherte
           return AUTHENTICATED_MESSAGE;
         case 2: // CIPHERTEXT
           return CIPHERTEXT;
+        case 3: // SENDER_LEAF
+          return SENDER_LEAF;
+        case 4: // CHAIN_INDEX
+          return CHAIN_INDEX;
+        case 5: // IMPLICIT_NONCE
+          return IMPLICIT_NONCE;
+        case 6: // EPOCH_ID
+          return EPOCH_ID;
         default:
           return null;
       }
@@ -82,6 +102,12 @@ public class CiphertextMessageStruct implements org.apache.thrift.TBase<Cipherte
   }
 
   // isset id assignments
+  private static final int __SENDERLEAF_ISSET_ID = 0;
+  private static final int __CHAININDEX_ISSET_ID = 1;
+  private static final int __IMPLICITNONCE_ISSET_ID = 2;
+  private static final int __EPOCHID_ISSET_ID = 3;
+  private byte __isset_bitfield = 0;
+  private static final _Fields optionals[] = {_Fields.SENDER_LEAF,_Fields.CHAIN_INDEX,_Fields.IMPLICIT_NONCE,_Fields.EPOCH_ID};
   public static final java.util.Map<_Fields, org.apache.thrift.meta_data.FieldMetaData> metaDataMap;
   static {
     java.util.Map<_Fields, org.apache.thrift.meta_data.FieldMetaData> tmpMap = new java.util.EnumMap<_Fields, org.apache.thrift.meta_data.FieldMetaData>(_Fields.class);
@@ -89,6 +115,14 @@ public class CiphertextMessageStruct implements org.apache.thrift.TBase<Cipherte
         new org.apache.thrift.meta_data.FieldValueMetaData(org.apache.thrift.protocol.TType.STRUCT        , "AuthenticatedMessageStruct")));
     tmpMap.put(_Fields.CIPHERTEXT, new org.apache.thrift.meta_data.FieldMetaData("ciphertext", org.apache.thrift.TFieldRequirementType.DEFAULT, 
         new org.apache.thrift.meta_data.FieldValueMetaData(org.apache.thrift.protocol.TType.STRING        , true)));
+    tmpMap.put(_Fields.SENDER_LEAF, new org.apache.thrift.meta_data.FieldMetaData("senderLeaf", org.apache.thrift.TFieldRequirementType.OPTIONAL, 
+        new org.apache.thrift.meta_data.FieldValueMetaData(org.apache.thrift.protocol.TType.I32)));
+    tmpMap.put(_Fields.CHAIN_INDEX, new org.apache.thrift.meta_data.FieldMetaData("chainIndex", org.apache.thrift.TFieldRequirementType.OPTIONAL, 
+        new org.apache.thrift.meta_data.FieldValueMetaData(org.apache.thrift.protocol.TType.I32)));
+    tmpMap.put(_Fields.IMPLICIT_NONCE, new org.apache.thrift.meta_data.FieldMetaData("implicitNonce", org.apache.thrift.TFieldRequirementType.OPTIONAL, 
+        new org.apache.thrift.meta_data.FieldValueMetaData(org.apache.thrift.protocol.TType.BOOL)));
+    tmpMap.put(_Fields.EPOCH_ID, new org.apache.thrift.meta_data.FieldMetaData("epochId", org.apache.thrift.TFieldRequirementType.OPTIONAL, 
+        new org.apache.thrift.meta_data.FieldValueMetaData(org.apache.thrift.protocol.TType.I32)));
     metaDataMap = java.util.Collections.unmodifiableMap(tmpMap);
     org.apache.thrift.meta_data.FieldMetaData.addStructMetaDataMap(CiphertextMessageStruct.class, metaDataMap);
   }
@@ -109,12 +143,17 @@ public class CiphertextMessageStruct implements org.apache.thrift.TBase<Cipherte
    * Performs a deep copy on <i>other</i>.
    */
   public CiphertextMessageStruct(CiphertextMessageStruct other) {
+    __isset_bitfield = other.__isset_bitfield;
     if (other.isSetAuthenticatedMessage()) {
       this.authenticatedMessage = new AuthenticatedMessageStruct(other.authenticatedMessage);
     }
     if (other.isSetCiphertext()) {
       this.ciphertext = org.apache.thrift.TBaseHelper.copyBinary(other.ciphertext);
     }
+    this.senderLeaf = other.senderLeaf;
+    this.chainIndex = other.chainIndex;
+    this.implicitNonce = other.implicitNonce;
+    this.epochId = other.epochId;
   }
 
   public CiphertextMessageStruct deepCopy() {
@@ -125,6 +164,14 @@ public class CiphertextMessageStruct implements org.apache.thrift.TBase<Cipherte
   public void clear() {
     this.authenticatedMessage = null;
     this.ciphertext = null;
+    setSenderLeafIsSet(false);
+    this.senderLeaf = 0;
+    setChainIndexIsSet(false);
+    this.chainIndex = 0;
+    setImplicitNonceIsSet(false);
+    this.implicitNonce = false;
+    setEpochIdIsSet(false);
+    this.epochId = 0;
   }
 
   public AuthenticatedMessageStruct getAuthenticatedMessage() {
@@ -185,6 +232,98 @@ public class CiphertextMessageStruct implements org.apache.thrift.TBase<Cipherte
     }
   }
 
+  public int getSenderLeaf() {
+    return this.senderLeaf;
+  }
+
+  public CiphertextMessageStruct setSenderLeaf(int senderLeaf) {
+    this.senderLeaf = senderLeaf;
+    setSenderLeafIsSet(true);
+    return this;
+  }
+
+  public void unsetSenderLeaf() {
+    __isset_bitfield = org.apache.thrift.EncodingUtils.clearBit(__isset_bitfield, __SENDERLEAF_ISSET_ID);
+  }
+
+  /** Returns true if field senderLeaf is set (has been assigned a value) and false otherwise */
+  public boolean isSetSenderLeaf() {
+    return org.apache.thrift.EncodingUtils.testBit(__isset_bitfield, __SENDERLEAF_ISSET_ID);
+  }
+
+  public void setSenderLeafIsSet(boolean value) {
+    __isset_bitfield = org.apache.thrift.EncodingUtils.setBit(__isset_bitfield, __SENDERLEAF_ISSET_ID, value);
+  }
+
+  public int getChainIndex() {
+    return this.chainIndex;
+  }
+
+  public CiphertextMessageStruct setChainIndex(int chainIndex) {
+    this.chainIndex = chainIndex;
+    setChainIndexIsSet(true);
+    return this;
+  }
+
+  public void unsetChainIndex() {
+    __isset_bitfield = org.apache.thrift.EncodingUtils.clearBit(__isset_bitfield, __CHAININDEX_ISSET_ID);
+  }
+
+  /** Returns true if field chainIndex is set (has been assigned a value) and false otherwise */
+  public boolean isSetChainIndex() {
+    return org.apache.thrift.EncodingUtils.testBit(__isset_bitfield, __CHAININDEX_ISSET_ID);
+  }
+
+  public void setChainIndexIsSet(boolean value) {
+    __isset_bitfield = org.apache.thrift.EncodingUtils.setBit(__isset_bitfield, __CHAININDEX_ISSET_ID, value);
+  }
+
+  public boolean isImplicitNonce() {
+    return this.implicitNonce;
+  }
+
+  public CiphertextMessageStruct setImplicitNonce(boolean implicitNonce) {
+    this.implicitNonce = implicitNonce;
+    setImplicitNonceIsSet(true);
+    return this;
+  }
+
+  public void unsetImplicitNonce() {
+    __isset_bitfield = org.apache.thrift.EncodingUtils.clearBit(__isset_bitfield, __IMPLICITNONCE_ISSET_ID);
+  }
+
+  /** Returns true if field implicitNonce is set (has been assigned a value) and false otherwise */
+  public boolean isSetImplicitNonce() {
+    return org.apache.thrift.EncodingUtils.testBit(__isset_bitfield, __IMPLICITNONCE_ISSET_ID);
+  }
+
+  public void setImplicitNonceIsSet(boolean value) {
+    __isset_bitfield = org.apache.thrift.EncodingUtils.setBit(__isset_bitfield, __IMPLICITNONCE_ISSET_ID, value);
+  }
+
+  public int getEpochId() {
+    return this.epochId;
+  }
+
+  public CiphertextMessageStruct setEpochId(int epochId) {
+    this.epochId = epochId;
+    setEpochIdIsSet(true);
+    return this;
+  }
+
+  public void unsetEpochId() {
+    __isset_bitfield = org.apache.thrift.EncodingUtils.clearBit(__isset_bitfield, __EPOCHID_ISSET_ID);
+  }
+
+  /** Returns true if field epochId is set (has been assigned a value) and false otherwise */
+  public boolean isSetEpochId() {
+    return org.apache.thrift.EncodingUtils.testBit(__isset_bitfield, __EPOCHID_ISSET_ID);
+  }
+
+  public void setEpochIdIsSet(boolean value) {
+    __isset_bitfield = org.apache.thrift.EncodingUtils.setBit(__isset_bitfield, __EPOCHID_ISSET_ID, value);
+  }
+
   public void setFieldValue(_Fields field, java.lang.Object value) {
     switch (field) {
     case AUTHENTICATED_MESSAGE:
@@ -207,6 +346,38 @@ public class CiphertextMessageStruct implements org.apache.thrift.TBase<Cipherte
       }
       break;
 
+    case SENDER_LEAF:
+      if (value == null) {
+        unsetSenderLeaf();
+      } else {
+        setSenderLeaf((java.lang.Integer)value);
+      }
+      break;
+
+    case CHAIN_INDEX:
+      if (value == null) {
+        unsetChainIndex();
+      } else {
+        setChainIndex((java.lang.Integer)value);
+      }
+      break;
+
+    case IMPLICIT_NONCE:
+      if (value == null) {
+        unsetImplicitNonce();
+      } else {
+        setImplicitNonce((java.lang.Boolean)value);
+      }
+      break;
+
+    case EPOCH_ID:
+      if (value == null) {
+        unsetEpochId();
+      } else {
+        setEpochId((java.lang.Integer)value);
+      }
+      break;
+
     }
   }
 
@@ -218,6 +389,18 @@ public class CiphertextMessageStruct implements org.apache.thrift.TBase<Cipherte
     case CIPHERTEXT:
       return getCiphertext();
 
+    case SENDER_LEAF:
+      return getSenderLeaf();
+
+    case CHAIN_INDEX:
+      return getChainIndex();
+
+    case IMPLICIT_NONCE:
+      return isImplicitNonce();
+
+    case EPOCH_ID:
+      return getEpochId();
+
     }
     throw new java.lang.IllegalStateException();
   }
@@ -233,6 +416,14 @@ public class CiphertextMessageStruct implements org.apache.thrift.TBase<Cipherte
       return isSetAuthenticatedMessage();
     case CIPHERTEXT:
       return isSetCiphertext();
+    case SENDER_LEAF:
+      return isSetSenderLeaf();
+    case CHAIN_INDEX:
+      return isSetChainIndex();
+    case IMPLICIT_NONCE:
+      return isSetImplicitNonce();
+    case EPOCH_ID:
+      return isSetEpochId();
     }
     throw new java.lang.IllegalStateException();
   }
@@ -270,6 +461,42 @@ public class CiphertextMessageStruct implements org.apache.thrift.TBase<Cipherte
         return false;
     }
 
+    boolean this_present_senderLeaf = true && this.isSetSenderLeaf();
+    boolean that_present_senderLeaf = true && that.isSetSenderLeaf();
+    if (this_present_senderLeaf || that_present_senderLeaf) {
+      if (!(this_present_senderLeaf && that_present_senderLeaf))
+        return false;
+      if (this.senderLeaf != that.senderLeaf)
+        return false;
+    }
+
+    boolean this_present_chainIndex = true && this.isSetChainIndex();
+    boolean that_present_chainIndex = true && that.isSetChainIndex();
+    if (this_present_chainIndex || that_present_chainIndex) {
+      if (!(this_present_chainIndex && that_present_chainIndex))
+        return false;
+      if (this.chainIndex != that.chainIndex)
+        return false;
+    }
+
+    boolean this_present_implicitNonce = true && this.isSetImplicitNonce();
+    boolean that_present_implicitNonce = true && that.isSetImplicitNonce();
+    if (this_present_implicitNonce || that_present_implicitNonce) {
+      if (!(this_present_implicitNonce && that_present_implicitNonce))
+        return false;
+      if (this.implicitNonce != that.implicitNonce)
+        return false;
+    }
+
+    boolean this_present_epochId = true && this.isSetEpochId();
+    boolean that_present_epochId = true && that.isSetEpochId();
+    if (this_present_epochId || that_present_epochId) {
+      if (!(this_present_epochId && that_present_epochId))
+        return false;
+      if (this.epochId != that.epochId)
+        return false;
+    }
+
     return true;
   }
 
@@ -285,6 +512,22 @@ public class CiphertextMessageStruct implements org.apache.thrift.TBase<Cipherte
     if (isSetCiphertext())
       hashCode = hashCode * 8191 + ciphertext.hashCode();
 
+    hashCode = hashCode * 8191 + ((isSetSenderLeaf()) ? 131071 : 524287);
+    if (isSetSenderLeaf())
+      hashCode = hashCode * 8191 + senderLeaf;
+
+    hashCode = hashCode * 8191 + ((isSetChainIndex()) ? 131071 : 524287);
+    if (isSetChainIndex())
+      hashCode = hashCode * 8191 + chainIndex;
+
+    hashCode = hashCode * 8191 + ((isSetImplicitNonce()) ? 131071 : 524287);
+    if (isSetImplicitNonce())
+      hashCode = hashCode * 8191 + ((implicitNonce) ? 131071 : 524287);
+
+    hashCode = hashCode * 8191 + ((isSetEpochId()) ? 131071 : 524287);
+    if (isSetEpochId())
+      hashCode = hashCode * 8191 + epochId;
+
     return hashCode;
   }
 
@@ -316,6 +559,46 @@ public class CiphertextMessageStruct implements org.apache.thrift.TBase<Cipherte
         return lastComparison;
       }
     }
+    lastComparison = java.lang.Boolean.valueOf(isSetSenderLeaf()).compareTo(other.isSetSenderLeaf());
+    if (lastComparison != 0) {
+      return lastComparison;
+    }
+    if (isSetSenderLeaf()) {
+      lastComparison = org.apache.thrift.TBaseHelper.compareTo(this.senderLeaf, other.senderLeaf);
+      if (lastComparison != 0) {
+        return lastComparison;
+      }
+    }
+    lastComparison = java.lang.Boolean.valueOf(isSetChainIndex()).compareTo(other.isSetChainIndex());
+    if (lastComparison != 0) {
+      return lastComparison;
+    }
+    if (isSetChainIndex()) {
+      lastComparison = org.apache.thrift.TBaseHelper.compareTo(this.chainIndex, other.chainIndex);
+      if (lastComparison != 0) {
+        return lastComparison;
+      }
+    }
+    lastComparison = java.lang.Boolean.valueOf(isSetImplicitNonce()).compareTo(other.isSetImplicitNonce());
+    if (lastComparison != 0) {
+      return lastComparison;
+    }
+    if (isSetImplicitNonce()) {
+      lastComparison = org.apache.thrift.TBaseHelper.compareTo(this.implicitNonce, other.implicitNonce);
+      if (lastComparison != 0) {
+        return lastComparison;
+      }
+    }
+    lastComparison = java.lang.Boolean.valueOf(isSetEpochId()).compareTo(other.isSetEpochId());
+    if (lastComparison != 0) {
+      return lastComparison;
+    }
+    if (isSetEpochId()) {
+      lastComparison = org.apache.thrift.TBaseHelper.compareTo(this.epochId, other.epochId);
+      if (lastComparison != 0) {
+        return lastComparison;
+      }
+    }
     return 0;
   }
 
@@ -351,6 +634,30 @@ public class CiphertextMessageStruct implements org.apache.thrift.TBase<Cipherte
       org.apache.thrift.TBaseHelper.toString(this.ciphertext, sb);
     }
     first = false;
+    if (isSetSenderLeaf()) {
+      if (!first) sb.append(", ");
+      sb.append("senderLeaf:");
+      sb.append(this.senderLeaf);
+      first = false;
+    }
+    if (isSetChainIndex()) {
+      if (!first) sb.append(", ");
+      sb.append("chainIndex:");
+      sb.append(this.chainIndex);
+      first = false;
+    }
+    if (isSetImplicitNonce()) {
+      if (!first) sb.append(", ");
+      sb.append("implicitNonce:");
+      sb.append(this.implicitNonce);
+      first = false;
+    }
+    if (isSetEpochId()) {
+      if (!first) sb.append(", ");
+      sb.append("epochId:");
+      sb.append(this.epochId);
+      first = false;
+    }
     sb.append(")");
     return sb.toString();
   }
@@ -370,6 +677,8 @@ public class CiphertextMessageStruct implements org.apache.thrift.TBase<Cipherte
 
   private void readObject(java.io.ObjectInputStream in) throws java.io.IOException, java.lang.ClassNotFoundException {
     try {
+      // it doesn't seem like you should have to do this, but java serialization is wacky, and doesn't call the default constructor.
+      __isset_bitfield = 0;
       read(new org.apache.thrift.protocol.TCompactProtocol(new org.apache.thrift.transport.TIOStreamTransport(in)));
     } catch (org.apache.thrift.TException te) {
       throw new java.io.IOException(te);
@@ -411,6 +720,38 @@ public class CiphertextMessageStruct implements org.apache.thrift.TBase<Cipherte
               org.apache.thrift.protocol.TProtocolUtil.skip(iprot, schemeField.type);
             }
             break;
+          case 3: // SENDER_LEAF
+            if (schemeField.type == org.apache.thrift.protocol.TType.I32) {
+              struct.senderLeaf = iprot.readI32();
+              struct.setSenderLeafIsSet(true);
+            } else { 
+              org.apache.thrift.protocol.TProtocolUtil.skip(iprot, schemeField.type);
+            }
+            break;
+          case 4: // CHAIN_INDEX
+            if (schemeField.type == org.apache.thrift.protocol.TType.I32) {
+              struct.chainIndex = iprot.readI32();
+              struct.setChainIndexIsSet(true);
+            } else { 
+              org.apache.thrift.protocol.TProtocolUtil.skip(iprot, schemeField.type);
+            }
+            break;
+          case 5: // IMPLICIT_NONCE
+            if (schemeField.type == org.apache.thrift.protocol.TType.BOOL) {
+              struct.implicitNonce = iprot.readBool();
+              struct.setImplicitNonceIsSet(true);
+            } else { 
+              org.apache.thrift.protocol.TProtocolUtil.skip(iprot, schemeField.type);
+            }
+            break;
+          case 6: // EPOCH_ID
+            if (schemeField.type == org.apache.thrift.protocol.TType.I32) {
+              struct.epochId = iprot.readI32();
+              struct.setEpochIdIsSet(true);
+            } else { 
+              org.apache.thrift.protocol.TProtocolUtil.skip(iprot, schemeField.type);
+            }
+            break;
           default:
             org.apache.thrift.protocol.TProtocolUtil.skip(iprot, schemeField.type);
         }
@@ -436,6 +777,26 @@ public class CiphertextMessageStruct implements org.apache.thrift.TBase<Cipherte
         oprot.writeBinary(struct.ciphertext);
         oprot.writeFieldEnd();
       }
+      if (struct.isSetSenderLeaf()) {
+        oprot.writeFieldBegin(SENDER_LEAF_FIELD_DESC);
+        oprot.writeI32(struct.senderLeaf);
+        oprot.writeFieldEnd();
+      }
+      if (struct.isSetChainIndex()) {
+        oprot.writeFieldBegin(CHAIN_INDEX_FIELD_DESC);
+        oprot.writeI32(struct.chainIndex);
+        oprot.writeFieldEnd();
+      }
+      if (struct.isSetImplicitNonce()) {
+        oprot.writeFieldBegin(IMPLICIT_NONCE_FIELD_DESC);
+        oprot.writeBool(struct.implicitNonce);
+        oprot.writeFieldEnd();
+      }
+      if (struct.isSetEpochId()) {
+        oprot.writeFieldBegin(EPOCH_ID_FIELD_DESC);
+        oprot.writeI32(struct.epochId);
+        oprot.writeFieldEnd();
+      }
       oprot.writeFieldStop();
       oprot.writeStructEnd();
     }
@@ -460,19 +821,43 @@ public class CiphertextMessageStruct implements org.apache.thrift.TBase<Cipherte
       if (struct.isSetCiphertext()) {
         optionals.set(1);
       }
-      oprot.writeBitSet(optionals, 2);
+      if (struct.isSetSenderLeaf()) {
+        optionals.set(2);
+      }
+      if (struct.isSetChainIndex()) {
+        optionals.set(3);
+      }
+      if (struct.isSetImplicitNonce()) {
+        optionals.set(4);
+      }
+      if (struct.isSetEpochId()) {
+        optionals.set(5);
+      }
+      oprot.writeBitSet(optionals, 6);
       if (struct.isSetAuthenticatedMessage()) {
         struct.authenticatedMessage.write(oprot);
       }
       if (struct.isSetCiphertext()) {
         oprot.writeBinary(struct.ciphertext);
       }
+      if (struct.isSetSenderLeaf()) {
+        oprot.writeI32(struct.senderLeaf);
+      }
+      if (struct.isSetChainIndex()) {
+        oprot.writeI32(struct.chainIndex);
+      }
+      if (struct.isSetImplicitNonce()) {
+        oprot.writeBool(struct.implicitNonce);
+      }
+      if (struct.isSetEpochId()) {
+        oprot.writeI32(struct.epochId);
+      }
     }
 
     @Override
     public void read(org.apache.thrift.protocol.TProtocol prot, CiphertextMessageStruct struct) throws org.apache.thrift.TException {
       org.apache.thrift.protocol.TTupleProtocol iprot = (org.apache.thrift.protocol.TTupleProtocol) prot;
-      java.util.BitSet incoming = iprot.readBitSet(2);
+      java.util.BitSet incoming = iprot.readBitSet(6);
       if (incoming.get(0)) {
         struct.authenticatedMessage = new AuthenticatedMessageStruct();
         struct.authenticatedMessage.read(iprot);
@@ -482,6 +867,22 @@ public class CiphertextMessageStruct implements org.apache.thrift.TBase<Cipherte
         struct.ciphertext = iprot.readBinary();
         struct.setCiphertextIsSet(true);
       }
+      if (incoming.get(2)) {
+        struct.senderLeaf = iprot.readI32();
+        struct.setSenderLeafIsSet(true);
+      }
+      if (incoming.get(3)) {
+        struct.chainIndex = iprot.readI32();
+        struct.setChainIndexIsSet(true);
+      }
+      if (incoming.get(4)) {
+        struct.implicitNonce = iprot.readBool();
+        struct.setImplicitNonceIsSet(true);
+      }
+      if (incoming.get(5)) {
+        struct.epochId = iprot.readI32();
+        struct.setEpochIdIsSet(true);
+      }
     }
   }
 
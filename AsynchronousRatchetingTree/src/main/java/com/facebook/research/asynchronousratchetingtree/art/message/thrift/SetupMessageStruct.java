@@ -7,7 +7,7 @@
 package com.facebook.research.asynchronousratchetingtree.art.message.thrift;
 
 @SuppressWarnings({"cast", "rawtypes", "serial", "unchecked", "unused"})
-@javax.annotation.Generated(value = "Autogenerated by Thrift Compiler (0.10.0)", date = "2018-01-05")
+@javax.annotation.Generated(value = "Autogenerated by Thrift Compiler (0.10.0)", date = "2026-10-18")
 public class SetupMessageStruct implements org.apache.thrift.TBase<SetupMessageStruct, SetupMessageStruct._Fields>, java.io.Serializable, Cloneable, Comparable<SetupMessageStruct> {
   private static final org.apache.thrift.protocol.TStruct STRUCT_DESC = new org.apache.thrift.protocol.TStruct("SetupMessageStruct");
 
@@ -16,6 +16,12 @@ public class SetupMessageStruct implements org.apache.thrift.TBase<SetupMessageS
   private static final org.apache.thrift.protocol.TField EPHEMERAL_KEYS_FIELD_DESC = new org.apache.thrift.protocol.TField("ephemeralKeys", org.apache.thrift.protocol.TType.MAP, (short)3);
   private static final org.apache.thrift.protocol.TField KEY_EXCHANGE_KEY_FIELD_DESC = new org.apache.thrift.protocol.TField("keyExchangeKey", org.apache.thrift.protocol.TType.STRING, (short)4);
   private static final org.apache.thrift.protocol.TField TREE_FIELD_DESC = new org.apache.thrift.protocol.TField("tree", org.apache.thrift.protocol.TType.STRUCT, (short)5);
+  private static final org.apache.thrift.protocol.TField TREE_HASH_FIELD_DESC = new org.apache.thrift.protocol.TField("treeHash", org.apache.thrift.protocol.TType.STRING, (short)6);
+  private static final org.apache.thrift.protocol.TField VERSION_FIELD_DESC = new org.apache.thrift.protocol.TField("version", org.apache.thrift.protocol.TType.I32, (short)7);
+  private static final org.apache.thrift.protocol.TField PACKED_IDENTITIES_FIELD_DESC = new org.apache.thrift.protocol.TField("packedIdentities", org.apache.thrift.protocol.TType.STRING, (short)8);
+  private static final org.apache.thrift.protocol.TField PACKED_EPHEMERAL_KEYS_FIELD_DESC = new org.apache.thrift.protocol.TField("packedEphemeralKeys", org.apache.thrift.protocol.TType.STRING, (short)9);
+  private static final org.apache.thrift.protocol.TField SERIALISED_TREE_FIELD_DESC = new org.apache.thrift.protocol.TField("serialisedTree", org.apache.thrift.protocol.TType.STRING, (short)10);
+  private static final org.apache.thrift.protocol.TField AEAD_SUITE_ID_FIELD_DESC = new org.apache.thrift.protocol.TField("aeadSuiteId", org.apache.thrift.protocol.TType.I32, (short)11);
 
   private static final org.apache.thrift.scheme.SchemeFactory STANDARD_SCHEME_FACTORY = new SetupMessageStructStandardSchemeFactory();
   private static final org.apache.thrift.scheme.SchemeFactory TUPLE_SCHEME_FACTORY = new SetupMessageStructTupleSchemeFactory();
@@ -25,6 +31,12 @@ public class SetupMessageStruct implements org.apache.thrift.TBase<SetupMessageS
   public java.util.Map<java.lang.Integer,java.lang.String> ephemeralKeys; // required
   public java.nio.ByteBuffer keyExchangeKey; // required
   public NodeStruct tree; // required
+  public java.nio.ByteBuffer treeHash; // optional
+  public int version; // optional
+  public java.nio.ByteBuffer packedIdentities; // optional
+  public java.nio.ByteBuffer packedEphemeralKeys; // optional
+  public java.nio.ByteBuffer serialisedTree; // optional
+  public int aeadSuiteId; // optional
 
   /** The set of fields this struct contains, along with convenience methods for finding and manipulating them. */
   public enum _Fields implements org.apache.thrift.TFieldIdEnum {
@@ -32,7 +44,13 @@ public class SetupMessageStruct implements org.apache.thrift.TBase<SetupMessageS
     IDENTITIES((short)2, "identities"),
     EPHEMERAL_KEYS((short)3, "ephemeralKeys"),
     KEY_EXCHANGE_KEY((short)4, "keyExchangeKey"),
-    TREE((short)5, "tree");
+    TREE((short)5, "tree"),
+    TREE_HASH((short)6, "treeHash"),
+    VERSION((short)7, "version"),
+    PACKED_IDENTITIES((short)8, "packedIdentities"),
+    PACKED_EPHEMERAL_KEYS((short)9, "packedEphemeralKeys"),
+    SERIALISED_TREE((short)10, "serialisedTree"),
+    AEAD_SUITE_ID((short)11, "aeadSuiteId");
 
     private static final java.util.Map<java.lang.String, _Fields> byName = new java.util.HashMap<java.lang.String, _Fields>();
 
@@ -57,6 +75,18 @@ public class SetupMessageStruct implements org.apache.thrift.TBase<SetupMessageS
           return KEY_EXCHANGE_KEY;
         case 5: // TREE
           return TREE;
+        case 6: // TREE_HASH
+          return TREE_HASH;
+        case 7: // VERSION
+          return VERSION;
+        case 8: // PACKED_IDENTITIES
+          return PACKED_IDENTITIES;
+        case 9: // PACKED_EPHEMERAL_KEYS
+          return PACKED_EPHEMERAL_KEYS;
+        case 10: // SERIALISED_TREE
+          return SERIALISED_TREE;
+        case 11: // AEAD_SUITE_ID
+          return AEAD_SUITE_ID;
         default:
           return null;
       }
@@ -98,7 +128,10 @@ public class SetupMessageStruct implements org.apache.thrift.TBase<SetupMessageS
 
   // isset id assignments
   private static final int __LEAFNUM_ISSET_ID = 0;
+  private static final int __VERSION_ISSET_ID = 1;
+  private static final int __AEADSUITEID_ISSET_ID = 2;
   private byte __isset_bitfield = 0;
+  private static final _Fields optionals[] = {_Fields.TREE_HASH,_Fields.VERSION,_Fields.PACKED_IDENTITIES,_Fields.PACKED_EPHEMERAL_KEYS,_Fields.SERIALISED_TREE,_Fields.AEAD_SUITE_ID};
   public static final java.util.Map<_Fields, org.apache.thrift.meta_data.FieldMetaData> metaDataMap;
   static {
     java.util.Map<_Fields, org.apache.thrift.meta_data.FieldMetaData> tmpMap = new java.util.EnumMap<_Fields, org.apache.thrift.meta_data.FieldMetaData>(_Fields.class);
@@ -115,6 +148,18 @@ public class SetupMessageStruct implements org.apache.thrift.TBase<SetupMessageS
         new org.apache.thrift.meta_data.FieldValueMetaData(org.apache.thrift.protocol.TType.STRING        , true)));
     tmpMap.put(_Fields.TREE, new org.apache.thrift.meta_data.FieldMetaData("tree", org.apache.thrift.TFieldRequirementType.DEFAULT, 
         new org.apache.thrift.meta_data.FieldValueMetaData(org.apache.thrift.protocol.TType.STRUCT        , "NodeStruct")));
+    tmpMap.put(_Fields.TREE_HASH, new org.apache.thrift.meta_data.FieldMetaData("treeHash", org.apache.thrift.TFieldRequirementType.OPTIONAL, 
+        new org.apache.thrift.meta_data.FieldValueMetaData(org.apache.thrift.protocol.TType.STRING        , true)));
+    tmpMap.put(_Fields.VERSION, new org.apache.thrift.meta_data.FieldMetaData("version", org.apache.thrift.TFieldRequirementType.OPTIONAL, 
+        new org.apache.thrift.meta_data.FieldValueMetaData(org.apache.thrift.protocol.TType.I32)));
+    tmpMap.put(_Fields.PACKED_IDENTITIES, new org.apache.thrift.meta_data.FieldMetaData("packedIdentities", org.apache.thrift.TFieldRequirementType.OPTIONAL, 
+        new org.apache.thrift.meta_data.FieldValueMetaData(org.apache.thrift.protocol.TType.STRING        , true)));
+    tmpMap.put(_Fields.PACKED_EPHEMERAL_KEYS, new org.apache.thrift.meta_data.FieldMetaData("packedEphemeralKeys", org.apache.thrift.TFieldRequirementType.OPTIONAL, 
+        new org.apache.thrift.meta_data.FieldValueMetaData(org.apache.thrift.protocol.TType.STRING        , true)));
+    tmpMap.put(_Fields.SERIALISED_TREE, new org.apache.thrift.meta_data.FieldMetaData("serialisedTree", org.apache.thrift.TFieldRequirementType.OPTIONAL, 
+        new org.apache.thrift.meta_data.FieldValueMetaData(org.apache.thrift.protocol.TType.STRING        , true)));
+    tmpMap.put(_Fields.AEAD_SUITE_ID, new org.apache.thrift.meta_data.FieldMetaData("aeadSuiteId", org.apache.thrift.TFieldRequirementType.OPTIONAL, 
+        new org.apache.thrift.meta_data.FieldValueMetaData(org.apache.thrift.protocol.TType.I32)));
     metaDataMap = java.util.Collections.unmodifiableMap(tmpMap);
     org.apache.thrift.meta_data.FieldMetaData.addStructMetaDataMap(SetupMessageStruct.class, metaDataMap);
   }
@@ -158,6 +203,20 @@ public class SetupMessageStruct implements org.apache.thrift.TBase<SetupMessageS
     if (other.isSetTree()) {
       this.tree = new NodeStruct(other.tree);
     }
+    if (other.isSetTreeHash()) {
+      this.treeHash = org.apache.thrift.TBaseHelper.copyBinary(other.treeHash);
+    }
+    this.version = other.version;
+    if (other.isSetPackedIdentities()) {
+      this.packedIdentities = org.apache.thrift.TBaseHelper.copyBinary(other.packedIdentities);
+    }
+    if (other.isSetPackedEphemeralKeys()) {
+      this.packedEphemeralKeys = org.apache.thrift.TBaseHelper.copyBinary(other.packedEphemeralKeys);
+    }
+    if (other.isSetSerialisedTree()) {
+      this.serialisedTree = org.apache.thrift.TBaseHelper.copyBinary(other.serialisedTree);
+    }
+    this.aeadSuiteId = other.aeadSuiteId;
   }
 
   public SetupMessageStruct deepCopy() {
@@ -172,6 +231,14 @@ public class SetupMessageStruct implements org.apache.thrift.TBase<SetupMessageS
     this.ephemeralKeys = null;
     this.keyExchangeKey = null;
     this.tree = null;
+    this.treeHash = null;
+    setVersionIsSet(false);
+    this.version = 0;
+    this.packedIdentities = null;
+    this.packedEphemeralKeys = null;
+    this.serialisedTree = null;
+    setAeadSuiteIdIsSet(false);
+    this.aeadSuiteId = 0;
   }
 
   public int getLeafNum() {
@@ -329,6 +396,188 @@ public class SetupMessageStruct implements org.apache.thrift.TBase<SetupMessageS
     }
   }
 
+  public byte[] getTreeHash() {
+    setTreeHash(org.apache.thrift.TBaseHelper.rightSize(treeHash));
+    return treeHash == null ? null : treeHash.array();
+  }
+
+  public java.nio.ByteBuffer bufferForTreeHash() {
+    return org.apache.thrift.TBaseHelper.copyBinary(treeHash);
+  }
+
+  public SetupMessageStruct setTreeHash(byte[] treeHash) {
+    this.treeHash = treeHash == null ? (java.nio.ByteBuffer)null : java.nio.ByteBuffer.wrap(treeHash.clone());
+    return this;
+  }
+
+  public SetupMessageStruct setTreeHash(java.nio.ByteBuffer treeHash) {
+    this.treeHash = org.apache.thrift.TBaseHelper.copyBinary(treeHash);
+    return this;
+  }
+
+  public void unsetTreeHash() {
+    this.treeHash = null;
+  }
+
+  /** Returns true if field treeHash is set (has been assigned a value) and false otherwise */
+  public boolean isSetTreeHash() {
+    return this.treeHash != null;
+  }
+
+  public void setTreeHashIsSet(boolean value) {
+    if (!value) {
+      this.treeHash = null;
+    }
+  }
+
+  public int getVersion() {
+    return this.version;
+  }
+
+  public SetupMessageStruct setVersion(int version) {
+    this.version = version;
+    setVersionIsSet(true);
+    return this;
+  }
+
+  public void unsetVersion() {
+    __isset_bitfield = org.apache.thrift.EncodingUtils.clearBit(__isset_bitfield, __VERSION_ISSET_ID);
+  }
+
+  /** Returns true if field version is set (has been assigned a value) and false otherwise */
+  public boolean isSetVersion() {
+    return org.apache.thrift.EncodingUtils.testBit(__isset_bitfield, __VERSION_ISSET_ID);
+  }
+
+  public void setVersionIsSet(boolean value) {
+    __isset_bitfield = org.apache.thrift.EncodingUtils.setBit(__isset_bitfield, __VERSION_ISSET_ID, value);
+  }
+
+  public byte[] getPackedIdentities() {
+    setPackedIdentities(org.apache.thrift.TBaseHelper.rightSize(packedIdentities));
+    return packedIdentities == null ? null : packedIdentities.array();
+  }
+
+  public java.nio.ByteBuffer bufferForPackedIdentities() {
+    return org.apache.thrift.TBaseHelper.copyBinary(packedIdentities);
+  }
+
+  public SetupMessageStruct setPackedIdentities(byte[] packedIdentities) {
+    this.packedIdentities = packedIdentities == null ? (java.nio.ByteBuffer)null : java.nio.ByteBuffer.wrap(packedIdentities.clone());
+    return this;
+  }
+
+  public SetupMessageStruct setPackedIdentities(java.nio.ByteBuffer packedIdentities) {
+    this.packedIdentities = org.apache.thrift.TBaseHelper.copyBinary(packedIdentities);
+    return this;
+  }
+
+  public void unsetPackedIdentities() {
+    this.packedIdentities = null;
+  }
+
+  /** Returns true if field packedIdentities is set (has been assigned a value) and false otherwise */
+  public boolean isSetPackedIdentities() {
+    return this.packedIdentities != null;
+  }
+
+  public void setPackedIdentitiesIsSet(boolean value) {
+    if (!value) {
+      this.packedIdentities = null;
+    }
+  }
+
+  public byte[] getPackedEphemeralKeys() {
+    setPackedEphemeralKeys(org.apache.thrift.TBaseHelper.rightSize(packedEphemeralKeys));
+    return packedEphemeralKeys == null ? null : packedEphemeralKeys.array();
+  }
+
+  public java.nio.ByteBuffer bufferForPackedEphemeralKeys() {
+    return org.apache.thrift.TBaseHelper.copyBinary(packedEphemeralKeys);
+  }
+
+  public SetupMessageStruct setPackedEphemeralKeys(byte[] packedEphemeralKeys) {
+    this.packedEphemeralKeys = packedEphemeralKeys == null ? (java.nio.ByteBuffer)null : java.nio.ByteBuffer.wrap(packedEphemeralKeys.clone());
+    return this;
+  }
+
+  public SetupMessageStruct setPackedEphemeralKeys(java.nio.ByteBuffer packedEphemeralKeys) {
+    this.packedEphemeralKeys = org.apache.thrift.TBaseHelper.copyBinary(packedEphemeralKeys);
+    return this;
+  }
+
+  public void unsetPackedEphemeralKeys() {
+    this.packedEphemeralKeys = null;
+  }
+
+  /** Returns true if field packedEphemeralKeys is set (has been assigned a value) and false otherwise */
+  public boolean isSetPackedEphemeralKeys() {
+    return this.packedEphemeralKeys != null;
+  }
+
+  public void setPackedEphemeralKeysIsSet(boolean value) {
+    if (!value) {
+      this.packedEphemeralKeys = null;
+    }
+  }
+
+  public byte[] getSerialisedTree() {
+    setSerialisedTree(org.apache.thrift.TBaseHelper.rightSize(serialisedTree));
+    return serialisedTree == null ? null : serialisedTree.array();
+  }
+
+  public java.nio.ByteBuffer bufferForSerialisedTree() {
+    return org.apache.thrift.TBaseHelper.copyBinary(serialisedTree);
+  }
+
+  public SetupMessageStruct setSerialisedTree(byte[] serialisedTree) {
+    this.serialisedTree = serialisedTree == null ? (java.nio.ByteBuffer)null : java.nio.ByteBuffer.wrap(serialisedTree.clone());
+    return this;
+  }
+
+  public SetupMessageStruct setSerialisedTree(java.nio.ByteBuffer serialisedTree) {
+    this.serialisedTree = org.apache.thrift.TBaseHelper.copyBinary(serialisedTree);
+    return this;
+  }
+
+  public void unsetSerialisedTree() {
+    this.serialisedTree = null;
+  }
+
+  /** Returns true if field serialisedTree is set (has been assigned a value) and false otherwise */
+  public boolean isSetSerialisedTree() {
+    return this.serialisedTree != null;
+  }
+
+  public void setSerialisedTreeIsSet(boolean value) {
+    if (!value) {
+      this.serialisedTree = null;
+    }
+  }
+
+  public int getAeadSuiteId() {
+    return this.aeadSuiteId;
+  }
+
+  public SetupMessageStruct setAeadSuiteId(int aeadSuiteId) {
+    this.aeadSuiteId = aeadSuiteId;
+    setAeadSuiteIdIsSet(true);
+    return this;
+  }
+
+  public void unsetAeadSuiteId() {
+    __isset_bitfield = org.apache.thrift.EncodingUtils.clearBit(__isset_bitfield, __AEADSUITEID_ISSET_ID);
+  }
+
+  /** Returns true if field aeadSuiteId is set (has been assigned a value) and false otherwise */
+  public boolean isSetAeadSuiteId() {
+    return org.apache.thrift.EncodingUtils.testBit(__isset_bitfield, __AEADSUITEID_ISSET_ID);
+  }
+
+  public void setAeadSuiteIdIsSet(boolean value) {
+    __isset_bitfield = org.apache.thrift.EncodingUtils.setBit(__isset_bitfield, __AEADSUITEID_ISSET_ID, value);
+  }
+
   public void setFieldValue(_Fields field, java.lang.Object value) {
     switch (field) {
     case LEAF_NUM:
@@ -375,6 +624,70 @@ public class SetupMessageStruct implements org.apache.thrift.TBase<SetupMessageS
       }
       break;
 
+    case TREE_HASH:
+      if (value == null) {
+        unsetTreeHash();
+      } else {
+        if (value instanceof byte[]) {
+          setTreeHash((byte[])value);
+        } else {
+          setTreeHash((java.nio.ByteBuffer)value);
+        }
+      }
+      break;
+
+    case VERSION:
+      if (value == null) {
+        unsetVersion();
+      } else {
+        setVersion((java.lang.Integer)value);
+      }
+      break;
+
+    case PACKED_IDENTITIES:
+      if (value == null) {
+        unsetPackedIdentities();
+      } else {
+        if (value instanceof byte[]) {
+          setPackedIdentities((byte[])value);
+        } else {
+          setPackedIdentities((java.nio.ByteBuffer)value);
+        }
+      }
+      break;
+
+    case PACKED_EPHEMERAL_KEYS:
+      if (value == null) {
+        unsetPackedEphemeralKeys();
+      } else {
+        if (value instanceof byte[]) {
+          setPackedEphemeralKeys((byte[])value);
+        } else {
+          setPackedEphemeralKeys((java.nio.ByteBuffer)value);
+        }
+      }
+      break;
+
+    case SERIALISED_TREE:
+      if (value == null) {
+        unsetSerialisedTree();
+      } else {
+        if (value instanceof byte[]) {
+          setSerialisedTree((byte[])value);
+        } else {
+          setSerialisedTree((java.nio.ByteBuffer)value);
+        }
+      }
+      break;
+
+    case AEAD_SUITE_ID:
+      if (value == null) {
+        unsetAeadSuiteId();
+      } else {
+        setAeadSuiteId((java.lang.Integer)value);
+      }
+      break;
+
     }
   }
 
@@ -395,6 +708,24 @@ public class SetupMessageStruct implements org.apache.thrift.TBase<SetupMessageS
     case TREE:
       return getTree();
 
+    case TREE_HASH:
+      return getTreeHash();
+
+    case VERSION:
+      return getVersion();
+
+    case PACKED_IDENTITIES:
+      return getPackedIdentities();
+
+    case PACKED_EPHEMERAL_KEYS:
+      return getPackedEphemeralKeys();
+
+    case SERIALISED_TREE:
+      return getSerialisedTree();
+
+    case AEAD_SUITE_ID:
+      return getAeadSuiteId();
+
     }
     throw new java.lang.IllegalStateException();
   }
@@ -416,6 +747,18 @@ public class SetupMessageStruct implements org.apache.thrift.TBase<SetupMessageS
       return isSetKeyExchangeKey();
     case TREE:
       return isSetTree();
+    case TREE_HASH:
+      return isSetTreeHash();
+    case VERSION:
+      return isSetVersion();
+    case PACKED_IDENTITIES:
+      return isSetPackedIdentities();
+    case PACKED_EPHEMERAL_KEYS:
+      return isSetPackedEphemeralKeys();
+    case SERIALISED_TREE:
+      return isSetSerialisedTree();
+    case AEAD_SUITE_ID:
+      return isSetAeadSuiteId();
     }
     throw new java.lang.IllegalStateException();
   }
@@ -480,6 +823,60 @@ public class SetupMessageStruct implements org.apache.thrift.TBase<SetupMessageS
         return false;
     }
 
+    boolean this_present_treeHash = true && this.isSetTreeHash();
+    boolean that_present_treeHash = true && that.isSetTreeHash();
+    if (this_present_treeHash || that_present_treeHash) {
+      if (!(this_present_treeHash && that_present_treeHash))
+        return false;
+      if (!this.treeHash.equals(that.treeHash))
+        return false;
+    }
+
+    boolean this_present_version = true && this.isSetVersion();
+    boolean that_present_version = true && that.isSetVersion();
+    if (this_present_version || that_present_version) {
+      if (!(this_present_version && that_present_version))
+        return false;
+      if (this.version != that.version)
+        return false;
+    }
+
+    boolean this_present_packedIdentities = true && this.isSetPackedIdentities();
+    boolean that_present_packedIdentities = true && that.isSetPackedIdentities();
+    if (this_present_packedIdentities || that_present_packedIdentities) {
+      if (!(this_present_packedIdentities && that_present_packedIdentities))
+        return false;
+      if (!this.packedIdentities.equals(that.packedIdentities))
+        return false;
+    }
+
+    boolean this_present_packedEphemeralKeys = true && this.isSetPackedEphemeralKeys();
+    boolean that_present_packedEphemeralKeys = true && that.isSetPackedEphemeralKeys();
+    if (this_present_packedEphemeralKeys || that_present_packedEphemeralKeys) {
+      if (!(this_present_packedEphemeralKeys && that_present_packedEphemeralKeys))
+        return false;
+      if (!this.packedEphemeralKeys.equals(that.packedEphemeralKeys))
+        return false;
+    }
+
+    boolean this_present_serialisedTree = true && this.isSetSerialisedTree();
+    boolean that_present_serialisedTree = true && that.isSetSerialisedTree();
+    if (this_present_serialisedTree || that_present_serialisedTree) {
+      if (!(this_present_serialisedTree && that_present_serialisedTree))
+        return false;
+      if (!this.serialisedTree.equals(that.serialisedTree))
+        return false;
+    }
+
+    boolean this_present_aeadSuiteId = true && this.isSetAeadSuiteId();
+    boolean that_present_aeadSuiteId = true && that.isSetAeadSuiteId();
+    if (this_present_aeadSuiteId || that_present_aeadSuiteId) {
+      if (!(this_present_aeadSuiteId && that_present_aeadSuiteId))
+        return false;
+      if (this.aeadSuiteId != that.aeadSuiteId)
+        return false;
+    }
+
     return true;
   }
 
@@ -505,6 +902,30 @@ public class SetupMessageStruct implements org.apache.thrift.TBase<SetupMessageS
     if (isSetTree())
       hashCode = hashCode * 8191 + tree.hashCode();
 
+    hashCode = hashCode * 8191 + ((isSetTreeHash()) ? 131071 : 524287);
+    if (isSetTreeHash())
+      hashCode = hashCode * 8191 + treeHash.hashCode();
+
+    hashCode = hashCode * 8191 + ((isSetVersion()) ? 131071 : 524287);
+    if (isSetVersion())
+      hashCode = hashCode * 8191 + version;
+
+    hashCode = hashCode * 8191 + ((isSetPackedIdentities()) ? 131071 : 524287);
+    if (isSetPackedIdentities())
+      hashCode = hashCode * 8191 + packedIdentities.hashCode();
+
+    hashCode = hashCode * 8191 + ((isSetPackedEphemeralKeys()) ? 131071 : 524287);
+    if (isSetPackedEphemeralKeys())
+      hashCode = hashCode * 8191 + packedEphemeralKeys.hashCode();
+
+    hashCode = hashCode * 8191 + ((isSetSerialisedTree()) ? 131071 : 524287);
+    if (isSetSerialisedTree())
+      hashCode = hashCode * 8191 + serialisedTree.hashCode();
+
+    hashCode = hashCode * 8191 + ((isSetAeadSuiteId()) ? 131071 : 524287);
+    if (isSetAeadSuiteId())
+      hashCode = hashCode * 8191 + aeadSuiteId;
+
     return hashCode;
   }
 
@@ -566,6 +987,66 @@ public class SetupMessageStruct implements org.apache.thrift.TBase<SetupMessageS
         return lastComparison;
       }
     }
+    lastComparison = java.lang.Boolean.valueOf(isSetTreeHash()).compareTo(other.isSetTreeHash());
+    if (lastComparison != 0) {
+      return lastComparison;
+    }
+    if (isSetTreeHash()) {
+      lastComparison = org.apache.thrift.TBaseHelper.compareTo(this.treeHash, other.treeHash);
+      if (lastComparison != 0) {
+        return lastComparison;
+      }
+    }
+    lastComparison = java.lang.Boolean.valueOf(isSetVersion()).compareTo(other.isSetVersion());
+    if (lastComparison != 0) {
+      return lastComparison;
+    }
+    if (isSetVersion()) {
+      lastComparison = org.apache.thrift.TBaseHelper.compareTo(this.version, other.version);
+      if (lastComparison != 0) {
+        return lastComparison;
+      }
+    }
+    lastComparison = java.lang.Boolean.valueOf(isSetPackedIdentities()).compareTo(other.isSetPackedIdentities());
+    if (lastComparison != 0) {
+      return lastComparison;
+    }
+    if (isSetPackedIdentities()) {
+      lastComparison = org.apache.thrift.TBaseHelper.compareTo(this.packedIdentities, other.packedIdentities);
+      if (lastComparison != 0) {
+        return lastComparison;
+      }
+    }
+    lastComparison = java.lang.Boolean.valueOf(isSetPackedEphemeralKeys()).compareTo(other.isSetPackedEphemeralKeys());
+    if (lastComparison != 0) {
+      return lastComparison;
+    }
+    if (isSetPackedEphemeralKeys()) {
+      lastComparison = org.apache.thrift.TBaseHelper.compareTo(this.packedEphemeralKeys, other.packedEphemeralKeys);
+      if (lastComparison != 0) {
+        return lastComparison;
+      }
+    }
+    lastComparison = java.lang.Boolean.valueOf(isSetSerialisedTree()).compareTo(other.isSetSerialisedTree());
+    if (lastComparison != 0) {
+      return lastComparison;
+    }
+    if (isSetSerialisedTree()) {
+      lastComparison = org.apache.thrift.TBaseHelper.compareTo(this.serialisedTree, other.serialisedTree);
+      if (lastComparison != 0) {
+        return lastComparison;
+      }
+    }
+    lastComparison = java.lang.Boolean.valueOf(isSetAeadSuiteId()).compareTo(other.isSetAeadSuiteId());
+    if (lastComparison != 0) {
+      return lastComparison;
+    }
+    if (isSetAeadSuiteId()) {
+      lastComparison = org.apache.thrift.TBaseHelper.compareTo(this.aeadSuiteId, other.aeadSuiteId);
+      if (lastComparison != 0) {
+        return lastComparison;
+      }
+    }
     return 0;
   }
 
@@ -621,6 +1102,58 @@ public class SetupMessageStruct implements org.apache.thrift.TBase<SetupMessageS
       sb.append(this.tree);
     }
     first = false;
+    if (isSetTreeHash()) {
+      if (!first) sb.append(", ");
+      sb.append("treeHash:");
+      if (this.treeHash == null) {
+        sb.append("null");
+      } else {
+        org.apache.thrift.TBaseHelper.toString(this.treeHash, sb);
+      }
+      first = false;
+    }
+    if (isSetVersion()) {
+      if (!first) sb.append(", ");
+      sb.append("version:");
+      sb.append(this.version);
+      first = false;
+    }
+    if (isSetPackedIdentities()) {
+      if (!first) sb.append(", ");
+      sb.append("packedIdentities:");
+      if (this.packedIdentities == null) {
+        sb.append("null");
+      } else {
+        org.apache.thrift.TBaseHelper.toString(this.packedIdentities, sb);
+      }
+      first = false;
+    }
+    if (isSetPackedEphemeralKeys()) {
+      if (!first) sb.append(", ");
+      sb.append("packedEphemeralKeys:");
+      if (this.packedEphemeralKeys == null) {
+        sb.append("null");
+      } else {
+        org.apache.thrift.TBaseHelper.toString(this.packedEphemeralKeys, sb);
+      }
+      first = false;
+    }
+    if (isSetSerialisedTree()) {
+      if (!first) sb.append(", ");
+      sb.append("serialisedTree:");
+      if (this.serialisedTree == null) {
+        sb.append("null");
+      } else {
+        org.apache.thrift.TBaseHelper.toString(this.serialisedTree, sb);
+      }
+      first = false;
+    }
+    if (isSetAeadSuiteId()) {
+      if (!first) sb.append(", ");
+      sb.append("aeadSuiteId:");
+      sb.append(this.aeadSuiteId);
+      first = false;
+    }
     sb.append(")");
     return sb.toString();
   }
@@ -729,6 +1262,54 @@ public class SetupMessageStruct implements org.apache.thrift.TBase<SetupMessageS
               org.apache.thrift.protocol.TProtocolUtil.skip(iprot, schemeField.type);
             }
             break;
+          case 6: // TREE_HASH
+            if (schemeField.type == org.apache.thrift.protocol.TType.STRING) {
+              struct.treeHash = iprot.readBinary();
+              struct.setTreeHashIsSet(true);
+            } else { 
+              org.apache.thrift.protocol.TProtocolUtil.skip(iprot, schemeField.type);
+            }
+            break;
+          case 7: // VERSION
+            if (schemeField.type == org.apache.thrift.protocol.TType.I32) {
+              struct.version = iprot.readI32();
+              struct.setVersionIsSet(true);
+            } else { 
+              org.apache.thrift.protocol.TProtocolUtil.skip(iprot, schemeField.type);
+            }
+            break;
+          case 8: // PACKED_IDENTITIES
+            if (schemeField.type == org.apache.thrift.protocol.TType.STRING) {
+              struct.packedIdentities = iprot.readBinary();
+              struct.setPackedIdentitiesIsSet(true);
+            } else { 
+              org.apache.thrift.protocol.TProtocolUtil.skip(iprot, schemeField.type);
+            }
+            break;
+          case 9: // PACKED_EPHEMERAL_KEYS
+            if (schemeField.type == org.apache.thrift.protocol.TType.STRING) {
+              struct.packedEphemeralKeys = iprot.readBinary();
+              struct.setPackedEphemeralKeysIsSet(true);
+            } else { 
+              org.apache.thrift.protocol.TProtocolUtil.skip(iprot, schemeField.type);
+            }
+            break;
+          case 10: // SERIALISED_TREE
+            if (schemeField.type == org.apache.thrift.protocol.TType.STRING) {
+              struct.serialisedTree = iprot.readBinary();
+              struct.setSerialisedTreeIsSet(true);
+            } else { 
+              org.apache.thrift.protocol.TProtocolUtil.skip(iprot, schemeField.type);
+            }
+            break;
+          case 11: // AEAD_SUITE_ID
+            if (schemeField.type == org.apache.thrift.protocol.TType.I32) {
+              struct.aeadSuiteId = iprot.readI32();
+              struct.setAeadSuiteIdIsSet(true);
+            } else { 
+              org.apache.thrift.protocol.TProtocolUtil.skip(iprot, schemeField.type);
+            }
+            break;
           default:
             org.apache.thrift.protocol.TProtocolUtil.skip(iprot, schemeField.type);
         }
@@ -782,6 +1363,44 @@ public class SetupMessageStruct implements org.apache.thrift.TBase<SetupMessageS
         struct.tree.write(oprot);
         oprot.writeFieldEnd();
       }
+      if (struct.treeHash != null) {
+        if (struct.isSetTreeHash()) {
+          oprot.writeFieldBegin(TREE_HASH_FIELD_DESC);
+          oprot.writeBinary(struct.treeHash);
+          oprot.writeFieldEnd();
+        }
+      }
+      if (struct.isSetVersion()) {
+        oprot.writeFieldBegin(VERSION_FIELD_DESC);
+        oprot.writeI32(struct.version);
+        oprot.writeFieldEnd();
+      }
+      if (struct.packedIdentities != null) {
+        if (struct.isSetPackedIdentities()) {
+          oprot.writeFieldBegin(PACKED_IDENTITIES_FIELD_DESC);
+          oprot.writeBinary(struct.packedIdentities);
+          oprot.writeFieldEnd();
+        }
+      }
+      if (struct.packedEphemeralKeys != null) {
+        if (struct.isSetPackedEphemeralKeys()) {
+          oprot.writeFieldBegin(PACKED_EPHEMERAL_KEYS_FIELD_DESC);
+          oprot.writeBinary(struct.packedEphemeralKeys);
+          oprot.writeFieldEnd();
+        }
+      }
+      if (struct.serialisedTree != null) {
+        if (struct.isSetSerialisedTree()) {
+          oprot.writeFieldBegin(SERIALISED_TREE_FIELD_DESC);
+          oprot.writeBinary(struct.serialisedTree);
+          oprot.writeFieldEnd();
+        }
+      }
+      if (struct.isSetAeadSuiteId()) {
+        oprot.writeFieldBegin(AEAD_SUITE_ID_FIELD_DESC);
+        oprot.writeI32(struct.aeadSuiteId);
+        oprot.writeFieldEnd();
+      }
       oprot.writeFieldStop();
       oprot.writeStructEnd();
     }
@@ -815,7 +1434,25 @@ public class SetupMessageStruct implements org.apache.thrift.TBase<SetupMessageS
       if (struct.isSetTree()) {
         optionals.set(4);
       }
-      oprot.writeBitSet(optionals, 5);
+      if (struct.isSetTreeHash()) {
+        optionals.set(5);
+      }
+      if (struct.isSetVersion()) {
+        optionals.set(6);
+      }
+      if (struct.isSetPackedIdentities()) {
+        optionals.set(7);
+      }
+      if (struct.isSetPackedEphemeralKeys()) {
+        optionals.set(8);
+      }
+      if (struct.isSetSerialisedTree()) {
+        optionals.set(9);
+      }
+      if (struct.isSetAeadSuiteId()) {
+        optionals.set(10);
+      }
+      oprot.writeBitSet(optionals, 11);
       if (struct.isSetLeafNum()) {
         oprot.writeI32(struct.leafNum);
       }
@@ -844,12 +1481,30 @@ public class SetupMessageStruct implements org.apache.thrift.TBase<SetupMessageS
       if (struct.isSetTree()) {
         struct.tree.write(oprot);
       }
+      if (struct.isSetTreeHash()) {
+        oprot.writeBinary(struct.treeHash);
+      }
+      if (struct.isSetVersion()) {
+        oprot.writeI32(struct.version);
+      }
+      if (struct.isSetPackedIdentities()) {
+        oprot.writeBinary(struct.packedIdentities);
+      }
+      if (struct.isSetPackedEphemeralKeys()) {
+        oprot.writeBinary(struct.packedEphemeralKeys);
+      }
+      if (struct.isSetSerialisedTree()) {
+        oprot.writeBinary(struct.serialisedTree);
+      }
+      if (struct.isSetAeadSuiteId()) {
+        oprot.writeI32(struct.aeadSuiteId);
+      }
     }
 
     @Override
     public void read(org.apache.thrift.protocol.TProtocol prot, SetupMessageStruct struct) throws org.apache.thrift.TException {
       org.apache.thrift.protocol.TTupleProtocol iprot = (org.apache.thrift.protocol.TTupleProtocol) prot;
-      java.util.BitSet incoming = iprot.readBitSet(5);
+      java.util.BitSet incoming = iprot.readBitSet(11);
       if (incoming.get(0)) {
         struct.leafNum = iprot.readI32();
         struct.setLeafNumIsSet(true);
@@ -891,6 +1546,30 @@ public class SetupMessageStruct implements org.apache.thrift.TBase<SetupMessageS
         struct.tree.read(iprot);
         struct.setTreeIsSet(true);
       }
+      if (incoming.get(5)) {
+        struct.treeHash = iprot.readBinary();
+        struct.setTreeHashIsSet(true);
+      }
+      if (incoming.get(6)) {
+        struct.version = iprot.readI32();
+        struct.setVersionIsSet(true);
+      }
+      if (incoming.get(7)) {
+        struct.packedIdentities = iprot.readBinary();
+        struct.setPackedIdentitiesIsSet(true);
+      }
+      if (incoming.get(8)) {
+        struct.packedEphemeralKeys = iprot.readBinary();
+        struct.setPackedEphemeralKeysIsSet(true);
+      }
+      if (incoming.get(9)) {
+        struct.serialisedTree = iprot.readBinary();
+        struct.setSerialisedTreeIsSet(true);
+      }
+      if (incoming.get(10)) {
+        struct.aeadSuiteId = iprot.readI32();
+        struct.setAeadSuiteIdIsSet(true);
+      }
     }
   }
 
@@ -7,23 +7,32 @@
 package com.facebook.research.asynchronousratchetingtree.art.message.thrift;
 
 @SuppressWarnings({"cast", "rawtypes", "serial", "unchecked", "unused"})
-@javax.annotation.Generated(value = "Autogenerated by Thrift Compiler (0.10.0)", date = "2018-01-05")
+@javax.annotation.Generated(value = "Autogenerated by Thrift Compiler (0.10.0)", date = "2026-10-18")
 public class UpdateMessageStruct implements org.apache.thrift.TBase<UpdateMessageStruct, UpdateMessageStruct._Fields>, java.io.Serializable, Cloneable, Comparable<UpdateMessageStruct> {
   private static final org.apache.thrift.protocol.TStruct STRUCT_DESC = new org.apache.thrift.protocol.TStruct("UpdateMessageStruct");
 
   private static final org.apache.thrift.protocol.TField LEAF_NUM_FIELD_DESC = new org.apache.thrift.protocol.TField("leafNum", org.apache.thrift.protocol.TType.I32, (short)1);
   private static final org.apache.thrift.protocol.TField PATH_FIELD_DESC = new org.apache.thrift.protocol.TField("path", org.apache.thrift.protocol.TType.LIST, (short)2);
+  private static final org.apache.thrift.protocol.TField COPATH_HASHES_FIELD_DESC = new org.apache.thrift.protocol.TField("copathHashes", org.apache.thrift.protocol.TType.LIST, (short)3);
+  private static final org.apache.thrift.protocol.TField VERSION_FIELD_DESC = new org.apache.thrift.protocol.TField("version", org.apache.thrift.protocol.TType.I32, (short)4);
+  private static final org.apache.thrift.protocol.TField PACKED_PATH_FIELD_DESC = new org.apache.thrift.protocol.TField("packedPath", org.apache.thrift.protocol.TType.STRING, (short)5);
 
   private static final org.apache.thrift.scheme.SchemeFactory STANDARD_SCHEME_FACTORY = new UpdateMessageStructStandardSchemeFactory();
   private static final org.apache.thrift.scheme.SchemeFactory TUPLE_SCHEME_FACTORY = new UpdateMessageStructTupleSchemeFactory();
 
   public int leafNum; // required
   public java.util.List<java.lang.String> path; // required
+  public java.util.List<java.nio.ByteBuffer> copathHashes; // optional
+  public int version; // optional
+  public java.nio.ByteBuffer packedPath; // optional
 
   /** The set of fields this struct contains, along with convenience methods for finding and manipulating them. */
   public enum _Fields implements org.apache.thrift.TFieldIdEnum {
     LEAF_NUM((short)1, "leafNum"),
-    PATH((short)2, "path");
+    PATH((short)2, "path"),
+    COPATH_HASHES((short)3, "copathHashes"),
+    VERSION((short)4, "version"),
+    PACKED_PATH((short)5, "packedPath");
 
     private static final java.util.Map<java.lang.String, _Fields> byName = new java.util.HashMap<java.lang.String, _Fields>();
 
@@ -42,6 +51,12 @@ public class UpdateMessageStruct implements org.apache.thrift.TBase<UpdateMessag
           return LEAF_NUM;
         case 2: // PATH
           return PATH;
+        case 3: // COPATH_HASHES
+          return COPATH_HASHES;
+        case 4: // VERSION
+          return VERSION;
+        case 5: // PACKED_PATH
+          return PACKED_PATH;
         default:
           return null;
       }
@@ -83,7 +98,9 @@ public class UpdateMessageStruct implements org.apache.thrift.TBase<UpdateMessag
 
   // isset id assignments
   private static final int __LEAFNUM_ISSET_ID = 0;
+  private static final int __VERSION_ISSET_ID = 1;
   private byte __isset_bitfield = 0;
+  private static final _Fields optionals[] = {_Fields.COPATH_HASHES,_Fields.VERSION,_Fields.PACKED_PATH};
   public static final java.util.Map<_Fields, org.apache.thrift.meta_data.FieldMetaData> metaDataMap;
   static {
     java.util.Map<_Fields, org.apache.thrift.meta_data.FieldMetaData> tmpMap = new java.util.EnumMap<_Fields, org.apache.thrift.meta_data.FieldMetaData>(_Fields.class);
@@ -92,6 +109,13 @@ public class UpdateMessageStruct implements org.apache.thrift.TBase<UpdateMessag
     tmpMap.put(_Fields.PATH, new org.apache.thrift.meta_data.FieldMetaData("path", org.apache.thrift.TFieldRequirementType.DEFAULT, 
         new org.apache.thrift.meta_data.ListMetaData(org.apache.thrift.protocol.TType.LIST, 
             new org.apache.thrift.meta_data.FieldValueMetaData(org.apache.thrift.protocol.TType.STRING))));
+    tmpMap.put(_Fields.COPATH_HASHES, new org.apache.thrift.meta_data.FieldMetaData("copathHashes", org.apache.thrift.TFieldRequirementType.OPTIONAL, 
+        new org.apache.thrift.meta_data.ListMetaData(org.apache.thrift.protocol.TType.LIST, 
+            new org.apache.thrift.meta_data.FieldValueMetaData(org.apache.thrift.protocol.TType.STRING            , true))));
+    tmpMap.put(_Fields.VERSION, new org.apache.thrift.meta_data.FieldMetaData("version", org.apache.thrift.TFieldRequirementType.OPTIONAL, 
+        new org.apache.thrift.meta_data.FieldValueMetaData(org.apache.thrift.protocol.TType.I32)));
+    tmpMap.put(_Fields.PACKED_PATH, new org.apache.thrift.meta_data.FieldMetaData("packedPath", org.apache.thrift.TFieldRequirementType.OPTIONAL, 
+        new org.apache.thrift.meta_data.FieldValueMetaData(org.apache.thrift.protocol.TType.STRING        , true)));
     metaDataMap = java.util.Collections.unmodifiableMap(tmpMap);
     org.apache.thrift.meta_data.FieldMetaData.addStructMetaDataMap(UpdateMessageStruct.class, metaDataMap);
   }
@@ -119,6 +143,14 @@ public class UpdateMessageStruct implements org.apache.thrift.TBase<UpdateMessag
       java.util.List<java.lang.String> __this__path = new java.util.ArrayList<java.lang.String>(other.path);
       this.path = __this__path;
     }
+    if (other.isSetCopathHashes()) {
+      java.util.List<java.nio.ByteBuffer> __this__copathHashes = new java.util.ArrayList<java.nio.ByteBuffer>(other.copathHashes);
+      this.copathHashes = __this__copathHashes;
+    }
+    this.version = other.version;
+    if (other.isSetPackedPath()) {
+      this.packedPath = org.apache.thrift.TBaseHelper.copyBinary(other.packedPath);
+    }
   }
 
   public UpdateMessageStruct deepCopy() {
@@ -130,6 +162,10 @@ public class UpdateMessageStruct implements org.apache.thrift.TBase<UpdateMessag
     setLeafNumIsSet(false);
     this.leafNum = 0;
     this.path = null;
+    this.copathHashes = null;
+    setVersionIsSet(false);
+    this.version = 0;
+    this.packedPath = null;
   }
 
   public int getLeafNum() {
@@ -194,6 +230,102 @@ public class UpdateMessageStruct implements org.apache.thrift.TBase<UpdateMessag
     }
   }
 
+  public int getCopathHashesSize() {
+    return (this.copathHashes == null) ? 0 : this.copathHashes.size();
+  }
+
+  public java.util.Iterator<java.nio.ByteBuffer> getCopathHashesIterator() {
+    return (this.copathHashes == null) ? null : this.copathHashes.iterator();
+  }
+
+  public void addToCopathHashes(java.nio.ByteBuffer elem) {
+    if (this.copathHashes == null) {
+      this.copathHashes = new java.util.ArrayList<java.nio.ByteBuffer>();
+    }
+    this.copathHashes.add(elem);
+  }
+
+  public java.util.List<java.nio.ByteBuffer> getCopathHashes() {
+    return this.copathHashes;
+  }
+
+  public UpdateMessageStruct setCopathHashes(java.util.List<java.nio.ByteBuffer> copathHashes) {
+    this.copathHashes = copathHashes;
+    return this;
+  }
+
+  public void unsetCopathHashes() {
+    this.copathHashes = null;
+  }
+
+  /** Returns true if field copathHashes is set (has been assigned a value) and false otherwise */
+  public boolean isSetCopathHashes() {
+    return this.copathHashes != null;
+  }
+
+  public void setCopathHashesIsSet(boolean value) {
+    if (!value) {
+      this.copathHashes = null;
+    }
+  }
+
+  public int getVersion() {
+    return this.version;
+  }
+
+  public UpdateMessageStruct setVersion(int version) {
+    this.version = version;
+    setVersionIsSet(true);
+    return this;
+  }
+
+  public void unsetVersion() {
+    __isset_bitfield = org.apache.thrift.EncodingUtils.clearBit(__isset_bitfield, __VERSION_ISSET_ID);
+  }
+
+  /** Returns true if field version is set (has been assigned a value) and false otherwise */
+  public boolean isSetVersion() {
+    return org.apache.thrift.EncodingUtils.testBit(__isset_bitfield, __VERSION_ISSET_ID);
+  }
+
+  public void setVersionIsSet(boolean value) {
+    __isset_bitfield = org.apache.thrift.EncodingUtils.setBit(__isset_bitfield, __VERSION_ISSET_ID, value);
+  }
+
+  public byte[] getPackedPath() {
+    setPackedPath(org.apache.thrift.TBaseHelper.rightSize(packedPath));
+    return packedPath == null ? null : packedPath.array();
+  }
+
+  public java.nio.ByteBuffer bufferForPackedPath() {
+    return org.apache.thrift.TBaseHelper.copyBinary(packedPath);
+  }
+
+  public UpdateMessageStruct setPackedPath(byte[] packedPath) {
+    this.packedPath = packedPath == null ? (java.nio.ByteBuffer)null : java.nio.ByteBuffer.wrap(packedPath.clone());
+    return this;
+  }
+
+  public UpdateMessageStruct setPackedPath(java.nio.ByteBuffer packedPath) {
+    this.packedPath = org.apache.thrift.TBaseHelper.copyBinary(packedPath);
+    return this;
+  }
+
+  public void unsetPackedPath() {
+    this.packedPath = null;
+  }
+
+  /** Returns true if field packedPath is set (has been assigned a value) and false otherwise */
+  public boolean isSetPackedPath() {
+    return this.packedPath != null;
+  }
+
+  public void setPackedPathIsSet(boolean value) {
+    if (!value) {
+      this.packedPath = null;
+    }
+  }
+
   public void setFieldValue(_Fields field, java.lang.Object value) {
     switch (field) {
     case LEAF_NUM:
@@ -212,6 +344,34 @@ public class UpdateMessageStruct implements org.apache.thrift.TBase<UpdateMessag
       }
       break;
 
+    case COPATH_HASHES:
+      if (value == null) {
+        unsetCopathHashes();
+      } else {
+        setCopathHashes((java.util.List<java.nio.ByteBuffer>)value);
+      }
+      break;
+
+    case VERSION:
+      if (value == null) {
+        unsetVersion();
+      } else {
+        setVersion((java.lang.Integer)value);
+      }
+      break;
+
+    case PACKED_PATH:
+      if (value == null) {
+        unsetPackedPath();
+      } else {
+        if (value instanceof byte[]) {
+          setPackedPath((byte[])value);
+        } else {
+          setPackedPath((java.nio.ByteBuffer)value);
+        }
+      }
+      break;
+
     }
   }
 
@@ -223,6 +383,15 @@ public class UpdateMessageStruct implements org.apache.thrift.TBase<UpdateMessag
     case PATH:
       return getPath();
 
+    case COPATH_HASHES:
+      return getCopathHashes();
+
+    case VERSION:
+      return getVersion();
+
+    case PACKED_PATH:
+      return getPackedPath();
+
     }
     throw new java.lang.IllegalStateException();
   }
@@ -238,6 +407,12 @@ public class UpdateMessageStruct implements org.apache.thrift.TBase<UpdateMessag
       return isSetLeafNum();
     case PATH:
       return isSetPath();
+    case COPATH_HASHES:
+      return isSetCopathHashes();
+    case VERSION:
+      return isSetVersion();
+    case PACKED_PATH:
+      return isSetPackedPath();
     }
     throw new java.lang.IllegalStateException();
   }
@@ -275,6 +450,33 @@ public class UpdateMessageStruct implements org.apache.thrift.TBase<UpdateMessag
         return false;
     }
 
+    boolean this_present_copathHashes = true && this.isSetCopathHashes();
+    boolean that_present_copathHashes = true && that.isSetCopathHashes();
+    if (this_present_copathHashes || that_present_copathHashes) {
+      if (!(this_present_copathHashes && that_present_copathHashes))
+        return false;
+      if (!this.copathHashes.equals(that.copathHashes))
+        return false;
+    }
+
+    boolean this_present_version = true && this.isSetVersion();
+    boolean that_present_version = true && that.isSetVersion();
+    if (this_present_version || that_present_version) {
+      if (!(this_present_version && that_present_version))
+        return false;
+      if (this.version != that.version)
+        return false;
+    }
+
+    boolean this_present_packedPath = true && this.isSetPackedPath();
+    boolean that_present_packedPath = true && that.isSetPackedPath();
+    if (this_present_packedPath || that_present_packedPath) {
+      if (!(this_present_packedPath && that_present_packedPath))
+        return false;
+      if (!this.packedPath.equals(that.packedPath))
+        return false;
+    }
+
     return true;
   }
 
@@ -288,6 +490,18 @@ public class UpdateMessageStruct implements org.apache.thrift.TBase<UpdateMessag
     if (isSetPath())
       hashCode = hashCode * 8191 + path.hashCode();
 
+    hashCode = hashCode * 8191 + ((isSetCopathHashes()) ? 131071 : 524287);
+    if (isSetCopathHashes())
+      hashCode = hashCode * 8191 + copathHashes.hashCode();
+
+    hashCode = hashCode * 8191 + ((isSetVersion()) ? 131071 : 524287);
+    if (isSetVersion())
+      hashCode = hashCode * 8191 + version;
+
+    hashCode = hashCode * 8191 + ((isSetPackedPath()) ? 131071 : 524287);
+    if (isSetPackedPath())
+      hashCode = hashCode * 8191 + packedPath.hashCode();
+
     return hashCode;
   }
 
@@ -319,6 +533,36 @@ public class UpdateMessageStruct implements org.apache.thrift.TBase<UpdateMessag
         return lastComparison;
       }
     }
+    lastComparison = java.lang.Boolean.valueOf(isSetCopathHashes()).compareTo(other.isSetCopathHashes());
+    if (lastComparison != 0) {
+      return lastComparison;
+    }
+    if (isSetCopathHashes()) {
+      lastComparison = org.apache.thrift.TBaseHelper.compareTo(this.copathHashes, other.copathHashes);
+      if (lastComparison != 0) {
+        return lastComparison;
+      }
+    }
+    lastComparison = java.lang.Boolean.valueOf(isSetVersion()).compareTo(other.isSetVersion());
+    if (lastComparison != 0) {
+      return lastComparison;
+    }
+    if (isSetVersion()) {
+      lastComparison = org.apache.thrift.TBaseHelper.compareTo(this.version, other.version);
+      if (lastComparison != 0) {
+        return lastComparison;
+      }
+    }
+    lastComparison = java.lang.Boolean.valueOf(isSetPackedPath()).compareTo(other.isSetPackedPath());
+    if (lastComparison != 0) {
+      return lastComparison;
+    }
+    if (isSetPackedPath()) {
+      lastComparison = org.apache.thrift.TBaseHelper.compareTo(this.packedPath, other.packedPath);
+      if (lastComparison != 0) {
+        return lastComparison;
+      }
+    }
     return 0;
   }
 
@@ -350,6 +594,32 @@ public class UpdateMessageStruct implements org.apache.thrift.TBase<UpdateMessag
       sb.append(this.path);
     }
     first = false;
+    if (isSetCopathHashes()) {
+      if (!first) sb.append(", ");
+      sb.append("copathHashes:");
+      if (this.copathHashes == null) {
+        sb.append("null");
+      } else {
+        sb.append(this.copathHashes);
+      }
+      first = false;
+    }
+    if (isSetVersion()) {
+      if (!first) sb.append(", ");
+      sb.append("version:");
+      sb.append(this.version);
+      first = false;
+    }
+    if (isSetPackedPath()) {
+      if (!first) sb.append(", ");
+      sb.append("packedPath:");
+      if (this.packedPath == null) {
+        sb.append("null");
+      } else {
+        org.apache.thrift.TBaseHelper.toString(this.packedPath, sb);
+      }
+      first = false;
+    }
     sb.append(")");
     return sb.toString();
   }
@@ -421,6 +691,40 @@ public class UpdateMessageStruct implements org.apache.thrift.TBase<UpdateMessag
               org.apache.thrift.protocol.TProtocolUtil.skip(iprot, schemeField.type);
             }
             break;
+          case 3: // COPATH_HASHES
+            if (schemeField.type == org.apache.thrift.protocol.TType.LIST) {
+              {
+                org.apache.thrift.protocol.TList _list21 = iprot.readListBegin();
+                struct.copathHashes = new java.util.ArrayList<java.nio.ByteBuffer>(_list21.size);
+                java.nio.ByteBuffer _elem22;
+                for (int _i23 = 0; _i23 < _list21.size; ++_i23)
+                {
+                  _elem22 = iprot.readBinary();
+                  struct.copathHashes.add(_elem22);
+                }
+                iprot.readListEnd();
+              }
+              struct.setCopathHashesIsSet(true);
+            } else { 
+              org.apache.thrift.protocol.TProtocolUtil.skip(iprot, schemeField.type);
+            }
+            break;
+          case 4: // VERSION
+            if (schemeField.type == org.apache.thrift.protocol.TType.I32) {
+              struct.version = iprot.readI32();
+              struct.setVersionIsSet(true);
+            } else { 
+              org.apache.thrift.protocol.TProtocolUtil.skip(iprot, schemeField.type);
+            }
+            break;
+          case 5: // PACKED_PATH
+            if (schemeField.type == org.apache.thrift.protocol.TType.STRING) {
+              struct.packedPath = iprot.readBinary();
+              struct.setPackedPathIsSet(true);
+            } else { 
+              org.apache.thrift.protocol.TProtocolUtil.skip(iprot, schemeField.type);
+            }
+            break;
           default:
             org.apache.thrift.protocol.TProtocolUtil.skip(iprot, schemeField.type);
         }
@@ -443,14 +747,40 @@ public class UpdateMessageStruct implements org.apache.thrift.TBase<UpdateMessag
         oprot.writeFieldBegin(PATH_FIELD_DESC);
         {
           oprot.writeListBegin(new org.apache.thrift.protocol.TList(org.apache.thrift.protocol.TType.STRING, struct.path.size()));
-          for (java.lang.String _iter21 : struct.path)
+          for (java.lang.String _iter24 : struct.path)
           {
-            oprot.writeString(_iter21);
+            oprot.writeString(_iter24);
           }
           oprot.writeListEnd();
         }
         oprot.writeFieldEnd();
       }
+      if (struct.copathHashes != null) {
+        if (struct.isSetCopathHashes()) {
+          oprot.writeFieldBegin(COPATH_HASHES_FIELD_DESC);
+          {
+            oprot.writeListBegin(new org.apache.thrift.protocol.TList(org.apache.thrift.protocol.TType.STRING, struct.copathHashes.size()));
+            for (java.nio.ByteBuffer _iter25 : struct.copathHashes)
+            {
+              oprot.writeBinary(_iter25);
+            }
+            oprot.writeListEnd();
+          }
+          oprot.writeFieldEnd();
+        }
+      }
+      if (struct.isSetVersion()) {
+        oprot.writeFieldBegin(VERSION_FIELD_DESC);
+        oprot.writeI32(struct.version);
+        oprot.writeFieldEnd();
+      }
+      if (struct.packedPath != null) {
+        if (struct.isSetPackedPath()) {
+          oprot.writeFieldBegin(PACKED_PATH_FIELD_DESC);
+          oprot.writeBinary(struct.packedPath);
+          oprot.writeFieldEnd();
+        }
+      }
       oprot.writeFieldStop();
       oprot.writeStructEnd();
     }
@@ -475,42 +805,87 @@ public class UpdateMessageStruct implements org.apache.thrift.TBase<UpdateMessag
       if (struct.isSetPath()) {
         optionals.set(1);
       }
-      oprot.writeBitSet(optionals, 2);
+      if (struct.isSetCopathHashes()) {
+        optionals.set(2);
+      }
+      if (struct.isSetVersion()) {
+        optionals.set(3);
+      }
+      if (struct.isSetPackedPath()) {
+        optionals.set(4);
+      }
+      oprot.writeBitSet(optionals, 5);
       if (struct.isSetLeafNum()) {
         oprot.writeI32(struct.leafNum);
       }
       if (struct.isSetPath()) {
         {
           oprot.writeI32(struct.path.size());
-          for (java.lang.String _iter22 : struct.path)
+          for (java.lang.String _iter26 : struct.path)
+          {
+            oprot.writeString(_iter26);
+          }
+        }
+      }
+      if (struct.isSetCopathHashes()) {
+        {
+          oprot.writeI32(struct.copathHashes.size());
+          for (java.nio.ByteBuffer _iter27 : struct.copathHashes)
           {
-            oprot.writeString(_iter22);
+            oprot.writeBinary(_iter27);
           }
         }
       }
+      if (struct.isSetVersion()) {
+        oprot.writeI32(struct.version);
+      }
+      if (struct.isSetPackedPath()) {
+        oprot.writeBinary(struct.packedPath);
+      }
     }
 
     @Override
     public void read(org.apache.thrift.protocol.TProtocol prot, UpdateMessageStruct struct) throws org.apache.thrift.TException {
       org.apache.thrift.protocol.TTupleProtocol iprot = (org.apache.thrift.protocol.TTupleProtocol) prot;
-      java.util.BitSet incoming = iprot.readBitSet(2);
+      java.util.BitSet incoming = iprot.readBitSet(5);
       if (incoming.get(0)) {
         struct.leafNum = iprot.readI32();
         struct.setLeafNumIsSet(true);
       }
       if (incoming.get(1)) {
         {
-          org.apache.thrift.protocol.TList _list23 = new org.apache.thrift.protocol.TList(org.apache.thrift.protocol.TType.STRING, iprot.readI32());
-          struct.path = new java.util.ArrayList<java.lang.String>(_list23.size);
-          java.lang.String _elem24;
-          for (int _i25 = 0; _i25 < _list23.size; ++_i25)
+          org.apache.thrift.protocol.TList _list28 = new org.apache.thrift.protocol.TList(org.apache.thrift.protocol.TType.STRING, iprot.readI32());
+          struct.path = new java.util.ArrayList<java.lang.String>(_list28.size);
+          java.lang.String _elem29;
+          for (int _i30 = 0; _i30 < _list28.size; ++_i30)
           {
-            _elem24 = iprot.readString();
-            struct.path.add(_elem24);
+            _elem29 = iprot.readString();
+            struct.path.add(_elem29);
           }
         }
         struct.setPathIsSet(true);
       }
+      if (incoming.get(2)) {
+        {
+          org.apache.thrift.protocol.TList _list31 = new org.apache.thrift.protocol.TList(org.apache.thrift.protocol.TType.STRING, iprot.readI32());
+          struct.copathHashes = new java.util.ArrayList<java.nio.ByteBuffer>(_list31.size);
+          java.nio.ByteBuffer _elem32;
+          for (int _i33 = 0; _i33 < _list31.size; ++_i33)
+          {
+            _elem32 = iprot.readBinary();
+            struct.copathHashes.add(_elem32);
+          }
+        }
+        struct.setCopathHashesIsSet(true);
+      }
+      if (incoming.get(3)) {
+        struct.version = iprot.readI32();
+        struct.setVersionIsSet(true);
+      }
+      if (incoming.get(4)) {
+        struct.packedPath = iprot.readBinary();
+        struct.setPackedPathIsSet(true);
+      }
     }
   }
 
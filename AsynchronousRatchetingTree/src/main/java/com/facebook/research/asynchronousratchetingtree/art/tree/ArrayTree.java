@@ -0,0 +1,378 @@
+/**
+ * Copyright (c) 2017-present, Facebook, Inc.
+ * All rights reserved.
+ *
+ * This source code is licensed under the license found in the
+ * LICENSE file in the root directory of this source tree.
+*/
+
+package com.facebook.research.asynchronousratchetingtree.art.tree;
+
+import com.facebook.research.asynchronousratchetingtree.Utils;
+import com.facebook.research.asynchronousratchetingtree.art.message.thrift.NodeStruct;
+import com.facebook.research.asynchronousratchetingtree.crypto.Crypto;
+import com.facebook.research.asynchronousratchetingtree.crypto.CryptoContext;
+import com.facebook.research.asynchronousratchetingtree.crypto.DHKeyPair;
+import com.facebook.research.asynchronousratchetingtree.crypto.DHPubKey;
+import djb.Curve25519;
+
+import java.security.MessageDigest;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.IntConsumer;
+
+/**
+ * An ART tree held as one flat array of public keys rather than a graph of node objects.
+ *
+ * ART trees are left-balanced: the left subtree of a node with n leaves holds the largest power of two below n. This
+ * is exactly the shape of an in-order array layout with the nodes beyond 2n - 1 cut off, so node positions can be
+ * computed with bit arithmetic alone. Leaves sit at the even indices (leaf i at 2i), and a node's level is the number
+ * of trailing one bits in its index.
+ *
+ * Besides the public keys of every node, a member only stores the secret keys on its own path from leaf to root.
+ * Derivations are identical to the ones performed by SecretParentNode, so a group can mix members using either
+ * representation. The array is updated in place, so unlike the object tree it keeps no earlier epochs for late updates.
+ */
+final public class ArrayTree {
+  private final int numLeaves;
+  private final int width;
+  private final byte[] publicKeys;
+  private final int leafNum;
+  private final int[] path;
+  private final DHKeyPair[] pathKeyPairs;
+  private byte[] treeHashes;
+
+  private ArrayTree(int numLeaves, byte[] publicKeys, int leafNum) {
+    if (numLeaves < 2) {
+      Utils.except("Tree cannot be a leaf.");
+    }
+    if (leafNum < 0 || leafNum >= numLeaves) {
+      Utils.except("Leaf is not in the tree.");
+    }
+    this.numLeaves = numLeaves;
+    this.width = nodeWidth(numLeaves);
+    this.publicKeys = publicKeys;
+    this.leafNum = leafNum;
+    this.path = directPath(2 * leafNum);
+    this.pathKeyPairs = new DHKeyPair[path.length];
+  }
+
+  /**
+   * Build the tree from every member's leaf key pair, as the group initiator does. Only the secrets on the path of
+   * leafNum are kept.
+   */
+  public static ArrayTree create(DHKeyPair[] leaves, int leafNum) {
+    return create(leaves, leafNum, null);
+  }
+
+  /**
+   * As above, but deriving the nodes of each level on the given pool if there is one. Nodes on the same level never
+   * depend on each other, so the result is the same either way.
+   */
+  public static ArrayTree create(DHKeyPair[] leaves, int leafNum, ForkJoinPool pool) {
+    int n = leaves.length;
+    int width = nodeWidth(n);
+    byte[] publicKeys = new byte[width * Curve25519.KEY_SIZE];
+    DHKeyPair[] secrets = new DHKeyPair[width];
+
+    for (int i = 0; i < n; i++) {
+      secrets[2 * i] = leaves[i];
+    }
+    ArrayTree tree = new ArrayTree(n, publicKeys, leafNum);
+    for (int i = 0; i < n; i++) {
+      tree.setPubKey(2 * i, leaves[i].getPubKeyBytes());
+    }
+
+    // Children always sit on a lower level than their parent, so a single pass up the levels is enough.
+    for (int level = 1; level <= level(root(n)); level++) {
+      int first = (1 << level) - 1;
+      int step = 1 << (level + 1);
+      IntConsumer deriveNode = j -> {
+        int x = first + j * step;
+        secrets[x] = tree.deriveParent(secrets[left(x)], right(x, n));
+        tree.setPubKey(x, secrets[x].getPubKeyBytes());
+      };
+      int count = (width - first + step - 1) / step;
+      if (pool == null) {
+        for (int j = 0; j < count; j++) {
+          deriveNode.accept(j);
+        }
+      } else {
+        Utils.parallelFor(pool, 0, count, deriveNode);
+      }
+    }
+
+    for (int i = 0; i < tree.path.length; i++) {
+      tree.pathKeyPairs[i] = secrets[tree.path[i]];
+    }
+    return tree;
+  }
+
+  /**
+   * Import a public tree, such as the one carried by a setup message, and place our own leaf key pair into it.
+   */
+  public static ArrayTree fromPublicTree(Node publicTree, int leafNum, DHKeyPair leaf) {
+    int n = publicTree.numLeaves();
+    ArrayTree tree = new ArrayTree(n, new byte[nodeWidth(n) * Curve25519.KEY_SIZE], leafNum);
+    tree.importNode(publicTree, root(n));
+    tree.setSecretLeaf(leaf);
+    return tree;
+  }
+
+  private void importNode(Node node, int x) {
+    setPubKey(x, node.getPubKey().getPubKeyBytes());
+    boolean isParent = node instanceof ParentNode;
+    if (isParent != (level(x) > 0)) {
+      Utils.except("Tree is not left-balanced.");
+    }
+    if (isParent) {
+      importNode(((ParentNode) node).getLeft(), left(x));
+      importNode(((ParentNode) node).getRight(), right(x, numLeaves));
+    }
+  }
+
+  public int numLeaves() {
+    return numLeaves;
+  }
+
+  public int getLeafNum() {
+    return leafNum;
+  }
+
+  public DHKeyPair getRootKeyPair() {
+    return pathKeyPairs[pathKeyPairs.length - 1];
+  }
+
+  public byte[] getRawSecretKey() {
+    return getRootKeyPair().getPrivKeyBytes();
+  }
+
+  /**
+   * Replace our own leaf key pair, refreshing the secrets and public keys along our path.
+   */
+  public void setSecretLeaf(DHKeyPair leaf) {
+    pathKeyPairs[0] = leaf;
+    setPubKey(path[0], leaf.getPubKeyBytes());
+    for (int i = 1; i < path.length; i++) {
+      pathKeyPairs[i] = deriveParent(pathKeyPairs[i - 1], sibling(path[i - 1]));
+      setPubKey(path[i], pathKeyPairs[i].getPubKeyBytes());
+    }
+    refreshTreeHashes(path);
+  }
+
+  /**
+   * Apply another member's update. The path is given from root to leaf, as produced by pathNodeKeys. Where it meets
+   * our own path we recompute the secrets, and check that they agree with the public keys we were sent.
+   */
+  public void updateWithPublicPath(int senderLeafNum, DHPubKey[] newPath) {
+    if (senderLeafNum == leafNum) {
+      Utils.except("Cannot apply a public update to our own leaf.");
+    }
+    int[] senderPath = directPath(2 * senderLeafNum);
+    if (senderPath.length != newPath.length) {
+      Utils.except("Update path has the wrong length.");
+    }
+
+    // Below the point where the two paths meet, the sender's path only holds public keys.
+    int meet = 0;
+    while (indexOnPath(senderPath[meet]) < 0) {
+      setPubKey(senderPath[meet], newPath[newPath.length - 1 - meet].getPubKeyBytes());
+      meet++;
+    }
+
+    for (int i = indexOnPath(senderPath[meet]); i < path.length; i++, meet++) {
+      pathKeyPairs[i] = deriveParent(pathKeyPairs[i - 1], sibling(path[i - 1]));
+      byte[] pub = pathKeyPairs[i].getPubKeyBytes();
+      if (!Arrays.equals(pub, newPath[newPath.length - 1 - meet].getPubKeyBytes())) {
+        Utils.except("Update operation inconsistent with provided path.");
+      }
+      setPubKey(path[i], pub);
+    }
+    refreshTreeHashes(senderPath);
+  }
+
+  /**
+   * The public keys on the path of a leaf, ordered from the root down to the leaf.
+   */
+  public DHPubKey[] pathNodeKeys(int leaf) {
+    int[] p = directPath(2 * leaf);
+    DHPubKey[] keys = new DHPubKey[p.length];
+    for (int i = 0; i < p.length; i++) {
+      keys[p.length - 1 - i] = DHPubKey.pubKey(getPubKeyBytes(p[i]));
+    }
+    return keys;
+  }
+
+  /**
+   * The same Merkle hash that Node.getTreeHash computes over the equivalent object tree. All node hashes are computed
+   * on first use, and only the changed path is re-hashed after that.
+   */
+  public byte[] getTreeHash() {
+    if (treeHashes == null) {
+      treeHashes = new byte[width * Crypto.HASH_LENGTH];
+      for (int x = 0; x < width; x += 2) {
+        hashNode(x);
+      }
+      for (int level = 1; level <= level(root(numLeaves)); level++) {
+        for (int x = (1 << level) - 1; x < width; x += 1 << (level + 1)) {
+          hashNode(x);
+        }
+      }
+    }
+    return Arrays.copyOfRange(
+      treeHashes,
+      root(numLeaves) * Crypto.HASH_LENGTH,
+      (root(numLeaves) + 1) * Crypto.HASH_LENGTH
+    );
+  }
+
+  public NodeStruct toThrift() {
+    return toThrift(root(numLeaves));
+  }
+
+  private NodeStruct toThrift(int x) {
+    NodeStruct struct = new NodeStruct();
+    struct.setPublicKey(getPubKeyBytes(x));
+    if (level(x) > 0) {
+      struct.setLeft(toThrift(left(x)));
+      struct.setRight(toThrift(right(x, numLeaves)));
+    }
+    return struct;
+  }
+
+  /**
+   * Writes the same bytes as serialising toThrift(), straight from the key array; see TreeWriter.
+   */
+  void write(TreeWriter.Sink sink) {
+    write(sink, root(numLeaves));
+  }
+
+  private void write(TreeWriter.Sink sink, int x) {
+    sink.putPublicKey(publicKeys, x * Curve25519.KEY_SIZE, Curve25519.KEY_SIZE);
+    if (level(x) > 0) {
+      sink.beginLeft();
+      write(sink, left(x));
+      sink.beginRight(true);
+      write(sink, right(x, numLeaves));
+    }
+    sink.end();
+  }
+
+  /**
+   * A public object tree with the same shape and keys, for code that still works on Nodes.
+   */
+  public Node toNode() {
+    return toNode(root(numLeaves));
+  }
+
+  private Node toNode(int x) {
+    DHPubKey pubKey = DHPubKey.pubKey(getPubKeyBytes(x));
+    if (level(x) == 0) {
+      return new PublicLeafNode(pubKey);
+    }
+    return new PublicParentNode(pubKey, toNode(left(x)), toNode(right(x, numLeaves)));
+  }
+
+  private DHKeyPair deriveParent(DHKeyPair child, int sibling) {
+    // Matches SecretParentNode, reading the sibling's key straight out of publicKeys.
+    return CryptoContext.get().nodeKeyPair(child, publicKeys, sibling * Curve25519.KEY_SIZE);
+  }
+
+  private byte[] getPubKeyBytes(int x) {
+    return Arrays.copyOfRange(publicKeys, x * Curve25519.KEY_SIZE, (x + 1) * Curve25519.KEY_SIZE);
+  }
+
+  private void setPubKey(int x, byte[] pub) {
+    System.arraycopy(pub, 0, publicKeys, x * Curve25519.KEY_SIZE, Curve25519.KEY_SIZE);
+  }
+
+  private int indexOnPath(int x) {
+    for (int i = 0; i < path.length; i++) {
+      if (path[i] == x) {
+        return i;
+      }
+    }
+    return -1;
+  }
+
+  private void refreshTreeHashes(int[] changedPath) {
+    if (treeHashes == null) {
+      return;
+    }
+    for (int x : changedPath) {
+      hashNode(x);
+    }
+  }
+
+  private void hashNode(int x) {
+    MessageDigest md = Crypto.startSHA256();
+    if (level(x) == 0) {
+      md.update(LeafNode.LEAF_HASH_PREFIX);
+      md.update(publicKeys, x * Curve25519.KEY_SIZE, Curve25519.KEY_SIZE);
+    } else {
+      md.update(ParentNode.PARENT_HASH_PREFIX);
+      md.update(publicKeys, x * Curve25519.KEY_SIZE, Curve25519.KEY_SIZE);
+      md.update(treeHashes, left(x) * Crypto.HASH_LENGTH, Crypto.HASH_LENGTH);
+      md.update(treeHashes, right(x, numLeaves) * Crypto.HASH_LENGTH, Crypto.HASH_LENGTH);
+    }
+    try {
+      md.digest(treeHashes, x * Crypto.HASH_LENGTH, Crypto.HASH_LENGTH);
+    } catch (Exception e) {
+      throw Utils.except(e);
+    }
+  }
+
+  /**
+   * The nodes from x up to the root, starting with x itself.
+   */
+  private int[] directPath(int x) {
+    int r = root(numLeaves);
+    int[] result = new int[level(r) + 1];
+    int length = 0;
+    result[length++] = x;
+    while (x != r) {
+      x = parent(x, numLeaves);
+      result[length++] = x;
+    }
+    return Arrays.copyOf(result, length);
+  }
+
+  private int sibling(int x) {
+    int p = parent(x, numLeaves);
+    int l = left(p);
+    return l == x ? right(p, numLeaves) : l;
+  }
+
+  static int nodeWidth(int numLeaves) {
+    return 2 * numLeaves - 1;
+  }
+
+  static int level(int x) {
+    return Integer.numberOfTrailingZeros(~x);
+  }
+
+  static int root(int numLeaves) {
+    return Integer.highestOneBit(nodeWidth(numLeaves)) - 1;
+  }
+
+  static int left(int x) {
+    return x ^ (1 << (level(x) - 1));
+  }
+
+  static int right(int x, int numLeaves) {
+    int r = x ^ (3 << (level(x) - 1));
+    // In a truncated tree the right child may not exist, in which case its own left descendant takes its place.
+    while (r >= nodeWidth(numLeaves)) {
+      r = left(r);
+    }
+    return r;
+  }
+
+  static int parent(int x, int numLeaves) {
+    do {
+      int k = level(x);
+      x = (x | (1 << k)) & ~(1 << (k + 1));
+    } while (x >= nodeWidth(numLeaves));
+    return x;
+  }
+}
@@ -0,0 +1,196 @@
+/**
+ * Copyright (c) 2017-present, Facebook, Inc.
+ * All rights reserved.
+ *
+ * This source code is licensed under the license found in the
+ * LICENSE file in the root directory of this source tree.
+*/
+
+package com.facebook.research.asynchronousratchetingtree.art.tree;
+
+import com.facebook.research.asynchronousratchetingtree.Utils;
+import com.facebook.research.asynchronousratchetingtree.art.message.CompactReader;
+import com.facebook.research.asynchronousratchetingtree.art.message.thrift.NodeStruct;
+import com.facebook.research.asynchronousratchetingtree.crypto.Crypto;
+import com.facebook.research.asynchronousratchetingtree.crypto.DHPubKey;
+
+import java.security.MessageDigest;
+import java.util.Arrays;
+
+/**
+ * A public parent node that is still sitting in the compact encoding of a serialised NodeStruct. Its children are only
+ * decoded when they are first asked for, and its tree hash and Thrift form are computed straight from the bytes, so a
+ * member that only walks its own path out of a setup message builds O(log n) nodes rather than the whole tree.
+ *
+ * The tree is assumed to be left-balanced with the given number of leaves, as every tree ART builds is, and anything
+ * else is rejected as it is decoded.
+ */
+final public class LazyParentNode extends ParentNode {
+  private static final int PUBLIC_KEY_FIELD = 1;
+  private static final int LEFT_FIELD = 2;
+  private static final int RIGHT_FIELD = 3;
+
+  private final byte[] buffer;
+  private final int offset;
+  private final int numLeaves;
+  private final DHPubKey pubKey;
+  private int leftOffset = -1;
+  private int rightOffset = -1;
+  private int end = -1;
+  private byte[] treeHash;
+
+  private LazyParentNode(byte[] buffer, int offset, int numLeaves, DHPubKey pubKey) {
+    this.buffer = buffer;
+    this.offset = offset;
+    this.numLeaves = numLeaves;
+    this.pubKey = pubKey;
+  }
+
+  /**
+   * Decode the NodeStruct whose first field header is at offset, for a subtree with numLeaves leaves.
+   */
+  public static Node decode(byte[] buffer, int offset, int numLeaves) {
+    CompactReader reader = new CompactReader(buffer, offset);
+    DHPubKey pubKey = null;
+    boolean hasChildren = false;
+    while (reader.nextField()) {
+      if (reader.fieldId() == PUBLIC_KEY_FIELD && reader.fieldType() == CompactReader.BINARY) {
+        int length = reader.readBinaryLength();
+        pubKey = DHPubKey.pubKey(Arrays.copyOfRange(buffer, reader.position(), reader.position() + length));
+        reader.skipBytes(length);
+      } else if (reader.fieldId() == LEFT_FIELD || reader.fieldId() == RIGHT_FIELD) {
+        hasChildren = true;
+        // Leave the children for later; the key is all we need for now.
+        break;
+      } else {
+        reader.skip(reader.fieldType());
+      }
+    }
+    if (pubKey == null) {
+      Utils.except("Tree node has no public key.");
+    }
+    if (hasChildren != (numLeaves > 1)) {
+      Utils.except("Setup message tree does not match the group size.");
+    }
+    if (numLeaves == 1) {
+      return new PublicLeafNode(pubKey);
+    }
+    return new LazyParentNode(buffer, offset, numLeaves, pubKey);
+  }
+
+  public DHPubKey getPubKey() {
+    return pubKey;
+  }
+
+  @Override
+  public int numLeaves() {
+    return numLeaves;
+  }
+
+  @Override
+  public Node getLeft() {
+    if (left == null) {
+      index();
+      left = decode(buffer, leftOffset, leftTreeSize(numLeaves));
+    }
+    return left;
+  }
+
+  @Override
+  public Node getRight() {
+    if (right == null) {
+      index();
+      right = decode(buffer, rightOffset, numLeaves - leftTreeSize(numLeaves));
+    }
+    return right;
+  }
+
+  /**
+   * Hashes the subtree straight from the bytes, so that committing to a copath node doesn't decode everything under it.
+   */
+  @Override
+  public byte[] getTreeHash() {
+    if (treeHash == null) {
+      treeHash = hash(new CompactReader(buffer, offset), Crypto.startSHA256());
+    }
+    return treeHash;
+  }
+
+  public NodeStruct toThrift() {
+    index();
+    NodeStruct struct = new NodeStruct();
+    Utils.deserialise(struct, Arrays.copyOfRange(buffer, offset, end));
+    return struct;
+  }
+
+  /**
+   * Copies the subtree's encoding as it was received; see TreeWriter.
+   */
+  void write(TreeWriter.Sink sink) {
+    index();
+    sink.put(buffer, offset, end - offset);
+  }
+
+  private void index() {
+    if (end >= 0) {
+      return;
+    }
+    CompactReader reader = new CompactReader(buffer, offset);
+    while (reader.nextField()) {
+      if (reader.fieldId() == LEFT_FIELD && reader.fieldType() == CompactReader.STRUCT) {
+        leftOffset = reader.position();
+      } else if (reader.fieldId() == RIGHT_FIELD && reader.fieldType() == CompactReader.STRUCT) {
+        rightOffset = reader.position();
+      }
+      reader.skip(reader.fieldType());
+    }
+    if (leftOffset < 0 || rightOffset < 0) {
+      Utils.except("Parent node is missing a child.");
+    }
+    end = reader.position();
+  }
+
+  /**
+   * Hash the NodeStruct at the reader's position, leaving the reader just past it. Children are hashed before their
+   * parent starts using md, so one digest serves the whole subtree.
+   */
+  private static byte[] hash(CompactReader reader, MessageDigest md) {
+    byte[] buffer = reader.getBuffer();
+    int keyOffset = -1;
+    int keyLength = 0;
+    byte[] leftHash = null;
+    byte[] rightHash = null;
+    while (reader.nextField()) {
+      if (reader.fieldId() == PUBLIC_KEY_FIELD && reader.fieldType() == CompactReader.BINARY) {
+        keyLength = reader.readBinaryLength();
+        keyOffset = reader.position();
+        reader.skipBytes(keyLength);
+      } else if (reader.fieldId() == LEFT_FIELD && reader.fieldType() == CompactReader.STRUCT) {
+        int saved = reader.beginStruct();
+        leftHash = hash(reader, md);
+        reader.endStruct(saved);
+      } else if (reader.fieldId() == RIGHT_FIELD && reader.fieldType() == CompactReader.STRUCT) {
+        int saved = reader.beginStruct();
+        rightHash = hash(reader, md);
+        reader.endStruct(saved);
+      } else {
+        reader.skip(reader.fieldType());
+      }
+    }
+    if (keyOffset < 0 || (leftHash == null) != (rightHash == null)) {
+      Utils.except("Malformed tree node.");
+    }
+
+    md.update(leftHash == null ? LeafNode.LEAF_HASH_PREFIX : PARENT_HASH_PREFIX);
+    md.update(buffer, keyOffset, keyLength);
+    if (leftHash != null) {
+      md.update(leftHash);
+      md.update(rightHash);
+    }
+    return md.digest();
+  }
+
+  private static int leftTreeSize(int numLeaves) {
+    return Integer.highestOneBit(numLeaves - 1);
+  }
+}
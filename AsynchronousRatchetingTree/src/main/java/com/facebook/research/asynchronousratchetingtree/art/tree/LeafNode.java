@@ -8,8 +8,31 @@
 
 package com.facebook.research.asynchronousratchetingtree.art.tree;
 
+import com.facebook.research.asynchronousratchetingtree.crypto.Crypto;
+import com.facebook.research.asynchronousratchetingtree.crypto.DHPubKey;
+
+import java.security.MessageDigest;
+
 abstract public class LeafNode implements Node {
+  final static byte LEAF_HASH_PREFIX = 0;
+
+  private byte[] treeHash;
+
   final public int numLeaves() {
     return 1;
   }
+
+  public byte[] getTreeHash() {
+    if (treeHash == null) {
+      treeHash = treeHash(getPubKey());
+    }
+    return treeHash;
+  }
+
+  public static byte[] treeHash(DHPubKey pubKey) {
+    MessageDigest md = Crypto.startSHA256();
+    md.update(LEAF_HASH_PREFIX);
+    md.update(pubKey.getPubKeyBytes());
+    return md.digest();
+  }
 }
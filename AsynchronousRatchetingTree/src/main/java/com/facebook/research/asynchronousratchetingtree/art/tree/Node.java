@@ -8,6 +8,7 @@
 
 package com.facebook.research.asynchronousratchetingtree.art.tree;
 
+import com.facebook.research.asynchronousratchetingtree.Utils;
 import com.facebook.research.asynchronousratchetingtree.art.message.thrift.NodeStruct;
 import com.facebook.research.asynchronousratchetingtree.crypto.DHPubKey;
 
@@ -15,6 +16,12 @@ public interface Node {
   DHPubKey getPubKey();
   int numLeaves();
 
+  /**
+   * A digest committing to the public keys of this whole subtree. Implementations cache it, so after an update only
+   * the freshly created nodes on the updated path need hashing.
+   */
+  byte[] getTreeHash();
+
   static Node fromThrift(NodeStruct thrift) {
     if (thrift == null) {
       return null;
@@ -38,6 +45,12 @@ public interface Node {
     if (tree == null) {
       return null;
     }
+    if (tree instanceof PrunedNode) {
+      Utils.except("A pruned subtree cannot be serialised.");
+    }
+    if (tree instanceof LazyParentNode) {
+      return ((LazyParentNode) tree).toThrift();
+    }
     NodeStruct struct = new NodeStruct();
     struct.setPublicKey(tree.getPubKey().getPubKeyBytes());
     if (tree instanceof ParentNode) {
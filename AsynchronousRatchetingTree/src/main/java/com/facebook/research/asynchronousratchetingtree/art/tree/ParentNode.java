@@ -8,12 +8,42 @@
 
 package com.facebook.research.asynchronousratchetingtree.art.tree;
 
+import com.facebook.research.asynchronousratchetingtree.crypto.Crypto;
+import com.facebook.research.asynchronousratchetingtree.crypto.DHPubKey;
+
+import java.security.MessageDigest;
+
 abstract public class ParentNode implements Node {
+  final static byte PARENT_HASH_PREFIX = 1;
+
   protected Node left;
   protected Node right;
 
+  // Nodes are never mutated once built, so both of these can be filled in lazily on first use.
+  private int numLeaves;
+  private byte[] treeHash;
+
   public int numLeaves() {
-    return left.numLeaves() + right.numLeaves();
+    if (numLeaves == 0) {
+      numLeaves = left.numLeaves() + right.numLeaves();
+    }
+    return numLeaves;
+  }
+
+  public byte[] getTreeHash() {
+    if (treeHash == null) {
+      treeHash = treeHash(getPubKey(), left.getTreeHash(), right.getTreeHash());
+    }
+    return treeHash;
+  }
+
+  public static byte[] treeHash(DHPubKey pubKey, byte[] leftHash, byte[] rightHash) {
+    MessageDigest md = Crypto.startSHA256();
+    md.update(PARENT_HASH_PREFIX);
+    md.update(pubKey.getPubKeyBytes());
+    md.update(leftHash);
+    md.update(rightHash);
+    return md.digest();
   }
 
   public Node getLeft() {
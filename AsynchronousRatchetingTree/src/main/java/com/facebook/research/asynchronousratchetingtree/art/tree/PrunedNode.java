@@ -0,0 +1,40 @@
+/**
+ * Copyright (c) 2017-present, Facebook, Inc.
+ * All rights reserved.
+ *
+ * This source code is licensed under the license found in the
+ * LICENSE file in the root directory of this source tree.
+*/
+
+package com.facebook.research.asynchronousratchetingtree.art.tree;
+
+import com.facebook.research.asynchronousratchetingtree.crypto.DHPubKey;
+
+/**
+ * Stands in for a subtree that this member only knows from the outside: its root public key, its number of leaves and
+ * its tree hash. Members set up from a copath setup message hold one of these for every node on their copath, which is
+ * all that ART needs as long as stage keys are derived from the tree hash.
+ */
+final public class PrunedNode implements Node {
+  private final DHPubKey pubKey;
+  private final int numLeaves;
+  private final byte[] treeHash;
+
+  public PrunedNode(DHPubKey pubKey, int numLeaves, byte[] treeHash) {
+    this.pubKey = pubKey;
+    this.numLeaves = numLeaves;
+    this.treeHash = treeHash;
+  }
+
+  public DHPubKey getPubKey() {
+    return pubKey;
+  }
+
+  public int numLeaves() {
+    return numLeaves;
+  }
+
+  public byte[] getTreeHash() {
+    return treeHash;
+  }
+}
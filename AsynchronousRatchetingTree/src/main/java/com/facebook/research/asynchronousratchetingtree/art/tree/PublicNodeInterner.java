@@ -0,0 +1,181 @@
+/**
+ * Copyright (c) 2017-present, Facebook, Inc.
+ * All rights reserved.
+ *
+ * This source code is licensed under the license found in the
+ * LICENSE file in the root directory of this source tree.
+*/
+
+package com.facebook.research.asynchronousratchetingtree.art.tree;
+
+import com.facebook.research.asynchronousratchetingtree.art.message.thrift.NodeStruct;
+import com.facebook.research.asynchronousratchetingtree.crypto.DHPubKey;
+
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * Lets many simulated group members living in one JVM share a single copy of the public parts of their trees.
+ *
+ * Public nodes are immutable, and every subtree that doesn't contain a member's own leaf is the same for all members.
+ * Interning public keys by value, and public nodes by their key and (already interned) children, means that each
+ * member only pays for the secret nodes on its own path. Entries are held weakly, so tree versions that no member
+ * refers to any more can still be collected.
+ *
+ * This is purely a simulation aid: real members each run in their own process and have nothing to share.
+ */
+final public class PublicNodeInterner {
+  private final WeakValueMap<ByteBuffer, DHPubKey> pubKeys = new WeakValueMap<>();
+  private final WeakValueMap<NodeKey, Node> nodes = new WeakValueMap<>();
+  private byte[] lastDecodedBytes;
+  private Object lastDecoded;
+
+  public synchronized DHPubKey pubKey(DHPubKey key) {
+    if (key == null) {
+      return null;
+    }
+    ByteBuffer bytes = ByteBuffer.wrap(key.getPubKeyBytes());
+    DHPubKey result = pubKeys.get(bytes);
+    if (result == null) {
+      // Never hold on to a key pair here, only its public half.
+      result = DHPubKey.pubKey(key.getPubKeyBytes());
+      pubKeys.put(bytes, result);
+    }
+    return result;
+  }
+
+  public DHPubKey[] pubKeys(DHPubKey[] keys) {
+    DHPubKey[] result = new DHPubKey[keys.length];
+    for (int i = 0; i < keys.length; i++) {
+      result[i] = pubKey(keys[i]);
+    }
+    return result;
+  }
+
+  public synchronized Node leaf(DHPubKey pubKey) {
+    DHPubKey canonical = pubKey(pubKey);
+    NodeKey key = new NodeKey(canonical, null, null);
+    Node result = nodes.get(key);
+    if (result == null) {
+      result = new PublicLeafNode(canonical);
+      nodes.put(key, result);
+    }
+    return result;
+  }
+
+  /**
+   * The children should themselves come from this interner (or be a member's own secret nodes), since they are
+   * compared by identity.
+   */
+  public synchronized Node parent(DHPubKey pubKey, Node left, Node right) {
+    DHPubKey canonical = pubKey(pubKey);
+    NodeKey key = new NodeKey(canonical, left, right);
+    Node result = nodes.get(key);
+    if (result == null) {
+      result = new PublicParentNode(canonical, left, right);
+      nodes.put(key, result);
+    }
+    return result;
+  }
+
+  public Node fromThrift(NodeStruct thrift) {
+    if (thrift == null) {
+      return null;
+    }
+    DHPubKey pubKey = DHPubKey.pubKey(thrift.getPublicKey());
+    NodeStruct left = thrift.getLeft();
+    NodeStruct right = thrift.getRight();
+
+    if (left == null && right == null) {
+      return leaf(pubKey);
+    }
+
+    return parent(
+      pubKey,
+      fromThrift(left),
+      fromThrift(right)
+    );
+  }
+
+  /**
+   * Every simulated member receives byte-for-byte the same setup message, so decode it only once and hand out the
+   * same (read-only) result to all of them.
+   */
+  @SuppressWarnings("unchecked")
+  public synchronized <T> T decode(byte[] serialised, Function<byte[], T> decoder) {
+    if (lastDecoded == null || !Arrays.equals(lastDecodedBytes, serialised)) {
+      lastDecoded = decoder.apply(serialised);
+      lastDecodedBytes = serialised.clone();
+    }
+    return (T) lastDecoded;
+  }
+
+  private static final class NodeKey {
+    private final DHPubKey pubKey;
+    private final Node left;
+    private final Node right;
+
+    NodeKey(DHPubKey pubKey, Node left, Node right) {
+      this.pubKey = pubKey;
+      this.left = left;
+      this.right = right;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (!(o instanceof NodeKey)) {
+        return false;
+      }
+      NodeKey other = (NodeKey) o;
+      return pubKey == other.pubKey && left == other.left && right == other.right;
+    }
+
+    @Override
+    public int hashCode() {
+      int result = System.identityHashCode(pubKey);
+      result = 31 * result + System.identityHashCode(left);
+      return 31 * result + System.identityHashCode(right);
+    }
+  }
+
+  private static final class WeakValueMap<K, V> {
+    private final Map<K, Entry<K, V>> map = new HashMap<>();
+    private final ReferenceQueue<V> queue = new ReferenceQueue<>();
+
+    V get(K key) {
+      expunge();
+      Entry<K, V> entry = map.get(key);
+      return entry == null ? null : entry.get();
+    }
+
+    void put(K key, V value) {
+      expunge();
+      map.put(key, new Entry<>(key, value, queue));
+    }
+
+    @SuppressWarnings("unchecked")
+    private void expunge() {
+      Entry<K, V> entry;
+      while ((entry = (Entry<K, V>) queue.poll()) != null) {
+        // Only drop the mapping if it hasn't been replaced since.
+        if (map.get(entry.key) == entry) {
+          map.remove(entry.key);
+        }
+      }
+    }
+  }
+
+  private static final class Entry<K, V> extends WeakReference<V> {
+    private final K key;
+
+    Entry(K key, V value, ReferenceQueue<V> queue) {
+      super(value, queue);
+      this.key = key;
+    }
+  }
+}
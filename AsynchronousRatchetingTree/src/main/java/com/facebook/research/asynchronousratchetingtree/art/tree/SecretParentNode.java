@@ -8,7 +8,7 @@
 
 package com.facebook.research.asynchronousratchetingtree.art.tree;
 
-import com.facebook.research.asynchronousratchetingtree.crypto.Crypto;
+import com.facebook.research.asynchronousratchetingtree.crypto.CryptoContext;
 import com.facebook.research.asynchronousratchetingtree.crypto.DHPubKey;
 import com.facebook.research.asynchronousratchetingtree.crypto.DHKeyPair;
 
@@ -18,22 +18,17 @@ public class SecretParentNode extends ParentNode implements SecretNode {
   public SecretParentNode(SecretNode left, Node right) {
     this.left = left;
     this.right = right;
-    byte[] dhOutput = left.getKeyPair().exchange(right.getPubKey());
-    // Derive both a private ECDH key and an AES-128 encryption key.
-    byte[] key = Crypto.hkdf(dhOutput, new byte[0], new byte[0], 32);
-
-    keyPair = DHKeyPair.fromBytes(key, false);
+    this.keyPair = deriveKeyPair(left.getKeyPair(), right.getPubKey());
   }
 
   public SecretParentNode(Node left, SecretNode right) {
     this.left = left;
     this.right = right;
-    this.keyPair = DHKeyPair.fromBytes(right.getKeyPair().exchange(left.getPubKey()), false);
-    byte[] dhOutput = right.getKeyPair().exchange(left.getPubKey());
-    // Derive both a private ECDH key and an AES-128 encryption key.
-    byte[] key = Crypto.hkdf(dhOutput, new byte[0], new byte[0], 32);
+    this.keyPair = deriveKeyPair(right.getKeyPair(), left.getPubKey());
+  }
 
-    keyPair = DHKeyPair.fromBytes(key, false);
+  private static DHKeyPair deriveKeyPair(DHKeyPair secretChild, DHPubKey publicChild) {
+    return CryptoContext.get().nodeKeyPair(secretChild, publicChild);
   }
 
   public DHPubKey getPubKey() {
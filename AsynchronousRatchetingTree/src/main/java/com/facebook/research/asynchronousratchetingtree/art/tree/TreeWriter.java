@@ -0,0 +1,177 @@
+/**
+ * Copyright (c) 2017-present, Facebook, Inc.
+ * All rights reserved.
+ *
+ * This source code is licensed under the license found in the
+ * LICENSE file in the root directory of this source tree.
+*/
+
+package com.facebook.research.asynchronousratchetingtree.art.tree;
+
+import com.facebook.research.asynchronousratchetingtree.Utils;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+
+/**
+ * Writes a tree in the Thrift compact encoding of its NodeStruct, byte for byte what serialising Node.toThrift
+ * produces, but walking the nodes directly instead of first building a NodeStruct for each of them. A lazily decoded
+ * subtree is copied out of the bytes it arrived in.
+ *
+ * Each node is its public key as field 1, then its children as fields 2 and 3, then a stop byte.
+ */
+final public class TreeWriter {
+  private static final byte PUBLIC_KEY_HEADER = 0x18;
+  // A struct field whose id is one more than the last one's, so a left child or the right child after it.
+  private static final byte NEXT_CHILD_HEADER = 0x1c;
+  // The right child straight after the public key, when there is no left one.
+  private static final byte RIGHT_HEADER = 0x2c;
+  private static final byte STOP = 0;
+
+  private TreeWriter() {
+  }
+
+  /**
+   * Where the bytes go. Subclasses only have to take runs of bytes; single bytes go through a small buffer.
+   */
+  abstract static class Sink {
+    private final byte[] header = new byte[6];
+
+    abstract void put(byte[] bytes, int offset, int length);
+
+    void putByte(byte b) {
+      header[0] = b;
+      put(header, 0, 1);
+    }
+
+    void putPublicKey(byte[] bytes, int offset, int length) {
+      int n = 0;
+      header[n++] = PUBLIC_KEY_HEADER;
+      int v = length;
+      while ((v & ~0x7f) != 0) {
+        header[n++] = (byte) ((v & 0x7f) | 0x80);
+        v >>>= 7;
+      }
+      header[n++] = (byte) v;
+      put(header, 0, n);
+      put(bytes, offset, length);
+    }
+
+    void beginLeft() {
+      putByte(NEXT_CHILD_HEADER);
+    }
+
+    void beginRight(boolean afterLeft) {
+      putByte(afterLeft ? NEXT_CHILD_HEADER : RIGHT_HEADER);
+    }
+
+    void end() {
+      putByte(STOP);
+    }
+  }
+
+  private static final class CountingSink extends Sink {
+    private int length;
+
+    @Override
+    void put(byte[] bytes, int offset, int length) {
+      this.length += length;
+    }
+  }
+
+  public static int length(Node tree) {
+    CountingSink sink = new CountingSink();
+    write(tree, sink);
+    return sink.length;
+  }
+
+  public static byte[] serialise(Node tree) {
+    byte[] result = new byte[length(tree)];
+    write(tree, ByteBuffer.wrap(result));
+    return result;
+  }
+
+  public static byte[] serialise(ArrayTree tree) {
+    CountingSink counter = new CountingSink();
+    tree.write(counter);
+    ByteBuffer result = ByteBuffer.allocate(counter.length);
+    tree.write(bufferSink(result));
+    return result.array();
+  }
+
+  /**
+   * Write the tree at the buffer's position, which must have length(tree) bytes remaining.
+   */
+  public static void write(Node tree, ByteBuffer out) {
+    write(tree, bufferSink(out));
+  }
+
+  /**
+   * Write the tree a few bytes at a time, so the stream should be buffered.
+   */
+  public static void write(Node tree, OutputStream out) {
+    write(tree, new Sink() {
+      @Override
+      void put(byte[] bytes, int offset, int length) {
+        try {
+          out.write(bytes, offset, length);
+        } catch (IOException e) {
+          Utils.except(e);
+        }
+      }
+    });
+  }
+
+  /**
+   * Feed the serialised tree into a digest without holding it in memory.
+   */
+  public static void update(Node tree, MessageDigest digest) {
+    write(tree, new Sink() {
+      @Override
+      void put(byte[] bytes, int offset, int length) {
+        digest.update(bytes, offset, length);
+      }
+    });
+  }
+
+  private static Sink bufferSink(ByteBuffer out) {
+    return new Sink() {
+      @Override
+      void put(byte[] bytes, int offset, int length) {
+        out.put(bytes, offset, length);
+      }
+
+      @Override
+      void putByte(byte b) {
+        out.put(b);
+      }
+    };
+  }
+
+  private static void write(Node tree, Sink sink) {
+    if (tree instanceof PrunedNode) {
+      Utils.except("A pruned subtree cannot be serialised.");
+    }
+    if (tree instanceof LazyParentNode) {
+      ((LazyParentNode) tree).write(sink);
+      return;
+    }
+    byte[] pubKey = tree.getPubKey().getPubKeyBytes();
+    sink.putPublicKey(pubKey, 0, pubKey.length);
+    if (tree instanceof ParentNode) {
+      Node left = ((ParentNode) tree).getLeft();
+      Node right = ((ParentNode) tree).getRight();
+      if (left != null) {
+        sink.beginLeft();
+        write(left, sink);
+      }
+      if (right != null) {
+        sink.beginRight(left != null);
+        write(right, sink);
+      }
+    }
+    sink.end();
+  }
+}
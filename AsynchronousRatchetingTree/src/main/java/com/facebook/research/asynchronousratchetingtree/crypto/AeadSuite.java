@@ -0,0 +1,39 @@
+/**
+ * Copyright (c) 2017-present, Facebook, Inc.
+ * All rights reserved.
+ *
+ * This source code is licensed under the license found in the
+ * LICENSE file in the root directory of this source tree.
+*/
+
+package com.facebook.research.asynchronousratchetingtree.crypto;
+
+import java.nio.ByteBuffer;
+
+/**
+ * An authenticated cipher with a 12-byte nonce and a 16-byte tag, so that every suite fits the framing CryptoContext
+ * writes. See AeadSuites for the ones there are and how a group picks one.
+ *
+ * Keys are whatever ART hands out, 16-byte stage keys or 32-byte chain and root keys; a suite whose cipher takes a
+ * different length derives one. seal writes ciphertext || tag and open reverses it, throwing if the tag is wrong. Both
+ * may run in place, or with the output behind the input, but never with the output ahead of unread input.
+ */
+public interface AeadSuite {
+  String getName();
+
+  /**
+   * The number setup messages name the suite by. Suites that produce the same ciphertexts share one.
+   */
+  int getId();
+
+  int seal(byte[] key, byte[] nonce, byte[] in, int offset, int length, byte[] out, int outOffset);
+
+  int open(byte[] key, byte[] nonce, byte[] in, int offset, int length, byte[] out, int outOffset);
+
+  /**
+   * Reads the remaining bytes of in and writes at the position of out, advancing both.
+   */
+  int seal(byte[] key, byte[] nonce, ByteBuffer in, ByteBuffer out);
+
+  int open(byte[] key, byte[] nonce, ByteBuffer in, ByteBuffer out);
+}
@@ -0,0 +1,126 @@
+/**
+ * Copyright (c) 2017-present, Facebook, Inc.
+ * All rights reserved.
+ *
+ * This source code is licensed under the license found in the
+ * LICENSE file in the root directory of this source tree.
+*/
+
+package com.facebook.research.asynchronousratchetingtree.crypto;
+
+import com.facebook.research.asynchronousratchetingtree.Utils;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The AEAD suites there are, by name: "aes-gcm", "chacha20-poly1305", and, where the JDK has its own ChaCha20,
+ * "chacha20-poly1305-jdk". The two ChaCha20-Poly1305 suites produce the same ciphertexts, so either may be used in a
+ * group that chose ChaCha20-Poly1305.
+ *
+ * A group's suite is chosen by the member that sets it up, and sent by id in the setup messages so that every other
+ * member takes the same one, whatever it would have chosen itself. New states start with the suite named by the
+ * art.aead system property, which defaults to aes-gcm, and may also be "fastest", to time each suite on small messages
+ * at startup and keep the quickest.
+ */
+final public class AeadSuites {
+  public static final AeadSuite AES_GCM = new AesGcmSuite();
+  public static final AeadSuite CHACHA20_POLY1305 = new ChaCha20Poly1305Suite();
+  private static final int TIMING_ROUNDS = 2000;
+  private static final int TIMING_MESSAGE_LENGTH = 1024;
+  private static volatile AeadSuite current;
+
+  public static AeadSuite current() {
+    AeadSuite suite = current;
+    if (suite == null) {
+      synchronized (AeadSuites.class) {
+        if (current == null) {
+          current = forName(System.getProperty("art.aead", "aes-gcm"));
+        }
+        suite = current;
+      }
+    }
+    return suite;
+  }
+
+  public static void select(AeadSuite suite) {
+    current = suite;
+  }
+
+  public static AeadSuite forName(String name) {
+    switch (name) {
+      case "aes-gcm":
+        return AES_GCM;
+      case "chacha20-poly1305":
+        return CHACHA20_POLY1305;
+      case "chacha20-poly1305-jdk":
+        if (!JdkChaCha20Poly1305Suite.isAvailable()) {
+          Utils.except("This JDK has no ChaCha20-Poly1305 Cipher.");
+        }
+        return new JdkChaCha20Poly1305Suite();
+      case "fastest":
+        return fastest();
+      default:
+        throw Utils.except("Unknown AEAD suite " + name + ".");
+    }
+  }
+
+  /**
+   * The suite with the given id, as sent in a setup message. A member already using a suite with that id keeps it, so
+   * one that prefers the JDK's ChaCha20-Poly1305 goes on using it in a ChaCha20-Poly1305 group.
+   */
+  public static AeadSuite forId(int id, AeadSuite preferred) {
+    if (preferred.getId() == id) {
+      return preferred;
+    }
+    switch (id) {
+      case 1:
+        return AES_GCM;
+      case 2:
+        return CHACHA20_POLY1305;
+      default:
+        throw Utils.except("Unknown AEAD suite id " + id + ".");
+    }
+  }
+
+  public static List<AeadSuite> available() {
+    List<AeadSuite> suites = new ArrayList<>();
+    suites.add(AES_GCM);
+    suites.add(CHACHA20_POLY1305);
+    if (JdkChaCha20Poly1305Suite.isAvailable()) {
+      suites.add(new JdkChaCha20Poly1305Suite());
+    }
+    return suites;
+  }
+
+  public static AeadSuite fastest() {
+    AeadSuite best = null;
+    long bestTime = Long.MAX_VALUE;
+    for (AeadSuite suite : available()) {
+      // Time the second pass, so that the first one warms up the JIT.
+      timeMessages(suite, TIMING_MESSAGE_LENGTH, TIMING_ROUNDS);
+      long time = timeMessages(suite, TIMING_MESSAGE_LENGTH, TIMING_ROUNDS);
+      if (time < bestTime) {
+        best = suite;
+        bestTime = time;
+      }
+    }
+    return best;
+  }
+
+  /**
+   * Nanoseconds to encrypt and then decrypt the given number of messages of the given length, each under a fresh nonce.
+   */
+  public static long timeMessages(AeadSuite suite, int length, int rounds) {
+    CryptoContext crypto = CryptoContext.get();
+    byte[] key = Crypto.randomBytes(Crypto.STAGE_KEY_LENGTH);
+    byte[] message = Crypto.randomBytes(length);
+    byte[] encrypted = new byte[CryptoContext.encryptedLength(length)];
+    long start = System.nanoTime();
+    for (int i = 0; i < rounds; i++) {
+      crypto.encrypt(suite, message, 0, length, key, encrypted, 0);
+      crypto.decrypt(suite, encrypted, 0, encrypted.length, key, message, 0);
+    }
+    return System.nanoTime() - start;
+  }
+}
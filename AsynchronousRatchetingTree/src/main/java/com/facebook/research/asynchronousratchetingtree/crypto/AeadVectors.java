@@ -0,0 +1,137 @@
+/**
+ * Copyright (c) 2017-present, Facebook, Inc.
+ * All rights reserved.
+ *
+ * This source code is licensed under the license found in the
+ * LICENSE file in the root directory of this source tree.
+*/
+
+package com.facebook.research.asynchronousratchetingtree.crypto;
+
+import com.facebook.research.asynchronousratchetingtree.Utils;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Checks ChaCha20Poly1305Suite against the AEAD test vector of RFC 8439 (section 2.8.2) and against tampering, and checks
+ * that every suite round-trips through each of CryptoContext's framings, in place and between heap and direct buffers,
+ * and that the two ChaCha20-Poly1305 suites agree.
+ */
+final public class AeadVectors {
+  private static final String KEY = "808182838485868788898a8b8c8d8e8f909192939495969798999a9b9c9d9e9f";
+  private static final String NONCE = "070000004041424344454647";
+  private static final String AAD = "50515253c0c1c2c3c4c5c6c7";
+  private static final String PLAINTEXT =
+    "Ladies and Gentlemen of the class of '99: If I could offer you only one tip for the future, sunscreen would be it.";
+  private static final String CIPHERTEXT =
+    "d31a8d34648e60db7b86afbc53ef7ec2a4aded51296e08fea9e2b5a736ee62d63dbea45e8ca9671282fafb69da92728b1a71de0a9e060b2905d6" +
+    "a5b67ecd3b3692ddbd7f2d778b8c9803aee328091b58fab324e4fad675945585808b4831d7bc3ff4def08e4b7a9de576d26586cec64b6116";
+  private static final String TAG = "1ae10b594f09e26a7e902ecbd0600691";
+  private static final int[] LENGTHS = {0, 1, 15, 16, 17, 63, 64, 65, 1000, 300000};
+
+  public static void checkRfc8439() {
+    ChaCha20Poly1305Suite suite = (ChaCha20Poly1305Suite) AeadSuites.CHACHA20_POLY1305;
+    byte[] plaintext = PLAINTEXT.getBytes(StandardCharsets.US_ASCII);
+    ByteBuffer out = ByteBuffer.allocate(plaintext.length + CryptoContext.TAG_LENGTH);
+    suite.seal(hex(KEY), hex(NONCE), hex(AAD), ByteBuffer.wrap(plaintext), out);
+    if (!Arrays.equals(out.array(), hex(CIPHERTEXT + TAG))) {
+      Utils.except(suite.getName() + " fails the RFC 8439 AEAD vector.");
+    }
+
+    byte[] sealed = Crypto.encrypt(suite, plaintext, hex(KEY), 1, 2);
+    for (int i : new int[] {0, sealed.length - 1}) {
+      byte[] tampered = sealed.clone();
+      tampered[i] ^= 1;
+      boolean rejected = false;
+      try {
+        Crypto.decrypt(suite, tampered, hex(KEY), 1, 2);
+      } catch (RuntimeException e) {
+        rejected = true;
+      }
+      if (!rejected) {
+        Utils.except(suite.getName() + " accepted a tampered ciphertext.");
+      }
+    }
+  }
+
+  public static void check(AeadSuite suite) {
+    for (int length : LENGTHS) {
+      for (byte[] key : new byte[][] {Crypto.randomBytes(16), Crypto.randomBytes(32)}) {
+        byte[] message = Crypto.randomBytes(length);
+        expect(suite, "random nonces", message, Crypto.decrypt(suite, Crypto.encrypt(suite, message, key), key));
+        byte[] sealed = Crypto.encrypt(suite, message, key, 3, length);
+        expect(suite, "implicit nonces", message, Crypto.decrypt(suite, sealed, key, 3, length));
+
+        // Decrypt a heap buffer into a direct one, and a direct one in place.
+        ByteBuffer heap = ByteBuffer.allocate(CryptoContext.encryptedLength(length));
+        Crypto.encrypt(suite, ByteBuffer.wrap(message), key, heap);
+        heap.flip();
+        ByteBuffer direct = ByteBuffer.allocateDirect(heap.remaining());
+        direct.put(heap.duplicate());
+        direct.flip();
+        ByteBuffer plaintext = ByteBuffer.allocateDirect(length);
+        Crypto.decrypt(suite, heap, key, plaintext);
+        expect(suite, "heap to direct buffers", message, contents(plaintext));
+        ByteBuffer inPlace = direct.duplicate();
+        Crypto.decrypt(suite, direct, key, inPlace);
+        expect(suite, "in-place decryption", message, contents(inPlace));
+
+        ByteBuffer buffer = ByteBuffer.allocateDirect(CryptoContext.implicitNonceEncryptedLength(length));
+        buffer.put(message);
+        buffer.flip();
+        ByteBuffer sealedInPlace = buffer.duplicate();
+        sealedInPlace.limit(sealedInPlace.capacity());
+        // A different counter, as the JDK's ChaCha20 won't encrypt twice under one key and nonce.
+        Crypto.encrypt(suite, buffer, key, 4, length, sealedInPlace);
+        expect(suite, "in-place encryption", message, Crypto.decrypt(suite, contents(sealedInPlace), key, 4, length));
+      }
+    }
+  }
+
+  /**
+   * Suites implementing the same cipher must produce the same ciphertexts.
+   */
+  public static void crossCheck(List<AeadSuite> suites) {
+    for (AeadSuite a : suites) {
+      for (AeadSuite b : suites) {
+        if (a == b || !a.getName().startsWith("chacha20-poly1305") || !b.getName().startsWith("chacha20-poly1305")) {
+          continue;
+        }
+        for (int length : LENGTHS) {
+          for (byte[] key : new byte[][] {Crypto.randomBytes(16), Crypto.randomBytes(32)}) {
+            byte[] message = Crypto.randomBytes(length);
+            byte[] sealed = Crypto.encrypt(a, message, key, 5, length);
+            if (!Arrays.equals(sealed, Crypto.encrypt(b, message, key, 5, length))) {
+              Utils.except(a.getName() + " and " + b.getName() + " disagree on a " + length + " byte message.");
+            }
+            expect(b, "decrypting " + a.getName(), message, Crypto.decrypt(b, sealed, key, 5, length));
+          }
+        }
+      }
+    }
+  }
+
+  private static void expect(AeadSuite suite, String what, byte[] expected, byte[] actual) {
+    if (!Arrays.equals(expected, actual)) {
+      Utils.except(suite.getName() + " fails its round trip through " + what + ".");
+    }
+  }
+
+  private static byte[] contents(ByteBuffer buffer) {
+    buffer.flip();
+    byte[] result = new byte[buffer.remaining()];
+    buffer.get(result);
+    return result;
+  }
+
+  private static byte[] hex(String s) {
+    byte[] result = new byte[s.length() / 2];
+    for (int i = 0; i < result.length; i++) {
+      result[i] = (byte) Integer.parseInt(s.substring(2 * i, 2 * i + 2), 16);
+    }
+    return result;
+  }
+}
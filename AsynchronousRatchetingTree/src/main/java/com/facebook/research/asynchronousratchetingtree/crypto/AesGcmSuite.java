@@ -0,0 +1,85 @@
+/**
+ * Copyright (c) 2017-present, Facebook, Inc.
+ * All rights reserved.
+ *
+ * This source code is licensed under the license found in the
+ * LICENSE file in the root directory of this source tree.
+*/
+
+package com.facebook.research.asynchronousratchetingtree.crypto;
+
+import com.facebook.research.asynchronousratchetingtree.Utils;
+
+import javax.crypto.AEADBadTagException;
+import javax.crypto.Cipher;
+import javax.crypto.spec.GCMParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.ByteBuffer;
+
+/**
+ * The JDK's AES/GCM/NoPadding, which is what ART has always used. The key length picks AES-128 or AES-256.
+ */
+final public class AesGcmSuite implements AeadSuite {
+  private final ThreadLocal<Cipher> ciphers = ThreadLocal.withInitial(Crypto::startAESGCM);
+
+  @Override
+  public String getName() {
+    return "aes-gcm";
+  }
+
+  @Override
+  public int getId() {
+    return 1;
+  }
+
+  @Override
+  public int seal(byte[] key, byte[] nonce, byte[] in, int offset, int length, byte[] out, int outOffset) {
+    try {
+      return init(Cipher.ENCRYPT_MODE, key, nonce).doFinal(in, offset, length, out, outOffset);
+    } catch (Exception e) {
+      throw Utils.except(e);
+    }
+  }
+
+  @Override
+  public int open(byte[] key, byte[] nonce, byte[] in, int offset, int length, byte[] out, int outOffset) {
+    try {
+      return init(Cipher.DECRYPT_MODE, key, nonce).doFinal(in, offset, length, out, outOffset);
+    } catch (AEADBadTagException e) {
+      // Forged or corrupted messages are expected, so this isn't worth a stack trace.
+      throw Utils.except("AES-GCM tag mismatch.");
+    } catch (Exception e) {
+      throw Utils.except(e);
+    }
+  }
+
+  @Override
+  public int seal(byte[] key, byte[] nonce, ByteBuffer in, ByteBuffer out) {
+    try {
+      return init(Cipher.ENCRYPT_MODE, key, nonce).doFinal(in, out);
+    } catch (Exception e) {
+      throw Utils.except(e);
+    }
+  }
+
+  @Override
+  public int open(byte[] key, byte[] nonce, ByteBuffer in, ByteBuffer out) {
+    try {
+      return init(Cipher.DECRYPT_MODE, key, nonce).doFinal(in, out);
+    } catch (AEADBadTagException e) {
+      throw Utils.except("AES-GCM tag mismatch.");
+    } catch (Exception e) {
+      throw Utils.except(e);
+    }
+  }
+
+  private Cipher init(int mode, byte[] key, byte[] nonce) throws Exception {
+    Cipher cipher = ciphers.get();
+    cipher.init(
+      mode,
+      new SecretKeySpec(key, "AES"),
+      new GCMParameterSpec(CryptoContext.TAG_LENGTH * 8, nonce, 0, CryptoContext.NONCE_LENGTH)
+    );
+    return cipher;
+  }
+}
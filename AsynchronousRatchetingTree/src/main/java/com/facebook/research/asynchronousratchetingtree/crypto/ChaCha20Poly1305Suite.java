@@ -0,0 +1,381 @@
+/**
+ * Copyright (c) 2017-present, Facebook, Inc.
+ * All rights reserved.
+ *
+ * This source code is licensed under the license found in the
+ * LICENSE file in the root directory of this source tree.
+*/
+
+package com.facebook.research.asynchronousratchetingtree.crypto;
+
+import com.facebook.research.asynchronousratchetingtree.Utils;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+
+/**
+ * ChaCha20-Poly1305 as in RFC 8439, written out in Java so that it runs on every JDK, including those without a
+ * ChaCha20 Cipher. On cores without AES instructions it is usually faster than AES-GCM, whose GHASH is then done in
+ * software too.
+ *
+ * ChaCha20 takes 32-byte keys. Shorter keys, such as ART's 16-byte stage keys, are first stretched to 32 bytes with
+ * HMAC-SHA256 under a fixed label. Opening checks the tag over the whole ciphertext before decrypting any of it, so no
+ * unauthenticated plaintext is ever written.
+ */
+final public class ChaCha20Poly1305Suite implements AeadSuite {
+  static final int KEY_LENGTH = 32;
+  private static final byte[] KEY_LABEL = "ART ChaCha20-Poly1305 key".getBytes(StandardCharsets.UTF_8);
+  private static final int BLOCK_LENGTH = 64;
+  private static final long MASK_26 = 0x3ffffff;
+  private static final long MASK_32 = 0xffffffffL;
+
+  private final ThreadLocal<Engine> engines = ThreadLocal.withInitial(Engine::new);
+
+  @Override
+  public String getName() {
+    return "chacha20-poly1305";
+  }
+
+  @Override
+  public int getId() {
+    return 2;
+  }
+
+  @Override
+  public int seal(byte[] key, byte[] nonce, byte[] in, int offset, int length, byte[] out, int outOffset) {
+    return seal(key, nonce, ByteBuffer.wrap(in, offset, length), ByteBuffer.wrap(out, outOffset, out.length - outOffset));
+  }
+
+  @Override
+  public int open(byte[] key, byte[] nonce, byte[] in, int offset, int length, byte[] out, int outOffset) {
+    return open(key, nonce, ByteBuffer.wrap(in, offset, length), ByteBuffer.wrap(out, outOffset, out.length - outOffset));
+  }
+
+  @Override
+  public int seal(byte[] key, byte[] nonce, ByteBuffer in, ByteBuffer out) {
+    return engines.get().seal(key, nonce, Crypto.EMPTY, in, out);
+  }
+
+  @Override
+  public int open(byte[] key, byte[] nonce, ByteBuffer in, ByteBuffer out) {
+    return engines.get().open(key, nonce, Crypto.EMPTY, in, out);
+  }
+
+  /**
+   * Seal with additional authenticated data, which ART has no use for, so that the RFC's test vector can be checked.
+   */
+  int seal(byte[] key, byte[] nonce, byte[] aad, ByteBuffer in, ByteBuffer out) {
+    return engines.get().seal(key, nonce, aad, in, out);
+  }
+
+  /**
+   * The 32-byte ChaCha20 key for an ART key: the key itself if it is already 32 bytes, and otherwise its HMAC-SHA256
+   * under a fixed label, written into derived.
+   */
+  static byte[] cipherKey(byte[] key, byte[] derived) {
+    if (key.length == KEY_LENGTH) {
+      return key;
+    }
+    CryptoContext.get().hmacSha256(KEY_LABEL, key, derived, 0);
+    return derived;
+  }
+
+  private static final class Engine {
+    private final int[] state = new int[16];
+    private final byte[] block = new byte[BLOCK_LENGTH];
+    private final byte[] chunk = new byte[BLOCK_LENGTH];
+    private final byte[] derivedKey = new byte[KEY_LENGTH];
+    private final byte[] tag = new byte[CryptoContext.TAG_LENGTH];
+    private final byte[] expectedTag = new byte[CryptoContext.TAG_LENGTH];
+    // Poly1305 in radix 2^26: the clamped r, 5r for the reduction, the accumulator h and the final addend s.
+    private long r0, r1, r2, r3, r4, s1, s2, s3, s4;
+    private long h0, h1, h2, h3, h4;
+    private long pad0, pad1, pad2, pad3;
+
+    int seal(byte[] key, byte[] nonce, byte[] aad, ByteBuffer in, ByteBuffer out) {
+      start(key, nonce, aad);
+      int length = in.remaining();
+      int counter = 1;
+      while (in.hasRemaining()) {
+        int n = Math.min(BLOCK_LENGTH, in.remaining());
+        in.get(chunk, 0, n);
+        keystream(counter++);
+        for (int i = 0; i < n; i++) {
+          chunk[i] ^= block[i];
+        }
+        out.put(chunk, 0, n);
+        macPadded(chunk, n);
+      }
+      finishTag(aad.length, length, tag);
+      out.put(tag);
+      return length + CryptoContext.TAG_LENGTH;
+    }
+
+    int open(byte[] key, byte[] nonce, byte[] aad, ByteBuffer in, ByteBuffer out) {
+      int length = in.remaining() - CryptoContext.TAG_LENGTH;
+      if (length < 0) {
+        throw Utils.except("ChaCha20-Poly1305 ciphertext is shorter than its tag.");
+      }
+      start(key, nonce, aad);
+      ByteBuffer ciphertext = in.duplicate();
+      while (ciphertext.position() < in.position() + length) {
+        int n = Math.min(BLOCK_LENGTH, in.position() + length - ciphertext.position());
+        ciphertext.get(chunk, 0, n);
+        macPadded(chunk, n);
+      }
+      ciphertext.get(tag);
+      finishTag(aad.length, length, expectedTag);
+      if (!MessageDigest.isEqual(tag, expectedTag)) {
+        throw Utils.except("ChaCha20-Poly1305 tag mismatch.");
+      }
+
+      int counter = 1;
+      for (int done = 0; done < length; done += BLOCK_LENGTH) {
+        int n = Math.min(BLOCK_LENGTH, length - done);
+        in.get(chunk, 0, n);
+        keystream(counter++);
+        for (int i = 0; i < n; i++) {
+          chunk[i] ^= block[i];
+        }
+        out.put(chunk, 0, n);
+      }
+      in.position(in.position() + CryptoContext.TAG_LENGTH);
+      return length;
+    }
+
+    private void start(byte[] key, byte[] nonce, byte[] aad) {
+      byte[] cipherKey = cipherKey(key, derivedKey);
+      state[0] = 0x61707865;
+      state[1] = 0x3320646e;
+      state[2] = 0x79622d32;
+      state[3] = 0x6b206574;
+      for (int i = 0; i < 8; i++) {
+        state[4 + i] = littleEndian(cipherKey, 4 * i);
+      }
+      for (int i = 0; i < 3; i++) {
+        state[13 + i] = littleEndian(nonce, 4 * i);
+      }
+
+      // The one-time Poly1305 key is the first half of block 0.
+      keystream(0);
+      long t0 = littleEndian(block, 0) & MASK_32;
+      long t1 = littleEndian(block, 4) & MASK_32;
+      long t2 = littleEndian(block, 8) & MASK_32;
+      long t3 = littleEndian(block, 12) & MASK_32;
+      r0 = t0 & 0x3ffffff;
+      r1 = ((t0 >>> 26) | (t1 << 6)) & 0x3ffff03;
+      r2 = ((t1 >>> 20) | (t2 << 12)) & 0x3ffc0ff;
+      r3 = ((t2 >>> 14) | (t3 << 18)) & 0x3f03fff;
+      r4 = (t3 >>> 8) & 0x00fffff;
+      s1 = r1 * 5;
+      s2 = r2 * 5;
+      s3 = r3 * 5;
+      s4 = r4 * 5;
+      pad0 = littleEndian(block, 16) & MASK_32;
+      pad1 = littleEndian(block, 20) & MASK_32;
+      pad2 = littleEndian(block, 24) & MASK_32;
+      pad3 = littleEndian(block, 28) & MASK_32;
+      h0 = h1 = h2 = h3 = h4 = 0;
+
+      for (int off = 0; off < aad.length; off += BLOCK_LENGTH) {
+        int n = Math.min(BLOCK_LENGTH, aad.length - off);
+        System.arraycopy(aad, off, chunk, 0, n);
+        macPadded(chunk, n);
+      }
+    }
+
+    /**
+     * Feed n bytes to Poly1305, followed by zeros up to a multiple of 16, as the AEAD construction pads both the
+     * additional data and the ciphertext. Only the last call for each may have n below a full block.
+     */
+    private void macPadded(byte[] data, int n) {
+      for (int off = 0; off < n; off += 16) {
+        if (n - off < 16) {
+          for (int i = n; i < off + 16; i++) {
+            data[i] = 0;
+          }
+        }
+        macBlock(data, off);
+      }
+    }
+
+    private void macBlock(byte[] m, int off) {
+      long t0 = littleEndian(m, off) & MASK_32;
+      long t1 = littleEndian(m, off + 4) & MASK_32;
+      long t2 = littleEndian(m, off + 8) & MASK_32;
+      long t3 = littleEndian(m, off + 12) & MASK_32;
+      h0 += t0 & MASK_26;
+      h1 += ((t0 >>> 26) | (t1 << 6)) & MASK_26;
+      h2 += ((t1 >>> 20) | (t2 << 12)) & MASK_26;
+      h3 += ((t2 >>> 14) | (t3 << 18)) & MASK_26;
+      h4 += (t3 >>> 8) | (1L << 24);
+
+      long d0 = h0 * r0 + h1 * s4 + h2 * s3 + h3 * s2 + h4 * s1;
+      long d1 = h0 * r1 + h1 * r0 + h2 * s4 + h3 * s3 + h4 * s2;
+      long d2 = h0 * r2 + h1 * r1 + h2 * r0 + h3 * s4 + h4 * s3;
+      long d3 = h0 * r3 + h1 * r2 + h2 * r1 + h3 * r0 + h4 * s4;
+      long d4 = h0 * r4 + h1 * r3 + h2 * r2 + h3 * r1 + h4 * r0;
+
+      long c = d0 >>> 26;
+      h0 = d0 & MASK_26;
+      d1 += c;
+      c = d1 >>> 26;
+      h1 = d1 & MASK_26;
+      d2 += c;
+      c = d2 >>> 26;
+      h2 = d2 & MASK_26;
+      d3 += c;
+      c = d3 >>> 26;
+      h3 = d3 & MASK_26;
+      d4 += c;
+      c = d4 >>> 26;
+      h4 = d4 & MASK_26;
+      h0 += c * 5;
+      c = h0 >>> 26;
+      h0 &= MASK_26;
+      h1 += c;
+    }
+
+    private void finishTag(long aadLength, long ciphertextLength, byte[] out) {
+      for (int i = 0; i < 8; i++) {
+        chunk[i] = (byte) (aadLength >>> (8 * i));
+        chunk[8 + i] = (byte) (ciphertextLength >>> (8 * i));
+      }
+      macBlock(chunk, 0);
+
+      // Fully carry h, then compute h - p and keep it unless it went negative.
+      long c = h1 >>> 26;
+      h1 &= MASK_26;
+      h2 += c;
+      c = h2 >>> 26;
+      h2 &= MASK_26;
+      h3 += c;
+      c = h3 >>> 26;
+      h3 &= MASK_26;
+      h4 += c;
+      c = h4 >>> 26;
+      h4 &= MASK_26;
+      h0 += c * 5;
+      c = h0 >>> 26;
+      h0 &= MASK_26;
+      h1 += c;
+
+      long g0 = h0 + 5;
+      c = g0 >>> 26;
+      g0 &= MASK_26;
+      long g1 = h1 + c;
+      c = g1 >>> 26;
+      g1 &= MASK_26;
+      long g2 = h2 + c;
+      c = g2 >>> 26;
+      g2 &= MASK_26;
+      long g3 = h3 + c;
+      c = g3 >>> 26;
+      g3 &= MASK_26;
+      long g4 = h4 + c - (1L << 26);
+
+      long keepH = g4 >> 63;
+      h0 = (h0 & keepH) | (g0 & ~keepH);
+      h1 = (h1 & keepH) | (g1 & ~keepH);
+      h2 = (h2 & keepH) | (g2 & ~keepH);
+      h3 = (h3 & keepH) | (g3 & ~keepH);
+      h4 = (h4 & keepH) | (g4 & ~keepH);
+
+      long f0 = (h0 | (h1 << 26)) & MASK_32;
+      long f1 = ((h1 >>> 6) | (h2 << 20)) & MASK_32;
+      long f2 = ((h2 >>> 12) | (h3 << 14)) & MASK_32;
+      long f3 = ((h3 >>> 18) | (h4 << 8)) & MASK_32;
+
+      f0 += pad0;
+      f1 += pad1 + (f0 >>> 32);
+      f2 += pad2 + (f1 >>> 32);
+      f3 += pad3 + (f2 >>> 32);
+      littleEndian((int) f0, out, 0);
+      littleEndian((int) f1, out, 4);
+      littleEndian((int) f2, out, 8);
+      littleEndian((int) f3, out, 12);
+    }
+
+    private void keystream(int counter) {
+      state[12] = counter;
+      int x0 = state[0];
+      int x1 = state[1];
+      int x2 = state[2];
+      int x3 = state[3];
+      int x4 = state[4];
+      int x5 = state[5];
+      int x6 = state[6];
+      int x7 = state[7];
+      int x8 = state[8];
+      int x9 = state[9];
+      int x10 = state[10];
+      int x11 = state[11];
+      int x12 = state[12];
+      int x13 = state[13];
+      int x14 = state[14];
+      int x15 = state[15];
+      for (int i = 0; i < 10; i++) {
+        x0 += x4; x12 = Integer.rotateLeft(x12 ^ x0, 16);
+        x8 += x12; x4 = Integer.rotateLeft(x4 ^ x8, 12);
+        x0 += x4; x12 = Integer.rotateLeft(x12 ^ x0, 8);
+        x8 += x12; x4 = Integer.rotateLeft(x4 ^ x8, 7);
+        x1 += x5; x13 = Integer.rotateLeft(x13 ^ x1, 16);
+        x9 += x13; x5 = Integer.rotateLeft(x5 ^ x9, 12);
+        x1 += x5; x13 = Integer.rotateLeft(x13 ^ x1, 8);
+        x9 += x13; x5 = Integer.rotateLeft(x5 ^ x9, 7);
+        x2 += x6; x14 = Integer.rotateLeft(x14 ^ x2, 16);
+        x10 += x14; x6 = Integer.rotateLeft(x6 ^ x10, 12);
+        x2 += x6; x14 = Integer.rotateLeft(x14 ^ x2, 8);
+        x10 += x14; x6 = Integer.rotateLeft(x6 ^ x10, 7);
+        x3 += x7; x15 = Integer.rotateLeft(x15 ^ x3, 16);
+        x11 += x15; x7 = Integer.rotateLeft(x7 ^ x11, 12);
+        x3 += x7; x15 = Integer.rotateLeft(x15 ^ x3, 8);
+        x11 += x15; x7 = Integer.rotateLeft(x7 ^ x11, 7);
+        x0 += x5; x15 = Integer.rotateLeft(x15 ^ x0, 16);
+        x10 += x15; x5 = Integer.rotateLeft(x5 ^ x10, 12);
+        x0 += x5; x15 = Integer.rotateLeft(x15 ^ x0, 8);
+        x10 += x15; x5 = Integer.rotateLeft(x5 ^ x10, 7);
+        x1 += x6; x12 = Integer.rotateLeft(x12 ^ x1, 16);
+        x11 += x12; x6 = Integer.rotateLeft(x6 ^ x11, 12);
+        x1 += x6; x12 = Integer.rotateLeft(x12 ^ x1, 8);
+        x11 += x12; x6 = Integer.rotateLeft(x6 ^ x11, 7);
+        x2 += x7; x13 = Integer.rotateLeft(x13 ^ x2, 16);
+        x8 += x13; x7 = Integer.rotateLeft(x7 ^ x8, 12);
+        x2 += x7; x13 = Integer.rotateLeft(x13 ^ x2, 8);
+        x8 += x13; x7 = Integer.rotateLeft(x7 ^ x8, 7);
+        x3 += x4; x14 = Integer.rotateLeft(x14 ^ x3, 16);
+        x9 += x14; x4 = Integer.rotateLeft(x4 ^ x9, 12);
+        x3 += x4; x14 = Integer.rotateLeft(x14 ^ x3, 8);
+        x9 += x14; x4 = Integer.rotateLeft(x4 ^ x9, 7);
+      }
+      littleEndian(x0 + state[0], block, 0);
+      littleEndian(x1 + state[1], block, 4);
+      littleEndian(x2 + state[2], block, 8);
+      littleEndian(x3 + state[3], block, 12);
+      littleEndian(x4 + state[4], block, 16);
+      littleEndian(x5 + state[5], block, 20);
+      littleEndian(x6 + state[6], block, 24);
+      littleEndian(x7 + state[7], block, 28);
+      littleEndian(x8 + state[8], block, 32);
+      littleEndian(x9 + state[9], block, 36);
+      littleEndian(x10 + state[10], block, 40);
+      littleEndian(x11 + state[11], block, 44);
+      littleEndian(x12 + state[12], block, 48);
+      littleEndian(x13 + state[13], block, 52);
+      littleEndian(x14 + state[14], block, 56);
+      littleEndian(x15 + state[15], block, 60);
+    }
+  }
+
+  private static int littleEndian(byte[] b, int off) {
+    return (b[off] & 0xff) | (b[off + 1] & 0xff) << 8 | (b[off + 2] & 0xff) << 16 | (b[off + 3] & 0xff) << 24;
+  }
+
+  private static void littleEndian(int v, byte[] out, int off) {
+    out[off] = (byte) v;
+    out[off + 1] = (byte) (v >>> 8);
+    out[off + 2] = (byte) (v >>> 16);
+    out[off + 3] = (byte) (v >>> 24);
+  }
+}
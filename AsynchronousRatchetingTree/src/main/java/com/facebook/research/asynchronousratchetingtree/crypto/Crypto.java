@@ -9,18 +9,14 @@
 package com.facebook.research.asynchronousratchetingtree.crypto;
 
 import com.facebook.research.asynchronousratchetingtree.Utils;
-import com.facebook.research.asynchronousratchetingtree.art.tree.Node;
-import djb.Curve25519;
 
 import javax.crypto.Cipher;
-import javax.crypto.Mac;
-import javax.crypto.spec.GCMParameterSpec;
-import javax.crypto.spec.SecretKeySpec;
-import java.security.Key;
+import java.nio.ByteBuffer;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
-import java.security.SecureRandom;
-import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.IntConsumer;
+import java.util.function.IntFunction;
 
 /**
  * This crypto class is put together simply to make coding the rest of the example program easier. Please never actually
@@ -28,124 +24,127 @@ import java.util.Arrays;
  */
 public class Crypto {
   final public static int HASH_LENGTH = 32;
+  final public static int STAGE_KEY_LENGTH = 16;
+  final public static byte[] EMPTY = new byte[0];
+  private static final MessageDigest SHA256_PROTOTYPE = newSHA256();
 
-  public static MessageDigest startSHA256() {
-    MessageDigest md;
+  private static MessageDigest newSHA256() {
     try {
-      md = MessageDigest.getInstance("SHA-256");
+      return MessageDigest.getInstance("SHA-256");
     } catch (NoSuchAlgorithmException e) {
       throw Utils.except(e);
     }
-    return md;
   }
 
-  public static byte[] hmacSha256(byte[] data, byte[] key) {
-    Mac mac;
+  /**
+   * A fresh digest, cloned from a prototype so that we only pay for the provider lookup once.
+   */
+  public static MessageDigest startSHA256() {
     try {
-      mac = Mac.getInstance("HmacSHA256");
-      mac.init(new SecretKeySpec(key, "HmacSHA256"));
-    } catch (Exception e) {
-      throw Utils.except(e);
+      return (MessageDigest) SHA256_PROTOTYPE.clone();
+    } catch (CloneNotSupportedException e) {
+      return newSHA256();
     }
-    mac.update(data);
-    return mac.doFinal();
   }
 
-  public static byte[] hkdf(byte[] input_keying_material, byte[] salt, byte[] info, int num_bytes) {
-    // Extract step
-    byte[] pseudo_random_key = hmacSha256(salt, input_keying_material);
+  public static byte[] hmacSha256(byte[] data, byte[] key) {
+    byte[] result = new byte[HASH_LENGTH];
+    CryptoContext.get().hmacSha256(data, key, result, 0);
+    return result;
+  }
 
-    // Expand step
+  public static byte[] hkdf(byte[] input_keying_material, byte[] salt, byte[] info, int num_bytes) {
     byte[] output_bytes = new byte[num_bytes];
-    byte[] t = new byte[0];
-    for (byte i = 0; i < (num_bytes + 31) / 32; i++) {
-      byte[] tInput = new byte[t.length + info.length + 1];
-      System.arraycopy(t, 0, tInput, 0, t.length);
-      System.arraycopy(info, 0, tInput, t.length, info.length);
-      tInput[tInput.length - 1] = i;
-
-      t = hmacSha256(pseudo_random_key, tInput);
-      int num_to_copy = num_bytes - (i * 32);
-      if (num_to_copy > 32) {
-        num_to_copy = 32;
-      }
-
-      System.arraycopy(t, 0, output_bytes, i * 32, num_to_copy);
-    }
+    CryptoContext.get().hkdf(input_keying_material, 0, input_keying_material.length, salt, info, output_bytes, 0, num_bytes);
     return output_bytes;
   }
 
+  /**
+   * Derive the next stage key, with the group's identities and the tree already reduced to compact commitments. Callers
+   * pass a digest of the membership (see GroupContext) as info, and either the serialised tree or its Merkle hash
+   * (see Node.getTreeHash) as the tree commitment.
+   */
   public static byte[] artKDF(
     byte[] lastStageKey,
     byte[] treeKey,
-    DHPubKey[] identities,
-    Node tree
+    byte[] info,
+    byte[] treeCommitment
   ) {
-    byte[] serialisedTree = Utils.serialise(Node.toThrift(tree));
-    byte[] ikm = new byte[lastStageKey.length + treeKey.length + serialisedTree.length];
-    System.arraycopy(lastStageKey, 0, ikm, 0, lastStageKey.length);
-    System.arraycopy(treeKey, 0, ikm, lastStageKey.length, treeKey.length);
-    System.arraycopy(serialisedTree, 0, ikm, lastStageKey.length + treeKey.length, serialisedTree.length);
-
-    byte[] info = new byte[identities.length * Curve25519.KEY_SIZE];
-    for (int i = 0; i < identities.length; i++) {
-      System.arraycopy(identities[i].getPubKeyBytes(), 0, info, i * Curve25519.KEY_SIZE, Curve25519.KEY_SIZE);
-    }
-    return hkdf(ikm, new byte[0], info, 16);
+    byte[] result = new byte[STAGE_KEY_LENGTH];
+    CryptoContext.get().artKDF(lastStageKey, treeKey, info, treeCommitment, result, 0);
+    return result;
   }
 
   public static byte[] randomBytes(int n) {
-    byte[] result = new byte[n];
-    SecureRandom rng = new SecureRandom();
-    rng.nextBytes(result);
-    return result;
+    return EntropyPool.randomBytes(n);
   }
 
+  /**
+   * AES-GCM, as ART has always used; the overloads taking an AeadSuite encrypt with the group's suite instead.
+   */
   public static byte[] encrypt(byte[] message, byte[] keyBytes) {
-    Cipher cipher;
-    Key key;
+    return encrypt(AeadSuites.AES_GCM, message, keyBytes);
+  }
+
+  public static byte[] decrypt(byte[] encrypted, byte[] keyBytes) {
+    return decrypt(AeadSuites.AES_GCM, encrypted, keyBytes);
+  }
+
+  public static Cipher startAESGCM() {
     try {
-      cipher = Cipher.getInstance("AES/GCM/NoPadding");
-      byte[] nonce = randomBytes(12);
-      GCMParameterSpec paramSpec = new GCMParameterSpec(16 * 8, nonce);
-
-      key = new SecretKeySpec(keyBytes, "AES");
-      cipher.init(Cipher.ENCRYPT_MODE, key, paramSpec);
-
-      int len = cipher.getOutputSize(message.length);
-      byte[] result = new byte[len + 12];
-      System.arraycopy(nonce, 0, result, 0, 12);
-
-      cipher.doFinal(
-        message,
-        0,
-        message.length,
-        result,
-        12
-      );
-      return result;
+      return Cipher.getInstance("AES/GCM/NoPadding");
     } catch (Exception e) {
       throw Utils.except(e);
     }
   }
 
-  public static byte[] decrypt(byte[] encrypted, byte[] keyBytes) {
-    Cipher cipher;
-    Key key;
-    try {
-      cipher = Cipher.getInstance("AES/GCM/NoPadding");
+  public static byte[] encrypt(AeadSuite suite, byte[] message, byte[] keyBytes) {
+    byte[] result = new byte[CryptoContext.encryptedLength(message.length)];
+    CryptoContext.get().encrypt(suite, message, 0, message.length, keyBytes, result, 0);
+    return result;
+  }
 
-      byte[] nonce = Arrays.copyOfRange(encrypted, 0, 12);
-      byte[] ciphertext = Arrays.copyOfRange(encrypted, 12, encrypted.length);
-      GCMParameterSpec paramSpec = new GCMParameterSpec(16 * 8, nonce);
+  public static byte[] decrypt(AeadSuite suite, byte[] encrypted, byte[] keyBytes) {
+    byte[] result = new byte[encrypted.length - CryptoContext.NONCE_LENGTH - CryptoContext.TAG_LENGTH];
+    CryptoContext.get().decrypt(suite, encrypted, 0, encrypted.length, keyBytes, result, 0);
+    return result;
+  }
 
-      key = new SecretKeySpec(keyBytes, "AES");
-      cipher.init(Cipher.DECRYPT_MODE, key, paramSpec);
+  /**
+   * Encrypt with a single-use key under a nonce built from the stream and counter; see CryptoContext. The result
+   * carries no nonce.
+   */
+  public static byte[] encrypt(AeadSuite suite, byte[] message, byte[] keyBytes, int stream, long counter) {
+    byte[] result = new byte[CryptoContext.implicitNonceEncryptedLength(message.length)];
+    CryptoContext.get().encrypt(suite, message, 0, message.length, keyBytes, stream, counter, result, 0);
+    return result;
+  }
 
-      return cipher.doFinal(ciphertext);
-    } catch (Exception e) {
-      throw Utils.except(e);
-    }
+  public static byte[] decrypt(AeadSuite suite, byte[] encrypted, byte[] keyBytes, int stream, long counter) {
+    byte[] result = new byte[encrypted.length - CryptoContext.TAG_LENGTH];
+    CryptoContext.get().decrypt(suite, encrypted, 0, encrypted.length, keyBytes, stream, counter, result, 0);
+    return result;
+  }
+
+  /**
+   * The ByteBuffer forms of encrypt and decrypt read the remaining bytes of the input and write at the position of the
+   * output, advancing both, so a message can be decrypted straight out of a receive buffer, heap or direct, into
+   * another or into itself. CryptoContext says which of them may be done in place.
+   */
+  public static int encrypt(AeadSuite suite, ByteBuffer message, byte[] keyBytes, ByteBuffer out) {
+    return CryptoContext.get().encrypt(suite, message, keyBytes, out);
+  }
+
+  public static int decrypt(AeadSuite suite, ByteBuffer encrypted, byte[] keyBytes, ByteBuffer out) {
+    return CryptoContext.get().decrypt(suite, encrypted, keyBytes, out);
+  }
+
+  public static int encrypt(AeadSuite suite, ByteBuffer message, byte[] keyBytes, int stream, long counter, ByteBuffer out) {
+    return CryptoContext.get().encrypt(suite, message, keyBytes, stream, counter, out);
+  }
+
+  public static int decrypt(AeadSuite suite, ByteBuffer encrypted, byte[] keyBytes, int stream, long counter, ByteBuffer out) {
+    return CryptoContext.get().decrypt(suite, encrypted, keyBytes, stream, counter, out);
   }
 
   public static byte[] keyExchangeInitiate(
@@ -154,12 +153,72 @@ public class Crypto {
     DHKeyPair keyExchangeKeyPair,
     DHPubKey remoteEphemeralKey
   ) {
-    MessageDigest md = Crypto.startSHA256();
-    md.update(selfIdentity.exchange(remoteIdentity));
-    md.update(selfIdentity.exchange(remoteEphemeralKey));
-    md.update(keyExchangeKeyPair.exchange(remoteIdentity));
-    md.update(keyExchangeKeyPair.exchange(remoteEphemeralKey));
-    return md.digest();
+    byte[] out = new byte[HASH_LENGTH];
+    CryptoContext.get().keyExchangeInitiate(selfIdentity, remoteIdentity, keyExchangeKeyPair, remoteEphemeralKey, out, 0);
+    return out;
+  }
+
+  /**
+   * keyExchangeInitiate with every peer of a group at once, spread over pool if there is one. The result is indexed
+   * like the peers; a peer with no ephemeral key, such as ourselves, is skipped and gets null. keyExchangeKeyPair is
+   * used with every peer, as ART's initiator does.
+   */
+  public static byte[][] keyExchangeInitiateAll(
+    DHKeyPair selfIdentity,
+    DHPubKey[] remoteIdentities,
+    DHKeyPair keyExchangeKeyPair,
+    DHPubKey[] remoteEphemeralKeys,
+    ForkJoinPool pool
+  ) {
+    return keyExchangeInitiateAll(selfIdentity, remoteIdentities, i -> keyExchangeKeyPair, remoteEphemeralKeys, pool);
+  }
+
+  /**
+   * As above, but with a key exchange key pair of its own for each peer, as a pairwise protocol uses.
+   */
+  public static byte[][] keyExchangeInitiateAll(
+    DHKeyPair selfIdentity,
+    DHPubKey[] remoteIdentities,
+    DHKeyPair[] keyExchangeKeyPairs,
+    DHPubKey[] remoteEphemeralKeys,
+    ForkJoinPool pool
+  ) {
+    return keyExchangeInitiateAll(selfIdentity, remoteIdentities, i -> keyExchangeKeyPairs[i], remoteEphemeralKeys, pool);
+  }
+
+  private static byte[][] keyExchangeInitiateAll(
+    DHKeyPair selfIdentity,
+    DHPubKey[] remoteIdentities,
+    IntFunction<DHKeyPair> keyExchangeKeyPairs,
+    DHPubKey[] remoteEphemeralKeys,
+    ForkJoinPool pool
+  ) {
+    int n = remoteIdentities.length;
+    byte[][] secrets = new byte[n][];
+    // The exchanges with one peer don't depend on any other's. Each thread hashes with its own context, so the only
+    // allocation per peer is the secret itself.
+    IntConsumer exchange = i -> {
+      if (remoteEphemeralKeys[i] == null) {
+        return;
+      }
+      secrets[i] = new byte[HASH_LENGTH];
+      CryptoContext.get().keyExchangeInitiate(
+        selfIdentity,
+        remoteIdentities[i],
+        keyExchangeKeyPairs.apply(i),
+        remoteEphemeralKeys[i],
+        secrets[i],
+        0
+      );
+    };
+    if (pool == null) {
+      for (int i = 0; i < n; i++) {
+        exchange.accept(i);
+      }
+    } else {
+      Utils.parallelFor(pool, 0, n, exchange);
+    }
+    return secrets;
   }
 
   public static byte[] keyExchangeReceive(
@@ -168,11 +227,8 @@ public class Crypto {
     DHKeyPair ephemeralKey,
     DHPubKey keyExchangeKey
   ) {
-    MessageDigest md = Crypto.startSHA256();
-    md.update(selfIdentity.exchange(remoteIdentity));
-    md.update(ephemeralKey.exchange(remoteIdentity));
-    md.update(selfIdentity.exchange(keyExchangeKey));
-    md.update(ephemeralKey.exchange(keyExchangeKey));
-    return md.digest();
+    byte[] out = new byte[HASH_LENGTH];
+    CryptoContext.get().keyExchangeReceive(selfIdentity, remoteIdentity, ephemeralKey, keyExchangeKey, out, 0);
+    return out;
   }
 }
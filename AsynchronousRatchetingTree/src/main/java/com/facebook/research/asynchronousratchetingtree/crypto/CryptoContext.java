@@ -0,0 +1,359 @@
+/**
+ * Copyright (c) 2017-present, Facebook, Inc.
+ * All rights reserved.
+ *
+ * This source code is licensed under the license found in the
+ * LICENSE file in the root directory of this source tree.
+*/
+
+package com.facebook.research.asynchronousratchetingtree.crypto;
+
+import com.facebook.research.asynchronousratchetingtree.Utils;
+import djb.Curve25519;
+
+import java.nio.ByteBuffer;
+import java.security.DigestException;
+import java.security.MessageDigest;
+import java.util.Arrays;
+
+/**
+ * One thread's set of crypto primitives and scratch buffers, looked up once and then reused, so that hot paths don't
+ * pay for a provider lookup and a handful of fresh arrays on every call. Methods write into caller-owned buffers.
+ *
+ * HMAC-SHA256 is computed directly on the reused SHA-256 digest rather than through javax.crypto.Mac, which would
+ * otherwise copy the key on every init. A context must only ever be used by the thread it belongs to.
+ */
+final public class CryptoContext {
+  public static final int NONCE_LENGTH = 12;
+  public static final int TAG_LENGTH = 16;
+  private static final int BLOCK_LENGTH = 64;
+  private static final ThreadLocal<CryptoContext> CURRENT = ThreadLocal.withInitial(CryptoContext::new);
+  // The HMAC pads for a key of zero bytes, which is what the one-byte key 0 pads out to.
+  private static final byte[] ZERO_KEY_INNER_PAD = pad(0x36);
+  private static final byte[] ZERO_KEY_OUTER_PAD = pad(0x5c);
+
+  private final MessageDigest sha256 = Crypto.startSHA256();
+  private final EntropyPool entropy = EntropyPool.get();
+  private final byte[] keyBlock = new byte[BLOCK_LENGTH];
+  private final byte[] pad = new byte[BLOCK_LENGTH];
+  private final byte[] inner = new byte[Crypto.HASH_LENGTH];
+  private final byte[] prk = new byte[Crypto.HASH_LENGTH];
+  private final byte[] block = new byte[Crypto.HASH_LENGTH];
+  private final byte[] dhOutput = new byte[Crypto.HASH_LENGTH];
+  private final byte[] remoteKey = new byte[Curve25519.KEY_SIZE];
+  private final byte[] exchanges = new byte[4 * Curve25519.KEY_SIZE];
+  private final byte[] tag = new byte[Crypto.HASH_LENGTH];
+  private final byte[] nonce = new byte[NONCE_LENGTH];
+  private byte[] scratch = new byte[128];
+
+  private CryptoContext() {
+  }
+
+  public static CryptoContext get() {
+    return CURRENT.get();
+  }
+
+  /**
+   * Thirty-two bytes for a Diffie-Hellman output that is consumed straight away.
+   */
+  public byte[] dhOutputBuffer() {
+    return dhOutput;
+  }
+
+  public void sha256(byte[] data, int offset, int length, byte[] out, int outOffset) {
+    sha256.reset();
+    sha256.update(data, offset, length);
+    finish(out, outOffset);
+  }
+
+  public void hmacSha256(byte[] data, byte[] key, byte[] out, int outOffset) {
+    hmacInit(key, 0, key.length);
+    hmacUpdate(data, 0, data.length);
+    hmacFinal(out, outOffset);
+  }
+
+  /**
+   * Check an HMAC-SHA256 tag in constant time, without handing out the expected value.
+   */
+  public boolean verifyHmacSha256(byte[] data, byte[] key, byte[] expected) {
+    hmacSha256(data, key, tag, 0);
+    return MessageDigest.isEqual(tag, expected);
+  }
+
+  public void hmacInit(byte[] key, int offset, int length) {
+    sha256.reset();
+    if (length > BLOCK_LENGTH) {
+      sha256.update(key, offset, length);
+      finish(keyBlock, 0);
+      Arrays.fill(keyBlock, Crypto.HASH_LENGTH, BLOCK_LENGTH, (byte) 0);
+    } else {
+      System.arraycopy(key, offset, keyBlock, 0, length);
+      Arrays.fill(keyBlock, length, BLOCK_LENGTH, (byte) 0);
+    }
+    for (int i = 0; i < BLOCK_LENGTH; i++) {
+      pad[i] = (byte) (keyBlock[i] ^ 0x36);
+    }
+    sha256.update(pad);
+  }
+
+  public void hmacUpdate(byte[] data, int offset, int length) {
+    sha256.update(data, offset, length);
+  }
+
+  /**
+   * Finish the HMAC started by hmacInit. The output may overlap the key or data, which have been consumed by now.
+   */
+  public void hmacFinal(byte[] out, int outOffset) {
+    finish(inner, 0);
+    for (int i = 0; i < BLOCK_LENGTH; i++) {
+      pad[i] = (byte) (keyBlock[i] ^ 0x5c);
+    }
+    sha256.update(pad);
+    sha256.update(inner);
+    finish(out, outOffset);
+  }
+
+  /**
+   * Exactly Crypto.hkdf, written into out. Note that, as there, the extract step keys the HMAC with the input keying
+   * material and each expand step keys it with the previous block, info and counter.
+   */
+  public void hkdf(byte[] ikm, int ikmOffset, int ikmLength, byte[] salt, byte[] info, byte[] out, int outOffset, int length) {
+    hmacInit(ikm, ikmOffset, ikmLength);
+    hmacUpdate(salt, 0, salt.length);
+    hmacFinal(prk, 0);
+
+    int blockLength = 0;
+    for (int i = 0; i * Crypto.HASH_LENGTH < length; i++) {
+      byte[] expandKey = scratch(blockLength + info.length + 1);
+      System.arraycopy(block, 0, expandKey, 0, blockLength);
+      System.arraycopy(info, 0, expandKey, blockLength, info.length);
+      expandKey[blockLength + info.length] = (byte) i;
+
+      hmacInit(expandKey, 0, blockLength + info.length + 1);
+      hmacUpdate(prk, 0, prk.length);
+      hmacFinal(block, 0);
+      blockLength = Crypto.HASH_LENGTH;
+
+      System.arraycopy(block, 0, out, outOffset + i * Crypto.HASH_LENGTH, Math.min(Crypto.HASH_LENGTH, length - i * Crypto.HASH_LENGTH));
+    }
+  }
+
+  /**
+   * The key pair of a tree node with the secret child and the sibling public key at siblingOffset: the Diffie-Hellman
+   * output of the two, put through Crypto.hkdf with an empty salt and info for 32 bytes, as a private key.
+   *
+   * Every step up every tree is one of these, so it is done in one pass over this context's buffers, allocating only
+   * the new key pair. With an empty info, the expand step is a single HMAC keyed with the counter byte 0, whose pads
+   * are constants.
+   */
+  public DHKeyPair nodeKeyPair(DHKeyPair child, byte[] sibling, int siblingOffset) {
+    byte[] remote = sibling;
+    if (siblingOffset != 0 || sibling.length != Curve25519.KEY_SIZE) {
+      System.arraycopy(sibling, siblingOffset, remoteKey, 0, Curve25519.KEY_SIZE);
+      remote = remoteKey;
+    }
+    X25519Backend backend = X25519Backends.current();
+    backend.agree(child.getPrivKeyBytes(), remote, dhOutput);
+
+    hmacInit(dhOutput, 0, dhOutput.length);
+    hmacFinal(prk, 0);
+
+    byte[] priv = new byte[Curve25519.KEY_SIZE];
+    sha256.update(ZERO_KEY_INNER_PAD);
+    sha256.update(prk);
+    finish(inner, 0);
+    sha256.update(ZERO_KEY_OUTER_PAD);
+    sha256.update(inner);
+    finish(priv, 0);
+
+    byte[] pub = new byte[Curve25519.KEY_SIZE];
+    backend.publicKey(priv, pub);
+    return new DHKeyPair(pub, priv, null);
+  }
+
+  public DHKeyPair nodeKeyPair(DHKeyPair child, DHPubKey sibling) {
+    return nodeKeyPair(child, sibling.getPubKeyBytes(), 0);
+  }
+
+  /**
+   * Crypto.keyExchangeInitiate, written into out: SHA-256 over the four exchanges of our identity and key exchange
+   * key with the peer's identity and prekey.
+   */
+  public void keyExchangeInitiate(
+    DHKeyPair selfIdentity,
+    DHPubKey remoteIdentity,
+    DHKeyPair keyExchangeKeyPair,
+    DHPubKey remoteEphemeralKey,
+    byte[] out,
+    int outOffset
+  ) {
+    exchange(0, selfIdentity, remoteIdentity);
+    exchange(1, selfIdentity, remoteEphemeralKey);
+    exchange(2, keyExchangeKeyPair, remoteIdentity);
+    exchange(3, keyExchangeKeyPair, remoteEphemeralKey);
+    sha256(exchanges, 0, exchanges.length, out, outOffset);
+  }
+
+  /**
+   * Crypto.keyExchangeReceive, written into out. The exchanges come in the order that matches the initiator's.
+   */
+  public void keyExchangeReceive(
+    DHKeyPair selfIdentity,
+    DHPubKey remoteIdentity,
+    DHKeyPair ephemeralKey,
+    DHPubKey keyExchangeKey,
+    byte[] out,
+    int outOffset
+  ) {
+    exchange(0, selfIdentity, remoteIdentity);
+    exchange(1, ephemeralKey, remoteIdentity);
+    exchange(2, selfIdentity, keyExchangeKey);
+    exchange(3, ephemeralKey, keyExchangeKey);
+    sha256(exchanges, 0, exchanges.length, out, outOffset);
+  }
+
+  /**
+   * Exactly Crypto.artKDF, written into out.
+   */
+  public void artKDF(byte[] lastStageKey, byte[] treeKey, byte[] info, byte[] treeCommitment, byte[] out, int outOffset) {
+    int ikmLength = lastStageKey.length + treeKey.length + treeCommitment.length;
+    byte[] ikm = scratch(ikmLength);
+    System.arraycopy(lastStageKey, 0, ikm, 0, lastStageKey.length);
+    System.arraycopy(treeKey, 0, ikm, lastStageKey.length, treeKey.length);
+    System.arraycopy(treeCommitment, 0, ikm, lastStageKey.length + treeKey.length, treeCommitment.length);
+    // hkdf only reads the ikm in its extract step, before it needs the scratch buffer again.
+    hkdf(ikm, 0, ikmLength, Crypto.EMPTY, info, out, outOffset, Crypto.STAGE_KEY_LENGTH);
+  }
+
+  public static int encryptedLength(int plaintextLength) {
+    return NONCE_LENGTH + plaintextLength + TAG_LENGTH;
+  }
+
+  /**
+   * Encrypt under a fresh random nonce, written into out as nonce || ciphertext || tag. Returns the length written.
+   */
+  public int encrypt(AeadSuite suite, byte[] message, int offset, int length, byte[] key, byte[] out, int outOffset) {
+    entropy.fill(nonce, 0, NONCE_LENGTH);
+    System.arraycopy(nonce, 0, out, outOffset, NONCE_LENGTH);
+    return NONCE_LENGTH + suite.seal(key, nonce, message, offset, length, out, outOffset + NONCE_LENGTH);
+  }
+
+  /**
+   * The inverse of encrypt. Returns the plaintext length written into out.
+   */
+  public int decrypt(AeadSuite suite, byte[] encrypted, int offset, int length, byte[] key, byte[] out, int outOffset) {
+    System.arraycopy(encrypted, offset, nonce, 0, NONCE_LENGTH);
+    return suite.open(key, nonce, encrypted, offset + NONCE_LENGTH, length - NONCE_LENGTH, out, outOffset);
+  }
+
+  public static int implicitNonceEncryptedLength(int plaintextLength) {
+    return plaintextLength + TAG_LENGTH;
+  }
+
+  /**
+   * Encrypt with a key that encrypts exactly one message. The nonce is the big-endian stream number followed by the
+   * big-endian counter, which the receiver knows from where the message sits, so it is neither drawn nor sent. Written
+   * into out as ciphertext || tag. Returns the length written.
+   */
+  public int encrypt(
+    AeadSuite suite,
+    byte[] message,
+    int offset,
+    int length,
+    byte[] key,
+    int stream,
+    long counter,
+    byte[] out,
+    int outOffset
+  ) {
+    return suite.seal(key, counterNonce(stream, counter), message, offset, length, out, outOffset);
+  }
+
+  /**
+   * The inverse of the implicit-nonce encrypt. Returns the plaintext length written into out.
+   */
+  public int decrypt(
+    AeadSuite suite,
+    byte[] encrypted,
+    int offset,
+    int length,
+    byte[] key,
+    int stream,
+    long counter,
+    byte[] out,
+    int outOffset
+  ) {
+    return suite.open(key, counterNonce(stream, counter), encrypted, offset, length, out, outOffset);
+  }
+
+  /**
+   * The ByteBuffer form of encrypt: reads the remaining bytes of in and writes nonce || ciphertext || tag at the
+   * position of out, advancing both. Either may be a heap or a direct buffer, but out must not overlap what is left of
+   * in, since it is written ahead of it. Returns the length written.
+   */
+  public int encrypt(AeadSuite suite, ByteBuffer in, byte[] key, ByteBuffer out) {
+    entropy.fill(nonce, 0, NONCE_LENGTH);
+    out.put(nonce);
+    return NONCE_LENGTH + suite.seal(key, nonce, in, out);
+  }
+
+  /**
+   * The ByteBuffer form of decrypt. The plaintext is never written ahead of the ciphertext it comes from, so out may
+   * start where in does, decrypting in place. Returns the plaintext length written.
+   */
+  public int decrypt(AeadSuite suite, ByteBuffer in, byte[] key, ByteBuffer out) {
+    in.get(nonce);
+    return suite.open(key, nonce, in, out);
+  }
+
+  /**
+   * The ByteBuffer form of the implicit-nonce encrypt. Nothing is written ahead of the input, so out may start where in
+   * does, as long as there is room after it for the tag.
+   */
+  public int encrypt(AeadSuite suite, ByteBuffer in, byte[] key, int stream, long counter, ByteBuffer out) {
+    return suite.seal(key, counterNonce(stream, counter), in, out);
+  }
+
+  /**
+   * The ByteBuffer form of the implicit-nonce decrypt, which may also be done in place.
+   */
+  public int decrypt(AeadSuite suite, ByteBuffer in, byte[] key, int stream, long counter, ByteBuffer out) {
+    return suite.open(key, counterNonce(stream, counter), in, out);
+  }
+
+  private byte[] counterNonce(int stream, long counter) {
+    for (int i = 0; i < 4; i++) {
+      nonce[i] = (byte) (stream >>> (24 - 8 * i));
+    }
+    for (int i = 0; i < 8; i++) {
+      nonce[4 + i] = (byte) (counter >>> (56 - 8 * i));
+    }
+    return nonce;
+  }
+
+  private void finish(byte[] out, int outOffset) {
+    try {
+      sha256.digest(out, outOffset, Crypto.HASH_LENGTH);
+    } catch (DigestException e) {
+      throw Utils.except(e);
+    }
+  }
+
+  private void exchange(int slot, DHKeyPair self, DHPubKey remote) {
+    self.exchange(remote, dhOutput);
+    System.arraycopy(dhOutput, 0, exchanges, slot * Curve25519.KEY_SIZE, Curve25519.KEY_SIZE);
+  }
+
+  private static byte[] pad(int value) {
+    byte[] pad = new byte[BLOCK_LENGTH];
+    Arrays.fill(pad, (byte) value);
+    return pad;
+  }
+
+  private byte[] scratch(int length) {
+    if (scratch.length < length) {
+      scratch = new byte[Math.max(length, scratch.length * 2)];
+    }
+    return scratch;
+  }
+}
@@ -8,11 +8,8 @@
 
 package com.facebook.research.asynchronousratchetingtree.crypto;
 
-import com.facebook.research.asynchronousratchetingtree.Utils;
 import djb.Curve25519;
 
-import java.security.MessageDigest;
-
 public class DHKeyPair extends DHPubKey {
   private byte[] priv;
   private byte[] privSign;
@@ -31,11 +28,12 @@ public class DHKeyPair extends DHPubKey {
     byte[] pub = new byte[Curve25519.KEY_SIZE];
     byte[] privSign;
     if (allowSignatures) {
+      // Only the djb code derives the KCDSA signing key, so signing keys always come from it.
       privSign = new byte[Curve25519.KEY_SIZE];
       Curve25519.keygen(pub, privSign, priv);
     } else {
       privSign = null;
-      Curve25519.keygen(pub, null, priv);
+      X25519Backends.current().publicKey(priv, pub);
     }
     return new DHKeyPair(pub, priv, privSign);
   }
@@ -49,52 +47,25 @@ public class DHKeyPair extends DHPubKey {
   }
 
   public byte[] exchange(DHPubKey bob) {
-    byte[] result = new byte[Curve25519.KEY_SIZE];
-    Curve25519.curve(result, getPrivKeyBytes(), bob.getPubKeyBytes());
-    return result;
+    return exchange(bob, new byte[Curve25519.KEY_SIZE]);
   }
 
   /**
-   *  The Curve25519 library that we use implements KCDSA. The API provided accepts the first curve point
-   *  as an argument, and returns the second part of the signature. The first part is a hash of the public
-   *  curve point, so we append this ourselves.
-   *  In DHPubKey, we then verify signatures by hashing the input data similarly, and checking that the
-   *  output of the verification method equals the first part of the signature.
-   *  http://grouper.ieee.org/groups/1363/P1363a/contributions/kcdsa1363.pdf
+   * The shared secret, written into (and returned as) out, which must hold Curve25519.KEY_SIZE bytes.
    */
-  public byte[] sign(byte[] data) {
-    if (privSign == null) {
-      Utils.except("Non-signing key cannot be used for signing.");
-    }
-    boolean success = false;
-    byte[] sig_second_part = new byte[0];
-    byte[] sig_first_part = new byte[0];
-
-    // Signature generation can fail, in which case we need to try a different Curve point.
-    while (!success) {
-      byte[] privCurvePoint = Crypto.randomBytes(Curve25519.KEY_SIZE);
-      byte[] pubCurvePoint = new byte[Curve25519.KEY_SIZE];
-      Curve25519.keygen(pubCurvePoint, null, privCurvePoint);
-      sig_first_part = Crypto.startSHA256().digest(pubCurvePoint);
-
-      MessageDigest md = Crypto.startSHA256();
-      md.update(data);
-      md.update(getPubKeyBytes());
-      byte[] digest = md.digest();
-
-      sig_second_part = new byte[Curve25519.KEY_SIZE];
-      success = Curve25519.sign(
-        sig_second_part,
-        digest,
-        privCurvePoint,
-        privSign
-      );
-    }
+  public byte[] exchange(DHPubKey bob, byte[] out) {
+    X25519Backends.current().agree(getPrivKeyBytes(), bob.getPubKeyBytes(), out);
+    return out;
+  }
 
-    byte[] sig = new byte[Crypto.HASH_LENGTH + Curve25519.KEY_SIZE];
-    System.arraycopy(sig_first_part, 0, sig, 0, Crypto.HASH_LENGTH);
-    System.arraycopy(sig_second_part, 0, sig, Crypto.HASH_LENGTH, Curve25519.KEY_SIZE);
+  byte[] getPrivSignKeyBytes() {
+    return privSign;
+  }
 
-    return sig;
+  /**
+   * Sign with the selected SignatureBackend.
+   */
+  public byte[] sign(byte[] data) {
+    return SignatureBackends.current().sign(this, data);
   }
 }
@@ -0,0 +1,39 @@
+/**
+ * Copyright (c) 2017-present, Facebook, Inc.
+ * All rights reserved.
+ *
+ * This source code is licensed under the license found in the
+ * LICENSE file in the root directory of this source tree.
+*/
+
+package com.facebook.research.asynchronousratchetingtree.crypto;
+
+import djb.Curve25519;
+
+/**
+ * The pure-Java curve25519-java port of djb's reference code, which is what this project has always used.
+ */
+final public class DjbX25519Backend implements X25519Backend {
+  @Override
+  public String getName() {
+    return "djb";
+  }
+
+  @Override
+  public void publicKey(byte[] priv, byte[] pub) {
+    Curve25519.keygen(pub, null, priv);
+  }
+
+  @Override
+  public void agree(byte[] priv, byte[] remotePub, byte[] out) {
+    // Curve25519.curve doesn't clamp for us. Our own keys were clamped by keygen, so this only matters for foreign ones.
+    priv = priv.clone();
+    X25519Backend.clamp(priv);
+    if ((remotePub[31] & 0x80) != 0) {
+      // RFC 7748 ignores the top bit of u, but this library doesn't. Our own keys never set it.
+      remotePub = remotePub.clone();
+      remotePub[31] &= 0x7f;
+    }
+    Curve25519.curve(out, priv, remotePub);
+  }
+}
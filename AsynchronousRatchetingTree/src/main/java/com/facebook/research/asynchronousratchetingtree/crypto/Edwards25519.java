@@ -0,0 +1,263 @@
+/**
+ * Copyright (c) 2017-present, Facebook, Inc.
+ * All rights reserved.
+ *
+ * This source code is licensed under the license found in the
+ * LICENSE file in the root directory of this source tree.
+*/
+
+package com.facebook.research.asynchronousratchetingtree.crypto;
+
+import static com.facebook.research.asynchronousratchetingtree.crypto.Field25519.*;
+
+import java.util.Arrays;
+
+/**
+ * Variable-time arithmetic on the twisted Edwards curve -x^2 + y^2 = 1 + d x^2 y^2 that Ed25519 uses, for verifying
+ * XEdDSA signatures. Only public values should go through here; secret scalars use X25519FixedBase.
+ *
+ * Points are in extended coordinates, and an instance holds the temporaries for its operations, so it must stay on one
+ * thread. Outputs may alias inputs.
+ */
+final class Edwards25519 {
+  static final int[] D = fromHex("a3785913ca4deb75abd841414d0a700098e879777940c78c73fe6f2bee6c0352");
+  static final int[] D2 = create();
+  private static final int[] SQRT_M1 = fromHex("b0a00e4a271beec478e42fad0618432fa7d7fb3d99004d2b0bdfc14f8024832b");
+  private static final int[] ONE = fromInt(1);
+  // The base point, whose y is 4/5 and whose x is even.
+  static final int[] BASE_X = fromHex("1ad5258f602d56c9b2a7259560c72c695cdcd6fd31e2a4c0fe536ecdd3366921");
+  static final int[] BASE_Y = fromHex("5866666666666666666666666666666666666666666666666666666666666666");
+
+  static {
+    Field25519.add(D2, D, D);
+    mul(D2, D2, ONE);
+  }
+
+  private final int[] a = create();
+  private final int[] b = create();
+  private final int[] c = create();
+  private final int[] d = create();
+  private final int[] e = create();
+  private final int[] f = create();
+  private final int[] g = create();
+  private final int[] h = create();
+
+  static final class Point {
+    final int[] x = create();
+    final int[] y = create();
+    final int[] z = create();
+    final int[] t = create();
+
+    Point() {
+      one(y);
+      one(z);
+    }
+
+    void set(Point p) {
+      copy(x, p.x);
+      copy(y, p.y);
+      copy(z, p.z);
+      copy(t, p.t);
+    }
+
+    void setIdentity() {
+      zero(x);
+      one(y);
+      one(z);
+      zero(t);
+    }
+  }
+
+  /**
+   * Decode a point, or return null if the encoding isn't of a point on the curve. As in ref10, the y-coordinate isn't
+   * required to be reduced.
+   */
+  Point decode(byte[] s) {
+    Point p = new Point();
+    fromBytes(p.y, s);
+    one(p.z);
+    sq(a, p.y);
+    mul(b, a, D);
+    sub(a, a, p.z); // u = y^2 - 1
+    Field25519.add(b, b, p.z); // v = d y^2 + 1
+
+    // x = u v^3 (u v^7)^((p - 5) / 8)
+    sq(c, b);
+    mul(c, c, b);
+    sq(p.x, c);
+    mul(p.x, p.x, b);
+    mul(p.x, p.x, a);
+    pow22523(p.x, p.x);
+    mul(p.x, p.x, c);
+    mul(p.x, p.x, a);
+
+    sq(d, p.x);
+    mul(d, d, b);
+    sub(e, d, a);
+    if (!isZero(e)) {
+      Field25519.add(e, d, a);
+      if (!isZero(e)) {
+        return null;
+      }
+      mul(p.x, p.x, SQRT_M1);
+    }
+    if (isNegative(p.x) != ((s[31] >> 7) & 1)) {
+      neg(p.x, p.x);
+    }
+    mul(p.t, p.x, p.y);
+    return p;
+  }
+
+  static void encode(byte[] out, Point p) {
+    int[] zInverse = create();
+    int[] x = create();
+    int[] y = create();
+    invert(zInverse, p.z);
+    mul(x, p.x, zInverse);
+    mul(y, p.y, zInverse);
+    toBytes(out, y);
+    out[31] ^= (byte) (isNegative(x) << 7);
+  }
+
+  static boolean isIdentity(Point p) {
+    int[] difference = create();
+    sub(difference, p.y, p.z);
+    return isZero(p.x) && isZero(difference);
+  }
+
+  static void negate(Point r, Point p) {
+    neg(r.x, p.x);
+    copy(r.y, p.y);
+    copy(r.z, p.z);
+    neg(r.t, p.t);
+  }
+
+  // r = p + q, by the complete formula of Hisil, Wong, Carter and Dawson.
+  void add(Point r, Point p, Point q) {
+    Field25519.sub(a, p.y, p.x);
+    Field25519.sub(b, q.y, q.x);
+    mul(a, a, b);
+    Field25519.add(b, p.y, p.x);
+    Field25519.add(c, q.y, q.x);
+    mul(b, b, c);
+    mul(c, p.t, q.t);
+    mul(c, c, D2);
+    mul(d, p.z, q.z);
+    Field25519.add(d, d, d);
+    Field25519.sub(e, b, a);
+    Field25519.sub(f, d, c);
+    Field25519.add(g, d, c);
+    Field25519.add(h, b, a);
+    mul(r.x, e, f);
+    mul(r.y, g, h);
+    mul(r.t, e, h);
+    mul(r.z, f, g);
+  }
+
+  // r = 2p, as ref10's ge_p2_dbl followed by the conversion back to extended coordinates.
+  void dbl(Point r, Point p) {
+    sq(a, p.x);
+    sq(b, p.y);
+    sq2(c, p.z);
+    Field25519.add(d, p.x, p.y);
+    sq(d, d);
+    Field25519.add(e, b, a); // y
+    Field25519.sub(f, b, a); // z
+    Field25519.sub(g, d, e); // x
+    Field25519.sub(h, c, f); // t
+    mul(r.x, g, h);
+    mul(r.y, e, f);
+    mul(r.z, f, h);
+    mul(r.t, g, e);
+  }
+
+  /**
+   * r = k * p for a 256-bit little-endian k, with a fixed 4-bit window.
+   */
+  void scalarMult(Point r, Point p, byte[] k) {
+    Point[] multiples = new Point[16];
+    multiples[1] = new Point();
+    multiples[1].set(p);
+    for (int i = 2; i < 16; i++) {
+      multiples[i] = new Point();
+      add(multiples[i], multiples[i - 1], p);
+    }
+    Point result = new Point();
+    for (int w = 63; w >= 0; w--) {
+      for (int i = 0; i < 4; i++) {
+        dbl(result, result);
+      }
+      int digit = digit(k, 4 * w, 4);
+      if (digit != 0) {
+        add(result, result, multiples[digit]);
+      }
+    }
+    r.set(result);
+  }
+
+  /**
+   * The sum of k_i * p_i, by Pippenger's bucket method: for each window of c bits, every point is added to the bucket
+   * for its digit, and the buckets are then combined with a running sum. With n points this needs about
+   * (256 / c) * (n + 2^c) additions, against the 64 additions and 256 doublings each that separate multiplications would.
+   */
+  Point multiScalarMult(Point[] points, byte[][] scalars) {
+    int n = points.length;
+    int c = Math.max(4, 31 - Integer.numberOfLeadingZeros(n) - 3);
+    Point[] buckets = new Point[1 << c];
+    for (int i = 1; i < buckets.length; i++) {
+      buckets[i] = new Point();
+    }
+    boolean[] used = new boolean[1 << c];
+    Point sum = new Point();
+    Point accumulated = new Point();
+    Point result = new Point();
+
+    for (int w = (256 + c - 1) / c - 1; w >= 0; w--) {
+      for (int i = 0; i < c; i++) {
+        dbl(result, result);
+      }
+      Arrays.fill(used, false);
+      for (int j = 0; j < n; j++) {
+        int digit = digit(scalars[j], w * c, c);
+        if (digit == 0) {
+          continue;
+        }
+        if (used[digit]) {
+          add(buckets[digit], buckets[digit], points[j]);
+        } else {
+          buckets[digit].set(points[j]);
+          used[digit] = true;
+        }
+      }
+
+      // accumulated = sum over digits of digit * bucket[digit]
+      sum.setIdentity();
+      accumulated.setIdentity();
+      boolean any = false;
+      for (int digit = buckets.length - 1; digit > 0; digit--) {
+        if (used[digit]) {
+          add(sum, sum, buckets[digit]);
+          any = true;
+        }
+        if (any) {
+          add(accumulated, accumulated, sum);
+        }
+      }
+      if (any) {
+        add(result, result, accumulated);
+      }
+    }
+    return result;
+  }
+
+  private static int digit(byte[] k, int start, int width) {
+    int value = 0;
+    for (int i = 0; i < width; i++) {
+      int bit = start + i;
+      if (bit < 256) {
+        value |= ((k[bit >> 3] >> (bit & 7)) & 1) << i;
+      }
+    }
+    return value;
+  }
+}
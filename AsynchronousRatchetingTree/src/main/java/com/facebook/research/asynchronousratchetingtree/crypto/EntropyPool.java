@@ -0,0 +1,128 @@
+/**
+ * Copyright (c) 2017-present, Facebook, Inc.
+ * All rights reserved.
+ *
+ * This source code is licensed under the license found in the
+ * LICENSE file in the root directory of this source tree.
+*/
+
+package com.facebook.research.asynchronousratchetingtree.crypto;
+
+import com.facebook.research.asynchronousratchetingtree.Utils;
+
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.util.Arrays;
+
+/**
+ * One thread's source of random bytes. Each pool runs its own deterministic generator, seeded once from the platform
+ * SecureRandom when the thread first asks for randomness, and prefetches its output a few kilobytes at a time, so that
+ * a nonce or a private key costs an array copy rather than a trip through a generator shared with every other thread.
+ *
+ * Reseeding rules: the generator mixes in a fresh seed from the platform source once it has produced
+ * RESEED_INTERVAL_BYTES since the last seed, or once RESEED_INTERVAL_NANOS have passed, whichever comes first. Both are
+ * checked whenever the buffer is refilled, and a reseed throws away whatever is left in the buffer, so nothing
+ * handed out afterwards was generated before it. Callers may also force one with reseed(). Bytes are wiped from the
+ * buffer as they are handed out.
+ *
+ * A pool must only ever be used by the thread it belongs to.
+ */
+final public class EntropyPool {
+  public static final int BUFFER_LENGTH = 4096;
+  public static final long RESEED_INTERVAL_BYTES = 1L << 20;
+  public static final long RESEED_INTERVAL_NANOS = 10L * 60 * 1000 * 1000 * 1000;
+  private static final int SEED_LENGTH = 32;
+  private static final ThreadLocal<EntropyPool> CURRENT = ThreadLocal.withInitial(EntropyPool::new);
+  // Only read when a pool is created or reseeded, so threads rarely meet here.
+  private static final SecureRandom SEED_SOURCE = new SecureRandom();
+
+  private final SecureRandom generator = startGenerator();
+  private final byte[] buffer = new byte[BUFFER_LENGTH];
+  private int position = BUFFER_LENGTH;
+  private long generatedSinceSeed = 0;
+  private long seededAt;
+  private long reseeds = 0;
+
+  private EntropyPool() {
+    seed();
+  }
+
+  public static EntropyPool get() {
+    return CURRENT.get();
+  }
+
+  public static byte[] randomBytes(int n) {
+    byte[] result = new byte[n];
+    get().fill(result, 0, n);
+    return result;
+  }
+
+  public void fill(byte[] out) {
+    fill(out, 0, out.length);
+  }
+
+  public void fill(byte[] out, int offset, int length) {
+    while (length > 0) {
+      if (position == BUFFER_LENGTH) {
+        refill();
+      }
+      int n = Math.min(length, BUFFER_LENGTH - position);
+      System.arraycopy(buffer, position, out, offset, n);
+      Arrays.fill(buffer, position, position + n, (byte) 0);
+      position += n;
+      offset += n;
+      length -= n;
+    }
+  }
+
+  /**
+   * Mix a fresh seed into the generator now, and drop anything already buffered.
+   */
+  public void reseed() {
+    seed();
+    reseeds++;
+  }
+
+  public long getReseeds() {
+    return reseeds;
+  }
+
+  private void refill() {
+    if (generatedSinceSeed >= RESEED_INTERVAL_BYTES || System.nanoTime() - seededAt >= RESEED_INTERVAL_NANOS) {
+      reseed();
+    }
+    generator.nextBytes(buffer);
+    generatedSinceSeed += BUFFER_LENGTH;
+    position = 0;
+  }
+
+  private void seed() {
+    byte[] seed = new byte[SEED_LENGTH];
+    synchronized (SEED_SOURCE) {
+      SEED_SOURCE.nextBytes(seed);
+    }
+    // Seeding a DRBG or SHA1PRNG adds to its state rather than replacing it.
+    generator.setSeed(seed);
+    Arrays.fill(seed, (byte) 0);
+    Arrays.fill(buffer, (byte) 0);
+    position = BUFFER_LENGTH;
+    generatedSinceSeed = 0;
+    seededAt = System.nanoTime();
+  }
+
+  /**
+   * A generator with no locks shared with other instances: the NIST DRBG where the JDK has one, and SHA1PRNG before
+   * that. Seeding SHA1PRNG before its first use stops it seeding itself, so all of its entropy comes from seed().
+   */
+  private static SecureRandom startGenerator() {
+    try {
+      return SecureRandom.getInstance("DRBG");
+    } catch (NoSuchAlgorithmException e) {
+      try {
+        return SecureRandom.getInstance("SHA1PRNG");
+      } catch (NoSuchAlgorithmException e2) {
+        throw Utils.except(e2);
+      }
+    }
+  }
+}
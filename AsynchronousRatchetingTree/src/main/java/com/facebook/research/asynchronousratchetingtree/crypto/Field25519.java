@@ -0,0 +1,384 @@
+/**
+ * Copyright (c) 2017-present, Facebook, Inc.
+ * All rights reserved.
+ *
+ * This source code is licensed under the license found in the
+ * LICENSE file in the root directory of this source tree.
+*/
+
+package com.facebook.research.asynchronousratchetingtree.crypto;
+
+/**
+ * Arithmetic modulo 2^255 - 19, for X25519FixedBase. An element is ten signed limbs of alternately 26 and 25 bits, as
+ * in the ref10 code from SUPERCOP, and the operations follow ref10's, including which results are left unreduced.
+ *
+ * Outputs may alias inputs.
+ */
+final class Field25519 {
+  static final int LIMBS = 10;
+  private static final int[] LIMB_OFFSETS = {0, 26, 51, 77, 102, 128, 153, 179, 204, 230};
+
+  private Field25519() {
+  }
+
+  static int[] create() {
+    return new int[LIMBS];
+  }
+
+  static int[] fromInt(int value) {
+    int[] h = create();
+    h[0] = value;
+    return h;
+  }
+
+  /**
+   * Decode a little-endian element. The top bit is ignored, as RFC 7748 asks.
+   */
+  static void fromBytes(int[] h, byte[] s) {
+    for (int i = 0; i < LIMBS; i++) {
+      int width = (i & 1) == 0 ? 26 : 25;
+      long limb = 0;
+      for (int bit = 0; bit < width; bit++) {
+        int position = LIMB_OFFSETS[i] + bit;
+        limb |= (long) ((s[position >> 3] >> (position & 7)) & 1) << bit;
+      }
+      h[i] = (int) limb;
+    }
+  }
+
+  /**
+   * Encode the fully reduced element as 32 little-endian bytes.
+   */
+  static void toBytes(byte[] s, int[] f) {
+    toBytes(s, f, create());
+  }
+
+  /**
+   * toBytes, using h as its scratch space.
+   */
+  static void toBytes(byte[] s, int[] f, int[] h) {
+    copy(h, f);
+    int q = (19 * h[9] + (1 << 24)) >> 25;
+    for (int i = 0; i < LIMBS; i++) {
+      q = (h[i] + q) >> ((i & 1) == 0 ? 26 : 25);
+    }
+    h[0] += 19 * q;
+    for (int i = 0; i < LIMBS - 1; i++) {
+      int shift = (i & 1) == 0 ? 26 : 25;
+      int carry = h[i] >> shift;
+      h[i + 1] += carry;
+      h[i] -= carry << shift;
+    }
+    h[9] &= (1 << 25) - 1;
+
+    java.util.Arrays.fill(s, 0, 32, (byte) 0);
+    for (int i = 0; i < LIMBS; i++) {
+      long limb = h[i];
+      int position = LIMB_OFFSETS[i];
+      for (int bit = 0; bit < ((i & 1) == 0 ? 26 : 25); bit++, position++) {
+        s[position >> 3] |= (byte) (((limb >> bit) & 1) << (position & 7));
+      }
+    }
+  }
+
+  /**
+   * An element from the hex of its little-endian encoding, for constants.
+   */
+  static int[] fromHex(String hex) {
+    byte[] s = new byte[32];
+    for (int i = 0; i < 32; i++) {
+      s[i] = (byte) Integer.parseInt(hex.substring(2 * i, 2 * i + 2), 16);
+    }
+    int[] h = create();
+    fromBytes(h, s);
+    return h;
+  }
+
+  static boolean isZero(int[] f) {
+    byte[] s = new byte[32];
+    toBytes(s, f);
+    int bits = 0;
+    for (byte b : s) {
+      bits |= b;
+    }
+    return bits == 0;
+  }
+
+  /**
+   * Whether the fully reduced element is odd, which is what the sign bit of an encoded point records.
+   */
+  static int isNegative(int[] f) {
+    byte[] s = new byte[32];
+    toBytes(s, f);
+    return s[0] & 1;
+  }
+
+  static void copy(int[] h, int[] f) {
+    System.arraycopy(f, 0, h, 0, LIMBS);
+  }
+
+  static void zero(int[] h) {
+    java.util.Arrays.fill(h, 0);
+  }
+
+  static void one(int[] h) {
+    zero(h);
+    h[0] = 1;
+  }
+
+  static void add(int[] h, int[] f, int[] g) {
+    for (int i = 0; i < LIMBS; i++) {
+      h[i] = f[i] + g[i];
+    }
+  }
+
+  static void sub(int[] h, int[] f, int[] g) {
+    for (int i = 0; i < LIMBS; i++) {
+      h[i] = f[i] - g[i];
+    }
+  }
+
+  static void neg(int[] h, int[] f) {
+    for (int i = 0; i < LIMBS; i++) {
+      h[i] = -f[i];
+    }
+  }
+
+  /**
+   * Replace f with g if b is 1, and leave it if b is 0, without branching on b.
+   */
+  static void cmov(int[] f, int[] g, int b) {
+    int mask = -b;
+    for (int i = 0; i < LIMBS; i++) {
+      f[i] ^= mask & (f[i] ^ g[i]);
+    }
+  }
+
+  static void mul(int[] h, int[] f, int[] g) {
+    long f0 = f[0];
+    long f1 = f[1];
+    long f2 = f[2];
+    long f3 = f[3];
+    long f4 = f[4];
+    long f5 = f[5];
+    long f6 = f[6];
+    long f7 = f[7];
+    long f8 = f[8];
+    long f9 = f[9];
+    long g0 = g[0];
+    long g1 = g[1];
+    long g2 = g[2];
+    long g3 = g[3];
+    long g4 = g[4];
+    long g5 = g[5];
+    long g6 = g[6];
+    long g7 = g[7];
+    long g8 = g[8];
+    long g9 = g[9];
+    long g1_19 = 19 * g1;
+    long g2_19 = 19 * g2;
+    long g3_19 = 19 * g3;
+    long g4_19 = 19 * g4;
+    long g5_19 = 19 * g5;
+    long g6_19 = 19 * g6;
+    long g7_19 = 19 * g7;
+    long g8_19 = 19 * g8;
+    long g9_19 = 19 * g9;
+    long f1_2 = 2 * f1;
+    long f3_2 = 2 * f3;
+    long f5_2 = 2 * f5;
+    long f7_2 = 2 * f7;
+    long f9_2 = 2 * f9;
+    long h0 = f0 * g0 + f1_2 * g9_19 + f2 * g8_19 + f3_2 * g7_19 + f4 * g6_19
+      + f5_2 * g5_19 + f6 * g4_19 + f7_2 * g3_19 + f8 * g2_19 + f9_2 * g1_19;
+    long h1 = f0 * g1 + f1 * g0 + f2 * g9_19 + f3 * g8_19 + f4 * g7_19
+      + f5 * g6_19 + f6 * g5_19 + f7 * g4_19 + f8 * g3_19 + f9 * g2_19;
+    long h2 = f0 * g2 + f1_2 * g1 + f2 * g0 + f3_2 * g9_19 + f4 * g8_19
+      + f5_2 * g7_19 + f6 * g6_19 + f7_2 * g5_19 + f8 * g4_19 + f9_2 * g3_19;
+    long h3 = f0 * g3 + f1 * g2 + f2 * g1 + f3 * g0 + f4 * g9_19
+      + f5 * g8_19 + f6 * g7_19 + f7 * g6_19 + f8 * g5_19 + f9 * g4_19;
+    long h4 = f0 * g4 + f1_2 * g3 + f2 * g2 + f3_2 * g1 + f4 * g0
+      + f5_2 * g9_19 + f6 * g8_19 + f7_2 * g7_19 + f8 * g6_19 + f9_2 * g5_19;
+    long h5 = f0 * g5 + f1 * g4 + f2 * g3 + f3 * g2 + f4 * g1
+      + f5 * g0 + f6 * g9_19 + f7 * g8_19 + f8 * g7_19 + f9 * g6_19;
+    long h6 = f0 * g6 + f1_2 * g5 + f2 * g4 + f3_2 * g3 + f4 * g2
+      + f5_2 * g1 + f6 * g0 + f7_2 * g9_19 + f8 * g8_19 + f9_2 * g7_19;
+    long h7 = f0 * g7 + f1 * g6 + f2 * g5 + f3 * g4 + f4 * g3
+      + f5 * g2 + f6 * g1 + f7 * g0 + f8 * g9_19 + f9 * g8_19;
+    long h8 = f0 * g8 + f1_2 * g7 + f2 * g6 + f3_2 * g5 + f4 * g4
+      + f5_2 * g3 + f6 * g2 + f7_2 * g1 + f8 * g0 + f9_2 * g9_19;
+    long h9 = f0 * g9 + f1 * g8 + f2 * g7 + f3 * g6 + f4 * g5
+      + f5 * g4 + f6 * g3 + f7 * g2 + f8 * g1 + f9 * g0;
+    carry(h, h0, h1, h2, h3, h4, h5, h6, h7, h8, h9);
+  }
+
+  static void sq(int[] h, int[] f) {
+    square(h, f, 1);
+  }
+
+  /**
+   * 2 * f^2, as used when doubling a point.
+   */
+  static void sq2(int[] h, int[] f) {
+    square(h, f, 2);
+  }
+
+  /**
+   * z^(p - 2), by ref10's addition chain.
+   */
+  static void invert(int[] out, int[] z) {
+    invert(out, z, create(), create(), create(), create());
+  }
+
+  /**
+   * invert, with its temporaries supplied by the caller. They must not alias out or z.
+   */
+  static void invert(int[] out, int[] z, int[] t0, int[] t1, int[] t2, int[] t3) {
+    sq(t0, z);
+    sq(t1, t0);
+    sq(t1, t1);
+    mul(t1, z, t1);
+    mul(t0, t0, t1);
+    sq(t2, t0);
+    mul(t1, t1, t2);
+    sqTimes(t2, t1, 5);
+    mul(t1, t2, t1);
+    sqTimes(t2, t1, 10);
+    mul(t2, t2, t1);
+    sqTimes(t3, t2, 20);
+    mul(t2, t3, t2);
+    sqTimes(t2, t2, 10);
+    mul(t1, t2, t1);
+    sqTimes(t2, t1, 50);
+    mul(t2, t2, t1);
+    sqTimes(t3, t2, 100);
+    mul(t2, t3, t2);
+    sqTimes(t2, t2, 50);
+    mul(t1, t2, t1);
+    sqTimes(t1, t1, 5);
+    mul(out, t1, t0);
+  }
+
+  /**
+   * Invert every element in place with a single inversion, by Montgomery's trick. None may be zero.
+   */
+  static void invertAll(int[][] values) {
+    int n = values.length;
+    if (n == 0) {
+      return;
+    }
+    int[][] prefixes = new int[n][];
+    prefixes[0] = values[0].clone();
+    for (int i = 1; i < n; i++) {
+      prefixes[i] = create();
+      mul(prefixes[i], prefixes[i - 1], values[i]);
+    }
+    int[] inverse = create();
+    invert(inverse, prefixes[n - 1]);
+    int[] single = create();
+    for (int i = n - 1; i > 0; i--) {
+      // inverse is 1 / (values[0] * ... * values[i]) here.
+      mul(single, inverse, prefixes[i - 1]);
+      mul(inverse, inverse, values[i]);
+      copy(values[i], single);
+    }
+    copy(values[0], inverse);
+  }
+
+  /**
+   * z^((p - 5) / 8) = z^(2^252 - 3), for square roots.
+   */
+  static void pow22523(int[] out, int[] z) {
+    int[] t0 = create();
+    int[] t1 = create();
+    int[] t2 = create();
+    sq(t0, z);
+    sq(t1, t0);
+    sq(t1, t1);
+    mul(t1, z, t1);
+    mul(t0, t0, t1);
+    sq(t0, t0);
+    mul(t0, t1, t0);
+    sqTimes(t1, t0, 5);
+    mul(t0, t1, t0);
+    sqTimes(t1, t0, 10);
+    mul(t1, t1, t0);
+    sqTimes(t2, t1, 20);
+    mul(t1, t2, t1);
+    sqTimes(t1, t1, 10);
+    mul(t0, t1, t0);
+    sqTimes(t1, t0, 50);
+    mul(t1, t1, t0);
+    sqTimes(t2, t1, 100);
+    mul(t1, t2, t1);
+    sqTimes(t1, t1, 50);
+    mul(t0, t1, t0);
+    sqTimes(t0, t0, 2);
+    mul(out, t0, z);
+  }
+
+  private static void sqTimes(int[] h, int[] f, int times) {
+    sq(h, f);
+    for (int i = 1; i < times; i++) {
+      sq(h, h);
+    }
+  }
+
+  private static void square(int[] h, int[] f, long factor) {
+    long f0 = f[0];
+    long f1 = f[1];
+    long f2 = f[2];
+    long f3 = f[3];
+    long f4 = f[4];
+    long f5 = f[5];
+    long f6 = f[6];
+    long f7 = f[7];
+    long f8 = f[8];
+    long f9 = f[9];
+    long h0 = f0 * f0 + f1 * (76 * f9) + f2 * (38 * f8) + f3 * (76 * f7) + f4 * (38 * f6) + f5 * (38 * f5);
+    long h1 = f0 * (2 * f1) + f2 * (38 * f9) + f3 * (38 * f8) + f4 * (38 * f7) + f5 * (38 * f6);
+    long h2 = f0 * (2 * f2) + f1 * (2 * f1) + f3 * (76 * f9) + f4 * (38 * f8) + f5 * (76 * f7) + f6 * (19 * f6);
+    long h3 = f0 * (2 * f3) + f1 * (2 * f2) + f4 * (38 * f9) + f5 * (38 * f8) + f6 * (38 * f7);
+    long h4 = f0 * (2 * f4) + f1 * (4 * f3) + f2 * f2 + f5 * (76 * f9) + f6 * (38 * f8) + f7 * (38 * f7);
+    long h5 = f0 * (2 * f5) + f1 * (2 * f4) + f2 * (2 * f3) + f6 * (38 * f9) + f7 * (38 * f8);
+    long h6 = f0 * (2 * f6) + f1 * (4 * f5) + f2 * (2 * f4) + f3 * (2 * f3) + f7 * (76 * f9) + f8 * (19 * f8);
+    long h7 = f0 * (2 * f7) + f1 * (2 * f6) + f2 * (2 * f5) + f3 * (2 * f4) + f8 * (38 * f9);
+    long h8 = f0 * (2 * f8) + f1 * (4 * f7) + f2 * (2 * f6) + f3 * (4 * f5) + f4 * f4 + f9 * (38 * f9);
+    long h9 = f0 * (2 * f9) + f1 * (2 * f8) + f2 * (2 * f7) + f3 * (2 * f6) + f4 * (2 * f5);
+    carry(
+      h,
+      factor * h0, factor * h1, factor * h2, factor * h3, factor * h4,
+      factor * h5, factor * h6, factor * h7, factor * h8, factor * h9
+    );
+  }
+
+  private static void carry(
+    int[] h,
+    long h0, long h1, long h2, long h3, long h4,
+    long h5, long h6, long h7, long h8, long h9
+  ) {
+    long carry;
+    carry = (h0 + (1L << 25)) >> 26; h1 += carry; h0 -= carry << 26;
+    carry = (h4 + (1L << 25)) >> 26; h5 += carry; h4 -= carry << 26;
+    carry = (h1 + (1L << 24)) >> 25; h2 += carry; h1 -= carry << 25;
+    carry = (h5 + (1L << 24)) >> 25; h6 += carry; h5 -= carry << 25;
+    carry = (h2 + (1L << 25)) >> 26; h3 += carry; h2 -= carry << 26;
+    carry = (h6 + (1L << 25)) >> 26; h7 += carry; h6 -= carry << 26;
+    carry = (h3 + (1L << 24)) >> 25; h4 += carry; h3 -= carry << 25;
+    carry = (h7 + (1L << 24)) >> 25; h8 += carry; h7 -= carry << 25;
+    carry = (h4 + (1L << 25)) >> 26; h5 += carry; h4 -= carry << 26;
+    carry = (h8 + (1L << 25)) >> 26; h9 += carry; h8 -= carry << 26;
+    carry = (h9 + (1L << 24)) >> 25; h0 += carry * 19; h9 -= carry << 25;
+    carry = (h0 + (1L << 25)) >> 26; h1 += carry; h0 -= carry << 26;
+    h[0] = (int) h0;
+    h[1] = (int) h1;
+    h[2] = (int) h2;
+    h[3] = (int) h3;
+    h[4] = (int) h4;
+    h[5] = (int) h5;
+    h[6] = (int) h6;
+    h[7] = (int) h7;
+    h[8] = (int) h8;
+    h[9] = (int) h9;
+  }
+}
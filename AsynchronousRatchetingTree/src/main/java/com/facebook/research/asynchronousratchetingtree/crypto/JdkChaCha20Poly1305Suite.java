@@ -0,0 +1,137 @@
+/**
+ * Copyright (c) 2017-present, Facebook, Inc.
+ * All rights reserved.
+ *
+ * This source code is licensed under the license found in the
+ * LICENSE file in the root directory of this source tree.
+*/
+
+package com.facebook.research.asynchronousratchetingtree.crypto;
+
+import com.facebook.research.asynchronousratchetingtree.Utils;
+
+import javax.crypto.AEADBadTagException;
+import javax.crypto.Cipher;
+import javax.crypto.NoSuchPaddingException;
+import javax.crypto.spec.IvParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * The JDK's own ChaCha20-Poly1305 Cipher, available from Java 11; isAvailable is false before that. Keys are stretched
+ * to 32 bytes the same way as ChaCha20Poly1305Suite, so the two interoperate.
+ */
+final public class JdkChaCha20Poly1305Suite implements AeadSuite {
+  private final ThreadLocal<Primitives> primitives = ThreadLocal.withInitial(Primitives::new);
+
+  public static boolean isAvailable() {
+    try {
+      Cipher.getInstance("ChaCha20-Poly1305");
+      return true;
+    } catch (Exception e) {
+      return false;
+    }
+  }
+
+  @Override
+  public String getName() {
+    return "chacha20-poly1305-jdk";
+  }
+
+  @Override
+  public int getId() {
+    return 2;
+  }
+
+  @Override
+  public int seal(byte[] key, byte[] nonce, byte[] in, int offset, int length, byte[] out, int outOffset) {
+    try {
+      return init(Cipher.ENCRYPT_MODE, key, nonce).doFinal(in, offset, length, out, outOffset);
+    } catch (Exception e) {
+      throw Utils.except(e);
+    }
+  }
+
+  @Override
+  public int open(byte[] key, byte[] nonce, byte[] in, int offset, int length, byte[] out, int outOffset) {
+    try {
+      return init(Cipher.DECRYPT_MODE, key, nonce).doFinal(in, offset, length, out, outOffset);
+    } catch (AEADBadTagException e) {
+      throw Utils.except("ChaCha20-Poly1305 tag mismatch.");
+    } catch (Exception e) {
+      throw Utils.except(e);
+    }
+  }
+
+  @Override
+  public int seal(byte[] key, byte[] nonce, ByteBuffer in, ByteBuffer out) {
+    try {
+      return init(Cipher.ENCRYPT_MODE, key, nonce).doFinal(in, out);
+    } catch (Exception e) {
+      throw Utils.except(e);
+    }
+  }
+
+  @Override
+  public int open(byte[] key, byte[] nonce, ByteBuffer in, ByteBuffer out) {
+    try {
+      return init(Cipher.DECRYPT_MODE, key, nonce).doFinal(in, out);
+    } catch (AEADBadTagException e) {
+      throw Utils.except("ChaCha20-Poly1305 tag mismatch.");
+    } catch (Exception e) {
+      throw Utils.except(e);
+    }
+  }
+
+  private Cipher init(int mode, byte[] key, byte[] nonce) throws Exception {
+    Primitives p = primitives.get();
+    byte[] cipherKey = ChaCha20Poly1305Suite.cipherKey(key, p.derivedKey);
+    SecretKeySpec keySpec = new SecretKeySpec(cipherKey, "ChaCha20");
+    if (mode == Cipher.ENCRYPT_MODE) {
+      // The JDK refuses to initialise a Cipher with the key and nonce it was last initialised with, which for sealing
+      // is exactly the check wanted.
+      p.sealer.init(mode, keySpec, new IvParameterSpec(nonce, 0, CryptoContext.NONCE_LENGTH));
+      return p.sealer;
+    }
+    // Opening one message more than once is fine, and common when a thread plays several group members, so step the
+    // opener through another nonce first.
+    if (p.opened && MessageDigest.isEqual(cipherKey, p.openedKey) && equalNonces(nonce, p.openedNonce)) {
+      p.openedNonce[0] ^= 1;
+      p.opener.init(mode, keySpec, new IvParameterSpec(p.openedNonce));
+    }
+    System.arraycopy(cipherKey, 0, p.openedKey, 0, cipherKey.length);
+    System.arraycopy(nonce, 0, p.openedNonce, 0, CryptoContext.NONCE_LENGTH);
+    p.opened = true;
+    p.opener.init(mode, keySpec, new IvParameterSpec(nonce, 0, CryptoContext.NONCE_LENGTH));
+    return p.opener;
+  }
+
+  private static boolean equalNonces(byte[] a, byte[] b) {
+    for (int i = 0; i < CryptoContext.NONCE_LENGTH; i++) {
+      if (a[i] != b[i]) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private static final class Primitives {
+    private final Cipher sealer;
+    private final Cipher opener;
+    private final byte[] openedKey = new byte[ChaCha20Poly1305Suite.KEY_LENGTH];
+    private final byte[] openedNonce = new byte[CryptoContext.NONCE_LENGTH];
+    private boolean opened;
+    private final byte[] derivedKey = new byte[ChaCha20Poly1305Suite.KEY_LENGTH];
+
+    Primitives() {
+      try {
+        sealer = Cipher.getInstance("ChaCha20-Poly1305");
+        opener = Cipher.getInstance("ChaCha20-Poly1305");
+      } catch (NoSuchAlgorithmException | NoSuchPaddingException e) {
+        throw Utils.except(e);
+      }
+    }
+  }
+}
@@ -0,0 +1,91 @@
+/**
+ * Copyright (c) 2017-present, Facebook, Inc.
+ * All rights reserved.
+ *
+ * This source code is licensed under the license found in the
+ * LICENSE file in the root directory of this source tree.
+*/
+
+package com.facebook.research.asynchronousratchetingtree.crypto;
+
+import com.facebook.research.asynchronousratchetingtree.Utils;
+
+import javax.crypto.KeyAgreement;
+import java.security.KeyFactory;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.NoSuchAlgorithmException;
+import java.security.spec.PKCS8EncodedKeySpec;
+import java.security.spec.X509EncodedKeySpec;
+
+/**
+ * The JDK's own X25519 KeyAgreement, available from Java 11. Keys are handed over in their PKCS#8 and X.509 encodings
+ * rather than through the XEC key specs, so this still compiles for Java 8, where isAvailable is false. The encodings'
+ * fixed prefixes are taken from a key pair the JDK generates itself, as early Java 11 releases use a nonstandard PKCS#8
+ * layout.
+ *
+ * Unlike djb, the JDK refuses to return an all-zero secret, and throws for small-order public keys instead.
+ */
+final public class JdkX25519Backend implements X25519Backend {
+  private static final byte[] BASE_POINT = new byte[32];
+  static {
+    BASE_POINT[0] = 9;
+  }
+
+  private final ThreadLocal<Primitives> primitives = ThreadLocal.withInitial(Primitives::new);
+
+  public static boolean isAvailable() {
+    try {
+      KeyAgreement.getInstance("X25519");
+      return true;
+    } catch (NoSuchAlgorithmException e) {
+      return false;
+    }
+  }
+
+  @Override
+  public String getName() {
+    return "jdk";
+  }
+
+  @Override
+  public void publicKey(byte[] priv, byte[] pub) {
+    X25519Backend.clamp(priv);
+    agree(priv, BASE_POINT, pub);
+  }
+
+  @Override
+  public void agree(byte[] priv, byte[] remotePub, byte[] out) {
+    Primitives p = primitives.get();
+    System.arraycopy(priv, 0, p.privEncoding, p.privEncoding.length - 32, 32);
+    X25519Backend.clamp(p.privEncoding, p.privEncoding.length - 32);
+    System.arraycopy(remotePub, 0, p.pubEncoding, p.pubEncoding.length - 32, 32);
+    try {
+      p.agreement.init(p.keyFactory.generatePrivate(new PKCS8EncodedKeySpec(p.privEncoding)));
+      p.agreement.doPhase(p.keyFactory.generatePublic(new X509EncodedKeySpec(p.pubEncoding)), true);
+      p.agreement.generateSecret(out, 0);
+    } catch (Exception e) {
+      throw Utils.except(e);
+    }
+  }
+
+  private static final class Primitives {
+    private final KeyFactory keyFactory;
+    private final KeyAgreement agreement;
+    private final byte[] privEncoding;
+    private final byte[] pubEncoding;
+
+    Primitives() {
+      try {
+        keyFactory = KeyFactory.getInstance("X25519");
+        agreement = KeyAgreement.getInstance("X25519");
+        KeyPair template = KeyPairGenerator.getInstance("X25519").generateKeyPair();
+        // Both encodings end with the raw 32-byte key, which agree overwrites.
+        privEncoding = template.getPrivate().getEncoded();
+        pubEncoding = template.getPublic().getEncoded();
+      } catch (NoSuchAlgorithmException e) {
+        throw Utils.except(e);
+      }
+    }
+  }
+}
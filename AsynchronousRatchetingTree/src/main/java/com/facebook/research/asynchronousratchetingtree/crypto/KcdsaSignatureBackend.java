@@ -0,0 +1,92 @@
+/**
+ * Copyright (c) 2017-present, Facebook, Inc.
+ * All rights reserved.
+ *
+ * This source code is licensed under the license found in the
+ * LICENSE file in the root directory of this source tree.
+*/
+
+package com.facebook.research.asynchronousratchetingtree.crypto;
+
+import com.facebook.research.asynchronousratchetingtree.Utils;
+import djb.Curve25519;
+
+import java.security.MessageDigest;
+import java.util.Arrays;
+
+/**
+ *  The Curve25519 library that we use implements KCDSA. The API provided accepts the first curve point
+ *  as an argument, and returns the second part of the signature. The first part is a hash of the public
+ *  curve point, so we append this ourselves.
+ *  We then verify signatures by hashing the input data similarly, and checking that the output of the
+ *  verification method equals the first part of the signature.
+ *  http://grouper.ieee.org/groups/1363/P1363a/contributions/kcdsa1363.pdf
+ */
+final public class KcdsaSignatureBackend implements SignatureBackend {
+  @Override
+  public String getName() {
+    return "kcdsa";
+  }
+
+  @Override
+  public byte[] sign(DHKeyPair key, byte[] data) {
+    byte[] privSign = key.getPrivSignKeyBytes();
+    if (privSign == null) {
+      Utils.except("Non-signing key cannot be used for signing.");
+    }
+    boolean success = false;
+    byte[] sig_second_part = new byte[0];
+    byte[] sig_first_part = new byte[0];
+
+    // Signature generation can fail, in which case we need to try a different Curve point.
+    while (!success) {
+      byte[] privCurvePoint = Crypto.randomBytes(Curve25519.KEY_SIZE);
+      byte[] pubCurvePoint = new byte[Curve25519.KEY_SIZE];
+      Curve25519.keygen(pubCurvePoint, null, privCurvePoint);
+      sig_first_part = Crypto.startSHA256().digest(pubCurvePoint);
+
+      MessageDigest md = Crypto.startSHA256();
+      md.update(data);
+      md.update(key.getPubKeyBytes());
+      byte[] digest = md.digest();
+
+      sig_second_part = new byte[Curve25519.KEY_SIZE];
+      success = Curve25519.sign(
+        sig_second_part,
+        digest,
+        privCurvePoint,
+        privSign
+      );
+    }
+
+    byte[] sig = new byte[Crypto.HASH_LENGTH + Curve25519.KEY_SIZE];
+    System.arraycopy(sig_first_part, 0, sig, 0, Crypto.HASH_LENGTH);
+    System.arraycopy(sig_second_part, 0, sig, Crypto.HASH_LENGTH, Curve25519.KEY_SIZE);
+
+    return sig;
+  }
+
+  @Override
+  public boolean verify(DHPubKey key, byte[] data, byte[] sig) {
+    byte[] sig_first_part = Arrays.copyOfRange(sig, 0, Crypto.HASH_LENGTH);
+    byte[] sig_second_part = Arrays.copyOfRange(sig, Crypto.HASH_LENGTH, sig.length);
+
+    MessageDigest md = Crypto.startSHA256();
+    md.update(data);
+    md.update(key.getPubKeyBytes());
+    byte[] digest = md.digest();
+
+    byte[] output = new byte[Curve25519.KEY_SIZE];
+    Curve25519.verify(
+      output,
+      sig_second_part,
+      digest,
+      key.getPubKeyBytes()
+    );
+
+    return Arrays.equals(
+      Crypto.startSHA256().digest(output),
+      sig_first_part
+    );
+  }
+}
@@ -0,0 +1,148 @@
+/**
+ * Copyright (c) 2017-present, Facebook, Inc.
+ * All rights reserved.
+ *
+ * This source code is licensed under the license found in the
+ * LICENSE file in the root directory of this source tree.
+*/
+
+package com.facebook.research.asynchronousratchetingtree.crypto;
+
+import com.facebook.research.asynchronousratchetingtree.Utils;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.DigestException;
+import java.security.MessageDigest;
+
+/**
+ * One epoch's stage key, prepared for the HMACs made with it during the epoch: the update that ends it, and the seed
+ * of every sender chain. The SHA-256 states after the inner and outer pad blocks are computed once, and each HMAC
+ * starts from copies of them, which saves two of the four compressions a short message costs.
+ *
+ * A schedule belongs to one member's state and is not thread safe.
+ */
+final public class KeySchedule {
+  private static final int BLOCK_LENGTH = 64;
+  private static final byte[] ID_LABEL = "ART epoch id".getBytes(StandardCharsets.UTF_8);
+
+  private final int epoch;
+  private final byte[] key;
+  private final MessageDigest inner;
+  private final MessageDigest outer;
+  private final byte[] innerHash = new byte[Crypto.HASH_LENGTH];
+  private final byte[] tag = new byte[Crypto.HASH_LENGTH];
+  private boolean hasId = false;
+  private int id;
+
+  public KeySchedule(int epoch, byte[] key) {
+    this.epoch = epoch;
+    this.key = key;
+
+    byte[] keyBlock = new byte[BLOCK_LENGTH];
+    if (key.length > BLOCK_LENGTH) {
+      MessageDigest md = Crypto.startSHA256();
+      md.update(key);
+      System.arraycopy(md.digest(), 0, keyBlock, 0, Crypto.HASH_LENGTH);
+    } else {
+      System.arraycopy(key, 0, keyBlock, 0, key.length);
+    }
+    inner = padded(keyBlock, 0x36);
+    outer = padded(keyBlock, 0x5c);
+  }
+
+  public int getEpoch() {
+    return epoch;
+  }
+
+  public byte[] getKey() {
+    return key;
+  }
+
+  /**
+   * A short name for this epoch that can be sent in the clear: the first four bytes of an HMAC of a fixed label under
+   * the stage key. The epoch number can't serve, since two members that took different concurrent updates reach the
+   * same number with different keys. A collision between the few epochs a member keeps only makes a message fail to
+   * decrypt.
+   */
+  public int getId() {
+    if (!hasId) {
+      id = ByteBuffer.wrap(hmacSha256(ID_LABEL)).getInt();
+      hasId = true;
+    }
+    return id;
+  }
+
+  public byte[] hmacSha256(byte[] data) {
+    byte[] out = new byte[Crypto.HASH_LENGTH];
+    hmacSha256(data, out, 0);
+    return out;
+  }
+
+  /**
+   * The same as CryptoContext.hmacSha256 under this key.
+   */
+  public void hmacSha256(byte[] data, byte[] out, int outOffset) {
+    MessageDigest md = copy(inner);
+    md.update(data);
+    finish(md, out, outOffset);
+  }
+
+  /**
+   * The same, over the bytes between the buffer's position and its limit. The buffer itself isn't moved.
+   */
+  public void hmacSha256(ByteBuffer data, byte[] out, int outOffset) {
+    MessageDigest md = copy(inner);
+    md.update(data.duplicate());
+    finish(md, out, outOffset);
+  }
+
+  private void finish(MessageDigest md, byte[] out, int outOffset) {
+    try {
+      md.digest(innerHash, 0, Crypto.HASH_LENGTH);
+      md = copy(outer);
+      md.update(innerHash);
+      md.digest(out, outOffset, Crypto.HASH_LENGTH);
+    } catch (DigestException e) {
+      throw Utils.except(e);
+    }
+  }
+
+  private static MessageDigest copy(MessageDigest md) {
+    try {
+      return (MessageDigest) md.clone();
+    } catch (CloneNotSupportedException e) {
+      throw Utils.except(e);
+    }
+  }
+
+  /**
+   * Check an HMAC-SHA256 tag in constant time.
+   */
+  public boolean verifyHmacSha256(byte[] data, byte[] expected) {
+    hmacSha256(data, tag, 0);
+    return MessageDigest.isEqual(tag, expected);
+  }
+
+  /**
+   * The same for a message and tag held in buffers, such as views into the message they arrived in.
+   */
+  public boolean verifyHmacSha256(ByteBuffer data, ByteBuffer expected) {
+    hmacSha256(data, tag, 0);
+    int difference = expected.remaining() ^ tag.length;
+    for (int i = 0; i < tag.length && i < expected.remaining(); i++) {
+      difference |= tag[i] ^ expected.get(expected.position() + i);
+    }
+    return difference == 0;
+  }
+
+  private static MessageDigest padded(byte[] keyBlock, int pad) {
+    byte[] block = new byte[BLOCK_LENGTH];
+    for (int i = 0; i < BLOCK_LENGTH; i++) {
+      block[i] = (byte) (keyBlock[i] ^ pad);
+    }
+    MessageDigest md = Crypto.startSHA256();
+    md.update(block);
+    return md;
+  }
+}
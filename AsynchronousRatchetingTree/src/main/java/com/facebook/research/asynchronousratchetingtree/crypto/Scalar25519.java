@@ -0,0 +1,97 @@
+/**
+ * Copyright (c) 2017-present, Facebook, Inc.
+ * All rights reserved.
+ *
+ * This source code is licensed under the license found in the
+ * LICENSE file in the root directory of this source tree.
+*/
+
+package com.facebook.research.asynchronousratchetingtree.crypto;
+
+/**
+ * Arithmetic modulo the order L = 2^252 + 27742317777372353535851937790883648493 of the Ed25519 base point, for the
+ * secret scalars of XEdDSA signing. Scalars are 32 bytes, little-endian. The reduction is TweetNaCl's modL: it works on
+ * one signed limb per byte with a fixed sequence of multiplications and arithmetic shifts, so unlike BigInteger its
+ * running time doesn't depend on the values.
+ */
+final class Scalar25519 {
+  private static final long[] L = {
+    0xed, 0xd3, 0xf5, 0x5c, 0x1a, 0x63, 0x12, 0x58, 0xd6, 0x9c, 0xf7, 0xa2, 0xde, 0xf9, 0xde, 0x14,
+    0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0x10
+  };
+  // L - 1, which is -1 modulo L.
+  private static final byte[] MINUS_ONE = new byte[32];
+
+  static {
+    for (int i = 0; i < 32; i++) {
+      MINUS_ONE[i] = (byte) L[i];
+    }
+    MINUS_ONE[0] -= 1;
+  }
+
+  private Scalar25519() {
+  }
+
+  /**
+   * Reduce a little-endian number of up to 64 bytes, such as a SHA-512 digest or a clamped private key.
+   */
+  static byte[] reduce(byte[] s) {
+    long[] x = new long[64];
+    for (int i = 0; i < s.length; i++) {
+      x[i] = s[i] & 0xff;
+    }
+    byte[] result = new byte[32];
+    modL(result, x);
+    return result;
+  }
+
+  /**
+   * a * b + c modulo L.
+   */
+  static byte[] mulAdd(byte[] a, byte[] b, byte[] c) {
+    long[] x = new long[64];
+    for (int i = 0; i < 32; i++) {
+      x[i] = c[i] & 0xff;
+    }
+    for (int i = 0; i < 32; i++) {
+      for (int j = 0; j < 32; j++) {
+        x[i + j] += (long) (a[i] & 0xff) * (b[j] & 0xff);
+      }
+    }
+    byte[] result = new byte[32];
+    modL(result, x);
+    return result;
+  }
+
+  static byte[] negate(byte[] a) {
+    return mulAdd(a, MINUS_ONE, new byte[32]);
+  }
+
+  private static void modL(byte[] r, long[] x) {
+    long carry;
+    for (int i = 63; i >= 32; i--) {
+      carry = 0;
+      int j;
+      for (j = i - 32; j < i - 12; j++) {
+        x[j] += carry - 16 * x[i] * L[j - (i - 32)];
+        carry = (x[j] + 128) >> 8;
+        x[j] -= carry << 8;
+      }
+      x[j] += carry;
+      x[i] = 0;
+    }
+    carry = 0;
+    for (int j = 0; j < 32; j++) {
+      x[j] += carry - (x[31] >> 4) * L[j];
+      carry = x[j] >> 8;
+      x[j] &= 255;
+    }
+    for (int j = 0; j < 32; j++) {
+      x[j] -= carry * L[j];
+    }
+    for (int i = 0; i < 32; i++) {
+      x[i + 1] += x[i] >> 8;
+      r[i] = (byte) (x[i] & 255);
+    }
+  }
+}
@@ -0,0 +1,34 @@
+/**
+ * Copyright (c) 2017-present, Facebook, Inc.
+ * All rights reserved.
+ *
+ * This source code is licensed under the license found in the
+ * LICENSE file in the root directory of this source tree.
+*/
+
+package com.facebook.research.asynchronousratchetingtree.crypto;
+
+/**
+ * Signs and verifies with identity keys for DHKeyPair and DHPubKey. See SignatureBackends for how one is chosen. Each
+ * backend has its own 64-byte signature format, so every member of a group must use the same one.
+ */
+public interface SignatureBackend {
+  String getName();
+
+  byte[] sign(DHKeyPair key, byte[] data);
+
+  boolean verify(DHPubKey key, byte[] data, byte[] signature);
+
+  /**
+   * Whether every signature is valid for its key and data. Backends override this when they can check a batch faster
+   * than one at a time.
+   */
+  default boolean verifyAll(DHPubKey[] keys, byte[][] data, byte[][] signatures) {
+    for (int i = 0; i < keys.length; i++) {
+      if (!verify(keys[i], data[i], signatures[i])) {
+        return false;
+      }
+    }
+    return true;
+  }
+}
@@ -0,0 +1,58 @@
+/**
+ * Copyright (c) 2017-present, Facebook, Inc.
+ * All rights reserved.
+ *
+ * This source code is licensed under the license found in the
+ * LICENSE file in the root directory of this source tree.
+*/
+
+package com.facebook.research.asynchronousratchetingtree.crypto;
+
+import com.facebook.research.asynchronousratchetingtree.Utils;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Chooses the SignatureBackend that DHKeyPair and DHPubKey use, once at startup, from the art.signature system
+ * property: "kcdsa" (the default), which is what this project originally used, or "xeddsa". The two sign differently,
+ * so every member of a group has to use the same one.
+ */
+final public class SignatureBackends {
+  private static volatile SignatureBackend current;
+
+  public static SignatureBackend current() {
+    SignatureBackend backend = current;
+    if (backend == null) {
+      synchronized (SignatureBackends.class) {
+        if (current == null) {
+          current = forName(System.getProperty("art.signature", "kcdsa"));
+        }
+        backend = current;
+      }
+    }
+    return backend;
+  }
+
+  public static void select(SignatureBackend backend) {
+    current = backend;
+  }
+
+  public static SignatureBackend forName(String name) {
+    switch (name) {
+      case "xeddsa":
+        return new XEdDsaSignatureBackend();
+      case "kcdsa":
+        return new KcdsaSignatureBackend();
+      default:
+        throw Utils.except("Unknown signature backend " + name + ".");
+    }
+  }
+
+  public static List<SignatureBackend> available() {
+    List<SignatureBackend> backends = new ArrayList<>();
+    backends.add(new KcdsaSignatureBackend());
+    backends.add(new XEdDsaSignatureBackend());
+    return backends;
+  }
+}
@@ -0,0 +1,43 @@
+/**
+ * Copyright (c) 2017-present, Facebook, Inc.
+ * All rights reserved.
+ *
+ * This source code is licensed under the license found in the
+ * LICENSE file in the root directory of this source tree.
+*/
+
+package com.facebook.research.asynchronousratchetingtree.crypto;
+
+/**
+ * Computes X25519 (RFC 7748) for DHKeyPair, so that the library doing the curve arithmetic can be swapped without
+ * touching the tree code. See X25519Backends for how one is chosen.
+ *
+ * All keys are 32-byte little-endian strings. publicKey clamps priv in place, as the djb library always has, so a key
+ * pair's stored private key is the same whichever backend made it. agree clamps a copy and leaves priv alone.
+ */
+public interface X25519Backend {
+  String getName();
+
+  /**
+   * Write the public key for priv into pub.
+   */
+  void publicKey(byte[] priv, byte[] pub);
+
+  /**
+   * Write the shared secret between priv and the remote public key into out.
+   */
+  void agree(byte[] priv, byte[] remotePub, byte[] out);
+
+  static void clamp(byte[] priv) {
+    clamp(priv, 0);
+  }
+
+  /**
+   * Clamp the 32-byte key starting at offset.
+   */
+  static void clamp(byte[] key, int offset) {
+    key[offset] &= (byte) 248;
+    key[offset + 31] &= (byte) 127;
+    key[offset + 31] |= (byte) 64;
+  }
+}
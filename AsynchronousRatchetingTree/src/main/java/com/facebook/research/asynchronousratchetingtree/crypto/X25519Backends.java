@@ -0,0 +1,104 @@
+/**
+ * Copyright (c) 2017-present, Facebook, Inc.
+ * All rights reserved.
+ *
+ * This source code is licensed under the license found in the
+ * LICENSE file in the root directory of this source tree.
+*/
+
+package com.facebook.research.asynchronousratchetingtree.crypto;
+
+import com.facebook.research.asynchronousratchetingtree.Utils;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Chooses the X25519Backend that DHKeyPair uses. The choice is made once at startup from the art.x25519 system
+ * property, which may name a backend ("fixed-base", "djb" or "jdk") or ask for "fastest", which times each available
+ * backend on a few hundred node key derivations and keeps the quickest. The default is djb, the library this project
+ * has always used; fixed-base is opt-in until it has a full test vector suite of its own.
+ *
+ * Every backend computes the same function, so members using different ones can share a group.
+ */
+final public class X25519Backends {
+  private static final int TIMING_ROUNDS = 300;
+  private static volatile X25519Backend current;
+
+  public static X25519Backend current() {
+    X25519Backend backend = current;
+    if (backend == null) {
+      synchronized (X25519Backends.class) {
+        if (current == null) {
+          current = forName(System.getProperty("art.x25519", "djb"));
+        }
+        backend = current;
+      }
+    }
+    return backend;
+  }
+
+  public static void select(X25519Backend backend) {
+    current = backend;
+  }
+
+  public static X25519Backend forName(String name) {
+    switch (name) {
+      case "fixed-base":
+        return new FixedBaseX25519Backend();
+      case "djb":
+        return new DjbX25519Backend();
+      case "jdk":
+        if (!JdkX25519Backend.isAvailable()) {
+          Utils.except("This JDK has no X25519 KeyAgreement.");
+        }
+        return new JdkX25519Backend();
+      case "fastest":
+        return fastest();
+      default:
+        throw Utils.except("Unknown X25519 backend " + name + ".");
+    }
+  }
+
+  public static List<X25519Backend> available() {
+    List<X25519Backend> backends = new ArrayList<>();
+    backends.add(new DjbX25519Backend());
+    backends.add(new FixedBaseX25519Backend());
+    if (JdkX25519Backend.isAvailable()) {
+      backends.add(new JdkX25519Backend());
+    }
+    return backends;
+  }
+
+  public static X25519Backend fastest() {
+    X25519Backend best = null;
+    long bestTime = Long.MAX_VALUE;
+    for (X25519Backend backend : available()) {
+      // Time the second pass, so that the first one warms up the JIT.
+      timeNodeDerivations(backend);
+      long time = timeNodeDerivations(backend);
+      if (time < bestTime) {
+        best = backend;
+        bestTime = time;
+      }
+    }
+    return best;
+  }
+
+  /**
+   * Nanoseconds for a chain of what ART does at each level of a path, an agreement with the sibling and a public key
+   * for the result. Each step feeds the next, so none can be optimised away.
+   */
+  public static long timeNodeDerivations(X25519Backend backend) {
+    byte[] priv = Crypto.randomBytes(32);
+    byte[] sibling = new byte[32];
+    backend.publicKey(Crypto.randomBytes(32), sibling);
+    byte[] pub = new byte[32];
+    long start = System.nanoTime();
+    for (int i = 0; i < TIMING_ROUNDS; i++) {
+      backend.agree(priv, sibling, priv);
+      backend.publicKey(priv, pub);
+    }
+    return System.nanoTime() - start;
+  }
+}
@@ -0,0 +1,280 @@
+/**
+ * Copyright (c) 2017-present, Facebook, Inc.
+ * All rights reserved.
+ *
+ * This source code is licensed under the license found in the
+ * LICENSE file in the root directory of this source tree.
+*/
+
+package com.facebook.research.asynchronousratchetingtree.crypto;
+
+import static com.facebook.research.asynchronousratchetingtree.crypto.Field25519.*;
+
+/**
+ * X25519 public keys by fixed-base scalar multiplication. Curve25519 is birationally equivalent to the twisted Edwards
+ * curve of Ed25519, so we compute k * B on the Edwards curve and map the result back to its Montgomery u-coordinate,
+ * u = (1 + y) / (1 - y). The base point is fixed, so its multiples can be precomputed: this is ref10's
+ * ge_scalarmult_base, which writes k in 64 signed radix-16 digits and needs only 64 mixed additions and 4 doublings
+ * against a table of [1..8] * 256^i * B. That is well under half the work of the Montgomery ladder, which is still
+ * what we use for exchanges with other members' keys.
+ *
+ * Table lookups and the handling of negative digits are constant time, as in ref10.
+ */
+final public class X25519FixedBase {
+  private static final Precomputed[][] TABLE = new Precomputed[32][8];
+  private static final ThreadLocal<X25519FixedBase> WORKSPACE = ThreadLocal.withInitial(X25519FixedBase::new);
+
+  static {
+    X25519FixedBase builder = new X25519FixedBase();
+    copy(builder.hX, Edwards25519.BASE_X);
+    copy(builder.hY, Edwards25519.BASE_Y);
+    one(builder.hZ);
+    mul(builder.hT, builder.hX, builder.hY);
+    for (int i = 0; i < 32; i++) {
+      builder.buildTableRow(TABLE[i]);
+    }
+  }
+
+  // A point in extended coordinates, x = X/Z, y = Y/Z, xy = T/Z.
+  private final int[] hX = create();
+  private final int[] hY = create();
+  private final int[] hZ = create();
+  private final int[] hT = create();
+  // The "completed" result of an addition or doubling, ((X:Z), (Y:T)).
+  private final int[] rX = create();
+  private final int[] rY = create();
+  private final int[] rZ = create();
+  private final int[] rT = create();
+  // A point in projective coordinates, for doubling.
+  private final int[] sX = create();
+  private final int[] sY = create();
+  private final int[] sZ = create();
+  private final int[] t0 = create();
+  private final int[] t1 = create();
+  private final Precomputed selected = new Precomputed();
+  private final Precomputed negated = new Precomputed();
+  private final int[] digits = new int[64];
+
+  private X25519FixedBase() {
+  }
+
+  /**
+   * Clamp priv in place and write its X25519 public key into pub, exactly as Curve25519.keygen would.
+   */
+  public static void publicKey(byte[] priv, byte[] pub) {
+    X25519Backend.clamp(priv);
+    WORKSPACE.get().scalarMultBase(priv, pub);
+  }
+
+  /**
+   * k * B on the Edwards curve, for XEdDSA. Like publicKey this is constant time, so k may be secret, but it must be
+   * below 2^255.
+   */
+  static void edwardsBase(byte[] k, Edwards25519.Point out) {
+    X25519FixedBase workspace = WORKSPACE.get();
+    workspace.edwardsScalarMultBase(k);
+    copy(out.x, workspace.hX);
+    copy(out.y, workspace.hY);
+    copy(out.z, workspace.hZ);
+    copy(out.t, workspace.hT);
+  }
+
+  private void scalarMultBase(byte[] k, byte[] pub) {
+    edwardsScalarMultBase(k);
+
+    // u = (1 + y) / (1 - y) = (Z + Y) / (Z - Y)
+    add(t0, hZ, hY);
+    sub(t1, hZ, hY);
+    // The completed and projective registers are free by now, so they serve as scratch.
+    invert(t1, t1, rX, rY, rZ, rT);
+    mul(t0, t0, t1);
+    toBytes(pub, t0, sX);
+  }
+
+  private void edwardsScalarMultBase(byte[] k) {
+    for (int i = 0; i < 32; i++) {
+      digits[2 * i] = k[i] & 15;
+      digits[2 * i + 1] = (k[i] >> 4) & 15;
+    }
+    // Recentre each digit into [-8, 8).
+    int carry = 0;
+    for (int i = 0; i < 63; i++) {
+      digits[i] += carry;
+      carry = (digits[i] + 8) >> 4;
+      digits[i] -= carry << 4;
+    }
+    digits[63] += carry;
+
+    zero(hX);
+    one(hY);
+    one(hZ);
+    zero(hT);
+    for (int i = 1; i < 64; i += 2) {
+      select(i / 2, digits[i]);
+      addPrecomputed();
+      completedToExtended();
+    }
+
+    doubleExtended();
+    completedToProjective();
+    doubleProjective();
+    completedToProjective();
+    doubleProjective();
+    completedToProjective();
+    doubleProjective();
+    completedToExtended();
+
+    for (int i = 0; i < 64; i += 2) {
+      select(i / 2, digits[i]);
+      addPrecomputed();
+      completedToExtended();
+    }
+  }
+
+  /**
+   * Load digit * 256^position * B into selected, touching every table entry whatever the digit.
+   */
+  private void select(int position, int digit) {
+    int negative = digit >>> 31;
+    int absolute = digit - (((-negative) & digit) << 1);
+    one(selected.yPlusX);
+    one(selected.yMinusX);
+    zero(selected.xy2d);
+    for (int j = 0; j < 8; j++) {
+      int match = ((absolute ^ (j + 1)) - 1) >>> 31;
+      cmov(selected.yPlusX, TABLE[position][j].yPlusX, match);
+      cmov(selected.yMinusX, TABLE[position][j].yMinusX, match);
+      cmov(selected.xy2d, TABLE[position][j].xy2d, match);
+    }
+    copy(negated.yPlusX, selected.yMinusX);
+    copy(negated.yMinusX, selected.yPlusX);
+    neg(negated.xy2d, selected.xy2d);
+    cmov(selected.yPlusX, negated.yPlusX, negative);
+    cmov(selected.yMinusX, negated.yMinusX, negative);
+    cmov(selected.xy2d, negated.xy2d, negative);
+  }
+
+  // r = h + selected
+  private void addPrecomputed() {
+    add(rX, hY, hX);
+    sub(rY, hY, hX);
+    mul(rZ, rX, selected.yPlusX);
+    mul(rY, rY, selected.yMinusX);
+    mul(rT, selected.xy2d, hT);
+    add(t0, hZ, hZ);
+    sub(rX, rZ, rY);
+    add(rY, rZ, rY);
+    add(rZ, t0, rT);
+    sub(rT, t0, rT);
+  }
+
+  // r = h + the point in cached form (Y + X, Y - X, Z, 2dT), for building the table only.
+  private void addCached(int[] yPlusX, int[] yMinusX, int[] z, int[] t2d) {
+    add(rX, hY, hX);
+    sub(rY, hY, hX);
+    mul(rZ, rX, yPlusX);
+    mul(rY, rY, yMinusX);
+    mul(rT, t2d, hT);
+    mul(rX, hZ, z);
+    add(t0, rX, rX);
+    sub(rX, rZ, rY);
+    add(rY, rZ, rY);
+    add(rZ, t0, rT);
+    sub(rT, t0, rT);
+  }
+
+  // r = 2 * s
+  private void doubleProjective() {
+    sq(rX, sX);
+    sq(rZ, sY);
+    sq2(rT, sZ);
+    add(rY, sX, sY);
+    sq(t0, rY);
+    add(rY, rZ, rX);
+    sub(rZ, rZ, rX);
+    sub(rX, t0, rY);
+    sub(rT, rT, rZ);
+  }
+
+  // r = 2 * h
+  private void doubleExtended() {
+    copy(sX, hX);
+    copy(sY, hY);
+    copy(sZ, hZ);
+    doubleProjective();
+  }
+
+  private void completedToProjective() {
+    mul(sX, rX, rT);
+    mul(sY, rY, rZ);
+    mul(sZ, rZ, rT);
+  }
+
+  private void completedToExtended() {
+    mul(hX, rX, rT);
+    mul(hY, rY, rZ);
+    mul(hZ, rZ, rT);
+    mul(hT, rX, rY);
+  }
+
+  /**
+   * Fill row with [1..8] * h, then multiply h by 256 ready for the next row.
+   */
+  private void buildTableRow(Precomputed[] row) {
+    int[] one = fromInt(1);
+    int[] yPlusX = create();
+    int[] yMinusX = create();
+    int[] z = create();
+    int[] t2d = create();
+    add(yPlusX, hY, hX);
+    sub(yMinusX, hY, hX);
+    copy(z, hZ);
+    mul(t2d, hT, Edwards25519.D2);
+    int[] baseX = hX.clone();
+    int[] baseY = hY.clone();
+    int[] baseZ = hZ.clone();
+    int[] baseT = hT.clone();
+
+    row[0] = toPrecomputed(one);
+    for (int j = 1; j < 8; j++) {
+      addCached(yPlusX, yMinusX, z, t2d);
+      completedToExtended();
+      row[j] = toPrecomputed(one);
+    }
+
+    copy(hX, baseX);
+    copy(hY, baseY);
+    copy(hZ, baseZ);
+    copy(hT, baseT);
+    doubleExtended();
+    for (int i = 1; i < 8; i++) {
+      completedToProjective();
+      doubleProjective();
+    }
+    completedToExtended();
+  }
+
+  private Precomputed toPrecomputed(int[] one) {
+    int[] zInverse = create();
+    int[] x = create();
+    int[] y = create();
+    invert(zInverse, hZ);
+    mul(x, hX, zInverse);
+    mul(y, hY, zInverse);
+    Precomputed result = new Precomputed();
+    add(result.yPlusX, y, x);
+    mul(result.yPlusX, result.yPlusX, one);
+    sub(result.yMinusX, y, x);
+    mul(result.yMinusX, result.yMinusX, one);
+    mul(result.xy2d, x, y);
+    mul(result.xy2d, result.xy2d, Edwards25519.D2);
+    return result;
+  }
+
+  // An affine point as (y + x, y - x, 2dxy), ready for a mixed addition.
+  private static final class Precomputed {
+    private final int[] yPlusX = create();
+    private final int[] yMinusX = create();
+    private final int[] xy2d = create();
+  }
+}
@@ -0,0 +1,125 @@
+/**
+ * Copyright (c) 2017-present, Facebook, Inc.
+ * All rights reserved.
+ *
+ * This source code is licensed under the license found in the
+ * LICENSE file in the root directory of this source tree.
+*/
+
+package com.facebook.research.asynchronousratchetingtree.crypto;
+
+import com.facebook.research.asynchronousratchetingtree.Utils;
+
+import java.security.SecureRandom;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Checks X25519 backends against the test vectors of RFC 7748 (sections 5.2 and 6.1), and against each other on random
+ * keys, including the keys that ART derives for tree nodes.
+ */
+final public class X25519Vectors {
+  private static final String[][] SCALAR_MULTIPLICATIONS = {
+    {
+      "a546e36bf0527c9d3b16154b82465edd62144c0ac1fc5a18506a2244ba449ac4",
+      "e6db6867583030db3594c1a424b15f7c726624ec26b3353b10a903a6d0ab1c4c",
+      "c3da55379de9c6908e94ea4df28d084f32eccf03491c71f754b4075577a28552"
+    },
+    {
+      "4b66e9d4d1b4673c5ad22691957d6af5c11b6421e0ea01d42ca4169e7918ba0d",
+      "e5210f12786811d3f4b7959d0538ae2c31dbe7106fc03c3efc4cd549c715a493",
+      "95cbde9476e8907d7aade45cb4b873f88b595a68799fa152e6f8f7647aac7957"
+    },
+  };
+  private static final String AFTER_ONE_ITERATION = "422c8e7a6227d7bca1350b3e2bb7279f7897b87bb6854b783c60e80311ae3079";
+  private static final String AFTER_1000_ITERATIONS = "684cf59ba83309552800ef566f2f4d3c1c3887c49360e3875f2eb94d99532c51";
+  private static final String ALICE_PRIV = "77076d0a7318a57d3c16c17251b26645df4c2f87ebc0992ab177fba51db92c2a";
+  private static final String ALICE_PUB = "8520f0098930a754748b7ddcb43ef75a0dbf3a0d26381af4eba4a98eaa9b4e6a";
+  private static final String BOB_PRIV = "5dab087e624a8a4b79e17f8b83800ee66f3bb1292618b6fd1c2f8b27ff88e0eb";
+  private static final String BOB_PUB = "de9edb7d7b7dc1b4d35b61c2ece435373f8343c85b78674dadfc7e146f882b4f";
+  private static final String SHARED = "4a5d9d5ba4ce2de1728e3bf480350f25e07e21c947d19e3376f09b3c1e161742";
+
+  public static void check(X25519Backend backend) {
+    byte[] out = new byte[32];
+    for (String[] vector : SCALAR_MULTIPLICATIONS) {
+      backend.agree(hex(vector[0]), hex(vector[1]), out);
+      expect(backend, "scalar multiplication", vector[2], out);
+    }
+
+    byte[] k = new byte[32];
+    byte[] u = new byte[32];
+    k[0] = 9;
+    u[0] = 9;
+    for (int i = 1; i <= 1000; i++) {
+      backend.agree(Arrays.copyOf(k, 32), u, out);
+      System.arraycopy(k, 0, u, 0, 32);
+      System.arraycopy(out, 0, k, 0, 32);
+      if (i == 1) {
+        expect(backend, "one iteration", AFTER_ONE_ITERATION, k);
+      }
+    }
+    expect(backend, "1000 iterations", AFTER_1000_ITERATIONS, k);
+
+    backend.publicKey(hex(ALICE_PRIV), out);
+    expect(backend, "Alice's public key", ALICE_PUB, out);
+    backend.publicKey(hex(BOB_PRIV), out);
+    expect(backend, "Bob's public key", BOB_PUB, out);
+    backend.agree(hex(ALICE_PRIV), hex(BOB_PUB), out);
+    expect(backend, "Alice's shared secret", SHARED, out);
+    backend.agree(hex(BOB_PRIV), hex(ALICE_PUB), out);
+    expect(backend, "Bob's shared secret", SHARED, out);
+  }
+
+  /**
+   * Every backend must produce the same public keys and shared secrets as the first, for fresh keys and for keys
+   * derived the way SecretParentNode derives them.
+   */
+  public static void crossCheck(List<X25519Backend> backends, int rounds) {
+    SecureRandom random = new SecureRandom();
+    X25519Backend reference = backends.get(0);
+    byte[] expected = new byte[32];
+    byte[] actual = new byte[32];
+    for (int i = 0; i < rounds; i++) {
+      byte[] alice = new byte[32];
+      byte[] bob = new byte[32];
+      random.nextBytes(alice);
+      random.nextBytes(bob);
+      byte[] bobPub = new byte[32];
+      reference.publicKey(bob, bobPub);
+      reference.agree(alice, bobPub, expected);
+      byte[] nodeKey = Crypto.hkdf(expected, Crypto.EMPTY, Crypto.EMPTY, 32);
+      byte[] expectedNodePub = new byte[32];
+      reference.publicKey(Arrays.copyOf(nodeKey, 32), expectedNodePub);
+
+      for (X25519Backend backend : backends) {
+        backend.publicKey(Arrays.copyOf(bob, 32), actual);
+        if (!Arrays.equals(bobPub, actual)) {
+          Utils.except(backend.getName() + " disagrees with " + reference.getName() + " on a public key.");
+        }
+        backend.agree(Arrays.copyOf(alice, 32), bobPub, actual);
+        if (!Arrays.equals(expected, actual)) {
+          Utils.except(backend.getName() + " disagrees with " + reference.getName() + " on a shared secret.");
+        }
+        backend.publicKey(Arrays.copyOf(nodeKey, 32), actual);
+        if (!Arrays.equals(expectedNodePub, actual)) {
+          Utils.except(backend.getName() + " disagrees with " + reference.getName() + " on a node key.");
+        }
+      }
+    }
+  }
+
+  private static void expect(X25519Backend backend, String what, String expected, byte[] actual) {
+    if (!Arrays.equals(hex(expected), actual)) {
+      Utils.except(backend.getName() + " fails the RFC 7748 vector for " + what + ".");
+    }
+  }
+
+  // Not DatatypeConverter, which is gone from the JDKs that have a JDK backend to check.
+  private static byte[] hex(String s) {
+    byte[] result = new byte[s.length() / 2];
+    for (int i = 0; i < result.length; i++) {
+      result[i] = (byte) Integer.parseInt(s.substring(2 * i, 2 * i + 2), 16);
+    }
+    return result;
+  }
+}
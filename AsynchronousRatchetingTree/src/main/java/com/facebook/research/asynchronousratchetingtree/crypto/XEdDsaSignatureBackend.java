@@ -0,0 +1,224 @@
+/**
+ * Copyright (c) 2017-present, Facebook, Inc.
+ * All rights reserved.
+ *
+ * This source code is licensed under the license found in the
+ * LICENSE file in the root directory of this source tree.
+*/
+
+package com.facebook.research.asynchronousratchetingtree.crypto;
+
+import com.facebook.research.asynchronousratchetingtree.Utils;
+
+import java.math.BigInteger;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+
+/**
+ * XEdDSA, as specified by Signal (https://signal.org/docs/specifications/xeddsa/): EdDSA signatures made directly with
+ * X25519 identity keys, by mapping the Montgomery key to the Edwards point with the same y and a sign bit of 0.
+ * Signing is one fixed-base multiplication, and needs no retry loop or separate signing key.
+ *
+ * Arithmetic on the secret scalars is done with Scalar25519, which runs in constant time. Verification only handles
+ * public values and uses BigInteger.
+ *
+ * verifyAll checks a batch with a single multi-scalar multiplication. It tests a random linear combination of the
+ * verification equations, multiplied by the cofactor, so a batch passes exactly when every signature would pass the
+ * cofactored check. That differs from verify's cofactorless check only for deliberately malformed signatures.
+ */
+final public class XEdDsaSignatureBackend implements SignatureBackend {
+  private static final BigInteger ORDER = BigInteger.ONE.shiftLeft(252)
+    .add(new BigInteger("27742317777372353535851937790883648493"));
+  // Below this, checking signatures one at a time is cheaper than a multi-scalar multiplication.
+  private static final int BATCH_THRESHOLD = 16;
+  private static final int SIGNATURE_LENGTH = 64;
+
+  @Override
+  public String getName() {
+    return "xeddsa";
+  }
+
+  @Override
+  public byte[] sign(DHKeyPair key, byte[] data) {
+    byte[] k = key.getPrivKeyBytes().clone();
+    X25519Backend.clamp(k);
+    Edwards25519.Point e = new Edwards25519.Point();
+    X25519FixedBase.edwardsBase(k, e);
+    byte[] publicKey = new byte[32];
+    Edwards25519.encode(publicKey, e);
+    byte[] a = Scalar25519.reduce(k);
+    // The sign bit is part of the public key, so branching on it leaks nothing.
+    if ((publicKey[31] & 0x80) != 0) {
+      a = Scalar25519.negate(a);
+      publicKey[31] &= 0x7f;
+    }
+
+    MessageDigest sha512 = startSHA512();
+    byte[] prefix = new byte[32];
+    Arrays.fill(prefix, (byte) 0xff);
+    prefix[0] = (byte) 0xfe;
+    sha512.update(prefix);
+    sha512.update(a);
+    sha512.update(data);
+    sha512.update(Crypto.randomBytes(64));
+    byte[] r = Scalar25519.reduce(sha512.digest());
+
+    byte[] signature = new byte[SIGNATURE_LENGTH];
+    Edwards25519.Point rPoint = new Edwards25519.Point();
+    X25519FixedBase.edwardsBase(r, rPoint);
+    Edwards25519.encode(signature, rPoint);
+
+    byte[] h = toLittleEndian(challenge(signature, publicKey, data));
+    System.arraycopy(Scalar25519.mulAdd(h, a, r), 0, signature, 32, 32);
+    return signature;
+  }
+
+  @Override
+  public boolean verify(DHPubKey key, byte[] data, byte[] signature) {
+    Edwards25519 curve = new Edwards25519();
+    byte[] publicKey = edwardsPublicKey(key);
+    Edwards25519.Point a = curve.decode(publicKey);
+    if (a == null || signature.length != SIGNATURE_LENGTH) {
+      return false;
+    }
+    BigInteger s = fromLittleEndian(Arrays.copyOfRange(signature, 32, 64));
+    if (s.compareTo(ORDER) >= 0) {
+      return false;
+    }
+    BigInteger h = challenge(signature, publicKey, data);
+
+    // R should be s * B - h * A.
+    Edwards25519.Point check = new Edwards25519.Point();
+    X25519FixedBase.edwardsBase(toLittleEndian(s), check);
+    Edwards25519.negate(a, a);
+    Edwards25519.Point ha = new Edwards25519.Point();
+    curve.scalarMult(ha, a, toLittleEndian(h));
+    curve.add(check, check, ha);
+    byte[] encoded = new byte[32];
+    Edwards25519.encode(encoded, check);
+    return MessageDigest.isEqual(encoded, Arrays.copyOf(signature, 32));
+  }
+
+  /**
+   * With random 128-bit z_i, checks 8 * ((sum z_i s_i) B - sum z_i R_i - sum (z_i h_i) A_i) = 0.
+   */
+  @Override
+  public boolean verifyAll(DHPubKey[] keys, byte[][] data, byte[][] signatures) {
+    int n = keys.length;
+    if (n < BATCH_THRESHOLD) {
+      return SignatureBackend.super.verifyAll(keys, data, signatures);
+    }
+    Edwards25519 curve = new Edwards25519();
+    Edwards25519.Point[] points = new Edwards25519.Point[2 * n];
+    byte[][] scalars = new byte[2 * n][];
+    BigInteger baseScalar = BigInteger.ZERO;
+    byte[] z = new byte[16];
+    byte[][] publicKeys = edwardsPublicKeys(keys);
+
+    for (int i = 0; i < n; i++) {
+      byte[] signature = signatures[i];
+      if (signature.length != SIGNATURE_LENGTH) {
+        return false;
+      }
+      byte[] publicKey = publicKeys[i];
+      Edwards25519.Point a = curve.decode(publicKey);
+      Edwards25519.Point r = curve.decode(Arrays.copyOf(signature, 32));
+      BigInteger s = fromLittleEndian(Arrays.copyOfRange(signature, 32, 64));
+      if (a == null || r == null || s.compareTo(ORDER) >= 0) {
+        return false;
+      }
+      BigInteger h = challenge(signature, publicKey, data[i]);
+      EntropyPool.get().fill(z);
+      BigInteger zi = fromLittleEndian(z);
+
+      baseScalar = baseScalar.add(zi.multiply(s));
+      Edwards25519.negate(r, r);
+      Edwards25519.negate(a, a);
+      points[2 * i] = r;
+      scalars[2 * i] = toLittleEndian(zi);
+      points[2 * i + 1] = a;
+      scalars[2 * i + 1] = toLittleEndian(zi.multiply(h).mod(ORDER));
+    }
+
+    Edwards25519.Point result = curve.multiScalarMult(points, scalars);
+    Edwards25519.Point base = new Edwards25519.Point();
+    X25519FixedBase.edwardsBase(toLittleEndian(baseScalar.mod(ORDER)), base);
+    curve.add(result, result, base);
+    for (int i = 0; i < 3; i++) {
+      curve.dbl(result, result);
+    }
+    return Edwards25519.isIdentity(result);
+  }
+
+  /**
+   * The Edwards encoding of an X25519 public key: y = (u - 1) / (u + 1), with a sign bit of 0.
+   */
+  private static byte[] edwardsPublicKey(DHPubKey key) {
+    return edwardsPublicKeys(new DHPubKey[] {key})[0];
+  }
+
+  /**
+   * The same for many keys, sharing one field inversion between them.
+   */
+  private static byte[][] edwardsPublicKeys(DHPubKey[] keys) {
+    int n = keys.length;
+    int[] one = Field25519.fromInt(1);
+    int[] u = Field25519.create();
+    int[][] numerators = new int[n][];
+    int[][] denominators = new int[n][];
+    for (int i = 0; i < n; i++) {
+      Field25519.fromBytes(u, keys[i].getPubKeyBytes());
+      numerators[i] = Field25519.create();
+      denominators[i] = Field25519.create();
+      Field25519.sub(numerators[i], u, one);
+      Field25519.add(denominators[i], u, one);
+      if (Field25519.isZero(denominators[i])) {
+        // A u of -1 would zero the whole batch's product. Give it y = 0, as inverting zero to zero would.
+        Field25519.one(denominators[i]);
+        Field25519.zero(numerators[i]);
+      }
+    }
+    Field25519.invertAll(denominators);
+    byte[][] encoded = new byte[n][32];
+    for (int i = 0; i < n; i++) {
+      Field25519.mul(numerators[i], numerators[i], denominators[i]);
+      Field25519.toBytes(encoded[i], numerators[i]);
+    }
+    return encoded;
+  }
+
+  private static BigInteger challenge(byte[] signature, byte[] publicKey, byte[] data) {
+    MessageDigest sha512 = startSHA512();
+    sha512.update(signature, 0, 32);
+    sha512.update(publicKey);
+    sha512.update(data);
+    return fromLittleEndian(sha512.digest()).mod(ORDER);
+  }
+
+  private static MessageDigest startSHA512() {
+    try {
+      return MessageDigest.getInstance("SHA-512");
+    } catch (NoSuchAlgorithmException e) {
+      throw Utils.except(e);
+    }
+  }
+
+  private static BigInteger fromLittleEndian(byte[] bytes) {
+    byte[] bigEndian = new byte[bytes.length];
+    for (int i = 0; i < bytes.length; i++) {
+      bigEndian[i] = bytes[bytes.length - 1 - i];
+    }
+    return new BigInteger(1, bigEndian);
+  }
+
+  // Scalars here are all below 2^256.
+  private static byte[] toLittleEndian(BigInteger value) {
+    byte[] bigEndian = value.toByteArray();
+    byte[] result = new byte[32];
+    for (int i = 0; i < Math.min(32, bigEndian.length); i++) {
+      result[i] = bigEndian[bigEndian.length - 1 - i];
+    }
+    return result;
+  }
+}
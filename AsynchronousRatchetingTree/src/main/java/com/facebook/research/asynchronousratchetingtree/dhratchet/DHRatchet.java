@@ -12,14 +12,20 @@ import com.facebook.research.asynchronousratchetingtree.KeyServer;
 import com.facebook.research.asynchronousratchetingtree.GroupMessagingTestImplementation;
 import com.facebook.research.asynchronousratchetingtree.MessageDistributer;
 import com.facebook.research.asynchronousratchetingtree.Utils;
+import com.facebook.research.asynchronousratchetingtree.crypto.AeadSuites;
 import com.facebook.research.asynchronousratchetingtree.crypto.Crypto;
+import com.facebook.research.asynchronousratchetingtree.crypto.CryptoContext;
 import com.facebook.research.asynchronousratchetingtree.crypto.DHKeyPair;
 import com.facebook.research.asynchronousratchetingtree.crypto.DHPubKey;
+import com.facebook.research.asynchronousratchetingtree.crypto.SignatureBackends;
 import com.facebook.research.asynchronousratchetingtree.crypto.SignedDHPubKey;
 import com.facebook.research.asynchronousratchetingtree.dhratchet.message.DHRatchetMessageDistributer;
 import com.facebook.research.asynchronousratchetingtree.dhratchet.message.DHRatchetSetupMessage;
 import com.facebook.research.asynchronousratchetingtree.dhratchet.message.DHRatchetMessage;
 
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.IntConsumer;
+
 public class DHRatchet implements GroupMessagingTestImplementation<DHRatchetState> {
   @Override
   public byte[] setupMessageForPeer(DHRatchetState state, DHPubKey[] peers, KeyServer keyServer, int i) {
@@ -31,23 +37,76 @@ public class DHRatchet implements GroupMessagingTestImplementation<DHRatchetStat
     }
 
     DHKeyPair ratchetKey = DHKeyPair.generate(false);
-    state.setRootKey(
-      i,
-      Crypto.keyExchangeInitiate(
-        identityKeyPair,
-        peers[i],
-        ratchetKey,
-        keyServer.getSignedPreKey(state, i)
-      )
-    );
+    byte[] rootKey = Crypto.keyExchangeInitiate(identityKeyPair, peers[i], ratchetKey, signedPreKey);
+    return startSession(state, i, ratchetKey, rootKey);
+  }
+
+  /**
+   * Checks every peer's prekey signature in one batch, then does the key exchanges with all of them at once, over as
+   * many threads as the state's setup parallelism allows.
+   */
+  @Override
+  public byte[][] setupMessagesForPeers(DHRatchetState state, DHPubKey[] peers, KeyServer keyServer) {
+    int n = peers.length;
+    int self = state.getPeerNum();
+    DHKeyPair[] ratchetKeys = new DHKeyPair[n];
+    DHPubKey[] preKeys = new DHPubKey[n];
+    DHPubKey[] identities = new DHPubKey[n - 1];
+    byte[][] preKeyBytes = new byte[n - 1][];
+    byte[][] signatures = new byte[n - 1][];
+    for (int i = 0, j = 0; i < n; i++) {
+      if (i == self) {
+        continue;
+      }
+      SignedDHPubKey signedPreKey = keyServer.getSignedPreKey(state, i);
+      preKeys[i] = signedPreKey;
+      identities[j] = peers[i];
+      preKeyBytes[j] = signedPreKey.getPubKeyBytes();
+      signatures[j] = signedPreKey.getSignature();
+      j++;
+    }
+    if (!SignatureBackends.current().verifyAll(identities, preKeyBytes, signatures)) {
+      Utils.except("PreKey signature check failed.");
+    }
+
+    IntConsumer ratchetKey = i -> ratchetKeys[i] = i == self ? null : DHKeyPair.generate(false);
+    ForkJoinPool pool = state.getSetupParallelism() > 1 ? new ForkJoinPool(state.getSetupParallelism()) : null;
+    byte[][] rootKeys;
+    try {
+      if (pool == null) {
+        for (int i = 0; i < n; i++) {
+          ratchetKey.accept(i);
+        }
+      } else {
+        Utils.parallelFor(pool, 0, n, ratchetKey);
+      }
+      rootKeys = Crypto.keyExchangeInitiateAll(state.getIdentityKeyPair(), peers, ratchetKeys, preKeys, pool);
+    } finally {
+      if (pool != null) {
+        pool.shutdown();
+      }
+    }
+
+    byte[][] messages = new byte[n][];
+    for (int i = 0; i < n; i++) {
+      if (i != self) {
+        messages[i] = startSession(state, i, ratchetKeys[i], rootKeys[i]);
+      }
+    }
+    return messages;
+  }
+
+  private byte[] startSession(DHRatchetState state, int i, DHKeyPair ratchetKey, byte[] rootKey) {
+    state.setRootKey(i, rootKey);
     state.setSelfRatchetKey(i, ratchetKey);
     state.setRatchetFlag(i, false);
     state.setIsSetup(i);
 
     DHRatchetSetupMessage setupMessage = new DHRatchetSetupMessage(
       state.getPeerNum(),
-      identityKeyPair.getPubKey(),
-      ratchetKey.getPubKey()
+      state.getIdentityKeyPair().getPubKey(),
+      ratchetKey.getPubKey(),
+      state.getAeadSuite().getId()
     );
     return setupMessage.serialise();
   }
@@ -56,6 +115,7 @@ public class DHRatchet implements GroupMessagingTestImplementation<DHRatchetStat
   public void processSetupMessage(DHRatchetState state, byte[] serialisedMessage, int participantNum) {
     DHRatchetSetupMessage message = new DHRatchetSetupMessage(serialisedMessage);
     int peerNum = message.getPeerNum();
+    state.setAeadSuite(AeadSuites.forId(message.getAeadSuiteId(), state.getAeadSuite()));
     state.setRootKey(
       peerNum,
       Crypto.keyExchangeReceive(
@@ -81,28 +141,31 @@ public class DHRatchet implements GroupMessagingTestImplementation<DHRatchetStat
       if (state.getRatchetFlag(i)) {
         DHKeyPair selfRatchetKey = DHKeyPair.generate(false);
         state.setSelfRatchetKey(i, selfRatchetKey);
-        rootKey = Crypto.hmacSha256(
+        // The root key belongs to this state alone, so it is ratcheted in place.
+        CryptoContext crypto = CryptoContext.get();
+        crypto.hmacSha256(
           rootKey,
-          selfRatchetKey.exchange(state.getRemoteRatchetKey(i))
+          selfRatchetKey.exchange(state.getRemoteRatchetKey(i), crypto.dhOutputBuffer()),
+          rootKey,
+          0
         );
-        state.setRootKey(i, rootKey);
         state.setRatchetFlag(i, false);
       }
 
-      byte[] ciphertext = Crypto.encrypt(plaintext, rootKey);
+      byte[] ciphertext = Crypto.encrypt(state.getAeadSuite(), plaintext, rootKey);
       DHRatchetMessage message = new DHRatchetMessage(
         state.getPeerNum(),
         state.getSelfRatchetKey(i).getPubKey(),
         ciphertext
       );
-      messages[i] = message.serialise();
+      messages[i] = state.usesFlatCodec() ? message.serialiseFlat() : message.serialise();
     }
     return new DHRatchetMessageDistributer(messages);
   }
 
   @Override
   public byte[] receiveMessage(DHRatchetState state, byte[] serialisedMessage) {
-    DHRatchetMessage message = new DHRatchetMessage(serialisedMessage);
+    DHRatchetMessage message = DHRatchetMessage.decode(serialisedMessage);
     int i = message.getPeerNum();
     byte[] rootKey = state.getRootKey(i);
 
@@ -110,11 +173,13 @@ public class DHRatchet implements GroupMessagingTestImplementation<DHRatchetStat
       DHKeyPair selfRatchetKey = state.getSelfRatchetKey(i);
       DHPubKey remoteRatchetKey = message.getRatchetKey();
 
-      rootKey = Crypto.hmacSha256(
+      CryptoContext crypto = CryptoContext.get();
+      crypto.hmacSha256(
+        rootKey,
+        selfRatchetKey.exchange(remoteRatchetKey, crypto.dhOutputBuffer()),
         rootKey,
-        selfRatchetKey.exchange(remoteRatchetKey)
+        0
       );
-      state.setRootKey(i, rootKey);
       state.setRemoteRatchetKey(
         i,
         remoteRatchetKey
@@ -122,6 +187,6 @@ public class DHRatchet implements GroupMessagingTestImplementation<DHRatchetStat
       state.setRatchetFlag(i, true);
     }
 
-    return Crypto.decrypt(message.getCiphertext(), rootKey);
+    return message.decrypt(state.getAeadSuite(), rootKey);
   }
 }
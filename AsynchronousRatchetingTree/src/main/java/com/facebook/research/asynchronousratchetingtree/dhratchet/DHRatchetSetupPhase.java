@@ -30,11 +30,7 @@ public class DHRatchetSetupPhase implements GroupMessagingSetupPhase<DHRatchetSt
 
   @Override
   public void setupInitiator(GroupMessagingTestImplementation<DHRatchetState> implementation, DHRatchetState[] states, DHPubKey[] identities, KeyServer keyServer) {
-    int n = states.length;
-    setupMessages = new byte[n][];
-    for (int i = 1; i < n; i++) {
-      setupMessages[i] = implementation.setupMessageForPeer(states[0], identities, keyServer, i);
-    }
+    setupMessages = implementation.setupMessagesForPeers(states[0], identities, keyServer);
   }
 
   @Override
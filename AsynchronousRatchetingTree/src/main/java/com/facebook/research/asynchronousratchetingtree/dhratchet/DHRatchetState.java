@@ -9,6 +9,9 @@
 package com.facebook.research.asynchronousratchetingtree.dhratchet;
 
 import com.facebook.research.asynchronousratchetingtree.GroupMessagingState;
+import com.facebook.research.asynchronousratchetingtree.Utils;
+import com.facebook.research.asynchronousratchetingtree.crypto.AeadSuite;
+import com.facebook.research.asynchronousratchetingtree.crypto.AeadSuites;
 import com.facebook.research.asynchronousratchetingtree.crypto.Crypto;
 import com.facebook.research.asynchronousratchetingtree.crypto.DHKeyPair;
 import com.facebook.research.asynchronousratchetingtree.crypto.DHPubKey;
@@ -19,6 +22,9 @@ public class DHRatchetState extends GroupMessagingState {
   private DHPubKey[] remoteRatchetKeys;
   private boolean[] ratchetFlags;
   private boolean[] isSetup;
+  private AeadSuite aeadSuite = AeadSuites.current();
+  private int setupParallelism = 1;
+  private boolean flatCodec = false;
 
   public DHRatchetState(int peerNum, int peerCount) {
     super(peerNum, peerCount);
@@ -62,7 +68,7 @@ public class DHRatchetState extends GroupMessagingState {
   }
 
   public byte[] getKeyWithPeer(int n) {
-    return Crypto.hkdf(rootKeys[n], new byte[0], new byte[0], 16);
+    return Crypto.hkdf(rootKeys[n], Crypto.EMPTY, Crypto.EMPTY, 16);
   }
 
   public void setIsSetup(int i) {
@@ -72,4 +78,43 @@ public class DHRatchetState extends GroupMessagingState {
   public boolean getIsSetup(int i) {
     return isSetup[i];
   }
+
+  /**
+   * The AEAD suite the group encrypts messages with. The initiator's choice goes out in its setup messages and replaces
+   * this on every other member, so it only needs setting on the initiator. Defaults to AeadSuites.current().
+   */
+  public AeadSuite getAeadSuite() {
+    return aeadSuite;
+  }
+
+  public void setAeadSuite(AeadSuite aeadSuite) {
+    this.aeadSuite = aeadSuite;
+  }
+
+  /**
+   * When enabled, this member sends its messages in the flat wire format rather than as Thrift structs; see
+   * DHRatchetMessage. Receivers handle both formats whatever their own setting.
+   */
+  public boolean usesFlatCodec() {
+    return flatCodec;
+  }
+
+  public void setFlatCodec(boolean flatCodec) {
+    this.flatCodec = flatCodec;
+  }
+
+  /**
+   * How many threads setupMessagesForPeers may use for the key exchanges with each peer. The root keys are the same
+   * whatever the value; 1 (the default) keeps everything on the calling thread.
+   */
+  public int getSetupParallelism() {
+    return setupParallelism;
+  }
+
+  public void setSetupParallelism(int setupParallelism) {
+    if (setupParallelism < 1) {
+      Utils.except("Setup parallelism must be at least 1.");
+    }
+    this.setupParallelism = setupParallelism;
+  }
 }
@@ -9,30 +9,69 @@
 package com.facebook.research.asynchronousratchetingtree.dhratchet.message;
 
 import com.facebook.research.asynchronousratchetingtree.Utils;
+import com.facebook.research.asynchronousratchetingtree.crypto.AeadSuite;
+import com.facebook.research.asynchronousratchetingtree.crypto.Crypto;
+import com.facebook.research.asynchronousratchetingtree.crypto.CryptoContext;
 import com.facebook.research.asynchronousratchetingtree.crypto.DHPubKey;
 import com.facebook.research.asynchronousratchetingtree.dhratchet.message.thrift.DHRatchetMessageStruct;
+import djb.Curve25519;
 
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Besides Thrift, a message can be sent in a flat format: a tag byte, peerNum (4 bytes, big-endian), the 32 byte
+ * ratchet key, and then the ciphertext, which takes up the rest. The tag's low four bits are all set, which Thrift's
+ * compact protocol never starts a struct with, so decode tells the two apart.
+ */
 public class DHRatchetMessage {
+  public static final byte FLAT = 0x4f;
+  private static final int FLAT_HEADER_LENGTH = 1 + 4 + Curve25519.KEY_SIZE;
+
   private int peerNum;
   private DHPubKey ratchetKey;
-  private byte[] ciphertext;
+  private ByteBuffer ciphertext;
 
   public DHRatchetMessage(
     int peerNum,
     DHPubKey ratchetKey,
     byte[] ciphertext
   ) {
+    this.peerNum = peerNum;
+    this.ratchetKey = ratchetKey;
+    this.ciphertext = ByteBuffer.wrap(ciphertext);
+  }
+
+  private DHRatchetMessage(int peerNum, DHPubKey ratchetKey, ByteBuffer ciphertext) {
     this.peerNum = peerNum;
     this.ratchetKey = ratchetKey;
     this.ciphertext = ciphertext;
   }
 
+  public static DHRatchetMessage decode(byte[] serialised) {
+    if (serialised.length == 0 || (serialised[0] & 0x0f) != 0x0f) {
+      return new DHRatchetMessage(serialised);
+    }
+    if (serialised[0] != FLAT || serialised.length < FLAT_HEADER_LENGTH) {
+      Utils.except("Not a flat DH ratchet message.");
+    }
+    ByteBuffer buffer = ByteBuffer.wrap(serialised);
+    ByteBuffer ciphertext = buffer.duplicate();
+    ciphertext.position(FLAT_HEADER_LENGTH);
+    return new DHRatchetMessage(
+      buffer.getInt(1),
+      DHPubKey.pubKey(Arrays.copyOfRange(serialised, 5, FLAT_HEADER_LENGTH)),
+      ciphertext
+    );
+  }
+
   public DHRatchetMessage(byte[] thriftSerialised) {
     DHRatchetMessageStruct struct = new DHRatchetMessageStruct();
     Utils.deserialise(struct, thriftSerialised);
     peerNum = struct.peerNum;
     ratchetKey = DHPubKey.pubKey(struct.getRatchetKey());
-    ciphertext = struct.getCiphertext();
+    // A view into thriftSerialised rather than a copy.
+    ciphertext = struct.ciphertext;
   }
 
   public int getPeerNum() {
@@ -44,14 +83,42 @@ public class DHRatchetMessage {
   }
 
   public byte[] getCiphertext() {
-    return ciphertext;
+    byte[] result = new byte[ciphertext.remaining()];
+    ciphertext.duplicate().get(result);
+    return result;
+  }
+
+  public byte[] decrypt(AeadSuite suite, byte[] key) {
+    byte[] plaintext = new byte[ciphertext.remaining() - CryptoContext.NONCE_LENGTH - CryptoContext.TAG_LENGTH];
+    decrypt(suite, key, ByteBuffer.wrap(plaintext));
+    return plaintext;
+  }
+
+  /**
+   * Decrypt into the given buffer, heap or direct, at its position. Returns the plaintext length written.
+   */
+  public int decrypt(AeadSuite suite, byte[] key, ByteBuffer out) {
+    return Crypto.decrypt(suite, ciphertext.duplicate(), key, out);
   }
 
   public byte[] serialise() {
     DHRatchetMessageStruct struct = new DHRatchetMessageStruct();
     struct.setPeerNum(peerNum);
     struct.setRatchetKey(ratchetKey.getPubKeyBytes());
-    struct.setCiphertext(ciphertext);
+    struct.ciphertext = ciphertext;
     return Utils.serialise(struct);
   }
+
+  public byte[] serialiseFlat() {
+    byte[] key = ratchetKey.getPubKeyBytes();
+    if (key.length != Curve25519.KEY_SIZE) {
+      Utils.except("The flat format needs a " + Curve25519.KEY_SIZE + " byte ratchet key.");
+    }
+    ByteBuffer out = ByteBuffer.allocate(FLAT_HEADER_LENGTH + ciphertext.remaining());
+    out.put(FLAT);
+    out.putInt(peerNum);
+    out.put(key);
+    out.put(ciphertext.duplicate());
+    return out.array();
+  }
 }
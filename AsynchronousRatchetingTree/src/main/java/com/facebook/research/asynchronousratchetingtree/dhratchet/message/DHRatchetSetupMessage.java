@@ -9,6 +9,7 @@
 package com.facebook.research.asynchronousratchetingtree.dhratchet.message;
 
 import com.facebook.research.asynchronousratchetingtree.Utils;
+import com.facebook.research.asynchronousratchetingtree.crypto.AeadSuites;
 import com.facebook.research.asynchronousratchetingtree.crypto.DHPubKey;
 import com.facebook.research.asynchronousratchetingtree.dhratchet.message.thrift.DHRatchetSetupMessageStruct;
 
@@ -16,15 +17,18 @@ public class DHRatchetSetupMessage {
   private int peerNum;
   private DHPubKey identity;
   private DHPubKey ephemeralKey;
+  private int aeadSuiteId;
 
   public DHRatchetSetupMessage(
     int peerNum,
     DHPubKey identity,
-    DHPubKey ephemeralKey
+    DHPubKey ephemeralKey,
+    int aeadSuiteId
   ) {
     this.peerNum = peerNum;
     this.identity = identity;
     this.ephemeralKey = ephemeralKey;
+    this.aeadSuiteId = aeadSuiteId;
   }
 
   public DHRatchetSetupMessage(byte[] thriftSerialised) {
@@ -33,6 +37,8 @@ public class DHRatchetSetupMessage {
     peerNum = struct.getPeerNum();
     identity = DHPubKey.pubKey(struct.getIdentityKey());
     ephemeralKey = DHPubKey.pubKey(struct.getEphemeralKey());
+    // Messages from before the suite was sent were all AES-GCM.
+    aeadSuiteId = struct.isSetAeadSuiteId() ? struct.getAeadSuiteId() : AeadSuites.AES_GCM.getId();
   }
 
   public int getPeerNum() {
@@ -47,11 +53,19 @@ public class DHRatchetSetupMessage {
     return ephemeralKey;
   }
 
+  /**
+   * The AEAD suite the initiator chose for the session; see AeadSuites.
+   */
+  public int getAeadSuiteId() {
+    return aeadSuiteId;
+  }
+
   public byte[] serialise() {
     DHRatchetSetupMessageStruct struct = new DHRatchetSetupMessageStruct();
     struct.setPeerNum(peerNum);
     struct.setIdentityKey(identity.getPubKeyBytes());
     struct.setEphemeralKey(ephemeralKey.getPubKeyBytes());
+    struct.setAeadSuiteId(aeadSuiteId);
     return Utils.serialise(struct);
   }
 }
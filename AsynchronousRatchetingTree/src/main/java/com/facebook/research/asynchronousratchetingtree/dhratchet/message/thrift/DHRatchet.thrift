@@ -9,10 +9,12 @@
 
 namespace java com.facebook.research.asynchronousratchetingtree.dhratchet.message.thrift
 
+# As for ART, aeadSuiteId names the suite the initiator chose (see AeadSuites), and a missing one means AES-GCM.
 struct DHRatchetSetupMessageStruct {
   1: i32 peerNum,
   2: binary identityKey,
   3: binary ephemeralKey,
+  4: optional i32 aeadSuiteId,
 }
 
 struct DHRatchetMessageStruct {
@@ -14,6 +14,7 @@ public class DHRatchetSetupMessageStruct implements org.apache.thrift.TBase<DHRa
   private static final org.apache.thrift.protocol.TField PEER_NUM_FIELD_DESC = new org.apache.thrift.protocol.TField("peerNum", org.apache.thrift.protocol.TType.I32, (short)1);
   private static final org.apache.thrift.protocol.TField IDENTITY_KEY_FIELD_DESC = new org.apache.thrift.protocol.TField("identityKey", org.apache.thrift.protocol.TType.STRING, (short)2);
   private static final org.apache.thrift.protocol.TField EPHEMERAL_KEY_FIELD_DESC = new org.apache.thrift.protocol.TField("ephemeralKey", org.apache.thrift.protocol.TType.STRING, (short)3);
+  private static final org.apache.thrift.protocol.TField AEAD_SUITE_ID_FIELD_DESC = new org.apache.thrift.protocol.TField("aeadSuiteId", org.apache.thrift.protocol.TType.I32, (short)4);
 
   private static final org.apache.thrift.scheme.SchemeFactory STANDARD_SCHEME_FACTORY = new DHRatchetSetupMessageStructStandardSchemeFactory();
   private static final org.apache.thrift.scheme.SchemeFactory TUPLE_SCHEME_FACTORY = new DHRatchetSetupMessageStructTupleSchemeFactory();
@@ -21,12 +22,14 @@ public class DHRatchetSetupMessageStruct implements org.apache.thrift.TBase<DHRa
   public int peerNum; // required
   public java.nio.ByteBuffer identityKey; // required
   public java.nio.ByteBuffer ephemeralKey; // required
+  public int aeadSuiteId; // optional
 
   /** The set of fields this struct contains, along with convenience methods for finding and manipulating them. */
   public enum _Fields implements org.apache.thrift.TFieldIdEnum {
     PEER_NUM((short)1, "peerNum"),
     IDENTITY_KEY((short)2, "identityKey"),
-    EPHEMERAL_KEY((short)3, "ephemeralKey");
+    EPHEMERAL_KEY((short)3, "ephemeralKey"),
+    AEAD_SUITE_ID((short)4, "aeadSuiteId");
 
     private static final java.util.Map<java.lang.String, _Fields> byName = new java.util.HashMap<java.lang.String, _Fields>();
 
@@ -47,6 +50,8 @@ public class DHRatchetSetupMessageStruct implements org.apache.thrift.TBase<DHRa
           return IDENTITY_KEY;
         case 3: // EPHEMERAL_KEY
           return EPHEMERAL_KEY;
+        case 4: // AEAD_SUITE_ID
+          return AEAD_SUITE_ID;
         default:
           return null;
       }
@@ -88,7 +93,9 @@ public class DHRatchetSetupMessageStruct implements org.apache.thrift.TBase<DHRa
 
   // isset id assignments
   private static final int __PEERNUM_ISSET_ID = 0;
+  private static final int __AEADSUITEID_ISSET_ID = 1;
   private byte __isset_bitfield = 0;
+  private static final _Fields optionals[] = {_Fields.AEAD_SUITE_ID};
   public static final java.util.Map<_Fields, org.apache.thrift.meta_data.FieldMetaData> metaDataMap;
   static {
     java.util.Map<_Fields, org.apache.thrift.meta_data.FieldMetaData> tmpMap = new java.util.EnumMap<_Fields, org.apache.thrift.meta_data.FieldMetaData>(_Fields.class);
@@ -98,6 +105,8 @@ public class DHRatchetSetupMessageStruct implements org.apache.thrift.TBase<DHRa
         new org.apache.thrift.meta_data.FieldValueMetaData(org.apache.thrift.protocol.TType.STRING        , true)));
     tmpMap.put(_Fields.EPHEMERAL_KEY, new org.apache.thrift.meta_data.FieldMetaData("ephemeralKey", org.apache.thrift.TFieldRequirementType.DEFAULT, 
         new org.apache.thrift.meta_data.FieldValueMetaData(org.apache.thrift.protocol.TType.STRING        , true)));
+    tmpMap.put(_Fields.AEAD_SUITE_ID, new org.apache.thrift.meta_data.FieldMetaData("aeadSuiteId", org.apache.thrift.TFieldRequirementType.OPTIONAL, 
+        new org.apache.thrift.meta_data.FieldValueMetaData(org.apache.thrift.protocol.TType.I32)));
     metaDataMap = java.util.Collections.unmodifiableMap(tmpMap);
     org.apache.thrift.meta_data.FieldMetaData.addStructMetaDataMap(DHRatchetSetupMessageStruct.class, metaDataMap);
   }
@@ -129,6 +138,7 @@ public class DHRatchetSetupMessageStruct implements org.apache.thrift.TBase<DHRa
     if (other.isSetEphemeralKey()) {
       this.ephemeralKey = org.apache.thrift.TBaseHelper.copyBinary(other.ephemeralKey);
     }
+    this.aeadSuiteId = other.aeadSuiteId;
   }
 
   public DHRatchetSetupMessageStruct deepCopy() {
@@ -141,6 +151,8 @@ public class DHRatchetSetupMessageStruct implements org.apache.thrift.TBase<DHRa
     this.peerNum = 0;
     this.identityKey = null;
     this.ephemeralKey = null;
+    setAeadSuiteIdIsSet(false);
+    this.aeadSuiteId = 0;
   }
 
   public int getPeerNum() {
@@ -234,6 +246,29 @@ public class DHRatchetSetupMessageStruct implements org.apache.thrift.TBase<DHRa
     }
   }
 
+  public int getAeadSuiteId() {
+    return this.aeadSuiteId;
+  }
+
+  public DHRatchetSetupMessageStruct setAeadSuiteId(int aeadSuiteId) {
+    this.aeadSuiteId = aeadSuiteId;
+    setAeadSuiteIdIsSet(true);
+    return this;
+  }
+
+  public void unsetAeadSuiteId() {
+    __isset_bitfield = org.apache.thrift.EncodingUtils.clearBit(__isset_bitfield, __AEADSUITEID_ISSET_ID);
+  }
+
+  /** Returns true if field aeadSuiteId is set (has been assigned a value) and false otherwise */
+  public boolean isSetAeadSuiteId() {
+    return org.apache.thrift.EncodingUtils.testBit(__isset_bitfield, __AEADSUITEID_ISSET_ID);
+  }
+
+  public void setAeadSuiteIdIsSet(boolean value) {
+    __isset_bitfield = org.apache.thrift.EncodingUtils.setBit(__isset_bitfield, __AEADSUITEID_ISSET_ID, value);
+  }
+
   public void setFieldValue(_Fields field, java.lang.Object value) {
     switch (field) {
     case PEER_NUM:
@@ -268,6 +303,14 @@ public class DHRatchetSetupMessageStruct implements org.apache.thrift.TBase<DHRa
       }
       break;
 
+    case AEAD_SUITE_ID:
+      if (value == null) {
+        unsetAeadSuiteId();
+      } else {
+        setAeadSuiteId((java.lang.Integer)value);
+      }
+      break;
+
     }
   }
 
@@ -282,6 +325,9 @@ public class DHRatchetSetupMessageStruct implements org.apache.thrift.TBase<DHRa
     case EPHEMERAL_KEY:
       return getEphemeralKey();
 
+    case AEAD_SUITE_ID:
+      return getAeadSuiteId();
+
     }
     throw new java.lang.IllegalStateException();
   }
@@ -299,6 +345,8 @@ public class DHRatchetSetupMessageStruct implements org.apache.thrift.TBase<DHRa
       return isSetIdentityKey();
     case EPHEMERAL_KEY:
       return isSetEphemeralKey();
+    case AEAD_SUITE_ID:
+      return isSetAeadSuiteId();
     }
     throw new java.lang.IllegalStateException();
   }
@@ -345,6 +393,15 @@ public class DHRatchetSetupMessageStruct implements org.apache.thrift.TBase<DHRa
         return false;
     }
 
+    boolean this_present_aeadSuiteId = true && this.isSetAeadSuiteId();
+    boolean that_present_aeadSuiteId = true && that.isSetAeadSuiteId();
+    if (this_present_aeadSuiteId || that_present_aeadSuiteId) {
+      if (!(this_present_aeadSuiteId && that_present_aeadSuiteId))
+        return false;
+      if (this.aeadSuiteId != that.aeadSuiteId)
+        return false;
+    }
+
     return true;
   }
 
@@ -362,6 +419,10 @@ public class DHRatchetSetupMessageStruct implements org.apache.thrift.TBase<DHRa
     if (isSetEphemeralKey())
       hashCode = hashCode * 8191 + ephemeralKey.hashCode();
 
+    hashCode = hashCode * 8191 + ((isSetAeadSuiteId()) ? 131071 : 524287);
+    if (isSetAeadSuiteId())
+      hashCode = hashCode * 8191 + aeadSuiteId;
+
     return hashCode;
   }
 
@@ -403,6 +464,16 @@ public class DHRatchetSetupMessageStruct implements org.apache.thrift.TBase<DHRa
         return lastComparison;
       }
     }
+    lastComparison = java.lang.Boolean.valueOf(isSetAeadSuiteId()).compareTo(other.isSetAeadSuiteId());
+    if (lastComparison != 0) {
+      return lastComparison;
+    }
+    if (isSetAeadSuiteId()) {
+      lastComparison = org.apache.thrift.TBaseHelper.compareTo(this.aeadSuiteId, other.aeadSuiteId);
+      if (lastComparison != 0) {
+        return lastComparison;
+      }
+    }
     return 0;
   }
 
@@ -442,6 +513,12 @@ public class DHRatchetSetupMessageStruct implements org.apache.thrift.TBase<DHRa
       org.apache.thrift.TBaseHelper.toString(this.ephemeralKey, sb);
     }
     first = false;
+    if (isSetAeadSuiteId()) {
+      if (!first) sb.append(", ");
+      sb.append("aeadSuiteId:");
+      sb.append(this.aeadSuiteId);
+      first = false;
+    }
     sb.append(")");
     return sb.toString();
   }
@@ -511,6 +588,14 @@ public class DHRatchetSetupMessageStruct implements org.apache.thrift.TBase<DHRa
               org.apache.thrift.protocol.TProtocolUtil.skip(iprot, schemeField.type);
             }
             break;
+          case 4: // AEAD_SUITE_ID
+            if (schemeField.type == org.apache.thrift.protocol.TType.I32) {
+              struct.aeadSuiteId = iprot.readI32();
+              struct.setAeadSuiteIdIsSet(true);
+            } else { 
+              org.apache.thrift.protocol.TProtocolUtil.skip(iprot, schemeField.type);
+            }
+            break;
           default:
             org.apache.thrift.protocol.TProtocolUtil.skip(iprot, schemeField.type);
         }
@@ -539,6 +624,11 @@ public class DHRatchetSetupMessageStruct implements org.apache.thrift.TBase<DHRa
         oprot.writeBinary(struct.ephemeralKey);
         oprot.writeFieldEnd();
       }
+      if (struct.isSetAeadSuiteId()) {
+        oprot.writeFieldBegin(AEAD_SUITE_ID_FIELD_DESC);
+        oprot.writeI32(struct.aeadSuiteId);
+        oprot.writeFieldEnd();
+      }
       oprot.writeFieldStop();
       oprot.writeStructEnd();
     }
@@ -566,7 +656,10 @@ public class DHRatchetSetupMessageStruct implements org.apache.thrift.TBase<DHRa
       if (struct.isSetEphemeralKey()) {
         optionals.set(2);
       }
-      oprot.writeBitSet(optionals, 3);
+      if (struct.isSetAeadSuiteId()) {
+        optionals.set(3);
+      }
+      oprot.writeBitSet(optionals, 4);
       if (struct.isSetPeerNum()) {
         oprot.writeI32(struct.peerNum);
       }
@@ -576,12 +669,15 @@ public class DHRatchetSetupMessageStruct implements org.apache.thrift.TBase<DHRa
       if (struct.isSetEphemeralKey()) {
         oprot.writeBinary(struct.ephemeralKey);
       }
+      if (struct.isSetAeadSuiteId()) {
+        oprot.writeI32(struct.aeadSuiteId);
+      }
     }
 
     @Override
     public void read(org.apache.thrift.protocol.TProtocol prot, DHRatchetSetupMessageStruct struct) throws org.apache.thrift.TException {
       org.apache.thrift.protocol.TTupleProtocol iprot = (org.apache.thrift.protocol.TTupleProtocol) prot;
-      java.util.BitSet incoming = iprot.readBitSet(3);
+      java.util.BitSet incoming = iprot.readBitSet(4);
       if (incoming.get(0)) {
         struct.peerNum = iprot.readI32();
         struct.setPeerNumIsSet(true);
@@ -594,6 +690,10 @@ public class DHRatchetSetupMessageStruct implements org.apache.thrift.TBase<DHRa
         struct.ephemeralKey = iprot.readBinary();
         struct.setEphemeralKeyIsSet(true);
       }
+      if (incoming.get(3)) {
+        struct.aeadSuiteId = iprot.readI32();
+        struct.setAeadSuiteIdIsSet(true);
+      }
     }
   }
 